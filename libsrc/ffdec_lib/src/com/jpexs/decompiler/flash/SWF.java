@@ -73,6 +73,8 @@ import com.jpexs.decompiler.flash.action.swf7.ActionDefineFunction2;
 import com.jpexs.decompiler.flash.cache.AS2Cache;
 import com.jpexs.decompiler.flash.cache.AS3Cache;
 import com.jpexs.decompiler.flash.cache.ScriptDecompiledListener;
+import com.jpexs.decompiler.flash.cache.DecodedImageCache;
+import com.jpexs.decompiler.flash.cache.SwfBodyCache;
 import com.jpexs.decompiler.flash.configuration.Configuration;
 import com.jpexs.decompiler.flash.configuration.CustomConfigurationKeys;
 import com.jpexs.decompiler.flash.configuration.SwfSpecificCustomConfiguration;
@@ -139,6 +141,7 @@ import com.jpexs.decompiler.flash.tags.gfx.DefineCompactedFont;
 import com.jpexs.decompiler.flash.tags.gfx.DefineExternalImage2;
 import com.jpexs.decompiler.flash.timeline.AS2Package;
 import com.jpexs.decompiler.flash.timeline.Frame;
+import com.jpexs.decompiler.flash.timeline.FrameDiffRenderer;
 import com.jpexs.decompiler.flash.timeline.FrameScript;
 import com.jpexs.decompiler.flash.timeline.TagScript;
 import com.jpexs.decompiler.flash.timeline.Timeline;
@@ -181,6 +184,7 @@ import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -189,6 +193,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.nio.charset.Charset;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -201,6 +206,7 @@ import java.util.Date;
 import java.util.EmptyStackException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -369,6 +375,9 @@ public final class SWF implements SWFContainerItem, Timelined, Openable {
     @Internal
     private final Cache<SHAPE, ShapeExportData> shapeExportDataCache = Cache.getInstance(true, true, "shapeExportData", true);
 
+    @Internal
+    private volatile int renderCacheGeneration = 0;
+
     @Internal
     private final Cache<SoundInfoSoundCacheEntry, byte[]> soundCache = Cache.getInstance(false, false, "sound", true);
 
@@ -1107,15 +1116,46 @@ public final class SWF implements SWFContainerItem, Timelined, Openable {
      */
     @Override
     public void saveTo(OutputStream os) throws IOException {
-        checkCharset();
-        byte[] uncompressedData = saveToByteArray(false);
-        compress(new ByteArrayInputStream(uncompressedData), os, compression, lzmaProperties);
+        saveTo(os, gfx, false);
     }
 
+    /**
+     * Saves this SWF into new file. Unmodified tags are written directly from
+     * the data they were read from, only modified tags are encoded.
+     *
+     * @param os OutputStream to save SWF in
+     * @param gfx Write GFX header
+     * @param includeImported Include imported tags
+     * @throws IOException
+     */
     public void saveTo(OutputStream os, boolean gfx, boolean includeImported) throws IOException {
         checkCharset();
-        byte[] uncompressedData = saveToByteArray(gfx, includeImported);
-        compress(new ByteArrayInputStream(uncompressedData), os, compression, lzmaProperties);
+        List<ByteArrayRange> ranges = getSaveRanges(gfx, includeImported, null);
+        long fileSize = getRangesLength(ranges);
+
+        SWFOutputStream sos = new SWFOutputStream(os, version, Utf8Helper.charsetName);
+        sos.write(getHeaderBytes(compression, gfx));
+        sos.writeUI8(version);
+        sos.writeUI32(fileSize);
+
+        // the first range is the uncompressed file header
+        List<ByteArrayRange> data = ranges.subList(1, ranges.size());
+        if (compression == SWFCompression.LZMA || compression == SWFCompression.LZMA_ABC) {
+            List<InputStream> streams = new ArrayList<>();
+            for (ByteArrayRange range : data) {
+                streams.add(new ByteArrayInputStream(range.getArray(), range.getPos(), range.getLength()));
+            }
+            compressLzma(new SequenceInputStream(Collections.enumeration(streams)), os, compression, lzmaProperties, fileSize);
+        } else if (compression == SWFCompression.ZLIB) {
+            DeflaterOutputStream dos = new DeflaterOutputStream(os);
+            try {
+                writeRanges(data, dos);
+            } finally {
+                dos.finish();
+            }
+        } else {
+            writeRanges(data, os);
+        }
     }
 
     public byte[] getHeaderBytes() {
@@ -1169,33 +1209,101 @@ public final class SWF implements SWFContainerItem, Timelined, Openable {
     }
 
     private byte[] saveToByteArray(boolean gfx, boolean includeImported) throws IOException {
-        byte[] data;
+        return joinRanges(getSaveRanges(gfx, includeImported, null));
+    }
+
+    /**
+     * Gets uncompressed SWF data as list of byte ranges. Unmodified tags are
+     * the ranges they were read from, so their data is not copied.
+     *
+     * @param gfx Write GFX header
+     * @param includeImported Include imported tags
+     * @param encodedTags Map to store the ranges of encoded tags to, or null
+     * @return Ranges, the first one is the 8 bytes long file header
+     * @throws IOException
+     */
+    private List<ByteArrayRange> getSaveRanges(boolean gfx, boolean includeImported, Map<Tag, ByteArrayRange> encodedTags) throws IOException {
+        List<ByteArrayRange> ranges = new ArrayList<>();
+        ranges.add(null); // file header, written when the length is known
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); SWFOutputStream sos = new SWFOutputStream(baos, version, charset)) {
-            sos.write(getHeaderBytes(SWFCompression.NONE, gfx));
-            sos.writeUI8(version);
-            sos.writeUI32(0); // placeholder for file length
             sos.writeRECT(displayRect);
             sos.writeFIXED8(frameRate);
             sos.writeUI16(frameCount);
+            ranges.add(new ByteArrayRange(baos.toByteArray()));
+        }
 
-            sos.writeTags(includeImported ? getTags() : getLocalTags());
-            if (hasEndTag) {
-                sos.writeUI16(0);
+        for (Tag tag : includeImported ? getTags() : getLocalTags()) {
+            ByteArrayRange range = tag.getTagRange();
+            if (encodedTags != null && range != tag.getOriginalRange()) {
+                encodedTags.put(tag, range);
             }
+            ranges.add(range);
+        }
 
-            data = baos.toByteArray();
+        if (hasEndTag) {
+            ranges.add(new ByteArrayRange(new byte[2]));
         }
 
-        // update file size
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); SWFOutputStream sos = new SWFOutputStream(baos, version, charset)) {
-            sos.writeUI32(data.length);
-            byte[] lengthData = baos.toByteArray();
-            System.arraycopy(lengthData, 0, data, 4, lengthData.length);
+            sos.write(getHeaderBytes(SWFCompression.NONE, gfx));
+            sos.writeUI8(version);
+            sos.writeUI32(8 + getRangesLength(ranges.subList(1, ranges.size())));
+            ranges.set(0, new ByteArrayRange(baos.toByteArray()));
         }
 
+        return ranges;
+    }
+
+    private static long getRangesLength(List<ByteArrayRange> ranges) {
+        long length = 0;
+        for (ByteArrayRange range : ranges) {
+            length += range.getLength();
+        }
+        return length;
+    }
+
+    private static byte[] joinRanges(List<ByteArrayRange> ranges) {
+        byte[] data = new byte[(int) getRangesLength(ranges)];
+        int pos = 0;
+        for (ByteArrayRange range : ranges) {
+            System.arraycopy(range.getArray(), range.getPos(), data, pos, range.getLength());
+            pos += range.getLength();
+        }
         return data;
     }
 
+    /**
+     * Writes the ranges, neighbouring ranges of the same array are written at
+     * once.
+     *
+     * @param ranges Ranges
+     * @param os Output stream
+     * @throws IOException
+     */
+    private static void writeRanges(List<ByteArrayRange> ranges, OutputStream os) throws IOException {
+        byte[] array = null;
+        int pos = 0;
+        int length = 0;
+        for (ByteArrayRange range : ranges) {
+            if (range.getArray() == array && range.getPos() == pos + length) {
+                length += range.getLength();
+                continue;
+            }
+
+            if (array != null) {
+                os.write(array, pos, length);
+            }
+
+            array = range.getArray();
+            pos = range.getPos();
+            length = range.getLength();
+        }
+
+        if (array != null) {
+            os.write(array, pos, length);
+        }
+    }
+
     /**
      * Compress SWF file
      *
@@ -1239,53 +1347,7 @@ public final class SWF implements SWFContainerItem, Timelined, Openable {
         sos.writeUI32(fileSize);
 
         if (compression == SWFCompression.LZMA || compression == SWFCompression.LZMA_ABC) {
-            long uncompressedLength = fileSize - 8;
-            Encoder enc = new Encoder();
-            if (lzmaProperties == null) {
-                // todo: the bytes are from a sample swf
-                lzmaProperties = new byte[]{93, 0, 0, 32, 0};
-            }
-
-            int val = lzmaProperties[0] & 0xFF;
-            int lc = val % 9;
-            int remainder = val / 9;
-            int lp = remainder % 5;
-            int pb = remainder / 5;
-            int dictionarySize = 0;
-            for (int i = 0; i < 4; i++) {
-                dictionarySize += ((int) (lzmaProperties[1 + i]) & 0xFF) << (i * 8);
-            }
-            if (Configuration.lzmaFastBytes.get() > 0) {
-                enc.SetNumFastBytes(Configuration.lzmaFastBytes.get());
-            }
-            enc.SetDictionarySize(dictionarySize);
-            enc.SetLcLpPb(lc, lp, pb);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            enc.SetEndMarkerMode(true);
-            enc.Code(is, baos, -1, -1, null);
-            byte[] data = baos.toByteArray();
-            if (compression == SWFCompression.LZMA) {
-                byte[] udata = new byte[4];
-                udata[0] = (byte) (data.length & 0xFF);
-                udata[1] = (byte) ((data.length >> 8) & 0xFF);
-                udata[2] = (byte) ((data.length >> 16) & 0xFF);
-                udata[3] = (byte) ((data.length >> 24) & 0xFF);
-                os.write(udata);
-            }
-            enc.WriteCoderProperties(os);
-            if (compression == SWFCompression.LZMA_ABC) {
-                byte[] udata = new byte[8];
-                udata[0] = (byte) (uncompressedLength & 0xFF);
-                udata[1] = (byte) ((uncompressedLength >> 8) & 0xFF);
-                udata[2] = (byte) ((uncompressedLength >> 16) & 0xFF);
-                udata[3] = (byte) ((uncompressedLength >> 24) & 0xFF);
-                udata[4] = (byte) ((uncompressedLength >> 32) & 0xFF);
-                udata[5] = (byte) ((uncompressedLength >> 40) & 0xFF);
-                udata[6] = (byte) ((uncompressedLength >> 48) & 0xFF);
-                udata[7] = (byte) ((uncompressedLength >> 56) & 0xFF);
-                os.write(udata);
-            }
-            os.write(data);
+            compressLzma(is, os, compression, lzmaProperties, fileSize);
         } else if (compression == SWFCompression.ZLIB) {
             DeflaterOutputStream dos = new DeflaterOutputStream(os);
             try {
@@ -1298,6 +1360,66 @@ public final class SWF implements SWFContainerItem, Timelined, Openable {
         }
     }
 
+    /**
+     * Compresses SWF data after the header with LZMA.
+     *
+     * @param is Uncompressed data after the 8 bytes long header
+     * @param os Output stream, the header is already written
+     * @param compression LZMA or LZMA_ABC
+     * @param lzmaProperties LZMA properties
+     * @param fileSize Uncompressed file size
+     * @throws IOException
+     */
+    private static void compressLzma(InputStream is, OutputStream os, SWFCompression compression, byte[] lzmaProperties, long fileSize) throws IOException {
+        long uncompressedLength = fileSize - 8;
+        Encoder enc = new Encoder();
+        if (lzmaProperties == null) {
+            // todo: the bytes are from a sample swf
+            lzmaProperties = new byte[]{93, 0, 0, 32, 0};
+        }
+
+        int val = lzmaProperties[0] & 0xFF;
+        int lc = val % 9;
+        int remainder = val / 9;
+        int lp = remainder % 5;
+        int pb = remainder / 5;
+        int dictionarySize = 0;
+        for (int i = 0; i < 4; i++) {
+            dictionarySize += ((int) (lzmaProperties[1 + i]) & 0xFF) << (i * 8);
+        }
+        if (Configuration.lzmaFastBytes.get() > 0) {
+            enc.SetNumFastBytes(Configuration.lzmaFastBytes.get());
+        }
+        enc.SetDictionarySize(dictionarySize);
+        enc.SetLcLpPb(lc, lp, pb);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        enc.SetEndMarkerMode(true);
+        enc.Code(is, baos, -1, -1, null);
+        byte[] data = baos.toByteArray();
+        if (compression == SWFCompression.LZMA) {
+            byte[] udata = new byte[4];
+            udata[0] = (byte) (data.length & 0xFF);
+            udata[1] = (byte) ((data.length >> 8) & 0xFF);
+            udata[2] = (byte) ((data.length >> 16) & 0xFF);
+            udata[3] = (byte) ((data.length >> 24) & 0xFF);
+            os.write(udata);
+        }
+        enc.WriteCoderProperties(os);
+        if (compression == SWFCompression.LZMA_ABC) {
+            byte[] udata = new byte[8];
+            udata[0] = (byte) (uncompressedLength & 0xFF);
+            udata[1] = (byte) ((uncompressedLength >> 8) & 0xFF);
+            udata[2] = (byte) ((uncompressedLength >> 16) & 0xFF);
+            udata[3] = (byte) ((uncompressedLength >> 24) & 0xFF);
+            udata[4] = (byte) ((uncompressedLength >> 32) & 0xFF);
+            udata[5] = (byte) ((uncompressedLength >> 40) & 0xFF);
+            udata[6] = (byte) ((uncompressedLength >> 48) & 0xFF);
+            udata[7] = (byte) ((uncompressedLength >> 56) & 0xFF);
+            os.write(udata);
+        }
+        os.write(data);
+    }
+
     @Override
     public boolean isModified() {
         if (isModified) {
@@ -1323,9 +1445,31 @@ public final class SWF implements SWFContainerItem, Timelined, Openable {
 
     @Override
     public void clearModified() {
+        // modified tags are encoded once, their original data are then
+        // the ranges of the new uncompressed data
+        Map<Tag, ByteArrayRange> encodedTags = new IdentityHashMap<>();
+        byte[] data = null;
+        Map<ByteArrayRange, Integer> offsets = new IdentityHashMap<>();
+        try {
+            List<ByteArrayRange> ranges = getSaveRanges(gfx, false, encodedTags);
+            data = joinRanges(ranges);
+            int offset = 0;
+            for (ByteArrayRange range : ranges) {
+                offsets.put(range, offset);
+                offset += range.getLength();
+            }
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Cannot save SWF", ex);
+        }
+
         for (Tag tag : getTags()) {
             if (tag.isModified()) {
-                tag.createOriginalData();
+                ByteArrayRange range = encodedTags.get(tag);
+                if (data != null && range != null) {
+                    tag.setOriginalRange(new ByteArrayRange(data, offsets.get(range), range.getLength()));
+                } else {
+                    tag.createOriginalData();
+                }
                 tag.setModified(false);
             }
         }
@@ -1333,10 +1477,8 @@ public final class SWF implements SWFContainerItem, Timelined, Openable {
         headerModified = false;
         isModified = false;
 
-        try {
-            uncompressedData = saveToByteArray(false);
-        } catch (IOException ex) {
-            logger.log(Level.SEVERE, "Cannot save SWF", ex);
+        if (data != null) {
+            uncompressedData = data;
         }
     }
 
@@ -1481,13 +1623,40 @@ public final class SWF implements SWFContainerItem, Timelined, Openable {
         this.file = file;
         this.fileTitle = fileTitle;
         this.charset = charset;
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        SWFHeader header = decompress(is, baos, true);
+        SWFHeader header = null;
+        if (SwfBodyCache.isEnabled()) {
+            is = new BufferedInputStream(is);
+            is.mark(1);
+            int signature = is.read();
+            is.reset();
+            if (SwfBodyCache.isCachedSignature(signature)) {
+                byte[] fileData = Helper.readStream(is);
+                String cacheKey = SwfBodyCache.getKey(fileData);
+                SwfBodyCache.Entry entry = cacheKey == null ? null : SwfBodyCache.get(cacheKey);
+                if (entry != null) {
+                    header = entry.header;
+                    uncompressedData = entry.uncompressedData;
+                } else {
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    header = decompress(new ByteArrayInputStream(fileData), baos, true);
+                    uncompressedData = baos.toByteArray();
+                    if (cacheKey != null) {
+                        SwfBodyCache.put(cacheKey, header, uncompressedData);
+                    }
+                }
+            }
+        }
+
+        if (header == null) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            header = decompress(is, baos, true);
+            uncompressedData = baos.toByteArray();
+        }
+
         gfx = header.gfx;
         encrypted = header.encrypted;
         compression = header.compression;
         lzmaProperties = header.lzmaProperties;
-        uncompressedData = baos.toByteArray();
         originalUncompressedData = uncompressedData;
 
         SWFInputStream sis = new SWFInputStream(this, uncompressedData);
@@ -3159,7 +3328,19 @@ public final class SWF implements SWFContainerItem, Timelined, Openable {
         soundCache.put(key, data);
     }
 
+    /**
+     * Gets generation of the image and shape caches. It changes whenever the
+     * caches are cleared, so the rendered characters might have been
+     * modified.
+     *
+     * @return Generation
+     */
+    public int getRenderCacheGeneration() {
+        return renderCacheGeneration;
+    }
+
     public void clearImageCache() {
+        renderCacheGeneration++;
         jtt = null;
         frameCache.clear();
         rectCache.clear();
@@ -3173,6 +3354,7 @@ public final class SWF implements SWFContainerItem, Timelined, Openable {
     }
 
     public void clearShapeCache() {
+        renderCacheGeneration++;
         shapeExportDataCache.clear();
     }
 
@@ -3204,6 +3386,8 @@ public final class SWF implements SWFContainerItem, Timelined, Openable {
 
     public static void clearAllStaticCache() {
         Cache.clearAll();
+        SwfBodyCache.clear();
+        DecodedImageCache.getInstance().clear();
         Helper.clearShapeCache();
         System.gc();
     }
@@ -3459,6 +3643,28 @@ public final class SWF implements SWFContainerItem, Timelined, Openable {
     }
 
     public static SerializableImage frameToImageGet(Timeline timeline, int frame, int time, Point cursorPosition, int mouseButton, RECT displayRect, Matrix transformation, ColorTransform colorTransform, Color backGroundColor, double zoom, boolean canUseSmoothing) {
+        return frameToImageGet(timeline, frame, time, cursorPosition, mouseButton, displayRect, transformation, colorTransform, backGroundColor, zoom, canUseSmoothing, null);
+    }
+
+    /**
+     * Renders frame of timeline to a new image.
+     *
+     * @param timeline Timeline
+     * @param frame Frame
+     * @param time Time
+     * @param cursorPosition Cursor position
+     * @param mouseButton Mouse button
+     * @param displayRect Displayed rectangle
+     * @param transformation Transformation
+     * @param colorTransform Color transform
+     * @param backGroundColor Background color, null = transparent
+     * @param zoom Zoom
+     * @param canUseSmoothing Can use bitmap smoothing
+     * @param diffRenderer Renderer of the timeline which renders only the
+     * changes since the previously rendered frame, null = render whole frame
+     * @return Image
+     */
+    public static SerializableImage frameToImageGet(Timeline timeline, int frame, int time, Point cursorPosition, int mouseButton, RECT displayRect, Matrix transformation, ColorTransform colorTransform, Color backGroundColor, double zoom, boolean canUseSmoothing, FrameDiffRenderer diffRenderer) {
         if (timeline.getFrameCount() == 0) {
             return new SerializableImage(1, 1, SerializableImage.TYPE_INT_ARGB_PRE);
         }
@@ -3467,23 +3673,39 @@ public final class SWF implements SWFContainerItem, Timelined, Openable {
         SerializableImage image = new SerializableImage(
                 rect.getWidth() == 0 ? 1 /*FIXME: is this necessary?*/ : (int) (rect.getWidth() * zoom / SWF.unitDivisor),
                 rect.getHeight() == 0 ? 1 : (int) (rect.getHeight() * zoom / SWF.unitDivisor), SerializableImage.TYPE_INT_ARGB_PRE);
+
+        Matrix m = transformation.clone();
+        m.translate(-rect.Xmin * zoom, -rect.Ymin * zoom);
+        m.scale(zoom);
+        ExportRectangle viewRect = new ExportRectangle(rect);
+
+        Rectangle region = null;
+        if (diffRenderer != null) {
+            region = diffRenderer.beginFrame(image, frame, time, m, zoom, cursorPosition != null, Arrays.asList(viewRect, colorTransform, backGroundColor, canUseSmoothing, mouseButton));
+        }
+
         if (backGroundColor == null) {
             image.fillTransparent();
         } else {
             Graphics2D g = (Graphics2D) image.getBufferedImage().getGraphics();
+            if (region != null) {
+                g.setClip(region);
+            }
             g.setComposite(AlphaComposite.Src);
             g.setColor(backGroundColor);
             g.fill(new Rectangle(image.getWidth(), image.getHeight()));
         }
 
-        Matrix m = transformation.clone();
-        m.translate(-rect.Xmin * zoom, -rect.Ymin * zoom);
-        m.scale(zoom);
         RenderContext renderContext = new RenderContext();
         renderContext.cursorPosition = cursorPosition;
         renderContext.mouseButton = mouseButton;
-        ExportRectangle viewRect = new ExportRectangle(rect);
-        timeline.toImage(frame, time, renderContext, image, image, false, m, new Matrix(), m, colorTransform, zoom, false, viewRect, m, true, Timeline.DRAW_MODE_ALL, 0, canUseSmoothing);
+        if (region == null || !region.isEmpty()) {
+            timeline.toImage(frame, time, renderContext, image, image, false, m, new Matrix(), m, colorTransform, zoom, false, viewRect, m, true, Timeline.DRAW_MODE_ALL, 0, canUseSmoothing);
+        }
+
+        if (diffRenderer != null) {
+            diffRenderer.endFrame(image);
+        }
 
         return image;
     }
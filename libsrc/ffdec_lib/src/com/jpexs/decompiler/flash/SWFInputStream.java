@@ -286,11 +286,9 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.InflaterInputStream;
@@ -1133,7 +1131,7 @@ public class SWFInputStream implements AutoCloseable {
     public void close() {
     }
 
-    private class TagResolutionTask implements Callable<Tag> {
+    private class TagResolutionTask extends RecursiveTask<Tag> {
 
         private final TagStub tag;
 
@@ -1157,7 +1155,7 @@ public class SWFInputStream implements AutoCloseable {
         }
 
         @Override
-        public Tag call() throws Exception {
+        protected Tag compute() {
             DumpInfo di = dumpInfo;
             try {
                 Tag t = resolveTag(tag, level, parallel, skipUnusualTags, lazy, true);
@@ -1175,7 +1173,9 @@ public class SWFInputStream implements AutoCloseable {
 
     /**
      * Reads list of tags from the stream. Reading ends with End tag(=0) or end
-     * of the stream. Optionally can skip AS1/2 tags when file is AS3
+     * of the stream. Optionally can skip AS1/2 tags when file is AS3. In
+     * parallel mode the tag payloads are resolved in the shared
+     * TagResolutionPool, nested sprite tag lists included.
      *
      * @param timelined
      * @param level
@@ -1192,27 +1192,21 @@ public class SWFInputStream implements AutoCloseable {
             throw new InterruptedException();
         }
 
-        boolean parallel1 = level == 0 && parallel;
-        ExecutorService executor = null;
         List<Future<Tag>> futureResults = new ArrayList<>();
-        if (parallel1) {
-            executor = Executors.newFixedThreadPool(Configuration.getParallelThreadCount());
-            futureResults = new ArrayList<>();
-        }
         List<Tag> tags = new ArrayList<>();
         Tag tag;
         while (available() > 0) {
             long pos = getPos();
             newDumpLevel(null, "TAG", DumpInfoSpecialType.TAG, getPos());
             try {
-                tag = readTag(timelined, level, pos, false, parallel1, skipUnusualTags, lazy);
+                tag = readTag(timelined, level, pos, false, parallel, skipUnusualTags, lazy);
             } catch (EOFException | EndOfStreamException ex) {
                 tag = null;
             }
 
             boolean doParse = true;
 
-            if (parseTags && !parallel1 && doParse && (tag instanceof TagStub)) {
+            if (parseTags && !parallel && doParse && (tag instanceof TagStub)) {
                 tag = resolveTag((TagStub) tag, level, parallel, skipUnusualTags, lazy, true);
             }
             DumpInfo di = dumpInfo;
@@ -1225,15 +1219,15 @@ public class SWFInputStream implements AutoCloseable {
             }
 
             tag.setTimelined(timelined);
-            if (!parallel1) {
+            if (!parallel) {
                 tags.add(tag);
             }
             if (Configuration.dumpTags.get() && level == 0) {
                 dumpTag(System.out, tag, tags.size() - 1, level);
             }
 
-            if (parseTags && doParse && parallel1 && tag instanceof TagStub && executor != null) {
-                Future<Tag> future = executor.submit(new TagResolutionTask((TagStub) tag, di, level, parallel1, skipUnusualTags, lazy));
+            if (parseTags && doParse && parallel && tag instanceof TagStub) {
+                Future<Tag> future = TagResolutionPool.schedule(new TagResolutionTask((TagStub) tag, di, level, parallel, skipUnusualTags, lazy));
                 futureResults.add(future);
             } else {
                 Future<Tag> future = new ImmediateFuture<>(tag);
@@ -1250,7 +1244,7 @@ public class SWFInputStream implements AutoCloseable {
             }
         }
 
-        if (parallel1) {
+        if (parallel) {
             for (Future<Tag> future : futureResults) {
                 try {
                     tags.add(future.get());
@@ -1260,10 +1254,6 @@ public class SWFInputStream implements AutoCloseable {
                     logger.log(Level.SEVERE, "Error during tag reading", e);
                 }
             }
-
-            if (executor != null) {
-                executor.shutdown();
-            }
         }
         return tags;
     }
@@ -1387,7 +1377,7 @@ public class SWFInputStream implements AutoCloseable {
                     break;
                 //case 38: DefineMouseTarget
                 case 39:
-                    ret = new DefineSpriteTag(sis, level, data, parallel, skipUnusualTags);
+                    ret = new DefineSpriteTag(sis, level, data, parallel, skipUnusualTags, lazy);
                     break;
                 case 40:
                     ret = new NameCharacterTag(sis, data);
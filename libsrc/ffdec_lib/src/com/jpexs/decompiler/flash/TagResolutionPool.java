@@ -0,0 +1,52 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.tags.Tag;
+import com.jpexs.helpers.SharedForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Shared fork/join pool for resolving tag payloads.
+ *
+ * Tag lists of sprites are resolved recursively inside the pool, so joining
+ * a nested task from a worker steals work instead of blocking the thread.
+ *
+ * @author JPEXS
+ */
+public class TagResolutionPool {
+
+    private static final SharedForkJoinPool pool = new SharedForkJoinPool("TagResolution");
+
+    private TagResolutionPool() {
+    }
+
+    /**
+     * Schedules the task. Forks it when called from a worker of the same pool,
+     * submits it to the shared pool otherwise.
+     *
+     * @param task Task
+     * @return Scheduled task
+     */
+    public static ForkJoinTask<Tag> schedule(ForkJoinTask<Tag> task) {
+        if (pool.isWorkerThread()) {
+            return task.fork();
+        }
+
+        return pool.submit(task);
+    }
+}
@@ -250,7 +250,11 @@ public class ASM3Parser {
 
     public static boolean parseClass(ABC abc, Reader reader, AVM2ConstantPool constants, TraitClass tc) throws IOException, AVM2ParseException {
         Flasm3Lexer lexer = new Flasm3Lexer(reader);
-        return parseClass(abc, lexer, constants, tc);
+        try {
+            return parseClass(abc, lexer, constants, tc);
+        } finally {
+            abc.getMultinameUsageIndex().invalidateTrait(tc);
+        }
     }
 
     private static boolean parseClass(ABC abc, Flasm3Lexer lexer, AVM2ConstantPool constants, TraitClass tc) throws IOException, AVM2ParseException {
@@ -330,7 +334,11 @@ public class ASM3Parser {
 
     public static boolean parseSlotConst(ABC abc, Reader reader, AVM2ConstantPool constants, TraitSlotConst tsc) throws IOException, AVM2ParseException {
         Flasm3Lexer lexer = new Flasm3Lexer(reader);
-        return parseSlotConst(abc, lexer, constants, tsc);
+        try {
+            return parseSlotConst(abc, lexer, constants, tsc);
+        } finally {
+            abc.getMultinameUsageIndex().invalidateTrait(tsc);
+        }
     }
 
     private static int parseNamespaceSet(AVM2ConstantPool constants, Flasm3Lexer lexer) throws AVM2ParseException, IOException {
@@ -1375,6 +1383,9 @@ public class ASM3Parser {
         } else {
             info.optional = new ValueKind[0];
         }
+        int methodIndex = abc.method_info.indexOf(info);
+        abc.getMultinameUsageIndex().invalidateMethod(methodIndex);
+        abc.getMethodDependencyCache().invalidateMethod(methodIndex);
         abc.refreshMultinameNamespaceSuffixes();
         return code;
     }
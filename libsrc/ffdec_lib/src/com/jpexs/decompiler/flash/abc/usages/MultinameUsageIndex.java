@@ -0,0 +1,581 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.abc.usages;
+
+import com.jpexs.decompiler.flash.abc.ABC;
+import com.jpexs.decompiler.flash.abc.avm2.AVM2Code;
+import com.jpexs.decompiler.flash.abc.avm2.AVM2ConstantPool;
+import com.jpexs.decompiler.flash.abc.avm2.instructions.AVM2Instruction;
+import com.jpexs.decompiler.flash.abc.types.ABCException;
+import com.jpexs.decompiler.flash.abc.types.InstanceInfo;
+import com.jpexs.decompiler.flash.abc.types.MethodBody;
+import com.jpexs.decompiler.flash.abc.types.MethodInfo;
+import com.jpexs.decompiler.flash.abc.types.Multiname;
+import com.jpexs.decompiler.flash.abc.types.ScriptInfo;
+import com.jpexs.decompiler.flash.abc.types.traits.Trait;
+import com.jpexs.decompiler.flash.abc.types.traits.TraitClass;
+import com.jpexs.decompiler.flash.abc.types.traits.TraitMethodGetterSetter;
+import com.jpexs.decompiler.flash.abc.types.traits.TraitSlotConst;
+import com.jpexs.decompiler.flash.abc.types.traits.Traits;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of multiname usages in an ABC.
+ *
+ * Scripts, traits and method bodies are walked once and the places where
+ * multinames are used (sites) are stored with the multinames they contain.
+ * Searching for usages then only looks up the sites of matching multinames.
+ * Results are the same as of walking the whole ABC, in the same order.
+ *
+ * Sites are grouped by scripts. After an edit of a method or a trait, only
+ * its script is walked again on the next search. The walk is done on first
+ * search, so the method bodies are not parsed before usages are searched.
+ *
+ * @author JPEXS
+ */
+public class MultinameUsageIndex {
+
+    private static final int SITE_CLASS_NAME = 0;
+
+    // instance name of a class, listed only in findAllUsages
+    private static final int SITE_INSTANCE_NAME = 1;
+
+    private static final int SITE_SUPER_CLASS = 2;
+
+    private static final int SITE_SUPER_INTERFACE = 3;
+
+    private static final int SITE_CONST_VAR_NAME = 4;
+
+    private static final int SITE_CONST_VAR_TYPE = 5;
+
+    private static final int SITE_METHOD_NAME = 6;
+
+    private static final int SITE_METHOD_PARAMS = 7;
+
+    private static final int SITE_METHOD_RETURN_TYPE = 8;
+
+    private static final int SITE_METHOD_BODY = 9;
+
+    private static final int SITE_TYPE_NAME = 10;
+
+    private final ABC abc;
+
+    // guards fields below, held only shortly
+    private final Object lock = new Object();
+
+    // only one walk at a time
+    private final Object buildLock = new Object();
+
+    private Segment[] segments = new Segment[0];
+
+    private Segment typeNames;
+
+    // version of the last invalidation of each script
+    private int[] scriptVersions = new int[0];
+
+    private int allVersion = 0;
+
+    private int version = 0;
+
+    private static class Site {
+
+        private final int type;
+
+        private final int[] multinames;
+
+        private final int scriptIndex;
+
+        private final int classIndex;
+
+        private final int traitIndex;
+
+        private final int traitsType;
+
+        private final boolean isInitializer;
+
+        private final Traits traits;
+
+        private final int parentTraitIndex;
+
+        public Site(int type, int[] multinames, int scriptIndex, int classIndex, int traitIndex, int traitsType, boolean isInitializer, Traits traits, int parentTraitIndex) {
+            this.type = type;
+            this.multinames = multinames;
+            this.scriptIndex = scriptIndex;
+            this.classIndex = classIndex;
+            this.traitIndex = traitIndex;
+            this.traitsType = traitsType;
+            this.isInitializer = isInitializer;
+            this.traits = traits;
+            this.parentTraitIndex = parentTraitIndex;
+        }
+
+        public MultinameUsage createUsage(ABC abc, int multinameIndex) {
+            switch (type) {
+                case SITE_CLASS_NAME:
+                case SITE_INSTANCE_NAME:
+                    return new ClassNameMultinameUsage(abc, multinameIndex, classIndex, scriptIndex);
+                case SITE_SUPER_CLASS:
+                    return new SuperClassMultinameUsage(abc, multinameIndex, classIndex, scriptIndex);
+                case SITE_SUPER_INTERFACE:
+                    return new SuperInterfaceMultinameUsage(abc, multinameIndex, classIndex, scriptIndex);
+                case SITE_CONST_VAR_NAME:
+                    return new ConstVarNameMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, traits, parentTraitIndex);
+                case SITE_CONST_VAR_TYPE:
+                    return new ConstVarTypeMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, traits, parentTraitIndex);
+                case SITE_METHOD_NAME:
+                    return new MethodNameMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex);
+                case SITE_METHOD_PARAMS:
+                    return new MethodParamsMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex);
+                case SITE_METHOD_RETURN_TYPE:
+                    return new MethodReturnTypeMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex);
+                case SITE_METHOD_BODY:
+                    return new MethodBodyMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex);
+                case SITE_TYPE_NAME:
+                    return new TypeNameMultinameUsage(abc, multinameIndex, traitIndex, -1);
+                default:
+                    throw new IllegalStateException("Unknown site type " + type);
+            }
+        }
+    }
+
+    /**
+     * Sites of one script, or of the type name multinames.
+     */
+    private static class Segment {
+
+        private final ScriptInfo script;
+
+        private final int multinameCount;
+
+        private final List<Site> sites = new ArrayList<>();
+
+        private final Map<Integer, List<Integer>> sitesByMultiname = new HashMap<>();
+
+        private final Set<Integer> methods = new HashSet<>();
+
+        private final Set<Trait> traits = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        public Segment(ScriptInfo script, int multinameCount) {
+            this.script = script;
+            this.multinameCount = multinameCount;
+        }
+
+        public void addSite(int type, int[] multinames, int scriptIndex, int classIndex, int traitIndex, int traitsType, boolean isInitializer, Traits traits, int parentTraitIndex) {
+            int[] distinct = new int[multinames.length];
+            int count = 0;
+            loopm:
+            for (int m : multinames) {
+                if (m < 0 || m >= multinameCount) {
+                    continue;
+                }
+                for (int i = 0; i < count; i++) {
+                    if (distinct[i] == m) {
+                        continue loopm;
+                    }
+                }
+                distinct[count++] = m;
+            }
+
+            addDistinctSite(new Site(type, Arrays.copyOf(distinct, count), scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
+        }
+
+        public void addDistinctSite(Site site) {
+            int siteId = sites.size();
+            sites.add(site);
+            for (int m : site.multinames) {
+                List<Integer> list = sitesByMultiname.get(m);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    sitesByMultiname.put(m, list);
+                }
+
+                list.add(siteId);
+            }
+        }
+    }
+
+    public MultinameUsageIndex(ABC abc) {
+        this.abc = abc;
+    }
+
+    /**
+     * Finds usages of the multiname.
+     *
+     * @param multinameIndex Multiname index
+     * @param exactMatch Only the multiname itself, otherwise also multinames
+     * with same name and namespace. Type names are matched exactly in both
+     * cases.
+     * @return Usages
+     */
+    public List<MultinameUsage> findUsages(int multinameIndex, boolean exactMatch) {
+        List<MultinameUsage> ret = new ArrayList<>();
+        if (multinameIndex == 0) {
+            return ret;
+        }
+
+        Segment[] allSegments = getSegments();
+        List<Integer> matching = new ArrayList<>();
+        if (exactMatch) {
+            matching.add(multinameIndex);
+        } else {
+            AVM2ConstantPool constants = abc.constants;
+            for (int m = 0; m < constants.getMultinameCount(); m++) {
+                if (isSameName(constants, multinameIndex, m)) {
+                    matching.add(m);
+                }
+            }
+        }
+
+        for (int i = 0; i < allSegments.length; i++) {
+            Segment segment = allSegments[i];
+            // type names always match the multiname exactly
+            List<Integer> segmentMatching = i == allSegments.length - 1 ? Collections.singletonList(multinameIndex) : matching;
+            List<Integer> siteIds = null;
+            boolean merged = false;
+            for (int m : segmentMatching) {
+                List<Integer> ids = segment.sitesByMultiname.get(m);
+                if (ids == null) {
+                    continue;
+                }
+                if (siteIds == null) {
+                    siteIds = ids;
+                } else {
+                    if (!merged) {
+                        siteIds = new ArrayList<>(siteIds);
+                        merged = true;
+                    }
+                    siteIds.addAll(ids);
+                }
+            }
+            if (siteIds == null) {
+                continue;
+            }
+            if (merged) {
+                siteIds = new ArrayList<>(new HashSet<>(siteIds));
+                Collections.sort(siteIds);
+            }
+            for (int siteId : siteIds) {
+                Site site = segment.sites.get(siteId);
+                if (site.type != SITE_INSTANCE_NAME) {
+                    ret.add(site.createUsage(abc, multinameIndex));
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Finds usages of all multinames.
+     *
+     * @return Usages for each multiname index
+     */
+    public List<List<MultinameUsage>> findAllUsages() {
+        Segment[] allSegments = getSegments();
+        int multinameCount = abc.constants.getMultinameCount();
+        List<List<MultinameUsage>> ret = new ArrayList<>();
+        for (int i = 0; i < multinameCount; i++) {
+            ret.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < allSegments.length - 1; i++) {
+            for (Site site : allSegments[i].sites) {
+                for (int m : site.multinames) {
+                    if (m < multinameCount) {
+                        ret.get(m).add(site.createUsage(abc, m));
+                    }
+                }
+            }
+        }
+
+        // only the first type name for each multiname
+        boolean[] foundMultinames = new boolean[multinameCount];
+        for (Site site : allSegments[allSegments.length - 1].sites) {
+            for (int m : site.multinames) {
+                if (m < multinameCount && !foundMultinames[m]) {
+                    ret.get(m).add(site.createUsage(abc, m));
+                    foundMultinames[m] = true;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Marks whole index as outdated.
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            version++;
+            allVersion = version;
+            segments = new Segment[0];
+            typeNames = null;
+        }
+    }
+
+    /**
+     * Marks sites of the script as outdated.
+     *
+     * @param scriptIndex Script index
+     */
+    public void invalidateScript(int scriptIndex) {
+        synchronized (lock) {
+            version++;
+            if (scriptIndex >= scriptVersions.length) {
+                scriptVersions = Arrays.copyOf(scriptVersions, scriptIndex + 1);
+            }
+            scriptVersions[scriptIndex] = version;
+            if (scriptIndex < segments.length) {
+                // the array may be read by a running walk
+                segments = segments.clone();
+                segments[scriptIndex] = null;
+            }
+        }
+    }
+
+    /**
+     * Marks sites of the script containing the trait as outdated. Call after
+     * the trait was modified.
+     *
+     * @param trait Trait
+     */
+    public void invalidateTrait(Trait trait) {
+        int scriptIndex = -1;
+        synchronized (lock) {
+            for (int s = 0; s < segments.length; s++) {
+                if (segments[s] != null && segments[s].traits.contains(trait)) {
+                    scriptIndex = s;
+                    break;
+                }
+            }
+        }
+        if (scriptIndex == -1) {
+            invalidate();
+        } else {
+            invalidateScript(scriptIndex);
+        }
+    }
+
+    /**
+     * Marks sites of the script containing the method as outdated. Call after
+     * the method or its body was modified.
+     *
+     * @param methodIndex Method info index
+     */
+    public void invalidateMethod(int methodIndex) {
+        int scriptIndex = -1;
+        synchronized (lock) {
+            for (int s = 0; s < segments.length; s++) {
+                if (segments[s] != null && segments[s].methods.contains(methodIndex)) {
+                    scriptIndex = s;
+                    break;
+                }
+            }
+        }
+        if (scriptIndex == -1) {
+            invalidate();
+        } else {
+            invalidateScript(scriptIndex);
+        }
+    }
+
+    /**
+     * Gets up to date segments, walks the outdated scripts.
+     *
+     * @return Segments of scripts followed by segment of type names
+     */
+    private Segment[] getSegments() {
+        synchronized (buildLock) {
+            while (true) {
+                int startVersion;
+                Segment[] current;
+                Segment currentTypeNames;
+                synchronized (lock) {
+                    startVersion = version;
+                    current = segments;
+                    currentTypeNames = typeNames;
+                }
+
+                int scriptCount = abc.script_info.size();
+                int multinameCount = abc.constants.getMultinameCount();
+                Segment[] result = new Segment[scriptCount + 1];
+                for (int s = 0; s < scriptCount; s++) {
+                    Segment segment = s < current.length ? current[s] : null;
+                    ScriptInfo script = abc.script_info.get(s);
+                    if (segment == null || segment.script != script) {
+                        segment = buildScript(s, script, multinameCount);
+                    }
+                    result[s] = segment;
+                }
+                if (currentTypeNames == null || currentTypeNames.multinameCount != multinameCount) {
+                    currentTypeNames = buildTypeNames(multinameCount);
+                }
+                result[scriptCount] = currentTypeNames;
+
+                synchronized (lock) {
+                    if (version == startVersion) {
+                        segments = Arrays.copyOf(result, scriptCount);
+                        typeNames = currentTypeNames;
+                        return result;
+                    }
+
+                    // invalidated during the walk, keep what was not affected
+                    if (allVersion > startVersion) {
+                        continue;
+                    }
+                    Segment[] kept = new Segment[scriptCount];
+                    for (int s = 0; s < scriptCount; s++) {
+                        if (s >= scriptVersions.length || scriptVersions[s] <= startVersion) {
+                            kept[s] = result[s];
+                        }
+                    }
+                    segments = kept;
+                    typeNames = currentTypeNames;
+                }
+            }
+        }
+    }
+
+    private Segment buildScript(int scriptIndex, ScriptInfo script, int multinameCount) {
+        Segment segment = new Segment(script, multinameCount);
+        addMethodSites(segment, script.init_index, scriptIndex, -1, 0, TraitMultinameUsage.TRAITS_TYPE_SCRIPT, true, null, -1);
+        addTraitsSites(segment, script.traits, TraitMultinameUsage.TRAITS_TYPE_SCRIPT, scriptIndex, -1, -1);
+        return segment;
+    }
+
+    private Segment buildTypeNames(int multinameCount) {
+        Segment segment = new Segment(null, multinameCount);
+        AVM2ConstantPool constants = abc.constants;
+        for (int t = 1; t < multinameCount; t++) {
+            Multiname multiname = constants.getMultiname(t);
+            if (multiname.kind == Multiname.TYPENAME) {
+                int[] multinames = new int[multiname.params.length + 1];
+                multinames[0] = multiname.qname_index;
+                System.arraycopy(multiname.params, 0, multinames, 1, multiname.params.length);
+                segment.addSite(SITE_TYPE_NAME, multinames, -1, -1, t, 0, false, null, -1);
+            }
+        }
+        return segment;
+    }
+
+    private void addMethodSites(Segment segment, int methodInfo, int scriptIndex, int classIndex, int traitIndex, int traitsType, boolean isInitializer, Traits traits, int parentTraitIndex) {
+        segment.methods.add(methodInfo);
+        MethodInfo info = abc.method_info.get(methodInfo);
+        segment.addSite(SITE_METHOD_PARAMS, info.param_types, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex);
+        segment.addSite(SITE_METHOD_RETURN_TYPE, new int[]{info.ret_type}, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex);
+        MethodBody body = abc.findBody(methodInfo);
+        if (body == null) {
+            return;
+        }
+
+        addTraitsSites(segment, body.traits, traitsType, scriptIndex, classIndex, traitIndex);
+        List<Integer> multinames = new ArrayList<>();
+        Set<Integer> found = new HashSet<>();
+        for (ABCException e : body.exceptions) {
+            if (found.add(e.name_index)) {
+                multinames.add(e.name_index);
+            }
+            if (found.add(e.type_index)) {
+                multinames.add(e.type_index);
+            }
+        }
+        for (AVM2Instruction ins : body.getCode().code) {
+            for (int o = 0; o < ins.definition.operands.length; o++) {
+                if (ins.definition.operands[o] == AVM2Code.DAT_MULTINAME_INDEX) {
+                    if (found.add(ins.operands[o])) {
+                        multinames.add(ins.operands[o]);
+                    }
+                }
+            }
+        }
+
+        int[] distinct = new int[multinames.size()];
+        int count = 0;
+        for (int m : multinames) {
+            if (m >= 0 && m < segment.multinameCount) {
+                distinct[count++] = m;
+            }
+        }
+        segment.addDistinctSite(new Site(SITE_METHOD_BODY, Arrays.copyOf(distinct, count), scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
+    }
+
+    private void addTraitsSites(Segment segment, Traits traits, int traitsType, int scriptIndex, int classIndex, int parentTraitIndex) {
+        for (int t = 0; t < traits.traits.size(); t++) {
+            Trait trait = traits.traits.get(t);
+            segment.traits.add(trait);
+            if (trait instanceof TraitClass) {
+                TraitClass tc = (TraitClass) trait;
+                int c = tc.class_info;
+                InstanceInfo ii = abc.instance_info.get(c);
+                segment.addSite(SITE_CLASS_NAME, new int[]{tc.name_index}, scriptIndex, c, 0, 0, false, null, -1);
+                segment.addSite(SITE_INSTANCE_NAME, new int[]{ii.name_index}, scriptIndex, c, 0, 0, false, null, -1);
+                segment.addSite(SITE_SUPER_CLASS, new int[]{ii.super_index}, scriptIndex, c, 0, 0, false, null, -1);
+                for (int i = 0; i < ii.interfaces.length; i++) {
+                    segment.addSite(SITE_SUPER_INTERFACE, new int[]{ii.interfaces[i]}, scriptIndex, c, 0, 0, false, null, -1);
+                }
+                addMethodSites(segment, ii.iinit_index, -1/*FIXME*/, c, 0, TraitMultinameUsage.TRAITS_TYPE_INSTANCE, true, null, -1);
+                addMethodSites(segment, abc.class_info.get(c).cinit_index, -1/*FIXME*/, c, 0, TraitMultinameUsage.TRAITS_TYPE_CLASS, true, null, -1);
+                addTraitsSites(segment, ii.instance_traits, TraitMultinameUsage.TRAITS_TYPE_INSTANCE, -1/*FIXME*/, c, -1);
+                addTraitsSites(segment, abc.class_info.get(c).static_traits, TraitMultinameUsage.TRAITS_TYPE_CLASS, -1/*FIXME*/, c, -1);
+            }
+            if (trait instanceof TraitSlotConst) {
+                TraitSlotConst tsc = (TraitSlotConst) trait;
+                segment.addSite(SITE_CONST_VAR_NAME, new int[]{tsc.name_index}, scriptIndex, classIndex, t, traitsType, false, traits, parentTraitIndex);
+                segment.addSite(SITE_CONST_VAR_TYPE, new int[]{tsc.type_index}, scriptIndex, classIndex, t, traitsType, false, traits, parentTraitIndex);
+            }
+            if (trait instanceof TraitMethodGetterSetter) {
+                TraitMethodGetterSetter tmgs = (TraitMethodGetterSetter) trait;
+                segment.addSite(SITE_METHOD_NAME, new int[]{tmgs.name_index}, scriptIndex, classIndex, t, traitsType, false, traits, parentTraitIndex);
+                addMethodSites(segment, tmgs.method_info, scriptIndex, classIndex, t, traitsType, false, traits, parentTraitIndex);
+            }
+        }
+    }
+
+    private static boolean isSameName(AVM2ConstantPool constants, int expectedQNameIndex, int checkedNameIndex) {
+        if (expectedQNameIndex == checkedNameIndex) {
+            return true;
+        }
+        Multiname expectedQName = constants.getMultiname(expectedQNameIndex);
+        Multiname checkedName = constants.getMultiname(checkedNameIndex);
+        if (checkedName == null) {
+            return false;
+        }
+
+        if (expectedQName.name_index != checkedName.name_index) {
+            return false;
+        }
+        if (checkedName.kind == Multiname.QNAME) {
+            return expectedQName.namespace_index == checkedName.namespace_index;
+        }
+        if (checkedName.kind != Multiname.MULTINAME) {
+            return false;
+        }
+        for (int ns : constants.getNamespaceSet(checkedName.namespace_set_index).namespaces) {
+            if (ns == expectedQName.namespace_index) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -244,40 +244,36 @@ public class ActionDefineFunctionPushRegistersCleaner extends SWFDecompilerAdapt
         }
 
         //process code...
+        //all changes are applied at once, so the indices below refer to the original code
+        ActionListEdit edit = code.beginEdit();
+
         //replace jumps to return with returns
         for (Integer jp : jumpsToReturnPositions) {
-            int index = jp;
-            code.removeAction(index);
-            code.addAction(index, new ActionReturn());
+            edit.replace(code.get(jp), new ActionReturn());
         }
 
         //previous action (not jump) also leads to finishpart, we might add return there aswell
         if (returnReg > -1 && actionBeforeFinishPart != null) {
             if ((actionBeforeFinishPart instanceof ActionPush) && ((ActionPush) actionBeforeFinishPart).values.size() == 1 && ((ActionPush) actionBeforeFinishPart).values.get(0) == Undefined.INSTANCE) {
                 //its return undefined, which is same as no return
-                code.removeAction(posBeforeFinishPart);
-                posBeforeFinishPart--;
-                count--;
+                edit.remove(posBeforeFinishPart);
             } else if (actionBeforeFinishPart instanceof ActionReturn) {
                 //it was a jump that was replaced with Return
             } else if (actionBeforeFinishPart instanceof ActionJump) {
                 //its jump to another location, we will not add return there
             } else { //might be another returned value
-                posBeforeFinishPart++;
-                code.addAction(posBeforeFinishPart, new ActionReturn());
-                count++; //action added, but not removed, we increase total count
+                edit.insert(posBeforeFinishPart + 1, new ActionReturn());
             }
         }
 
         //remove finishPart
-        int removeStartIndex = posBeforeFinishPart + 1;
-        int removeCount = startIndex + count - removeStartIndex;
-        code.removeAction(removeStartIndex, removeCount);
+        for (int i = posBeforeFinishPart + 1; i < startIndex + count; i++) {
+            edit.remove(i);
+        }
 
         //remove pushes from beginning part
         pos = startIndex;
         int registersLeft = pushedRegisters.size();
-        loopregs2:
         while (code.get(pos) instanceof ActionPush) {
             ActionPush currentPush = (ActionPush) code.get(pos);
 
@@ -291,13 +287,12 @@ public class ActionDefineFunctionPushRegistersCleaner extends SWFDecompilerAdapt
                 }
             }
             if (newPushedValues.size() != currentPushedValues.size()) {
-                code.removeAction(pos); //remove that push
                 if (!newPushedValues.isEmpty()) {
                     ActionPush newPush = new ActionPush(newPushedValues.toArray(), code.getCharset());
                     newPush.constantPool = currentPush.constantPool;
-                    code.addAction(pos, newPush); //replace with different push
+                    edit.replace(currentPush, newPush); //replace with different push
                 } else {
-                    pos--; //action removed, but not added
+                    edit.remove(currentPush); //remove that push
                 }
             }
             if (registersLeft == 0) { //we removed all unwanted registers
@@ -305,6 +300,8 @@ public class ActionDefineFunctionPushRegistersCleaner extends SWFDecompilerAdapt
             }
             pos++;
         }
+
+        edit.commit();
         return true;
     }
 }
@@ -46,6 +46,7 @@ import com.jpexs.decompiler.flash.action.swf5.ActionDefineFunction;
 import com.jpexs.decompiler.flash.action.swf5.ActionEquals2;
 import com.jpexs.decompiler.flash.action.swf6.ActionStrictEquals;
 import com.jpexs.decompiler.flash.action.swf7.ActionDefineFunction2;
+import com.jpexs.decompiler.flash.cache.AS2ClassDetectionCache;
 import com.jpexs.decompiler.flash.ecma.Null;
 import com.jpexs.decompiler.graph.AbstractGraphTargetVisitor;
 import com.jpexs.decompiler.graph.Block;
@@ -473,8 +474,9 @@ public class ActionGraph extends Graph {
     public List<GraphTargetItem> translate(BaseLocalData localData, int staticOperation, String path) throws InterruptedException {
         List<GraphTargetItem> ret = super.translate(localData, staticOperation, path);
         if (insideDoInitAction && !insideFunction) {
+            ActionGraphSource source = (ActionGraphSource) code;
             ActionScript2ClassDetector detector = new ActionScript2ClassDetector();
-            detector.checkClass(ret, ((ActionGraphSource) code).getVariables(), path);
+            detector.checkClass(ret, source.getVariables(), path, AS2ClassDetectionCache.getKey(source.getActions(), source.version, ret));
         }
         makeDefineRegistersUp(ret);
         return ret;
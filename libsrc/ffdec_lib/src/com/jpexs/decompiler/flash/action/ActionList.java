@@ -87,9 +87,25 @@ public class ActionList extends ArrayList<Action> {
             count = size() - index;
         }
 
+        if (index < 0 || count <= 0) {
+            return;
+        }
+
+        ActionListEdit edit = beginEdit();
         for (int i = 0; i < count; i++) {
-            ActionListReader.removeAction(this, index, true);
+            edit.remove(index + i);
         }
+
+        edit.commit();
+    }
+
+    /**
+     * Starts batch of changes. The changes are applied at once by commit.
+     *
+     * @return Edit
+     */
+    public ActionListEdit beginEdit() {
+        return new ActionListEdit(this);
     }
 
     public void addAction(int index, Action action) {
@@ -325,11 +341,14 @@ public class ActionList extends ArrayList<Action> {
     }
 
     public void removeNops() {
-        for (int i = 0; i < size(); i++) {
-            if (get(i) instanceof ActionNop) {
-                removeAction(i);
+        ActionListEdit edit = beginEdit();
+        for (Action a : this) {
+            if (a instanceof ActionNop) {
+                edit.remove(a);
             }
         }
+
+        edit.commit();
     }
 
     public Action getByAddress(long address) {
@@ -0,0 +1,262 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.action;
+
+import com.jpexs.decompiler.flash.action.special.ActionEnd;
+import com.jpexs.decompiler.graph.GraphSourceItemContainer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Batch of changes of an ActionList.
+ *
+ * Changes are only recorded and the action list stays untouched until
+ * commit. Then the list is rebuilt, and addresses, jump offsets and container
+ * sizes are updated once for all the changes. All actions and indices passed
+ * in refer to the list as it was when the edit started.
+ *
+ * Jumps to a removed action lead to the next remaining action, containers
+ * which ended with a removed action end with the previous remaining action.
+ * Replacement takes over the jumps and container ends of the replaced action.
+ *
+ * @author JPEXS
+ */
+public class ActionListEdit {
+
+    private final ActionList actions;
+
+    private final Set<Action> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final Map<Action, Action> replacements = new IdentityHashMap<>();
+
+    private final Map<Action, List<Action>> insertedBefore = new IdentityHashMap<>();
+
+    private final List<Action> insertedAtEnd = new ArrayList<>();
+
+    private final List<Action> newActions = new ArrayList<>();
+
+    private boolean committed = false;
+
+    ActionListEdit(ActionList actions) {
+        this.actions = actions;
+    }
+
+    /**
+     * Removes the action. Inner actions of a removed container are kept.
+     *
+     * @param action Action
+     */
+    public void remove(Action action) {
+        checkNotCommitted();
+        removed.add(action);
+    }
+
+    /**
+     * Removes the action at the index.
+     *
+     * @param index Index
+     */
+    public void remove(int index) {
+        remove(actions.get(index));
+    }
+
+    /**
+     * Inserts the action before the action at the index. Index equal to the
+     * list size means the end of the list. Actions inserted to the same index
+     * keep the order of the calls.
+     *
+     * @param index Index
+     * @param action New action
+     */
+    public void insert(int index, Action action) {
+        checkNotCommitted();
+        if (index == actions.size()) {
+            insertedAtEnd.add(action);
+        } else {
+            Action anchor = actions.get(index);
+            List<Action> list = insertedBefore.get(anchor);
+            if (list == null) {
+                list = new ArrayList<>();
+                insertedBefore.put(anchor, list);
+            }
+
+            list.add(action);
+        }
+
+        newActions.add(action);
+    }
+
+    /**
+     * Replaces the action. Jumps to the replaced action lead to the new
+     * action.
+     *
+     * @param action Replaced action
+     * @param newAction New action
+     */
+    public void replace(Action action, Action newAction) {
+        checkNotCommitted();
+        if (action instanceof GraphSourceItemContainer) {
+            throw new IllegalArgumentException("Containers cannot be replaced");
+        }
+
+        replacements.put(action, newAction);
+        newActions.add(newAction);
+    }
+
+    public boolean isEmpty() {
+        return removed.isEmpty() && replacements.isEmpty() && newActions.isEmpty();
+    }
+
+    private void checkNotCommitted() {
+        if (committed) {
+            throw new IllegalStateException("Edit was already committed");
+        }
+    }
+
+    /**
+     * Applies all changes to the action list.
+     */
+    public void commit() {
+        checkNotCommitted();
+        committed = true;
+        if (isEmpty()) {
+            return;
+        }
+
+        String charset = actions.getCharset();
+        if (actions.isEmpty()) {
+            actions.addAll(insertedAtEnd);
+            ActionListReader.updateActionLengths(actions);
+            ActionListReader.updateAddresses(actions, 0, charset);
+            return;
+        }
+
+        long startIp = actions.get(0).getAddress();
+        Action lastAction = actions.get(actions.size() - 1);
+        long endAddress;
+        if (newActions.isEmpty()) {
+            endAddress = lastAction.getAddress() + lastAction.getTotalActionLength();
+        } else {
+            if (!(lastAction instanceof ActionEnd)) {
+                // actions inserted to the end go before the added ActionEnd
+                Action aEnd = new ActionEnd(charset);
+                aEnd.setAddress(lastAction.getAddress() + lastAction.getTotalActionLength());
+                actions.add(aEnd);
+                if (!insertedAtEnd.isEmpty()) {
+                    insertedBefore.put(aEnd, new ArrayList<>(insertedAtEnd));
+                    insertedAtEnd.clear();
+                }
+
+                lastAction = aEnd;
+            }
+
+            endAddress = lastAction.getAddress();
+        }
+
+        Map<Action, List<Action>> containerLastActions = new HashMap<>();
+        ActionListReader.getContainerLastActions(actions, containerLastActions);
+
+        Map<Action, Action> jumps = new HashMap<>();
+        List<Action> tempActions = new ArrayList<>(actions.size() + newActions.size());
+        tempActions.addAll(actions);
+        tempActions.addAll(newActions);
+        ActionListReader.getJumps(tempActions, jumps);
+
+        // position of the next remaining action for each removed action
+        Map<Action, Integer> removedPositions = new IdentityHashMap<>();
+        List<Action> result = new ArrayList<>(actions.size() + newActions.size());
+        for (Action a : actions) {
+            List<Action> before = insertedBefore.get(a);
+            if (before != null) {
+                result.addAll(before);
+            }
+
+            Action replacement = replacements.get(a);
+            if (replacement != null) {
+                result.add(replacement);
+            } else if (removed.contains(a)) {
+                removedPositions.put(a, result.size());
+            } else {
+                result.add(a);
+            }
+        }
+
+        result.addAll(insertedAtEnd);
+
+        Iterator<Map.Entry<Action, Action>> jumpIterator = jumps.entrySet().iterator();
+        while (jumpIterator.hasNext()) {
+            Map.Entry<Action, Action> entry = jumpIterator.next();
+            Action source = entry.getKey();
+            if (removed.contains(source) || replacements.containsKey(source)) {
+                jumpIterator.remove();
+                continue;
+            }
+
+            Action target = entry.getValue();
+            if (target == null) {
+                continue;
+            }
+
+            Action replacement = replacements.get(target);
+            if (replacement != null) {
+                entry.setValue(replacement);
+            } else {
+                Integer pos = removedPositions.get(target);
+                if (pos != null) {
+                    entry.setValue(pos < result.size() ? result.get(pos) : null);
+                }
+            }
+        }
+
+        Iterator<Map.Entry<Action, List<Action>>> containerIterator = containerLastActions.entrySet().iterator();
+        while (containerIterator.hasNext()) {
+            Map.Entry<Action, List<Action>> entry = containerIterator.next();
+            if (removed.contains(entry.getKey())) {
+                containerIterator.remove();
+                continue;
+            }
+
+            List<Action> lastActions = entry.getValue();
+            for (int i = 0; i < lastActions.size(); i++) {
+                Action last = lastActions.get(i);
+                Action replacement = replacements.get(last);
+                if (replacement != null) {
+                    lastActions.set(i, replacement);
+                } else {
+                    Integer pos = removedPositions.get(last);
+                    if (pos != null) {
+                        lastActions.set(i, pos > 0 ? result.get(pos - 1) : null);
+                    }
+                }
+            }
+        }
+
+        actions.setActions(result);
+
+        ActionListReader.updateActionLengths(actions);
+        ActionListReader.updateAddresses(actions, startIp, charset);
+        ActionListReader.updateJumps(actions, jumps, containerLastActions, endAddress, charset);
+        ActionListReader.updateActionStores(actions, jumps);
+        ActionListReader.updateContainerSizes(actions, containerLastActions);
+    }
+}
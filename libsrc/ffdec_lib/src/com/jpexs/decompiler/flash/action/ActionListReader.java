@@ -35,11 +35,14 @@ import com.jpexs.helpers.CancellableWorker;
 import com.jpexs.helpers.stat.Statistics;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -276,7 +279,7 @@ public class ActionListReader {
         return map;
     }
 
-    private static void getJumps(List<Action> actions, Map<Action, Action> jumps) {
+    static void getJumps(List<Action> actions, Map<Action, Action> jumps) {
         Map<Long, Action> actionMap = actionListToMap(actions);
         for (Action a : actions) {
             long target = -1;
@@ -322,7 +325,7 @@ public class ActionListReader {
         return lasts;
     }
 
-    private static void getContainerLastActions(ActionList actions, Map<Action, List<Action>> lastActions) {
+    static void getContainerLastActions(ActionList actions, Map<Action, List<Action>> lastActions) {
         for (Action a : actions) {
             if (a instanceof GraphSourceItemContainer) {
                 lastActions.put(a, getContainerLastActions(actions, a));
@@ -330,7 +333,7 @@ public class ActionListReader {
         }
     }
 
-    private static long updateAddresses(List<Action> actions, long address, String charset) {
+    static long updateAddresses(List<Action> actions, long address, String charset) {
         for (int i = 0; i < actions.size(); i++) {
             Action a = actions.get(i);
             a.setAddress(address);
@@ -344,13 +347,13 @@ public class ActionListReader {
         return address;
     }
 
-    private static void updateActionLengths(List<Action> actions) {
+    static void updateActionLengths(List<Action> actions) {
         for (int i = 0; i < actions.size(); i++) {
             actions.get(i).updateLength();
         }
     }
 
-    private static void updateActionStores(List<Action> actions, Map<Action, Action> jumps) {
+    static void updateActionStores(List<Action> actions, Map<Action, Action> jumps) {
         Map<Long, Action> actionMap = actionListToMap(actions);
         for (int i = 0; i < actions.size(); i++) {
             Action a = actions.get(i);
@@ -372,7 +375,7 @@ public class ActionListReader {
         }
     }
 
-    private static void updateContainerSizes(List<Action> actions, Map<Action, List<Action>> containerLastActions) {
+    static void updateContainerSizes(List<Action> actions, Map<Action, List<Action>> containerLastActions) {
         for (int i = 0; i < actions.size(); i++) {
             Action a = actions.get(i);
             if (a instanceof GraphSourceItemContainer) {
@@ -408,7 +411,7 @@ public class ActionListReader {
         }
     }
 
-    private static void updateJumps(List<Action> actions, Map<Action, Action> jumps, Map<Action, List<Action>> containerLastActions, long endAddress, String charset) {
+    static void updateJumps(List<Action> actions, Map<Action, Action> jumps, Map<Action, List<Action>> containerLastActions, long endAddress, String charset) {
         if (actions.isEmpty()) {
             return;
         }
@@ -523,54 +526,27 @@ public class ActionListReader {
      */
     public static boolean removeActions(ActionList actions, List<Action> actionsToRemove, boolean removeWhenLast) {
 
-        long startIp = actions.get(0).getAddress();
-        Action lastAction = actions.get(actions.size() - 1);
-        long endAddress = lastAction.getAddress() + lastAction.getTotalActionLength();
-
-        Map<Action, List<Action>> containerLastActions = new HashMap<>();
-        getContainerLastActions(actions, containerLastActions);
-
-        Map<Action, Action> jumps = new HashMap<>();
-        getJumps(actions, jumps);
-
-        for (Action actionToRemove : actionsToRemove) {
-            int index = actions.getIndexByAction(actionToRemove);
-            Action prevAction = index > 0 ? actions.get(index - 1) : null;
-            Action nextAction = index + 1 < actions.size() ? actions.get(index + 1) : null;
-            for (Action a : containerLastActions.keySet()) {
-                List<Action> lastActions = containerLastActions.get(a);
-                for (int i = 0; i < lastActions.size(); i++) {
-                    if (lastActions.get(i) == actionToRemove) {
-                        if (!removeWhenLast) {
-                            return false;
-                        }
-                        lastActions.set(i, prevAction);
-                    }
-                }
+        if (!removeWhenLast) {
+            Map<Action, List<Action>> containerLastActions = new HashMap<>();
+            getContainerLastActions(actions, containerLastActions);
+            Set<Action> lastActions = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (List<Action> list : containerLastActions.values()) {
+                lastActions.addAll(list);
             }
 
-            for (Action a : jumps.keySet()) {
-                Action targetAction = jumps.get(a);
-                if (targetAction == actionToRemove) {
-                    jumps.put(a, nextAction);
+            for (Action actionToRemove : actionsToRemove) {
+                if (lastActions.contains(actionToRemove)) {
+                    return false;
                 }
             }
-            if (containerLastActions.containsKey(actionToRemove)) {
-                containerLastActions.remove(actionToRemove);
-            }
-            if (jumps.containsKey(actionToRemove)) {
-                jumps.remove(actionToRemove);
-            }
-
-            actions.remove(index);
         }
 
-        updateActionLengths(actions);
-        updateAddresses(actions, startIp, actions.getCharset());
-        updateJumps(actions, jumps, containerLastActions, endAddress, actions.getCharset());
-        updateActionStores(actions, jumps);
-        updateContainerSizes(actions, containerLastActions);
+        ActionListEdit edit = actions.beginEdit();
+        for (Action actionToRemove : actionsToRemove) {
+            edit.remove(actionToRemove);
+        }
 
+        edit.commit();
         return true;
     }
 
@@ -658,33 +634,12 @@ public class ActionListReader {
             return false;
         }
 
-        long startIp = actions.get(0).getAddress();
-        Action lastAction = actions.get(actions.size() - 1);
-        if (!(lastAction instanceof ActionEnd)) {
-            Action aEnd = new ActionEnd(actions.getCharset());
-            aEnd.setAddress(lastAction.getAddress() + lastAction.getTotalActionLength());
-            actions.add(aEnd);
-            lastAction = aEnd;
+        ActionListEdit edit = actions.beginEdit();
+        for (Action action : newActions) {
+            edit.insert(index, action);
         }
 
-        long endAddress = lastAction.getAddress();
-
-        Map<Action, List<Action>> containerLastActions = new HashMap<>();
-        getContainerLastActions(actions, containerLastActions);
-
-        Map<Action, Action> jumps = new HashMap<>();
-        List<Action> tempActions = new ArrayList<>(actions);
-        tempActions.addAll(newActions);
-        getJumps(tempActions, jumps);
-
-        actions.addAll(index, newActions);
-
-        updateActionLengths(actions);
-        updateAddresses(actions, startIp, actions.getCharset());
-        updateJumps(actions, jumps, containerLastActions, endAddress, actions.getCharset());
-        updateActionStores(actions, jumps);
-        updateContainerSizes(actions, containerLastActions);
-
+        edit.commit();
         return true;
     }
 
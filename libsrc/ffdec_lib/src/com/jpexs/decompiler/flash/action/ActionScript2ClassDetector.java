@@ -36,6 +36,7 @@ import com.jpexs.decompiler.flash.action.model.TemporaryRegisterMark;
 import com.jpexs.decompiler.flash.action.model.clauses.ClassActionItem;
 import com.jpexs.decompiler.flash.action.model.clauses.InterfaceActionItem;
 import com.jpexs.decompiler.flash.action.swf4.RegisterNumber;
+import com.jpexs.decompiler.flash.cache.AS2ClassDetectionCache;
 import com.jpexs.decompiler.flash.ecma.Null;
 import com.jpexs.decompiler.flash.helpers.collections.MyEntry;
 import com.jpexs.decompiler.graph.GraphTargetItem;
@@ -65,6 +66,12 @@ public class ActionScript2ClassDetector {
 
     private static final Logger logger = Logger.getLogger(ActionScript2ClassDetector.class.getName());
 
+    /**
+     * Whether the last checkIfVariants call checked a class content. Positions
+     * where it did not are skipped when the detection is cached.
+     */
+    private boolean classContentChecked = false;
+
     private class AssertException extends Exception {
 
         private final String condition;
@@ -280,6 +287,7 @@ public class ActionScript2ClassDetector {
     }
 
     private boolean checkClassContent(List<GraphTargetItem> parts, HashMap<String, GraphTargetItem> variables, int partsPos, int commandsStartPos, int commandsEndPos, List<GraphTargetItem> commands, List<String> classNamePath, String scriptPath) {
+        classContentChecked = true;
 
         try {
 
@@ -764,8 +772,6 @@ public class ActionScript2ClassDetector {
 
     private boolean checkIfVariants(List<GraphTargetItem> commands, HashMap<String, GraphTargetItem> variables, int pos, String scriptPath) {
 
-        expandTernars(commands);
-
         /*
             Variant 1:        
         
@@ -902,11 +908,50 @@ public class ActionScript2ClassDetector {
     }
 
     public void checkClass(List<GraphTargetItem> commands, HashMap<String, GraphTargetItem> variables, String scriptPath) {
+        checkClass(commands, variables, scriptPath, null);
+    }
+
+    /**
+     * Detects AS2 classes and interfaces in DoInitAction commands and replaces
+     * their definitions with class and interface items.
+     *
+     * @param commands Commands
+     * @param variables Variables
+     * @param scriptPath Script path
+     * @param cacheKey Key to AS2ClassDetectionCache or null to not use the
+     * cache
+     */
+    public void checkClass(List<GraphTargetItem> commands, HashMap<String, GraphTargetItem> variables, String scriptPath, String cacheKey) {
         List<GraphTargetItem> localCommands = new ArrayList<>(commands);
+        expandTernars(localCommands);
         boolean changed = false;
-        for (int pos = 0; pos < localCommands.size(); pos++) {
-            if (checkIfVariants(localCommands, variables, pos, scriptPath)) {
-                changed = true;
+        int[] cachedPositions = cacheKey == null ? null : AS2ClassDetectionCache.get(cacheKey);
+        if (cachedPositions != null) {
+            for (int pos : cachedPositions) {
+                if (pos >= localCommands.size()) {
+                    break;
+                }
+                if (checkIfVariants(localCommands, variables, pos, scriptPath)) {
+                    changed = true;
+                }
+            }
+        } else {
+            List<Integer> checkedPositions = new ArrayList<>();
+            for (int pos = 0; pos < localCommands.size(); pos++) {
+                classContentChecked = false;
+                if (checkIfVariants(localCommands, variables, pos, scriptPath)) {
+                    changed = true;
+                }
+                if (classContentChecked) {
+                    checkedPositions.add(pos);
+                }
+            }
+            if (cacheKey != null) {
+                int[] positions = new int[checkedPositions.size()];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = checkedPositions.get(i);
+                }
+                AS2ClassDetectionCache.put(cacheKey, positions);
             }
         }
         if (changed) {
@@ -0,0 +1,88 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.cache;
+
+import com.jpexs.decompiler.flash.action.Action;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.graph.GraphTargetItem;
+import com.jpexs.helpers.Cache;
+import com.jpexs.helpers.Helper;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Results of AS2 class detection in DoInitAction code.
+ *
+ * Class detection tries to match class definition patterns at each top level
+ * command. For each code, the cache stores the positions where a pattern
+ * matched far enough to check the class content, so the detection of the same
+ * code decompiled again only checks these positions. The code is identified
+ * by hash of its actions and the decompilation settings which change the
+ * commands, edited code gets a different key.
+ *
+ * @author JPEXS
+ */
+public class AS2ClassDetectionCache {
+
+    private static final Cache<String, int[]> cache = Cache.getInstance(false, true, "as2_class_detection", false);
+
+    /**
+     * Gets key of the code.
+     *
+     * @param actions Actions of the code
+     * @param version SWF version
+     * @param commands Top level commands
+     * @return Key or null when it cannot be computed
+     */
+    public static String getKey(List<Action> actions, int version, List<GraphTargetItem> commands) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            return null;
+        }
+
+        for (Action action : actions) {
+            md.update(action.getBytes(version));
+        }
+
+        // the commands also depend on decompilation settings
+        int commandsHash = 0;
+        for (GraphTargetItem command : commands) {
+            commandsHash = 31 * commandsHash + command.getClass().getName().hashCode();
+        }
+
+        String settings = (Configuration.autoDeobfuscate.get() ? "d" : "")
+                + (Configuration.simplifyExpressions.get() ? "s" : "")
+                + (Configuration.resolveConstants.get() ? "c" : "");
+
+        return Helper.byteArrayToHex(md.digest()) + ":" + version + ":" + settings + ":" + commands.size() + ":" + commandsHash;
+    }
+
+    public static int[] get(String key) {
+        return cache.get(key);
+    }
+
+    public static void put(String key, int[] positions) {
+        cache.put(key, positions);
+    }
+
+    public static void clear() {
+        cache.clear();
+    }
+}
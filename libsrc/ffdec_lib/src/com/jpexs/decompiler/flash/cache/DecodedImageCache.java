@@ -0,0 +1,291 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.cache;
+
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.helpers.SerializableImage;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Process wide cache of decoded images, keyed by a hash of the image data.
+ *
+ * Identical images embedded in different tags or different SWF files share
+ * one entry. The memory tier is limited by the size of the decoded pixels,
+ * the least recently used images are evicted first. Evicted images can be
+ * kept in an optional disk tier.
+ *
+ * @author JPEXS
+ */
+public class DecodedImageCache {
+
+    private static final Logger logger = Logger.getLogger(DecodedImageCache.class.getName());
+
+    private static final int DISK_FORMAT_VERSION = 1;
+
+    private static final DecodedImageCache instance = new DecodedImageCache();
+
+    private final LinkedHashMap<String, SerializableImage> images = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long usedBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong diskHits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private File diskDirectory;
+
+    public static DecodedImageCache getInstance() {
+        return instance;
+    }
+
+    private DecodedImageCache() {
+    }
+
+    /**
+     * Checks whether the cache is enabled. The cache is used only together
+     * with caching of images.
+     *
+     * @return True when enabled
+     */
+    public static boolean isEnabled() {
+        return Configuration.cacheImages.get() && Configuration.decodedImageCacheSize.get() > 0;
+    }
+
+    private static long getMaxBytes() {
+        return Configuration.decodedImageCacheSize.get() * 1024L * 1024L;
+    }
+
+    private static long getSizeInBytes(SerializableImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    /**
+     * Gets decoded image.
+     *
+     * @param key Hash of the image data
+     * @return Image or null when not cached
+     */
+    public SerializableImage get(String key) {
+        SerializableImage image;
+        synchronized (this) {
+            image = images.get(key);
+        }
+
+        if (image != null) {
+            hits.incrementAndGet();
+            return image;
+        }
+
+        if (Configuration.decodedImageCacheOnDisk.get()) {
+            image = readFromDisk(key);
+            if (image != null) {
+                diskHits.incrementAndGet();
+                putToMemory(key, image);
+                return image;
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Puts decoded image to the cache. The image must not be modified
+     * afterwards.
+     *
+     * @param key Hash of the image data
+     * @param image Image
+     */
+    public void put(String key, SerializableImage image) {
+        putToMemory(key, image);
+        if (Configuration.decodedImageCacheOnDisk.get()) {
+            writeToDisk(key, image);
+        }
+    }
+
+    private void putToMemory(String key, SerializableImage image) {
+        long size = getSizeInBytes(image);
+        long maxBytes = getMaxBytes();
+        if (size > maxBytes) {
+            return;
+        }
+
+        synchronized (this) {
+            SerializableImage old = images.put(key, image);
+            if (old != null) {
+                usedBytes -= getSizeInBytes(old);
+            }
+
+            usedBytes += size;
+            Iterator<Map.Entry<String, SerializableImage>> it = images.entrySet().iterator();
+            while (usedBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, SerializableImage> eldest = it.next();
+                usedBytes -= getSizeInBytes(eldest.getValue());
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        images.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int getCount() {
+        return images.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Gets ratio of requests served from memory or disk.
+     *
+     * @return Hit rate from 0 to 1
+     */
+    public double getHitRate() {
+        long h = hits.get() + diskHits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : h / (double) total;
+    }
+
+    public void resetStatistics() {
+        hits.set(0);
+        diskHits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "[DecodedImageCache count=" + getCount() + ", usedBytes=" + getUsedBytes() + ", hits=" + hits.get() + ", diskHits=" + diskHits.get()
+                + ", misses=" + misses.get() + ", evictions=" + evictions.get() + "]";
+    }
+
+    private synchronized File getDiskDirectory() {
+        if (diskDirectory == null) {
+            diskDirectory = Configuration.getPath("imagecache");
+        }
+
+        return diskDirectory;
+    }
+
+    private SerializableImage readFromDisk(String key) {
+        File file = new File(getDiskDirectory(), key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (DataInputStream dis = new DataInputStream(new InflaterInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+            if (dis.readInt() != DISK_FORMAT_VERSION) {
+                return null;
+            }
+
+            int type = dis.readInt();
+            int width = dis.readInt();
+            int height = dis.readInt();
+            BufferedImage image = new BufferedImage(width, height, type);
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = dis.readInt();
+            }
+
+            return new SerializableImage(image);
+        } catch (IOException | IllegalArgumentException | ClassCastException ex) {
+            logger.log(Level.WARNING, "Cannot read cached image", ex);
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, SerializableImage image) {
+        BufferedImage bufferedImage = image.getBufferedImage();
+        DataBuffer dataBuffer = bufferedImage.getRaster().getDataBuffer();
+        int type = bufferedImage.getType();
+        if (!(dataBuffer instanceof DataBufferInt)
+                || (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_ARGB_PRE && type != BufferedImage.TYPE_INT_RGB)) {
+            // only raw int images can be stored without a lossy conversion
+            return;
+        }
+
+        File file = new File(getDiskDirectory(), key);
+        if (file.exists()) {
+            return;
+        }
+
+        File tmpFile = new File(getDiskDirectory(), key + ".tmp" + Thread.currentThread().getId());
+        int[] pixels = ((DataBufferInt) dataBuffer).getData();
+        try (DataOutputStream dos = new DataOutputStream(new DeflaterOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)), new Deflater(Deflater.BEST_SPEED)))) {
+            dos.writeInt(DISK_FORMAT_VERSION);
+            dos.writeInt(type);
+            dos.writeInt(bufferedImage.getWidth());
+            dos.writeInt(bufferedImage.getHeight());
+            for (int pixel : pixels) {
+                dos.writeInt(pixel);
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Cannot write cached image", ex);
+            tmpFile.delete();
+            return;
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+        }
+    }
+}
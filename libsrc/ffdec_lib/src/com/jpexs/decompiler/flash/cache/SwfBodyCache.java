@@ -0,0 +1,255 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.cache;
+
+import com.jpexs.decompiler.flash.SWFCompression;
+import com.jpexs.decompiler.flash.SWFHeader;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.helpers.Helper;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Disk cache of LZMA decompressed SWF files, keyed by a hash of the file data.
+ *
+ * Reopening an LZMA compressed file which is in the cache only hashes the
+ * file instead of decompressing it. Zlib decompression is faster than the
+ * hashing, so zlib compressed files are not cached. The entries are written
+ * in background and the least recently used entries are removed when the
+ * cache exceeds its size limit.
+ *
+ * @author JPEXS
+ */
+public class SwfBodyCache {
+
+    private static final Logger logger = Logger.getLogger(SwfBodyCache.class.getName());
+
+    private static final int DISK_FORMAT_VERSION = 1;
+
+    private static final String FILE_EXTENSION = ".swfbody";
+
+    private static final String TMP_FILE_EXTENSION = ".tmp";
+
+    private static File diskDirectory;
+
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "SwfBodyCacheWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Decompressed SWF.
+     */
+    public static class Entry {
+
+        public final SWFHeader header;
+
+        public final byte[] uncompressedData;
+
+        public Entry(SWFHeader header, byte[] uncompressedData) {
+            this.header = header;
+            this.uncompressedData = uncompressedData;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return Configuration.swfBodyCacheSize.get() > 0;
+    }
+
+    /**
+     * Checks whether files with the signature are cached.
+     *
+     * @param signature First byte of the file
+     * @return True for LZMA compressed files, including encrypted ones
+     */
+    public static boolean isCachedSignature(int signature) {
+        return signature == 'Z' || signature == 'z' || signature == 'A';
+    }
+
+    /**
+     * Gets key of the file.
+     *
+     * @param fileData Data of the file as stored on disk
+     * @return Key or null when it cannot be computed
+     */
+    public static String getKey(byte[] fileData) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return Helper.byteArrayToHex(md.digest(fileData));
+        } catch (NoSuchAlgorithmException ex) {
+            return null;
+        }
+    }
+
+    private static synchronized File getDiskDirectory() {
+        if (diskDirectory == null) {
+            diskDirectory = Configuration.getPath("swfcache");
+        }
+
+        return diskDirectory;
+    }
+
+    /**
+     * Gets decompressed SWF.
+     *
+     * @param key Key of the file
+     * @return Decompressed SWF or null when not cached
+     */
+    public static Entry get(String key) {
+        File file = new File(getDiskDirectory(), key + FILE_EXTENSION);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (dis.readInt() != DISK_FORMAT_VERSION || !key.equals(dis.readUTF())) {
+                return null;
+            }
+
+            SWFHeader header = new SWFHeader();
+            header.compression = SWFCompression.valueOf(dis.readUTF());
+            int lzmaPropertiesLength = dis.readInt();
+            if (lzmaPropertiesLength >= 0) {
+                header.lzmaProperties = new byte[lzmaPropertiesLength];
+                dis.readFully(header.lzmaProperties);
+            }
+
+            header.gfx = dis.readBoolean();
+            header.encrypted = dis.readBoolean();
+            header.version = dis.readInt();
+            header.fileSize = dis.readLong();
+            byte[] data = new byte[dis.readInt()];
+            dis.readFully(data);
+            if (dis.read() != -1) {
+                throw new IOException("Unexpected data after the end of cached SWF");
+            }
+
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(header, data);
+        } catch (IOException | IllegalArgumentException ex) {
+            logger.log(Level.WARNING, "Cannot read cached SWF", ex);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Puts decompressed SWF to the cache. The entry is written in background.
+     *
+     * @param key Key of the file
+     * @param header Header of the file
+     * @param uncompressedData Decompressed data, must not be modified later
+     */
+    public static void put(String key, SWFHeader header, byte[] uncompressedData) {
+        writer.execute(() -> write(key, header, uncompressedData));
+    }
+
+    private static void write(String key, SWFHeader header, byte[] uncompressedData) {
+        long maxBytes = Configuration.swfBodyCacheSize.get() * 1024L * 1024L;
+        if (uncompressedData.length > maxBytes) {
+            return;
+        }
+
+        File dir = getDiskDirectory();
+        File file = new File(dir, key + FILE_EXTENSION);
+        if (file.exists()) {
+            return;
+        }
+
+        File tmpFile = new File(dir, key + TMP_FILE_EXTENSION);
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            dos.writeInt(DISK_FORMAT_VERSION);
+            dos.writeUTF(key);
+            dos.writeUTF(header.compression.name());
+            if (header.lzmaProperties == null) {
+                dos.writeInt(-1);
+            } else {
+                dos.writeInt(header.lzmaProperties.length);
+                dos.write(header.lzmaProperties);
+            }
+
+            dos.writeBoolean(header.gfx);
+            dos.writeBoolean(header.encrypted);
+            dos.writeInt(header.version);
+            dos.writeLong(header.fileSize);
+            dos.writeInt(uncompressedData.length);
+            dos.write(uncompressedData);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Cannot write cached SWF", ex);
+            tmpFile.delete();
+            return;
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            return;
+        }
+
+        prune(dir, maxBytes);
+    }
+
+    /**
+     * Removes least recently used entries above the size limit.
+     */
+    private static synchronized void prune(File dir, long maxBytes) {
+        File[] files = dir.listFiles((File d, String name) -> name.endsWith(FILE_EXTENSION));
+        if (files == null) {
+            return;
+        }
+
+        long totalBytes = 0;
+        for (File f : files) {
+            totalBytes += f.length();
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length && totalBytes > maxBytes; i++) {
+            totalBytes -= files[i].length();
+            files[i].delete();
+        }
+    }
+
+    /**
+     * Removes all cached files, including files left unfinished when the
+     * application exited during their writing.
+     */
+    public static synchronized void clear() {
+        File[] files = getDiskDirectory().listFiles((File d, String name) -> name.endsWith(FILE_EXTENSION) || name.endsWith(TMP_FILE_EXTENSION));
+        if (files == null) {
+            return;
+        }
+
+        for (File f : files) {
+            f.delete();
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package com.jpexs.decompiler.flash.configuration;
 
 import com.jpexs.decompiler.flash.ApplicationInfo;
+import com.jpexs.decompiler.flash.exporters.modes.AviExportEncoding;
 import com.jpexs.decompiler.flash.exporters.modes.ExeExportMode;
 import com.jpexs.decompiler.flash.helpers.CodeFormatting;
 import com.jpexs.decompiler.flash.helpers.FontHelper;
@@ -797,6 +798,49 @@ public final class Configuration {
     @ConfigurationDefaultInt(500)
     @ConfigurationCategory("limit")
     public static ConfigurationItem<Integer> maxCachedNum = null;
+
+    @ConfigurationDefaultInt(128)
+    @ConfigurationCategory("limit")
+    public static ConfigurationItem<Integer> decodedImageCacheSize = null;
+
+    @ConfigurationDefaultBoolean(false)
+    @ConfigurationCategory("limit")
+    public static ConfigurationItem<Boolean> decodedImageCacheOnDisk = null;
+
+    @ConfigurationDefaultInt(0)
+    @ConfigurationCategory("limit")
+    public static ConfigurationItem<Integer> swfBodyCacheSize = null;
+
+    @ConfigurationDefaultBoolean(false)
+    @ConfigurationCategory("export")
+    public static ConfigurationItem<Boolean> gifExportGlobalPalette = null;
+
+    @ConfigurationCategory("export")
+    public static ConfigurationItem<AviExportEncoding> aviExportEncoding = null;
+
+    @ConfigurationDefaultInt(-1)
+    @ConfigurationCategory("export")
+    public static ConfigurationItem<Integer> aviExportCompressionLevel = null;
+
+    @ConfigurationDefaultBoolean(false)
+    @ConfigurationCategory("export")
+    public static ConfigurationItem<Boolean> aviExportSkipDuplicateFrames = null;
+
+    @ConfigurationDefaultInt(10000)
+    @ConfigurationCategory("limit")
+    public static ConfigurationItem<Integer> quickFilterMaxResults = null;
+
+    @ConfigurationDefaultBoolean(true)
+    @ConfigurationCategory("decompilation")
+    public static ConfigurationItem<Boolean> decompilationPrefetch = null;
+
+    @ConfigurationDefaultInt(3)
+    @ConfigurationCategory("decompilation")
+    public static ConfigurationItem<Integer> decompilationPrefetchCount = null;
+
+    @ConfigurationDefaultBoolean(false)
+    @ConfigurationCategory("display")
+    public static ConfigurationItem<Boolean> showPlaybackStatistics = null;
     
     @ConfigurationDefaultString("")
     @ConfigurationCategory("paths")
@@ -23,6 +23,7 @@ import com.jpexs.decompiler.flash.treeitems.Openable;
 import com.jpexs.decompiler.flash.treeitems.TreeItem;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -57,6 +58,14 @@ public class DumpInfo implements TreeItem {
 
     private List<DumpInfo> childInfos;
 
+    // interval index of the children: child indices ordered by start and the
+    // maximum end byte of the children up to each position of that order
+    private int[] childOrder;
+
+    private long[] childMaxEnds;
+
+    private int indexedChildCount;
+
     public DumpInfo(String name, String type, Object value, long startByte, long lengthBytes) {
 
         this.name = name;
@@ -93,6 +102,8 @@ public class DumpInfo implements TreeItem {
             return;
         }
 
+        childOrder = null;
+
         Collections.sort(childInfos, new Comparator<DumpInfo>() {
             @Override
             public int compare(DumpInfo o1, DumpInfo o2) {
@@ -106,6 +117,104 @@ public class DumpInfo implements TreeItem {
         });
     }
 
+    private void updateChildIndex() {
+        int count = getChildCount();
+        if (childOrder != null && indexedChildCount == count) {
+            return;
+        }
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+
+        // stable sort, children recorded by the stream are already in order
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Long.compare(childInfos.get(o1).startByte, childInfos.get(o2).startByte);
+            }
+        });
+
+        childOrder = new int[count];
+        childMaxEnds = new long[count];
+        long maxEnd = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            childOrder[i] = order[i];
+            maxEnd = Math.max(maxEnd, childInfos.get(order[i]).getEndByte());
+            childMaxEnds[i] = maxEnd;
+        }
+
+        indexedChildCount = count;
+    }
+
+    /**
+     * Gets the position in the child order of the last child starting at or
+     * before the address.
+     *
+     * @param address Address
+     * @return Position, -1 when all the children start after the address
+     */
+    private int getLastChildStartingAt(long address) {
+        int low = 0;
+        int high = childOrder.length - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (childInfos.get(childOrder[mid]).startByte <= address) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the last child containing the address. Uses an interval index of
+     * the children, so the lookup is logarithmic in the number of children.
+     *
+     * @param address Address
+     * @return Child or null when no child contains the address
+     */
+    public DumpInfo getChildAt(long address) {
+        updateChildIndex();
+        for (int i = getLastChildStartingAt(address); i >= 0 && childMaxEnds[i] >= address; i--) {
+            DumpInfo child = childInfos.get(childOrder[i]);
+            if (child.getEndByte() >= address) {
+                return child;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets index of the child.
+     *
+     * @param child Child
+     * @return Index or -1 when it is not a child of this node
+     */
+    public int getChildIndex(DumpInfo child) {
+        updateChildIndex();
+        for (int i = getLastChildStartingAt(child.startByte); i >= 0; i--) {
+            int index = childOrder[i];
+            DumpInfo childInfo = childInfos.get(index);
+            if (childInfo == child) {
+                return index;
+            }
+
+            if (childInfo.startByte != child.startByte) {
+                break;
+            }
+        }
+
+        // the index is outdated when the children were replaced
+        return childInfos == null ? -1 : childInfos.indexOf(child);
+    }
+
     public long getEndByte() {
         int end = (int) startByte;
         if (lengthBytes != 0) {
@@ -23,9 +23,13 @@ import com.jpexs.decompiler.flash.RetryTask;
 import com.jpexs.decompiler.flash.SWF;
 import com.jpexs.decompiler.flash.action.parser.ActionParseException;
 import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.exporters.avi.AviEncoder;
 import com.jpexs.decompiler.flash.exporters.commonshape.ExportRectangle;
 import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
 import com.jpexs.decompiler.flash.exporters.commonshape.SVGExporter;
+import com.jpexs.decompiler.flash.exporters.commonshape.SVGMultiFrameExporter;
+import com.jpexs.decompiler.flash.exporters.gif.GifEncoder;
+import com.jpexs.decompiler.flash.exporters.modes.AviExportEncoding;
 import com.jpexs.decompiler.flash.exporters.modes.FontExportMode;
 import com.jpexs.decompiler.flash.exporters.modes.FrameExportMode;
 import com.jpexs.decompiler.flash.exporters.settings.ButtonExportSettings;
@@ -43,6 +47,7 @@ import com.jpexs.decompiler.flash.tags.base.RenderContext;
 import com.jpexs.decompiler.flash.tags.enums.ImageFormat;
 import com.jpexs.decompiler.flash.timeline.DepthState;
 import com.jpexs.decompiler.flash.timeline.Frame;
+import com.jpexs.decompiler.flash.timeline.FrameDiffRenderer;
 import com.jpexs.decompiler.flash.timeline.Timeline;
 import com.jpexs.decompiler.flash.timeline.Timelined;
 import com.jpexs.decompiler.flash.types.ColorTransform;
@@ -92,9 +97,6 @@ import java.util.logging.Logger;
 import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.stream.ImageOutputStream;
 import net.kroo.elliot.GifSequenceWriter;
-import net.weiner.kevin.AnimatedGifEncoder;
-import org.monte.media.VideoFormatKeys;
-import org.monte.media.avi.AVIWriter;
 
 /**
  *
@@ -104,6 +106,8 @@ public class FrameExporter {
 
     private static final Logger logger = Logger.getLogger(FrameExporter.class.getName());
 
+    private static final String SVG_LIBRARY_FILE_NAME = "library.svg";
+
     public List<File> exportButtonFrames(AbortRetryIgnoreHandler handler, String outdir, SWF swf, int containerId, List<Integer> frames, ButtonExportSettings settings, EventListener evl) throws IOException, InterruptedException {
         FrameExportMode fem;
         switch (settings.mode) {
@@ -159,6 +163,12 @@ public class FrameExporter {
             case SWF:
                 fem = FrameExportMode.SWF;
                 break;
+            case SVG_LIBRARY:
+                fem = FrameExportMode.SVG_LIBRARY;
+                break;
+            case SVG_ANIMATED:
+                fem = FrameExportMode.SVG_ANIMATED;
+                break;
             default:
                 throw new Error("Unsupported sprite export mode");
         }
@@ -230,7 +240,7 @@ public class FrameExporter {
                         }
 
                         tim.toSVG(frame, 0, null, 0, exporter, null, 0);
-                        fos.write(Utf8Helper.getBytes(exporter.getSVG()));
+                        exporter.writeTo(fos);
                     }
                     ret.add(f);
                 }, handler).run();
@@ -248,6 +258,65 @@ public class FrameExporter {
             return ret;
         }
 
+        if (settings.mode == FrameExportMode.SVG_LIBRARY || settings.mode == FrameExportMode.SVG_ANIMATED) {
+            final boolean animated = settings.mode == FrameExportMode.SVG_ANIMATED;
+            new RetryTask(() -> {
+                ret.clear();
+                ExportRectangle rect = new ExportRectangle(tim.displayRect);
+                rect.xMax *= settings.zoom;
+                rect.yMax *= settings.zoom;
+                rect.xMin *= settings.zoom;
+                rect.yMin *= settings.zoom;
+                SVGMultiFrameExporter exporter = new SVGMultiFrameExporter(rect, settings.zoom, animated ? null : SVG_LIBRARY_FILE_NAME);
+                File af = new File(foutdir + File.separator + (animated ? "frames.svg" : SVG_LIBRARY_FILE_NAME));
+                try (OutputStream afos = new BufferedOutputStream(new FileOutputStream(af))) {
+                    if (animated) {
+                        exporter.startAnimation(afos, fframes.size(), swf.frameRate);
+                    } else {
+                        exporter.startLibrary(afos);
+                    }
+
+                    for (int i = 0; i < fframes.size(); i++) {
+                        if (evl != null) {
+                            Tag parentTag = tim.getParentTag();
+                            evl.handleExportingEvent("frame", i + 1, fframes.size(), parentTag == null ? "" : parentTag.getName());
+                        }
+
+                        int frame = fframes.get(i);
+                        exporter.beginFrame("frame" + (frame + 1));
+                        tim.toSVG(frame, 0, null, 0, exporter, null, 0);
+                        if (animated) {
+                            exporter.writeAnimationFrame(i);
+                        } else {
+                            File f = new File(foutdir + File.separator + (frame + 1) + ".svg");
+                            try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(f))) {
+                                exporter.writeFrame(fos);
+                            }
+                            ret.add(f);
+                        }
+
+                        if (evl != null) {
+                            Tag parentTag = tim.getParentTag();
+                            evl.handleExportedEvent("frame", i + 1, fframes.size(), parentTag == null ? "" : parentTag.getName());
+                        }
+
+                        if (Thread.currentThread().isInterrupted()) {
+                            break;
+                        }
+                    }
+
+                    if (animated) {
+                        exporter.endAnimation();
+                    } else {
+                        exporter.endLibrary();
+                    }
+                    ret.add(af);
+                }
+            }, handler).run();
+
+            return ret;
+        }
+
         if (settings.mode == FrameExportMode.CANVAS) {
             if (evl != null) {
                 Tag parentTag = tim.getParentTag();
@@ -401,6 +470,8 @@ public class FrameExporter {
 
         final Color fbackgroundColor = backgroundColor;
         final boolean fusesTransparency = settings.mode == FrameExportMode.PNG || settings.mode == FrameExportMode.GIF;
+        //consecutive frames often differ only in a small part
+        final FrameDiffRenderer diffRenderer = new FrameDiffRenderer(tim);
         final Iterator<BufferedImage> frameImages = new Iterator<BufferedImage>() {
             private int pos = 0;
 
@@ -431,7 +502,7 @@ public class FrameExporter {
                 }
 
                 int fframe = fframes.get(pos++);
-                BufferedImage result = SWF.frameToImageGet(tim, fframe, 0, null, 0, tim.displayRect, new Matrix(), null, fusesTransparency ? null : fbackgroundColor, settings.zoom, true).getBufferedImage();
+                BufferedImage result = SWF.frameToImageGet(tim, fframe, 0, null, 0, tim.displayRect, new Matrix(), null, fusesTransparency ? null : fbackgroundColor, settings.zoom, true, diffRenderer).getBufferedImage();
                 if (Thread.currentThread().isInterrupted()) {
                     return null;
                 }
@@ -633,46 +704,61 @@ public class FrameExporter {
         return "[" + rgb.red + "," + rgb.green + "," + rgb.blue + "," + ((rgb instanceof RGBA) ? ((RGBA) rgb).getAlphaFloat() : 1) + "]";
     }
 
-    public static void makeAVI(Iterator<BufferedImage> images, float frameRate, File file, EventListener evl) throws IOException {
+    public static void makeAVI(Iterator<BufferedImage> images, float frameRate, File file, EventListener evl) throws IOException, InterruptedException {
         if (!images.hasNext()) {
             return;
         }
 
-        AVIWriter out = new AVIWriter(file);
-        BufferedImage img0 = images.next();
-        out.addVideoTrack(VideoFormatKeys.ENCODING_AVI_PNG, 1, (int) frameRate, img0.getWidth(), img0.getHeight(), 0, 0);
+        AviExportEncoding encoding = Configuration.aviExportEncoding.get();
+        if (encoding == null) {
+            encoding = AviExportEncoding.PNG;
+        }
+
+        int threadCount = Configuration.parallelSpeedUp.get() ? Configuration.getParallelThreadCount() : 1;
+        AviEncoder encoder = new AviEncoder(file, (int) frameRate, encoding, Configuration.aviExportCompressionLevel.get(), Configuration.aviExportSkipDuplicateFrames.get(), threadCount);
+        boolean finished = false;
         try {
-            out.write(0, img0, 1);
             while (images.hasNext()) {
                 BufferedImage img = images.next();
                 if (img == null) {
                     break;
                 }
-                out.write(0, img, 1);
+                encoder.addFrame(img);
             }
+
+            encoder.finish();
+            finished = true;
         } finally {
-            out.close();
+            if (!finished) {
+                encoder.abort();
+            }
         }
     }
 
-    public static void makeGIF(Iterator<BufferedImage> images, float frameRate, File file, EventListener evl) throws IOException {
+    public static void makeGIF(Iterator<BufferedImage> images, float frameRate, File file, EventListener evl) throws IOException, InterruptedException {
         if (!images.hasNext()) {
             return;
         }
 
-        AnimatedGifEncoder encoder = new AnimatedGifEncoder();
-        encoder.setRepeat(0); // repeat forever
-        encoder.start(file.getAbsolutePath());
-        encoder.setDelay((int) (1000.0 / frameRate));
-        while (images.hasNext()) {
-            BufferedImage img = images.next();
-            if (img == null) {
-                break;
+        int threadCount = Configuration.parallelSpeedUp.get() ? Configuration.getParallelThreadCount() : 1;
+        GifEncoder encoder = new GifEncoder(file, (int) (1000.0 / frameRate), Configuration.gifExportGlobalPalette.get(), threadCount);
+        boolean finished = false;
+        try {
+            while (images.hasNext()) {
+                BufferedImage img = images.next();
+                if (img == null) {
+                    break;
+                }
+                encoder.addFrame(img);
             }
-            encoder.addFrame(img);
-        }
 
-        encoder.finish();
+            encoder.finish();
+            finished = true;
+        } finally {
+            if (!finished) {
+                encoder.abort();
+            }
+        }
     }
 
     public static void makeGIFOld(Iterator<BufferedImage> images, float frameRate, File file, EventListener evl) throws IOException {
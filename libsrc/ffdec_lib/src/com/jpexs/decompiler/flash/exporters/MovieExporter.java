@@ -23,15 +23,16 @@ import com.jpexs.decompiler.flash.RetryTask;
 import com.jpexs.decompiler.flash.SWF;
 import com.jpexs.decompiler.flash.SWFInputStream;
 import com.jpexs.decompiler.flash.SWFOutputStream;
+import com.jpexs.decompiler.flash.configuration.Configuration;
 import com.jpexs.decompiler.flash.exporters.modes.MovieExportMode;
 import com.jpexs.decompiler.flash.exporters.settings.MovieExportSettings;
 import com.jpexs.decompiler.flash.flv.FLVOutputStream;
 import com.jpexs.decompiler.flash.flv.FLVTAG;
 import com.jpexs.decompiler.flash.flv.SCRIPTDATA;
-import com.jpexs.decompiler.flash.flv.VIDEODATA;
 import com.jpexs.decompiler.flash.tags.DefineVideoStreamTag;
 import com.jpexs.decompiler.flash.tags.Tag;
 import com.jpexs.decompiler.flash.tags.VideoFrameTag;
+import com.jpexs.helpers.ByteArrayRange;
 import com.jpexs.helpers.Helper;
 import com.jpexs.helpers.Path;
 import java.io.BufferedOutputStream;
@@ -42,9 +43,14 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  *
@@ -52,6 +58,16 @@ import java.util.Map;
  */
 public class MovieExporter {
 
+    /**
+     * Size of the output buffer of a single movie
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of bytes of the frame needed to read the codec header
+     */
+    private static final int FRAME_HEADER_SIZE = 32;
+
     public List<File> exportMovies(AbortRetryIgnoreHandler handler, String outdir, ReadOnlyTagList tags, final MovieExportSettings settings, EventListener evl) throws IOException, InterruptedException {
         List<File> ret = new ArrayList<>();
         if (Thread.currentThread().isInterrupted()) {
@@ -64,60 +80,154 @@ public class MovieExporter {
         File foutdir = new File(outdir);
         Path.createDirectorySafe(foutdir);
 
-        int count = 0;
+        List<DefineVideoStreamTag> videoStreams = new ArrayList<>();
         for (Tag t : tags) {
             if (t instanceof DefineVideoStreamTag) {
-                count++;
+                videoStreams.add((DefineVideoStreamTag) t);
             }
         }
 
+        int count = videoStreams.size();
         if (count == 0) {
             return ret;
         }
 
-        int currentIndex = 1;
-        for (Tag t : tags) {
-            if (t instanceof DefineVideoStreamTag) {
-                if (evl != null) {
-                    evl.handleExportingEvent("movie", currentIndex, count, t.getName());
-                }
-
-                final DefineVideoStreamTag videoStream = (DefineVideoStreamTag) t;
-                final File file = new File(outdir + File.separator + Helper.makeFileName(videoStream.getCharacterExportFileName() + ".flv"));
-                new RetryTask(() -> {
-                    try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(file))) {
-                        fos.write(exportMovie(videoStream, settings.mode));
-                    }
-                }, handler).run();
-
+        int threadCount = Configuration.parallelSpeedUp.get() ? Math.min(count, Configuration.getParallelThreadCount()) : 1;
+        if (threadCount <= 1) {
+            for (int i = 0; i < count; i++) {
+                exportMovieFile(handler, outdir, videoStreams.get(i), settings, evl, i + 1, count);
                 if (Thread.currentThread().isInterrupted()) {
                     break;
                 }
-                if (evl != null) {
-                    evl.handleExportedEvent("movie", currentIndex, count, t.getName());
+            }
+
+            return ret;
+        }
+
+        // each running export holds its largest frame and the output buffer,
+        // the budget limits how many of them run at once
+        final int budgetKiB = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 4 / 1024);
+        final Semaphore memoryBudget = new Semaphore(budgetKiB);
+        final AbortRetryIgnoreHandler syncHandler = handler == null ? null : new AbortRetryIgnoreHandler() {
+            @Override
+            public int handle(Throwable thrown) {
+                synchronized (this) {
+                    return handler.handle(thrown);
                 }
+            }
+
+            @Override
+            public AbortRetryIgnoreHandler getNewInstance() {
+                return handler.getNewInstance();
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                final DefineVideoStreamTag videoStream = videoStreams.get(i);
+                final int currentIndex = i + 1;
+                final int reserveKiB = Math.min(budgetKiB, (int) ((getMaxFrameSize(videoStream) + OUTPUT_BUFFER_SIZE) / 1024 + 1));
+                futures.add(executor.submit(() -> {
+                    memoryBudget.acquire(reserveKiB);
+                    try {
+                        exportMovieFile(syncHandler, outdir, videoStream, settings, evl, currentIndex, count);
+                    } finally {
+                        memoryBudget.release(reserveKiB);
+                    }
 
-                currentIndex++;
+                    return null;
+                }));
             }
+
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+
+                    throw new IOException(cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
         }
+
         return ret;
     }
 
+    private void exportMovieFile(AbortRetryIgnoreHandler handler, String outdir, DefineVideoStreamTag videoStream, MovieExportSettings settings, EventListener evl, int currentIndex, int count) throws IOException, InterruptedException {
+        if (evl != null) {
+            evl.handleExportingEvent("movie", currentIndex, count, videoStream.getName());
+        }
+
+        final File file = new File(outdir + File.separator + Helper.makeFileName(videoStream.getCharacterExportFileName() + ".flv"));
+        new RetryTask(() -> {
+            try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(file), OUTPUT_BUFFER_SIZE)) {
+                exportMovie(videoStream, settings.mode, false, fos);
+            }
+        }, handler).run();
+
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+
+        if (evl != null) {
+            evl.handleExportedEvent("movie", currentIndex, count, videoStream.getName());
+        }
+    }
+
+    private static long getMaxFrameSize(DefineVideoStreamTag videoStream) {
+        Map<Integer, VideoFrameTag> frames = new TreeMap<>();
+        SWF.populateVideoFrames(videoStream.characterID, videoStream.getSwf().getTags(), frames);
+        long max = 0;
+        for (VideoFrameTag frame : frames.values()) {
+            max = Math.max(max, frame.videoData.getLength());
+        }
+
+        return max;
+    }
+
     public byte[] exportMovie(DefineVideoStreamTag videoStream, MovieExportMode mode) throws IOException {
         return exportMovie(videoStream, mode, false);
     }
-        
+
     public byte[] exportMovie(DefineVideoStreamTag videoStream, MovieExportMode mode, boolean ffdecInternal) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        exportMovie(videoStream, mode, ffdecInternal, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Writes the movie as FLV to the stream. Frames are written one by one
+     * directly from the tag data. Nothing is written when the stream has no
+     * frames.
+     *
+     * @param videoStream Video stream
+     * @param mode Mode
+     * @param ffdecInternal Timing used by internal player
+     * @param os Output stream
+     * @throws IOException
+     */
+    public void exportMovie(DefineVideoStreamTag videoStream, MovieExportMode mode, boolean ffdecInternal, OutputStream os) throws IOException {
         SWF swf = videoStream.getSwf();
-        Map<Integer, VideoFrameTag> frames = new HashMap<>();
+        Map<Integer, VideoFrameTag> frames = new TreeMap<>();
         SWF.populateVideoFrames(videoStream.characterID, swf.getTags(), frames);
         if (frames.isEmpty()) {
-            return SWFInputStream.BYTE_ARRAY_EMPTY;
+            return;
         }
 
-        ByteArrayOutputStream fos = new ByteArrayOutputStream();
-        OutputStream tos = fos;
-        FLVOutputStream flv = new FLVOutputStream(tos);
+        FLVOutputStream flv = new FLVOutputStream(os);
         flv.writeHeader(false, true);
         int numFrames = videoStream.numFrames;
         if (ffdecInternal) {
@@ -127,23 +237,24 @@ public class MovieExporter {
         flv.writeTag(new FLVTAG(0, SCRIPTDATA.simpleVideOnMetadata(ffdecInternal ? numFrames * internalFrameDelaySec : numFrames / swf.frameRate, videoStream.width, videoStream.height,ffdecInternal? internalFrameDelaySec : swf.frameRate ,videoStream.codecID)));
         int horizontalAdjustment = 0;
         int verticalAdjustment = 0;
-        int[] frameNumArray = Helper.toIntArray(frames.keySet());
-        Arrays.sort(frameNumArray);
-        FLVTAG lastTag = null;
+        VideoFrameTag lastTag = null;
+        byte[] lastPrefix = null;
+        int lastFrameType = 0;
         int frameNum = 0;
         int internalFrameDelay = internalFrameDelaySec * 1000;
-                
-        for (int i = 0; i < frameNumArray.length; i++) {
-            VideoFrameTag tag = frames.get(frameNumArray[i]);
+
+        for (Map.Entry<Integer, VideoFrameTag> entry : frames.entrySet()) {
+            VideoFrameTag tag = entry.getValue();
+            ByteArrayRange videoData = tag.videoData;
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
-            frameNum = frameNumArray[i];
+            frameNum = entry.getKey();
             
             int frameType = 1;
 
             if ((videoStream.codecID == DefineVideoStreamTag.CODEC_VP6)
                     || (videoStream.codecID == DefineVideoStreamTag.CODEC_VP6_ALPHA)) {
-                SWFInputStream sis = new SWFInputStream(swf, tag.videoData.getRangeData());
+                SWFInputStream sis = new SWFInputStream(swf, getFrameHeader(videoData));
                 if (videoStream.codecID == DefineVideoStreamTag.CODEC_VP6_ALPHA) {
                     sis.readUI24("offsetToAlpha"); //offsetToAlpha
                 }
@@ -177,7 +288,7 @@ public class MovieExporter {
                 sos.writeUB(4, verticalAdjustment);
             }
             if (videoStream.codecID == DefineVideoStreamTag.CODEC_SORENSON_H263) {
-                SWFInputStream sis = new SWFInputStream(swf, tag.videoData.getRangeData());
+                SWFInputStream sis = new SWFInputStream(swf, getFrameHeader(videoData));
                 sis.readUB(17, "pictureStartCode");//pictureStartCode
                 sis.readUB(5, "version"); //version
                 sis.readUB(8, "temporalReference"); //temporalReference
@@ -204,13 +315,22 @@ public class MovieExporter {
                 }
             }
 
-            baos.write(tag.videoData.getRangeData());
-            flv.writeTag(lastTag = new FLVTAG((long)Math.floor(ffdecInternal ? frameNum * internalFrameDelay : (frameNum * 1000.0 / swf.frameRate)), new VIDEODATA(frameType, videoStream.codecID, baos.toByteArray())));
+            byte[] prefix = baos.toByteArray();
+            flv.writeVideoTag((long) Math.floor(ffdecInternal ? frameNum * internalFrameDelay : (frameNum * 1000.0 / swf.frameRate)), frameType, videoStream.codecID, prefix, videoData.getArray(), videoData.getPos(), videoData.getLength());
+            lastTag = tag;
+            lastPrefix = prefix;
+            lastFrameType = frameType;
         }
         if (ffdecInternal && lastTag != null) {
-            lastTag.timeStamp = frameNum * internalFrameDelay + 2 * internalFrameDelay;
-            flv.writeTag(lastTag);
+            ByteArrayRange videoData = lastTag.videoData;
+            flv.writeVideoTag(frameNum * internalFrameDelay + 2 * internalFrameDelay, lastFrameType, videoStream.codecID, lastPrefix, videoData.getArray(), videoData.getPos(), videoData.getLength());
         }
-        return fos.toByteArray();
+
+        flv.flush();
+    }
+
+    private static byte[] getFrameHeader(ByteArrayRange videoData) {
+        int length = Math.min(FRAME_HEADER_SIZE, videoData.getLength());
+        return Arrays.copyOfRange(videoData.getArray(), videoData.getPos(), videoData.getPos() + length);
     }
 }
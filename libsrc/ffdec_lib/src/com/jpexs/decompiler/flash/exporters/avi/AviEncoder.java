@@ -0,0 +1,290 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.exporters.avi;
+
+import com.jpexs.decompiler.flash.exporters.modes.AviExportEncoding;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import org.monte.media.VideoFormatKeys;
+import org.monte.media.avi.AVIOutputStream;
+
+/**
+ * AVI video encoder.
+ *
+ * Frames are encoded on a thread pool and written to AVIOutputStream in
+ * order, at most two frames per thread are encoded or waiting to be written.
+ * A frame identical to the previous one can be written as an empty chunk,
+ * which players show as a repeat of the previous frame.
+ *
+ * @author JPEXS
+ */
+public class AviEncoder {
+
+    private static final byte[] EMPTY_FRAME = new byte[0];
+
+    private final File file;
+
+    private final int frameRate;
+
+    private final AviExportEncoding encoding;
+
+    private final int compressionLevel;
+
+    private final boolean skipDuplicates;
+
+    private final ExecutorService executor;
+
+    private final int maxEncodingFrames;
+
+    private final Deque<Future<byte[]>> encodingFrames = new ArrayDeque<>();
+
+    private AVIOutputStream out;
+
+    private int track;
+
+    private float quality;
+
+    private int width;
+
+    private int height;
+
+    private int[] lastPixels;
+
+    private boolean finished = false;
+
+    /**
+     * Constructor.
+     *
+     * @param file Output file
+     * @param frameRate Frame rate
+     * @param encoding Encoding of the frames
+     * @param compressionLevel Deflate level of PNG frames (0-9), -1 for
+     * default
+     * @param skipDuplicates Write frames identical to the previous one as
+     * empty chunks
+     * @param threadCount Number of encoding threads
+     */
+    public AviEncoder(File file, int frameRate, AviExportEncoding encoding, int compressionLevel, boolean skipDuplicates, int threadCount) {
+        this.file = file;
+        this.frameRate = frameRate;
+        this.encoding = encoding;
+        this.compressionLevel = compressionLevel;
+        this.skipDuplicates = skipDuplicates;
+        this.executor = Executors.newFixedThreadPool(threadCount);
+        this.maxEncodingFrames = threadCount * 2;
+    }
+
+    /**
+     * Adds frame. All frames must have the size of the first frame.
+     *
+     * @param image Image
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    public void addFrame(BufferedImage image) throws IOException, InterruptedException {
+        if (out == null) {
+            width = image.getWidth();
+            height = image.getHeight();
+            out = new AVIOutputStream(file);
+            track = out.addVideoTrack(getFourCC(), 1, frameRate, width, height, 24, 1);
+            quality = out.getCompressionQuality(track);
+        } else if (image.getWidth() != width || image.getHeight() != height) {
+            throw new IllegalArgumentException("Frame size " + image.getWidth() + "x" + image.getHeight() + " differs from " + width + "x" + height);
+        }
+
+        if (skipDuplicates) {
+            int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+            boolean duplicate = Arrays.equals(pixels, lastPixels);
+            lastPixels = pixels;
+            if (duplicate) {
+                submit(CompletableFuture.completedFuture(EMPTY_FRAME));
+                return;
+            }
+        }
+
+        submit(executor.submit(() -> encode(image)));
+    }
+
+    private String getFourCC() {
+        switch (encoding) {
+            case MJPG:
+                return VideoFormatKeys.ENCODING_AVI_MJPG;
+            case DIB:
+                return VideoFormatKeys.ENCODING_AVI_DIB;
+            default:
+                return VideoFormatKeys.ENCODING_AVI_PNG;
+        }
+    }
+
+    private void submit(Future<byte[]> frame) throws IOException, InterruptedException {
+        while (encodingFrames.size() >= maxEncodingFrames) {
+            write(getResult(encodingFrames.removeFirst()));
+        }
+
+        encodingFrames.add(frame);
+    }
+
+    private void write(byte[] data) throws IOException {
+        // the first frame is never a duplicate
+        out.writeSample(track, data, 0, data.length, data != EMPTY_FRAME);
+    }
+
+    private static byte[] getResult(Future<byte[]> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Writes the remaining frames and closes the file.
+     *
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    public void finish() throws IOException, InterruptedException {
+        if (finished) {
+            return;
+        }
+
+        finished = true;
+        try {
+            while (!encodingFrames.isEmpty()) {
+                write(getResult(encodingFrames.removeFirst()));
+            }
+        } finally {
+            executor.shutdownNow();
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Stops encoding after an error and closes the file.
+     */
+    public void abort() {
+        if (finished) {
+            return;
+        }
+
+        finished = true;
+        executor.shutdownNow();
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException | RuntimeException ex) {
+                //ignore
+            }
+        }
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        switch (encoding) {
+            case MJPG:
+                return writeImage("image/jpeg", toRgb(image), quality);
+            case DIB:
+                return encodeDib(image);
+            default:
+                return writeImage("image/png", image, compressionLevel < 0 ? -1f : (9 - Math.min(9, compressionLevel)) / 9f);
+        }
+    }
+
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return rgb;
+    }
+
+    private static byte[] writeImage(String mimeType, BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByMIMEType(mimeType).next();
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (quality >= 0 && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+            }
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (ImageOutputStream ios = ImageIO.createImageOutputStream(baos)) {
+                writer.setOutput(ios);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+
+            return baos.toByteArray();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Encodes image as bottom-up 24 bit DIB.
+     */
+    private static byte[] encodeDib(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int stride = (w * 3 + 3) & ~3;
+        byte[] result = new byte[stride * h];
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            image.getRGB(0, y, w, 1, row, 0, w);
+            int pos = (h - 1 - y) * stride;
+            for (int x = 0; x < w; x++) {
+                int rgb = row[x];
+                result[pos++] = (byte) rgb;
+                result[pos++] = (byte) (rgb >> 8);
+                result[pos++] = (byte) (rgb >> 16);
+            }
+        }
+
+        return result;
+    }
+}
@@ -20,10 +20,13 @@ import com.jpexs.decompiler.flash.SWF;
 import com.jpexs.decompiler.flash.configuration.Configuration;
 import com.jpexs.decompiler.flash.exporters.modes.FontExportMode;
 import com.jpexs.decompiler.flash.tags.Tag;
+import com.jpexs.decompiler.flash.types.ColorTransform;
 import com.jpexs.decompiler.flash.types.RECT;
 import com.jpexs.decompiler.flash.types.RGBA;
 import com.jpexs.helpers.Helper;
 import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -96,13 +99,7 @@ public class SVGExporter {
             Element svgRoot = _svg.getDocumentElement();
             svgRoot.setAttribute("xmlns:xlink", xlinkNamespace);
             if (bounds != null) {
-                if (Configuration.svgRetainBounds.get()) {
-                    svgRoot.setAttribute("width", (bounds.xMax / SWF.unitDivisor) + "px");
-                    svgRoot.setAttribute("height", (bounds.yMax / SWF.unitDivisor) + "px");
-                } else {
-                    svgRoot.setAttribute("width", (bounds.getWidth() / SWF.unitDivisor) + "px");
-                    svgRoot.setAttribute("height", (bounds.getHeight() / SWF.unitDivisor) + "px");
-                }
+                setSize(bounds);
                 createDefGroup(bounds, null, zoom);
             }
         } catch (ParserConfigurationException ex) {
@@ -111,7 +108,18 @@ public class SVGExporter {
         gradients = new ArrayList<>();
     }
 
-    private Element getDefs() {
+    protected final void setSize(ExportRectangle bounds) {
+        Element svgRoot = _svg.getDocumentElement();
+        if (Configuration.svgRetainBounds.get()) {
+            svgRoot.setAttribute("width", (bounds.xMax / SWF.unitDivisor) + "px");
+            svgRoot.setAttribute("height", (bounds.yMax / SWF.unitDivisor) + "px");
+        } else {
+            svgRoot.setAttribute("width", (bounds.getWidth() / SWF.unitDivisor) + "px");
+            svgRoot.setAttribute("height", (bounds.getHeight() / SWF.unitDivisor) + "px");
+        }
+    }
+
+    protected Element getDefs() {
         if (_svgDefs == null) {
             _svgDefs = _svg.createElement("defs");
             _svg.getDocumentElement().appendChild(_svgDefs);
@@ -221,6 +229,46 @@ public class SVGExporter {
         return writer.toString();
     }
 
+    /**
+     * Writes the SVG document to the stream without creating intermediate
+     * string.
+     *
+     * @param os Output stream
+     * @throws IOException
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        try (SVGStreamWriter writer = new SVGStreamWriter(os)) {
+            writer.writeStartDocument();
+            writer.writeNode(_svg.getDocumentElement());
+        }
+    }
+
+    /**
+     * Gets id of already exported tag.
+     *
+     * @param tag Tag
+     * @param ratio Ratio
+     * @param colorTransform Color transform
+     * @return Id or null when the tag was not exported yet
+     */
+    public String getExportedTagId(Tag tag, int ratio, ColorTransform colorTransform) {
+        return exportedTags.get(tag);
+    }
+
+    public void setExportedTagId(Tag tag, int ratio, ColorTransform colorTransform, String id) {
+        exportedTags.put(tag, id);
+    }
+
+    /**
+     * Gets the value of xlink:href attribute which references given id.
+     *
+     * @param id Id
+     * @return Reference
+     */
+    protected String getHref(String id) {
+        return "#" + id;
+    }
+
     public void setBackGroundColor(Color backGroundColor) {
         Attr attr = _svg.createAttribute("style");
         attr.setValue("background: " + new RGBA(backGroundColor).toHexARGB());
@@ -269,7 +317,7 @@ public class SVGExporter {
                 + "L " + Math.rint(scalingRect.Xmin / (double) SWF.unitDivisor) + "," + Math.rint(scalingRect.Ymin / (double) SWF.unitDivisor) + " "
                 + "L 0," + Math.rint(scalingRect.Ymin / (double) SWF.unitDivisor) + " Z"
         ));
-        leftTopCorner.setAttribute("xlink:href", "#" + href);
+        leftTopCorner.setAttribute("xlink:href", getHref(href));
         image.appendChild(leftTopCorner);
 
         Element bottomLeftCorner = _svg.createElement("use");
@@ -283,7 +331,7 @@ public class SVGExporter {
                 + "L 0," + Math.rint(boundRect.getHeight() / (double) SWF.unitDivisor) + " Z"
         ));
 
-        bottomLeftCorner.setAttribute("xlink:href", "#" + href);
+        bottomLeftCorner.setAttribute("xlink:href", getHref(href));
         image.appendChild(bottomLeftCorner);
 
         Element topRightCorner = _svg.createElement("use");
@@ -296,7 +344,7 @@ public class SVGExporter {
                 + "L " + Math.rint(boundRect.getWidth() / (double) SWF.unitDivisor) + "," + Math.rint(scalingRect.Ymin / (double) SWF.unitDivisor) + " "
                 + "L " + Math.rint((boundRect.getWidth() - (exRect.xMax - scalingRect.Xmax)) / (double) SWF.unitDivisor) + "," + Math.rint(scalingRect.Ymin / (double) SWF.unitDivisor) + " Z"
         ));
-        topRightCorner.setAttribute("xlink:href", "#" + href);
+        topRightCorner.setAttribute("xlink:href", getHref(href));
         image.appendChild(topRightCorner);
 
         Element bottomRightCorner = _svg.createElement("use");
@@ -310,7 +358,7 @@ public class SVGExporter {
                 + "L " + Math.rint(boundRect.getWidth() / (double) SWF.unitDivisor) + "," + Math.rint(boundRect.getHeight() / (double) SWF.unitDivisor) + " "
                 + "L " + Math.rint((boundRect.getWidth() - (exRect.xMax - scalingRect.Xmax)) / (double) SWF.unitDivisor) + "," + Math.rint(boundRect.getHeight() / (double) SWF.unitDivisor) + " Z"
         ));
-        bottomRightCorner.setAttribute("xlink:href", "#" + href);
+        bottomRightCorner.setAttribute("xlink:href", getHref(href));
         image.appendChild(bottomRightCorner);
 
         Element top = _svg.createElement("use");
@@ -329,7 +377,7 @@ public class SVGExporter {
                 + "L " + Math.rint(scalingRect.Xmin / (double) SWF.unitDivisor) + "," + Math.rint(scalingRect.Ymin / (double) SWF.unitDivisor) + " Z"
         ));
 
-        top.setAttribute("xlink:href", "#" + href);
+        top.setAttribute("xlink:href", getHref(href));
         image.appendChild(top);
 
         Element left = _svg.createElement("use");
@@ -347,7 +395,7 @@ public class SVGExporter {
                 + "L 0," + Math.rint(scalingRect.Ymax / (double) SWF.unitDivisor) + " Z"
         ));
 
-        left.setAttribute("xlink:href", "#" + href);
+        left.setAttribute("xlink:href", getHref(href));
         image.appendChild(left);
 
         Element bottom = _svg.createElement("use");
@@ -367,7 +415,7 @@ public class SVGExporter {
                 + "L " + Math.rint(scalingRect.Xmin / (double) SWF.unitDivisor) + "," + Math.rint(boundRect.Ymax / (double) SWF.unitDivisor) + " Z"
         ));
 
-        bottom.setAttribute("xlink:href", "#" + href);
+        bottom.setAttribute("xlink:href", getHref(href));
         image.appendChild(bottom);
 
         Element right = _svg.createElement("use");
@@ -387,7 +435,7 @@ public class SVGExporter {
                 + "L " + Math.rint(scalingRect.Xmax / (double) SWF.unitDivisor) + "," + Math.rint(scalingRect.Ymax / (double) SWF.unitDivisor) + " Z"
         ));
 
-        right.setAttribute("xlink:href", "#" + href);
+        right.setAttribute("xlink:href", getHref(href));
         image.appendChild(right);
 
         Element center = _svg.createElement("use");
@@ -407,7 +455,7 @@ public class SVGExporter {
                 + "L " + Math.rint(scalingRect.Xmin / (double) SWF.unitDivisor) + "," + Math.rint(scalingRect.Ymax / (double) SWF.unitDivisor) + " Z"
         ));
 
-        center.setAttribute("xlink:href", "#" + href);
+        center.setAttribute("xlink:href", getHref(href));
         image.appendChild(center);
 
         if (instanceName != null) {
@@ -445,7 +493,7 @@ public class SVGExporter {
         if (characterName != null) {
             image.setAttribute("data-characterName", characterName);
         }
-        image.setAttribute("xlink:href", "#" + href);
+        image.setAttribute("xlink:href", getHref(href));
         _svgGs.peek().appendChild(image);
         return image;
     }
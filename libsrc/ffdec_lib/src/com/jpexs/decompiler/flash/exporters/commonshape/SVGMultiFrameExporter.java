@@ -0,0 +1,360 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.exporters.commonshape;
+
+import com.jpexs.decompiler.flash.tags.Tag;
+import com.jpexs.decompiler.flash.types.ColorTransform;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * SVG exporter for multiple frames which shares symbol definitions between
+ * the frames.
+ *
+ * Symbols are defined only once. Each symbol is streamed out as soon as its
+ * definition is finished and each frame as soon as it is drawn, both are
+ * released afterwards, so the DOM holds only the frame and the symbols being
+ * drawn. The frames are written either as separate files referencing an
+ * external library file, or as a single animated document.
+ *
+ * Definitions created while drawing the frame itself, like gradients of clip
+ * shapes, are kept in the frame, so separate frame files reference them
+ * locally.
+ *
+ * @author JPEXS
+ */
+public class SVGMultiFrameExporter extends SVGExporter {
+
+    private final ExportRectangle bounds;
+
+    private final double zoom;
+
+    private final String libraryFileName;
+
+    private final Map<Tag, Map<String, String>> exportedVariants = new HashMap<>();
+
+    private Element frameGroup;
+
+    private Element frameDefs;
+
+    private SVGStreamWriter libraryWriter;
+
+    private SVGStreamWriter animationWriter;
+
+    private int releasedGradientCount = 0;
+
+    private int animationFrameCount;
+
+    private float animationFrameRate;
+
+    /**
+     * Constructor.
+     *
+     * @param bounds Bounds
+     * @param zoom Zoom
+     * @param libraryFileName Name of the library file referenced from frames.
+     * Null when exporting single animated document.
+     */
+    public SVGMultiFrameExporter(ExportRectangle bounds, double zoom, String libraryFileName) {
+        super(null, zoom);
+        this.bounds = bounds;
+        this.zoom = zoom;
+        this.libraryFileName = libraryFileName;
+        setSize(bounds);
+    }
+
+    @Override
+    public String getExportedTagId(Tag tag, int ratio, ColorTransform colorTransform) {
+        Map<String, String> variants = exportedVariants.get(tag);
+        return variants == null ? null : variants.get(getVariantKey(ratio, colorTransform));
+    }
+
+    @Override
+    public void setExportedTagId(Tag tag, int ratio, ColorTransform colorTransform, String id) {
+        Map<String, String> variants = exportedVariants.get(tag);
+        if (variants == null) {
+            variants = new HashMap<>();
+            exportedVariants.put(tag, variants);
+        }
+
+        variants.put(getVariantKey(ratio, colorTransform), id);
+    }
+
+    private static String getVariantKey(int ratio, ColorTransform colorTransform) {
+        // ratio and color transform are baked into the definition,
+        // so different frames can need different variants of the same tag
+        return ratio + ":" + colorTransform;
+    }
+
+    @Override
+    protected String getHref(String id) {
+        if (libraryFileName == null || isInDefs()) {
+            return super.getHref(id);
+        }
+
+        return libraryFileName + "#" + id;
+    }
+
+    @Override
+    public void addToDefs(Node newChild) {
+        if (libraryFileName == null || frameGroup == null || isInDefs()) {
+            super.addToDefs(newChild);
+            return;
+        }
+
+        if (frameDefs == null) {
+            frameDefs = _svg.createElement("defs");
+            frameGroup.insertBefore(frameDefs, frameGroup.getFirstChild());
+        }
+
+        frameDefs.appendChild(newChild);
+    }
+
+    @Override
+    public boolean endGroup() {
+        Element g = _svgGs.peek();
+        boolean result = super.endGroup();
+        if (result && _svgDefs != null && g.getParentNode() == _svgDefs) {
+            writeFinishedDefs();
+        }
+
+        return result;
+    }
+
+    /**
+     * Streams out and releases the definitions which are not being drawn.
+     */
+    private void writeFinishedDefs() {
+        SVGStreamWriter writer = libraryWriter != null ? libraryWriter : animationWriter;
+        if (writer == null || _svgDefs == null) {
+            return;
+        }
+
+        List<Node> finished = new ArrayList<>();
+        NodeList children = _svgDefs.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            // style is appended to during the whole export
+            if (!_svgGs.contains(child) && !(_svgStyle != null && child == _svgStyle.getParentNode())) {
+                finished.add(child);
+            }
+        }
+
+        if (finished.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (writer == animationWriter) {
+                Element defs = _svg.createElement("defs");
+                for (Node child : finished) {
+                    defs.appendChild(child);
+                }
+                writer.writeNode(defs);
+            } else {
+                for (Node child : finished) {
+                    _svgDefs.removeChild(child);
+                    writer.writeNode(child);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        for (; releasedGradientCount < gradients.size(); releasedGradientCount++) {
+            gradients.set(releasedGradientCount, null);
+        }
+    }
+
+    private void writeRemainingDefs(SVGStreamWriter writer) throws IOException {
+        if (_svgDefs != null && _svgDefs.hasChildNodes()) {
+            writer.writeNode(_svgDefs);
+            _svgDefs.getParentNode().removeChild(_svgDefs);
+            _svgDefs = null;
+            _svgStyle = null;
+        }
+    }
+
+    private boolean isInDefs() {
+        Element defs = _svgDefs;
+        if (defs == null) {
+            return false;
+        }
+
+        for (Element g : _svgGs) {
+            if (g.getParentNode() == defs) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Starts new frame. Following drawing goes to the frame.
+     *
+     * @param id Id of the frame group
+     */
+    public void beginFrame(String id) {
+        if (frameGroup != null) {
+            throw new IllegalStateException("Previous frame was not finished");
+        }
+
+        createDefGroup(bounds, id, zoom);
+        frameGroup = _svgGs.peek();
+    }
+
+    private Element finishFrame() {
+        if (frameGroup == null) {
+            throw new IllegalStateException("No frame started");
+        }
+
+        while (!_svgGs.isEmpty()) {
+            _svgGs.pop();
+        }
+
+        Element g = frameGroup;
+        frameGroup = null;
+        frameDefs = null;
+        g.getParentNode().removeChild(g);
+        return g;
+    }
+
+    /**
+     * Writes current frame as standalone SVG document which references the
+     * library and releases the frame.
+     *
+     * @param os Output stream
+     * @throws IOException
+     */
+    public void writeFrame(OutputStream os) throws IOException {
+        Element g = finishFrame();
+        try (SVGStreamWriter writer = new SVGStreamWriter(os)) {
+            writer.writeStartDocument();
+            writer.writeStartElement(_svg.getDocumentElement());
+            writer.writeNode(g);
+            writer.writeEndElement();
+        }
+    }
+
+    /**
+     * Starts library of shared definitions. Definitions are then written to
+     * it as they are finished, the library is finished by endLibrary.
+     *
+     * @param os Output stream
+     * @throws IOException
+     */
+    public void startLibrary(OutputStream os) throws IOException {
+        libraryWriter = new SVGStreamWriter(os);
+        libraryWriter.writeStartDocument();
+        libraryWriter.writeStartElement(_svg.getDocumentElement());
+        libraryWriter.writeStartElement(getDefs());
+    }
+
+    /**
+     * Writes remaining definitions and finishes the library.
+     *
+     * @throws IOException
+     */
+    public void endLibrary() throws IOException {
+        writeFinishedDefs();
+        if (_svgDefs != null) {
+            NodeList children = _svgDefs.getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                libraryWriter.writeNode(children.item(i));
+            }
+        }
+
+        libraryWriter.writeEndElement();
+        libraryWriter.writeEndElement();
+        libraryWriter.close();
+        libraryWriter = null;
+    }
+
+    /**
+     * Starts single animated document. Frames are then written by
+     * writeAnimationFrame and document is finished by endAnimation.
+     *
+     * @param os Output stream
+     * @param frameCount Number of frames
+     * @param frameRate Frame rate
+     * @throws IOException
+     */
+    public void startAnimation(OutputStream os, int frameCount, float frameRate) throws IOException {
+        animationWriter = new SVGStreamWriter(os);
+        animationFrameCount = frameCount;
+        animationFrameRate = frameRate > 0 ? frameRate : 1;
+        animationWriter.writeStartDocument();
+        animationWriter.writeStartElement(_svg.getDocumentElement());
+    }
+
+    /**
+     * Writes current frame to the animated document and releases the frame.
+     *
+     * @param index Index of the frame in the animation
+     * @throws IOException
+     */
+    public void writeAnimationFrame(int index) throws IOException {
+        Element g = finishFrame();
+        if (animationFrameCount > 1) {
+            if (index > 0) {
+                g.setAttribute("display", "none");
+            }
+
+            Element animate = _svg.createElement("animate");
+            animate.setAttribute("attributeName", "display");
+            animate.setAttribute("calcMode", "discrete");
+            animate.setAttribute("dur", (animationFrameCount / animationFrameRate) + "s");
+            animate.setAttribute("repeatCount", "indefinite");
+            String start = Double.toString(index / (double) animationFrameCount);
+            String end = Double.toString((index + 1) / (double) animationFrameCount);
+            if (index == 0) {
+                animate.setAttribute("values", "inline;none");
+                animate.setAttribute("keyTimes", "0;" + end);
+            } else {
+                animate.setAttribute("values", "none;inline;none");
+                animate.setAttribute("keyTimes", "0;" + start + ";" + end);
+            }
+
+            g.insertBefore(animate, g.getFirstChild());
+        }
+
+        animationWriter.writeNode(g);
+        animationWriter.flush();
+    }
+
+    /**
+     * Writes shared definitions and finishes the animated document.
+     *
+     * @throws IOException
+     */
+    public void endAnimation() throws IOException {
+        writeFinishedDefs();
+        writeRemainingDefs(animationWriter);
+        animationWriter.writeEndElement();
+        animationWriter.close();
+        animationWriter = null;
+    }
+}
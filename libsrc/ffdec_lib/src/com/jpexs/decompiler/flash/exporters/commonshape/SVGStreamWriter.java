@@ -0,0 +1,205 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.exporters.commonshape;
+
+import com.jpexs.helpers.utf8.Utf8OutputStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Writes SVG elements to a stream with StAX. Elements are written as soon as
+ * they are passed in, so the caller can drop them afterwards.
+ *
+ * @author JPEXS
+ */
+public class SVGStreamWriter implements AutoCloseable {
+
+    private static final String INDENT = "  ";
+
+    private final Writer out;
+
+    private final XMLStreamWriter writer;
+
+    private int depth = 0;
+
+    public SVGStreamWriter(OutputStream os) throws IOException {
+        out = new Utf8OutputStreamWriter(os);
+        try {
+            writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Writes XML declaration and SVG doctype
+     *
+     * @throws IOException
+     */
+    public void writeStartDocument() throws IOException {
+        try {
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeCharacters("\n");
+            writer.writeDTD("<!DOCTYPE svg PUBLIC \"-//W3C//DTD SVG 1.0//EN\" \"http://www.w3.org/TR/2001/REC-SVG-20010904/DTD/svg10.dtd\">");
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Writes start tag of the element with its attributes, but without its
+     * children. Must be closed by writeEndElement.
+     *
+     * @param element Element
+     * @throws IOException
+     */
+    public void writeStartElement(Element element) throws IOException {
+        try {
+            writeIndent();
+            writer.writeStartElement(element.getTagName());
+            writeAttributes(element);
+            depth++;
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    public void writeEndElement() throws IOException {
+        try {
+            depth--;
+            writeIndent();
+            writer.writeEndElement();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Writes node including all of its children
+     *
+     * @param node Node
+     * @throws IOException
+     */
+    public void writeNode(Node node) throws IOException {
+        try {
+            writeNode(node, true);
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private void writeNode(Node node, boolean indent) throws XMLStreamException {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                Element element = (Element) node;
+                NodeList children = element.getChildNodes();
+                if (indent) {
+                    writeIndent();
+                }
+
+                if (children.getLength() == 0) {
+                    writer.writeEmptyElement(element.getTagName());
+                    writeAttributes(element);
+                    break;
+                }
+
+                writer.writeStartElement(element.getTagName());
+                writeAttributes(element);
+                boolean indentChildren = indent && !hasTextChild(element);
+                depth++;
+                for (int i = 0; i < children.getLength(); i++) {
+                    writeNode(children.item(i), indentChildren);
+                }
+
+                depth--;
+                if (indentChildren) {
+                    writeIndent();
+                }
+
+                writer.writeEndElement();
+                break;
+            case Node.TEXT_NODE:
+                writer.writeCharacters(node.getNodeValue());
+                break;
+            case Node.CDATA_SECTION_NODE:
+                writer.writeCData(node.getNodeValue());
+                break;
+            case Node.COMMENT_NODE:
+                writer.writeComment(node.getNodeValue());
+                break;
+        }
+    }
+
+    private static boolean hasTextChild(Element element) {
+        NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            short type = children.item(i).getNodeType();
+            if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void writeAttributes(Element element) throws XMLStreamException {
+        if (element.getParentNode() != null && element.getParentNode().getNodeType() == Node.DOCUMENT_NODE && element.getNamespaceURI() != null) {
+            writer.writeDefaultNamespace(element.getNamespaceURI());
+        }
+
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attr = attributes.item(i);
+            writer.writeAttribute(attr.getNodeName(), attr.getNodeValue());
+        }
+    }
+
+    private void writeIndent() throws XMLStreamException {
+        writer.writeCharacters("\n");
+        for (int i = 0; i < depth; i++) {
+            writer.writeCharacters(INDENT);
+        }
+    }
+
+    public void flush() throws IOException {
+        try {
+            writer.flush();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+            out.flush();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+}
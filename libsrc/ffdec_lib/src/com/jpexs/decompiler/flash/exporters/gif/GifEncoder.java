@@ -0,0 +1,677 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.exporters.gif;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import net.weiner.kevin.NeuQuant;
+
+/**
+ * Animated GIF encoder.
+ *
+ * Each frame is compared with the previous one and only the bounding
+ * rectangle of the changed pixels is stored, unchanged pixels inside it use
+ * the transparent color. Frames which do not change anything only extend the
+ * delay of the previous frame. When a pixel becomes transparent, the previous
+ * frame is disposed to background and the frame is stored whole.
+ *
+ * Color quantization and LZW compression of the frames run in parallel, the
+ * frames are written in order. The palette is either computed for each frame,
+ * or once from a sample of the first frames and shared by all frames.
+ *
+ * @author JPEXS
+ */
+public class GifEncoder {
+
+    private static final int SAMPLE_FACTOR = 10;
+
+    private static final int GLOBAL_PALETTE_FRAMES = 16;
+
+    private static final int GLOBAL_PALETTE_MAX_SAMPLES = 1 << 20;
+
+    private static final int DISPOSAL_NONE = 1;
+
+    private static final int DISPOSAL_BACKGROUND = 2;
+
+    private final OutputStream os;
+
+    private final int delayMs;
+
+    private final boolean globalPalette;
+
+    private final ExecutorService executor;
+
+    private final int maxEncodingFrames;
+
+    private final Deque<Future<EncodedFrame>> encodingFrames = new ArrayDeque<>();
+
+    // analyzed frames which are not submitted yet
+    private final List<Frame> waitingFrames = new ArrayList<>();
+
+    private int width;
+
+    private int height;
+
+    private Frame lastFrame;
+
+    private boolean firstFrameTransparent;
+
+    private Palette sharedPalette;
+
+    private boolean headerWritten = false;
+
+    private boolean finished = false;
+
+    /**
+     * Frame before encoding.
+     */
+    private static class Frame {
+
+        private final int[] pixels;
+
+        // pixels under the frame, null when the frame is drawn on cleared canvas
+        private final int[] base;
+
+        private int x;
+
+        private int y;
+
+        private int width;
+
+        private int height;
+
+        private int delayMs;
+
+        private int disposal = DISPOSAL_NONE;
+
+        public Frame(int[] pixels, int[] base, int x, int y, int width, int height, int delayMs) {
+            this.pixels = pixels;
+            this.base = base;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.delayMs = delayMs;
+        }
+    }
+
+    /**
+     * Frame after encoding.
+     */
+    private static class EncodedFrame {
+
+        private Frame frame;
+
+        private Palette palette;
+
+        private int transparentIndex;
+
+        private byte[] data;
+    }
+
+    /**
+     * Palette with quantizer mapping colors to it.
+     */
+    private static class Palette {
+
+        private final byte[] colors;
+
+        private final NeuQuant quant;
+
+        // index which is never returned by map
+        private int reservedIndex = -1;
+
+        public Palette(byte[] colors, NeuQuant quant) {
+            this.colors = colors;
+            this.quant = quant;
+        }
+
+        public int map(int rgb) {
+            int index = quant.map(rgb & 0xff, (rgb >> 8) & 0xff, (rgb >> 16) & 0xff);
+            if (index == reservedIndex) {
+                index = findClosest(rgb, reservedIndex);
+            }
+
+            return index;
+        }
+
+        public int getRgb(int index) {
+            return ((colors[index * 3] & 0xff) << 16) | ((colors[index * 3 + 1] & 0xff) << 8) | (colors[index * 3 + 2] & 0xff);
+        }
+
+        public int findClosest(int rgb, int excludedIndex) {
+            int r = (rgb >> 16) & 0xff;
+            int g = (rgb >> 8) & 0xff;
+            int b = rgb & 0xff;
+            int minIndex = 0;
+            int minDistance = Integer.MAX_VALUE;
+            for (int i = 0; i < colors.length / 3; i++) {
+                if (i == excludedIndex) {
+                    continue;
+                }
+
+                int dr = r - (colors[i * 3] & 0xff);
+                int dg = g - (colors[i * 3 + 1] & 0xff);
+                int db = b - (colors[i * 3 + 2] & 0xff);
+                int d = dr * dr + dg * dg + db * db;
+                if (d < minDistance) {
+                    minDistance = d;
+                    minIndex = i;
+                }
+            }
+
+            return minIndex;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file Output file
+     * @param delayMs Delay of each frame in milliseconds
+     * @param globalPalette Use one palette for all frames
+     * @param threadCount Number of encoding threads
+     * @throws IOException On error
+     */
+    public GifEncoder(File file, int delayMs, boolean globalPalette, int threadCount) throws IOException {
+        this.os = new BufferedOutputStream(new FileOutputStream(file));
+        this.delayMs = delayMs;
+        this.globalPalette = globalPalette;
+        this.executor = Executors.newFixedThreadPool(threadCount);
+        this.maxEncodingFrames = threadCount * 2;
+    }
+
+    /**
+     * Adds frame. All frames must have the size of the first frame.
+     *
+     * @param image Image
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    public void addFrame(BufferedImage image) throws IOException, InterruptedException {
+        if (lastFrame == null) {
+            width = image.getWidth();
+            height = image.getHeight();
+        }
+
+        int[] pixels = getPixels(image);
+        if (lastFrame == null) {
+            firstFrameTransparent = hasTransparency(pixels, 0, 0, width, height);
+            addWaitingFrame(new Frame(pixels, null, 0, 0, width, height, delayMs));
+            return;
+        }
+
+        int[] prev = lastFrame.pixels;
+        int minX = width;
+        int minY = height;
+        int maxX = -1;
+        int maxY = -1;
+        boolean clear = false;
+        for (int y = 0; y < height; y++) {
+            int pos = y * width;
+            for (int x = 0; x < width; x++, pos++) {
+                if (!isSame(pixels[pos], prev[pos])) {
+                    if (x < minX) {
+                        minX = x;
+                    }
+                    if (x > maxX) {
+                        maxX = x;
+                    }
+                    if (y < minY) {
+                        minY = y;
+                    }
+                    maxY = y;
+                    if (!isOpaque(pixels[pos])) {
+                        clear = true;
+                    }
+                }
+            }
+        }
+
+        if (maxX == -1) {
+            lastFrame.delayMs += delayMs;
+            return;
+        }
+
+        Frame frame;
+        if (clear) {
+            // transparent pixels cannot be drawn over the previous frame
+            lastFrame.x = 0;
+            lastFrame.y = 0;
+            lastFrame.width = width;
+            lastFrame.height = height;
+            lastFrame.disposal = DISPOSAL_BACKGROUND;
+            frame = createClearedFrame(pixels);
+        } else {
+            frame = new Frame(pixels, prev, minX, minY, maxX - minX + 1, maxY - minY + 1, delayMs);
+        }
+
+        addWaitingFrame(frame);
+    }
+
+    private Frame createClearedFrame(int[] pixels) {
+        int minX = width;
+        int minY = height;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = 0; y < height; y++) {
+            int pos = y * width;
+            for (int x = 0; x < width; x++, pos++) {
+                if (isOpaque(pixels[pos])) {
+                    if (x < minX) {
+                        minX = x;
+                    }
+                    if (x > maxX) {
+                        maxX = x;
+                    }
+                    if (y < minY) {
+                        minY = y;
+                    }
+                    maxY = y;
+                }
+            }
+        }
+
+        if (maxX == -1) {
+            return new Frame(pixels, null, 0, 0, 1, 1, delayMs);
+        }
+
+        return new Frame(pixels, null, minX, minY, maxX - minX + 1, maxY - minY + 1, delayMs);
+    }
+
+    private void addWaitingFrame(Frame frame) throws IOException, InterruptedException {
+        lastFrame = frame;
+        waitingFrames.add(frame);
+        if (globalPalette && sharedPalette == null) {
+            if (waitingFrames.size() <= GLOBAL_PALETTE_FRAMES) {
+                return;
+            }
+
+            sharedPalette = createSharedPalette();
+        }
+
+        // the last frame is kept as its disposal depends on the next frame
+        while (waitingFrames.size() > 1) {
+            submit(waitingFrames.remove(0));
+        }
+    }
+
+    /**
+     * Encodes the remaining frames and closes the file.
+     *
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    public void finish() throws IOException, InterruptedException {
+        if (finished) {
+            return;
+        }
+
+        finished = true;
+        try {
+            if (lastFrame != null) {
+                if (firstFrameTransparent) {
+                    // the canvas must be cleared when the animation repeats
+                    lastFrame.x = 0;
+                    lastFrame.y = 0;
+                    lastFrame.width = width;
+                    lastFrame.height = height;
+                    lastFrame.disposal = DISPOSAL_BACKGROUND;
+                }
+
+                if (globalPalette && sharedPalette == null) {
+                    sharedPalette = createSharedPalette();
+                }
+
+                for (Frame frame : waitingFrames) {
+                    submit(frame);
+                }
+
+                waitingFrames.clear();
+                while (!encodingFrames.isEmpty()) {
+                    write(getResult(encodingFrames.removeFirst()));
+                }
+
+                os.write(0x3b);
+            }
+        } finally {
+            executor.shutdownNow();
+            os.close();
+        }
+    }
+
+    /**
+     * Stops encoding after an error and closes the file.
+     */
+    public void abort() {
+        if (finished) {
+            return;
+        }
+
+        finished = true;
+        executor.shutdownNow();
+        try {
+            os.close();
+        } catch (IOException ex) {
+            //ignore
+        }
+    }
+
+    private void submit(Frame frame) throws IOException, InterruptedException {
+        while (encodingFrames.size() >= maxEncodingFrames) {
+            write(getResult(encodingFrames.removeFirst()));
+        }
+
+        final Palette palette = sharedPalette;
+        encodingFrames.add(executor.submit(() -> encode(frame, palette)));
+    }
+
+    private static EncodedFrame getResult(Future<EncodedFrame> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IOException(cause);
+        }
+    }
+
+    private int[] getPixels(BufferedImage image) {
+        if (image.getWidth() != width || image.getHeight() != height || image.getType() != BufferedImage.TYPE_INT_ARGB_PRE && image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            BufferedImage converted = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = converted.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+            image = converted;
+        }
+
+        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int[] pixels = new int[width * height];
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            System.arraycopy(data, 0, pixels, 0, pixels.length);
+            return pixels;
+        }
+
+        for (int i = 0; i < pixels.length; i++) {
+            int argb = data[i];
+            int a = argb >>> 24;
+            if (a == 0 || a == 0xff) {
+                pixels[i] = argb;
+            } else {
+                int r = Math.min(255, ((argb >> 16) & 0xff) * 255 / a);
+                int g = Math.min(255, ((argb >> 8) & 0xff) * 255 / a);
+                int b = Math.min(255, (argb & 0xff) * 255 / a);
+                pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+
+        return pixels;
+    }
+
+    private static boolean isOpaque(int argb) {
+        return (argb >>> 24) >= 0x80;
+    }
+
+    private static boolean isSame(int argb1, int argb2) {
+        boolean opaque1 = isOpaque(argb1);
+        if (opaque1 != isOpaque(argb2)) {
+            return false;
+        }
+
+        return !opaque1 || ((argb1 ^ argb2) & 0xffffff) == 0;
+    }
+
+    private boolean hasTransparency(int[] pixels, int x, int y, int w, int h) {
+        for (int j = y; j < y + h; j++) {
+            for (int i = x; i < x + w; i++) {
+                if (!isOpaque(pixels[j * width + i])) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets pixels of the frame rectangle, transparent and unchanged pixels are
+     * zero.
+     */
+    private int[] getFramePixels(Frame frame) {
+        int[] result = new int[frame.width * frame.height];
+        int pos = 0;
+        for (int y = frame.y; y < frame.y + frame.height; y++) {
+            int srcPos = y * width + frame.x;
+            for (int x = 0; x < frame.width; x++, pos++, srcPos++) {
+                int argb = frame.pixels[srcPos];
+                if (isOpaque(argb) && (frame.base == null || !isSame(argb, frame.base[srcPos]))) {
+                    result[pos] = argb;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private Palette createSharedPalette() {
+        long total = 0;
+        for (Frame frame : waitingFrames) {
+            total += (long) frame.width * frame.height;
+        }
+
+        int step = (int) Math.max(1, total / GLOBAL_PALETTE_MAX_SAMPLES);
+        int[] samples = new int[(int) Math.min(total, GLOBAL_PALETTE_MAX_SAMPLES) + 1];
+        int count = 0;
+        int skip = 0;
+        for (Frame frame : waitingFrames) {
+            for (int argb : getFramePixels(frame)) {
+                if (isOpaque(argb) && skip-- <= 0 && count < samples.length) {
+                    samples[count++] = argb;
+                    skip = step - 1;
+                }
+            }
+        }
+
+        Palette palette = createPalette(samples, count);
+
+        // least used color is given up for transparency
+        int[] usage = new int[256];
+        for (int i = 0; i < count; i++) {
+            usage[palette.map(samples[i])]++;
+        }
+
+        palette.reservedIndex = getLeastUsed(usage);
+        return palette;
+    }
+
+    private static Palette createPalette(int[] samples, int count) {
+        if (count == 0) {
+            samples = new int[]{0};
+            count = 1;
+        }
+
+        NeuQuant quant = new NeuQuant(samples, count * 3, SAMPLE_FACTOR);
+        return new Palette(quant.process(), quant);
+    }
+
+    private static int getLeastUsed(int[] usage) {
+        int result = 0;
+        for (int i = 1; i < usage.length; i++) {
+            if (usage[i] < usage[result]) {
+                result = i;
+            }
+        }
+
+        return result;
+    }
+
+    private EncodedFrame encode(Frame frame, Palette palette) {
+        int[] pixels = getFramePixels(frame);
+        boolean transparent = false;
+        int opaqueCount = 0;
+        for (int argb : pixels) {
+            if (isOpaque(argb)) {
+                opaqueCount++;
+            } else {
+                transparent = true;
+            }
+        }
+
+        if (palette == null) {
+            int[] opaque = new int[opaqueCount];
+            int pos = 0;
+            for (int argb : pixels) {
+                if (isOpaque(argb)) {
+                    opaque[pos++] = argb;
+                }
+            }
+
+            palette = createPalette(opaque, opaqueCount);
+        }
+
+        byte[] indices = new byte[pixels.length];
+        int[] usage = new int[256];
+        int lastRgb = -1;
+        int lastIndex = 0;
+        for (int i = 0; i < pixels.length; i++) {
+            int argb = pixels[i];
+            if (!isOpaque(argb)) {
+                continue;
+            }
+
+            int rgb = argb & 0xffffff;
+            if (rgb != lastRgb) {
+                lastRgb = rgb;
+                lastIndex = palette.map(rgb);
+            }
+
+            indices[i] = (byte) lastIndex;
+            usage[lastIndex]++;
+        }
+
+        int transparentIndex = -1;
+        if (transparent) {
+            if (palette.reservedIndex != -1) {
+                transparentIndex = palette.reservedIndex;
+            } else {
+                // frame palette, least used color is moved to the closest one
+                transparentIndex = getLeastUsed(usage);
+                if (usage[transparentIndex] > 0) {
+                    int replacement = palette.findClosest(palette.getRgb(transparentIndex), transparentIndex);
+                    for (int i = 0; i < indices.length; i++) {
+                        if ((indices[i] & 0xff) == transparentIndex && isOpaque(pixels[i])) {
+                            indices[i] = (byte) replacement;
+                        }
+                    }
+                }
+            }
+
+            for (int i = 0; i < pixels.length; i++) {
+                if (!isOpaque(pixels[i])) {
+                    indices[i] = (byte) transparentIndex;
+                }
+            }
+        }
+
+        EncodedFrame result = new EncodedFrame();
+        result.frame = frame;
+        result.palette = palette;
+        result.transparentIndex = transparentIndex;
+        result.data = GifLzwEncoder.encode(indices, 8);
+        return result;
+    }
+
+    private void write(EncodedFrame encoded) throws IOException {
+        Frame frame = encoded.frame;
+        boolean localPalette = headerWritten && encoded.palette != sharedPalette;
+        if (!headerWritten) {
+            writeHeader(encoded.palette);
+            headerWritten = true;
+        }
+
+        // graphic control extension
+        os.write(0x21);
+        os.write(0xf9);
+        os.write(4);
+        os.write((frame.disposal << 2) | (encoded.transparentIndex == -1 ? 0 : 1));
+        writeShort(Math.min(0xffff, Math.round(frame.delayMs / 10.0f)));
+        os.write(encoded.transparentIndex == -1 ? 0 : encoded.transparentIndex);
+        os.write(0);
+
+        // image descriptor
+        os.write(0x2c);
+        writeShort(frame.x);
+        writeShort(frame.y);
+        writeShort(frame.width);
+        writeShort(frame.height);
+        if (localPalette) {
+            os.write(0x87);
+            os.write(encoded.palette.colors);
+        } else {
+            os.write(0);
+        }
+
+        os.write(encoded.data);
+    }
+
+    private void writeHeader(Palette palette) throws IOException {
+        os.write(new byte[]{'G', 'I', 'F', '8', '9', 'a'});
+
+        // logical screen descriptor
+        writeShort(width);
+        writeShort(height);
+        os.write(0xf7);
+        os.write(0);
+        os.write(0);
+        os.write(palette.colors);
+
+        // repeat forever
+        os.write(0x21);
+        os.write(0xff);
+        os.write(11);
+        os.write(new byte[]{'N', 'E', 'T', 'S', 'C', 'A', 'P', 'E', '2', '.', '0'});
+        os.write(3);
+        os.write(1);
+        writeShort(0);
+        os.write(0);
+    }
+
+    private void writeShort(int value) throws IOException {
+        os.write(value & 0xff);
+        os.write((value >> 8) & 0xff);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.exporters.gif;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * LZW compression of GIF image data.
+ *
+ * @author JPEXS
+ */
+final class GifLzwEncoder {
+
+    private static final int MAX_BITS = 12;
+
+    private static final int MAX_CODE = 1 << MAX_BITS;
+
+    private static final int HASH_SIZE = 5003;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private final byte[] block = new byte[255];
+
+    private int blockLength = 0;
+
+    private int bitBuffer = 0;
+
+    private int bitCount = 0;
+
+    private GifLzwEncoder() {
+    }
+
+    /**
+     * Compresses indexed pixels.
+     *
+     * @param pixels Palette indices
+     * @param colorDepth Bits per pixel
+     * @return Image data: minimum code size, data sub-blocks and block
+     * terminator
+     */
+    static byte[] encode(byte[] pixels, int colorDepth) {
+        GifLzwEncoder encoder = new GifLzwEncoder();
+        int initCodeSize = Math.max(2, colorDepth);
+        encoder.out.write(initCodeSize);
+        encoder.compress(pixels, initCodeSize);
+        encoder.flushBlock();
+        encoder.out.write(0);
+        return encoder.out.toByteArray();
+    }
+
+    private void compress(byte[] pixels, int initCodeSize) {
+        int clearCode = 1 << initCodeSize;
+        int endCode = clearCode + 1;
+        int codeSize = initCodeSize + 1;
+        int nextCode = clearCode + 2;
+        int[] hashKeys = new int[HASH_SIZE];
+        int[] hashCodes = new int[HASH_SIZE];
+        Arrays.fill(hashKeys, -1);
+
+        writeCode(clearCode, codeSize);
+        if (pixels.length == 0) {
+            writeCode(endCode, codeSize);
+            flushBits();
+            return;
+        }
+
+        int prefix = pixels[0] & 0xff;
+        for (int i = 1; i < pixels.length; i++) {
+            int c = pixels[i] & 0xff;
+            int key = (c << MAX_BITS) | prefix;
+            int h = ((c << 4) ^ prefix) % HASH_SIZE;
+            int step = h == 0 ? 1 : HASH_SIZE - h;
+            while (hashKeys[h] != -1 && hashKeys[h] != key) {
+                h -= step;
+                if (h < 0) {
+                    h += HASH_SIZE;
+                }
+            }
+
+            if (hashKeys[h] == key) {
+                prefix = hashCodes[h];
+                continue;
+            }
+
+            writeCode(prefix, codeSize);
+            if (nextCode < MAX_CODE) {
+                // the decoder adds its entry one code later, so the code size
+                // grows when the new code does not fit
+                if (nextCode == (1 << codeSize) && codeSize < MAX_BITS) {
+                    codeSize++;
+                }
+                hashKeys[h] = key;
+                hashCodes[h] = nextCode++;
+            } else {
+                writeCode(clearCode, codeSize);
+                Arrays.fill(hashKeys, -1);
+                codeSize = initCodeSize + 1;
+                nextCode = clearCode + 2;
+            }
+
+            prefix = c;
+        }
+
+        writeCode(prefix, codeSize);
+        if (nextCode == (1 << codeSize) && codeSize < MAX_BITS) {
+            codeSize++;
+        }
+        writeCode(endCode, codeSize);
+        flushBits();
+    }
+
+    private void writeCode(int code, int codeSize) {
+        bitBuffer |= code << bitCount;
+        bitCount += codeSize;
+        while (bitCount >= 8) {
+            writeByte(bitBuffer & 0xff);
+            bitBuffer >>>= 8;
+            bitCount -= 8;
+        }
+    }
+
+    private void flushBits() {
+        if (bitCount > 0) {
+            writeByte(bitBuffer & 0xff);
+            bitBuffer = 0;
+            bitCount = 0;
+        }
+    }
+
+    private void writeByte(int b) {
+        block[blockLength++] = (byte) b;
+        if (blockLength == block.length) {
+            flushBlock();
+        }
+    }
+
+    private void flushBlock() {
+        if (blockLength > 0) {
+            out.write(blockLength);
+            out.write(block, 0, blockLength);
+            blockLength = 0;
+        }
+    }
+}
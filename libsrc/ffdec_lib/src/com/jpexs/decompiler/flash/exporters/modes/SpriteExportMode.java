@@ -29,4 +29,6 @@ public enum SpriteExportMode {
     PDF,
     BMP,
     SWF,
+    SVG_LIBRARY,
+    SVG_ANIMATED,
 }
@@ -0,0 +1,98 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.exporters.script;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * List of dependencies with hashed contains.
+ *
+ * Dependency parsers check contains before every add, which is linear for
+ * plain lists. Order of items is kept.
+ *
+ * @author JPEXS
+ */
+public class DependencyList extends AbstractList<Dependency> {
+
+    private final List<Dependency> items = new ArrayList<>();
+
+    private final Map<Dependency, Integer> counts = new HashMap<>();
+
+    public DependencyList() {
+    }
+
+    @Override
+    public Dependency get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return counts.containsKey(o);
+    }
+
+    @Override
+    public void add(int index, Dependency element) {
+        items.add(index, element);
+        counts.merge(element, 1, Integer::sum);
+        modCount++;
+    }
+
+    @Override
+    public Dependency set(int index, Dependency element) {
+        Dependency old = items.set(index, element);
+        uncount(old);
+        counts.merge(element, 1, Integer::sum);
+        return old;
+    }
+
+    @Override
+    public Dependency remove(int index) {
+        Dependency old = items.remove(index);
+        uncount(old);
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        items.clear();
+        counts.clear();
+        modCount++;
+    }
+
+    private void uncount(Dependency dependency) {
+        Integer count = counts.get(dependency);
+        if (count == null) {
+            return;
+        }
+        if (count == 1) {
+            counts.remove(dependency);
+        } else {
+            counts.put(dependency, count - 1);
+        }
+    }
+}
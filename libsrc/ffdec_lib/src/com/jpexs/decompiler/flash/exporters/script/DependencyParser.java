@@ -46,7 +46,10 @@ import com.jpexs.decompiler.flash.configuration.Configuration;
 import com.jpexs.decompiler.graph.DottedChain;
 import com.jpexs.decompiler.graph.TypeItem;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class DependencyParser {
 
@@ -122,7 +125,54 @@ public class DependencyParser {
         }
     }
 
-    public static void parseDependenciesFromMethodInfo(AbcIndexing abcIndex, Trait trait, int scriptIndex, int classIndex, boolean isStatic, String ignoredCustom, ABC abc, int method_index, List<Dependency> dependencies, DottedChain ignorePackage, List<DottedChain> fullyQualifiedNames, List<Integer> visitedMethods) throws InterruptedException {
+    /**
+     * Parses dependencies of a method, its body traits and inner functions.
+     * Results of top level calls (no visited methods) are cached per ABC and
+     * shared by all the calls from the same trait, script and class with the
+     * same import context.
+     *
+     * @param abcIndex ABC index
+     * @param trait Trait
+     * @param scriptIndex Script index
+     * @param classIndex Class index
+     * @param isStatic Is static
+     * @param ignoredCustom Ignored custom namespace
+     * @param abc ABC
+     * @param method_index Method index
+     * @param dependencies Result dependencies
+     * @param ignorePackage Ignored package
+     * @param fullyQualifiedNames Fully qualified names
+     * @param visitedMethods Visited methods
+     * @throws InterruptedException On interrupt
+     */
+    public static void parseDependenciesFromMethodInfo(AbcIndexing abcIndex, Trait trait, int scriptIndex, int classIndex, boolean isStatic, String ignoredCustom, ABC abc, int method_index, List<Dependency> dependencies, DottedChain ignorePackage, List<DottedChain> fullyQualifiedNames, Set<Integer> visitedMethods) throws InterruptedException {
+        if ((method_index < 0) || (method_index >= abc.method_info.size())) {
+            return;
+        }
+        if (!visitedMethods.isEmpty()) {
+            parseMethodInfo(abcIndex, trait, scriptIndex, classIndex, isStatic, ignoredCustom, abc, method_index, dependencies, ignorePackage, fullyQualifiedNames, visitedMethods);
+            return;
+        }
+
+        MethodDependencyCache cache = abc.getMethodDependencyCache();
+        MethodDependencyCache.Key key = new MethodDependencyCache.Key(abcIndex, method_index, abc.findBody(method_index), trait, scriptIndex, classIndex, isStatic, ignoredCustom, ignorePackage, fullyQualifiedNames, Configuration.autoDeobfuscate.get());
+        List<Dependency> methodDependencies = cache.get(key, visitedMethods);
+        if (methodDependencies == null) {
+            DependencyList list = new DependencyList();
+            parseMethodInfo(abcIndex, trait, scriptIndex, classIndex, isStatic, ignoredCustom, abc, method_index, list, ignorePackage, fullyQualifiedNames, visitedMethods);
+            methodDependencies = Collections.unmodifiableList(new ArrayList<>(list));
+            cache.put(key, methodDependencies, new HashSet<>(visitedMethods));
+        }
+
+        //same order as if parsed directly to the list
+        for (Dependency d : methodDependencies) {
+            if (!dependencies.contains(d)) {
+                dependencies.add(d);
+            }
+        }
+    }
+
+    private static void parseMethodInfo(AbcIndexing abcIndex, Trait trait, int scriptIndex, int classIndex, boolean isStatic, String ignoredCustom, ABC abc, int method_index, List<Dependency> dependencies, DottedChain ignorePackage, List<DottedChain> fullyQualifiedNames, Set<Integer> visitedMethods) throws InterruptedException {
         if ((method_index < 0) || (method_index >= abc.method_info.size())) {
             return;
         }
@@ -153,7 +203,7 @@ public class DependencyParser {
                 if (ins.definition instanceof NewFunctionIns) {
                     if (ins.operands[0] != method_index) {
                         if (!visitedMethods.contains(ins.operands[0])) {
-                            parseDependenciesFromMethodInfo(abcIndex, trait, scriptIndex, classIndex, isStatic, ignoredCustom, abc, ins.operands[0], dependencies, ignorePackage, fullyQualifiedNames, visitedMethods);
+                            parseMethodInfo(abcIndex, trait, scriptIndex, classIndex, isStatic, ignoredCustom, abc, ins.operands[0], dependencies, ignorePackage, fullyQualifiedNames, visitedMethods);
                         }
                     }
                 }
@@ -162,7 +162,7 @@ public class LinkReportExporter {
             for (Trait it : ii.instance_traits.traits) {
                 reportTrait(scriptIndex, externalDefs, existingObjects, swf, abc, it);
             }
-            List<Dependency> dependencies = new ArrayList<>();
+            List<Dependency> dependencies = new DependencyList();
             sb.append(indent(3)).append("<dep id=\"AS3\" />").append(newLineChar); //Automatic
 
             tc.getDependencies(swf.getAbcIndex(), scriptIndex, -1, false, null, abc, dependencies, new DottedChain(new String[]{"FAKE!PACKAGE"}), new ArrayList<>());
@@ -0,0 +1,195 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.exporters.script;
+
+import com.jpexs.decompiler.flash.abc.avm2.parser.script.AbcIndexing;
+import com.jpexs.decompiler.flash.abc.types.MethodBody;
+import com.jpexs.decompiler.flash.abc.types.traits.Trait;
+import com.jpexs.decompiler.graph.DottedChain;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dependencies of methods of one ABC.
+ *
+ * Each method is parsed once for all script packs which reference it, which
+ * is used in import generation and in link reports. Entries are keyed by the
+ * method body, the trait, script and class it is reached from, and the import
+ * context. The cache is thread safe, so script
+ * packs can be processed in parallel. Modified methods must be invalidated
+ * by invalidateMethod, ABC.clearPacksCache clears everything.
+ *
+ * @author JPEXS
+ */
+public class MethodDependencyCache {
+
+    private final Map<Key, Entry> cache = new ConcurrentHashMap<>();
+
+    private static class Entry {
+
+        private final List<Dependency> dependencies;
+
+        private final Set<Integer> methods;
+
+        public Entry(List<Dependency> dependencies, Set<Integer> methods) {
+            this.dependencies = dependencies;
+            this.methods = methods;
+        }
+    }
+
+    /**
+     * Gets dependencies of a method. When found, the indices of the method and
+     * its inner functions are added to the visited methods, the same way as
+     * when the method is parsed.
+     *
+     * @param key Key
+     * @param visitedMethods Visited methods
+     * @return Dependencies or null when not cached
+     */
+    public List<Dependency> get(Key key, Set<Integer> visitedMethods) {
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        visitedMethods.addAll(entry.methods);
+        return entry.dependencies;
+    }
+
+    /**
+     * Stores dependencies of a method.
+     *
+     * @param key Key
+     * @param dependencies Dependencies
+     * @param methods Indices of the method and its inner functions which were
+     * parsed
+     */
+    public void put(Key key, List<Dependency> dependencies, Set<Integer> methods) {
+        cache.put(key, new Entry(dependencies, methods));
+    }
+
+    /**
+     * Removes dependencies of a modified method and of all the methods
+     * containing it as an inner function. Unknown (negative) index clears
+     * everything.
+     *
+     * @param methodIndex Method info index
+     */
+    public void invalidateMethod(int methodIndex) {
+        if (methodIndex < 0) {
+            cache.clear();
+            return;
+        }
+        cache.values().removeIf(entry -> entry.methods.contains(methodIndex));
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * All the parameters which affect the parsed dependencies of a method.
+     */
+    public static class Key {
+
+        private final AbcIndexing abcIndex;
+
+        private final int methodIndex;
+
+        private final MethodBody body;
+
+        private final Trait trait;
+
+        private final int scriptIndex;
+
+        private final int classIndex;
+
+        private final boolean isStatic;
+
+        private final String ignoredCustom;
+
+        private final DottedChain ignorePackage;
+
+        private final List<DottedChain> fullyQualifiedNames;
+
+        private final boolean autoDeobfuscate;
+
+        private final int hash;
+
+        public Key(AbcIndexing abcIndex, int methodIndex, MethodBody body, Trait trait, int scriptIndex, int classIndex, boolean isStatic, String ignoredCustom, DottedChain ignorePackage, List<DottedChain> fullyQualifiedNames, boolean autoDeobfuscate) {
+            this.abcIndex = abcIndex;
+            this.methodIndex = methodIndex;
+            this.body = body;
+            this.trait = trait;
+            this.scriptIndex = scriptIndex;
+            this.classIndex = classIndex;
+            this.isStatic = isStatic;
+            this.ignoredCustom = ignoredCustom;
+            this.ignorePackage = ignorePackage;
+            this.fullyQualifiedNames = new ArrayList<>(fullyQualifiedNames);
+            this.autoDeobfuscate = autoDeobfuscate;
+
+            int h = 7;
+            h = 31 * h + System.identityHashCode(abcIndex);
+            h = 31 * h + methodIndex;
+            h = 31 * h + System.identityHashCode(body);
+            h = 31 * h + System.identityHashCode(trait);
+            h = 31 * h + scriptIndex;
+            h = 31 * h + classIndex;
+            h = 31 * h + (isStatic ? 1 : 0);
+            h = 31 * h + Objects.hashCode(ignoredCustom);
+            h = 31 * h + Objects.hashCode(ignorePackage);
+            h = 31 * h + this.fullyQualifiedNames.hashCode();
+            h = 31 * h + (autoDeobfuscate ? 1 : 0);
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hash == other.hash
+                    && abcIndex == other.abcIndex
+                    && methodIndex == other.methodIndex
+                    && body == other.body
+                    && trait == other.trait
+                    && scriptIndex == other.scriptIndex
+                    && classIndex == other.classIndex
+                    && isStatic == other.isStatic
+                    && autoDeobfuscate == other.autoDeobfuscate
+                    && Objects.equals(ignoredCustom, other.ignoredCustom)
+                    && Objects.equals(ignorePackage, other.ignorePackage)
+                    && fullyQualifiedNames.equals(other.fullyQualifiedNames);
+        }
+    }
+}
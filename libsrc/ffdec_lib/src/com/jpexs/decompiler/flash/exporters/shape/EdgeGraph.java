@@ -0,0 +1,217 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.exporters.shape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Joins edges of one style into connected paths.
+ *
+ * Edges are addressed by their index in the source path. The remaining edges
+ * and the edges starting and ending in each point are kept in linked lists
+ * stored in int arrays, so finding a connecting edge and removing a used edge
+ * take constant time.
+ *
+ * @author JPEXS
+ */
+final class EdgeGraph {
+
+    private static final int NONE = -1;
+
+    private final IEdge[] edges;
+
+    private final int[] fromPoint;
+
+    private final int[] toPoint;
+
+    // remaining edges in the order of the source path
+    private final int[] pathPrev;
+
+    private final int[] pathNext;
+
+    private int pathHead;
+
+    // edges by start point
+    private final int[] fromPrev;
+
+    private final int[] fromNext;
+
+    private final int[] fromHead;
+
+    private final int[] fromTail;
+
+    // edges by end point
+    private final int[] toPrev;
+
+    private final int[] toNext;
+
+    private final int[] toHead;
+
+    private final int[] toTail;
+
+    private EdgeGraph(List<IEdge> path) {
+        int count = path.size();
+        edges = path.toArray(new IEdge[count]);
+        fromPoint = new int[count];
+        toPoint = new int[count];
+        Map<Long, Integer> points = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            fromPoint[i] = getPoint(points, edges[i].getFromX(), edges[i].getFromY());
+            toPoint[i] = getPoint(points, edges[i].getToX(), edges[i].getToY());
+        }
+
+        pathPrev = new int[count];
+        pathNext = new int[count];
+        for (int i = 0; i < count; i++) {
+            pathPrev[i] = i - 1;
+            pathNext[i] = i + 1 < count ? i + 1 : NONE;
+        }
+
+        pathHead = count > 0 ? 0 : NONE;
+
+        int pointCount = points.size();
+        fromPrev = new int[count];
+        fromNext = new int[count];
+        fromHead = new int[pointCount];
+        fromTail = new int[pointCount];
+        toPrev = new int[count];
+        toNext = new int[count];
+        toHead = new int[pointCount];
+        toTail = new int[pointCount];
+        Arrays.fill(fromHead, NONE);
+        Arrays.fill(fromTail, NONE);
+        Arrays.fill(toHead, NONE);
+        Arrays.fill(toTail, NONE);
+        for (int i = 0; i < count; i++) {
+            append(i, fromPoint[i], fromPrev, fromNext, fromHead, fromTail);
+            append(i, toPoint[i], toPrev, toNext, toHead, toTail);
+        }
+    }
+
+    private static int getPoint(Map<Long, Integer> points, int x, int y) {
+        long key = (((long) x) << 32) | (y & 0xffffffffL);
+        Integer point = points.get(key);
+        if (point == null) {
+            point = points.size();
+            points.put(key, point);
+        }
+
+        return point;
+    }
+
+    private static void append(int edge, int point, int[] prev, int[] next, int[] head, int[] tail) {
+        int last = tail[point];
+        prev[edge] = last;
+        next[edge] = NONE;
+        if (last == NONE) {
+            head[point] = edge;
+        } else {
+            next[last] = edge;
+        }
+
+        tail[point] = edge;
+    }
+
+    private static void unlink(int edge, int point, int[] prev, int[] next, int[] head, int[] tail) {
+        int p = prev[edge];
+        int n = next[edge];
+        if (p == NONE) {
+            head[point] = n;
+        } else {
+            next[p] = n;
+        }
+
+        if (n == NONE) {
+            tail[point] = p;
+        } else {
+            prev[n] = p;
+        }
+    }
+
+    private int removeFromPath(int edge) {
+        int p = pathPrev[edge];
+        int n = pathNext[edge];
+        if (p == NONE) {
+            pathHead = n;
+        } else {
+            pathNext[p] = n;
+        }
+
+        if (n != NONE) {
+            pathPrev[n] = p;
+        }
+
+        unlink(edge, fromPoint[edge], fromPrev, fromNext, fromHead, fromTail);
+        unlink(edge, toPoint[edge], toPrev, toNext, toHead, toTail);
+        return n;
+    }
+
+    private void reverse(int edge) {
+        unlink(edge, fromPoint[edge], fromPrev, fromNext, fromHead, fromTail);
+        unlink(edge, toPoint[edge], toPrev, toNext, toHead, toTail);
+        int point = fromPoint[edge];
+        fromPoint[edge] = toPoint[edge];
+        toPoint[edge] = point;
+        edges[edge] = edges[edge].reverseWithNewFillStyle(edges[edge].getFillStyleIdx());
+        append(edge, fromPoint[edge], fromPrev, fromNext, fromHead, fromTail);
+        append(edge, toPoint[edge], toPrev, toNext, toHead, toTail);
+    }
+
+    /**
+     * Reorders edges so that connected edges follow each other. Walks the
+     * path in its order and whenever the next edge does not connect, it
+     * continues with the first remaining edge starting at the current point,
+     * or the first remaining edge ending there, which is then reversed.
+     *
+     * @param path Edges
+     * @param reverseLookup Whether to reverse edges ending at the current point
+     * @return Joined edges
+     */
+    static List<IEdge> join(List<IEdge> path, boolean reverseLookup) {
+        EdgeGraph graph = new EdgeGraph(path);
+        List<IEdge> result = new ArrayList<>(path.size());
+        int prevPoint = NONE;
+        while (graph.pathHead != NONE) {
+            int edge = graph.pathHead;
+            while (edge != NONE) {
+                if (prevPoint != NONE && graph.fromPoint[edge] != prevPoint) {
+                    if (graph.fromHead[prevPoint] != NONE) {
+                        edge = graph.fromHead[prevPoint];
+                    } else if (reverseLookup && graph.toHead[prevPoint] != NONE) {
+                        edge = graph.toHead[prevPoint];
+                        graph.reverse(edge);
+                    } else {
+                        edge = graph.pathHead;
+                        prevPoint = NONE;
+                    }
+
+                    continue;
+                }
+
+                result.add(graph.edges[edge]);
+                prevPoint = graph.toPoint[edge];
+                edge = graph.removeFromPath(edge);
+            }
+        }
+
+        return result;
+    }
+}
@@ -519,156 +519,11 @@ public abstract class ShapeExporterBase implements IShapeExporter {
         for (Integer styleIdx : edgeMap.keySet()) {
             List<IEdge> subPath = edgeMap.get(styleIdx);
             if (subPath != null && subPath.size() > 0) {
-                int idx;
-                IEdge prevEdge = null;
-                List<IEdge> tmpPath = new ArrayList<>();
-                Map<Long, List<IEdge>> coordMap = createCoordMap(subPath);
-                Map<Long, List<IEdge>> reverseCoordMap = createReverseCoordMap(subPath);
-                while (subPath.size() > 0) {
-                    idx = 0;
-                    while (idx < subPath.size()) {
-                        if (prevEdge != null) {
-                            IEdge subPathEdge = subPath.get(idx);
-                            if (prevEdge.getToX() != subPathEdge.getFromX() || prevEdge.getToY() != subPathEdge.getFromY()) {
-                                IEdge edge = findNextEdgeInCoordMap(coordMap, prevEdge);
-                                if (edge != null) {
-                                    idx = subPath.indexOf(edge);
-                                } else {
-                                    IEdge revEdge = findNextEdgeInCoordMap(reverseCoordMap, prevEdge);
-
-                                    if (revEdge != null) {
-                                        if (USE_REVERSE_LOOKUP) {
-                                            idx = subPath.indexOf(revEdge);
-                                            IEdge r = revEdge.reverseWithNewFillStyle(revEdge.getFillStyleIdx());
-                                            updateEdgeInCoordMap(coordMap, revEdge, r);
-                                            updateEdgeInReverseCoordMap(reverseCoordMap, revEdge, r);
-                                            subPath.set(idx, r);
-                                        } else {
-                                            idx = 0;
-                                            prevEdge = null;
-                                        }
-                                    } else {
-                                        idx = 0;
-                                        prevEdge = null;
-                                    }
-                                }
-                                continue;
-                            }
-                        }
-
-                        IEdge edge = subPath.remove(idx);
-                        tmpPath.add(edge);
-                        removeEdgeFromCoordMap(coordMap, edge);
-                        removeEdgeFromReverseCoordMap(reverseCoordMap, edge);
-                        prevEdge = edge;
-                    }
-                }
-                edgeMap.put(styleIdx, tmpPath);
-            }
-        }
-    }
-
-    private Map<Long, List<IEdge>> createCoordMap(List<IEdge> path) {
-        Map<Long, List<IEdge>> coordMap = new HashMap<>();
-        for (int i = 0; i < path.size(); i++) {
-            IEdge edge = path.get(i);
-            long fromLong = (((long) edge.getFromX()) << 32) | (edge.getFromY() & 0xffffffffL);
-            List<IEdge> coordMapArray = coordMap.get(fromLong);
-            if (coordMapArray == null) {
-                List<IEdge> list = new ArrayList<>();
-                list.add(path.get(i));
-                coordMap.put(fromLong, list);
-            } else {
-                coordMapArray.add(path.get(i));
-            }
-        }
-        return coordMap;
-    }
-
-    private Map<Long, List<IEdge>> createReverseCoordMap(List<IEdge> path) {
-        Map<Long, List<IEdge>> coordMap = new HashMap<>();
-        for (int i = 0; i < path.size(); i++) {
-            IEdge edge = path.get(i);
-            long toLong = (((long) edge.getToX()) << 32) | (edge.getToY() & 0xffffffffL);
-            List<IEdge> coordMapArray = coordMap.get(toLong);
-            if (coordMapArray == null) {
-                List<IEdge> list = new ArrayList<>();
-                list.add(path.get(i));
-                coordMap.put(toLong, list);
-            } else {
-                coordMapArray.add(path.get(i));
-            }
-        }
-        return coordMap;
-    }
-
-    private void removeEdgeFromCoordMap(Map<Long, List<IEdge>> coordMap, IEdge edge) {
-        long fromLong = (((long) edge.getFromX()) << 32) | (edge.getFromY() & 0xffffffffL);
-        List<IEdge> coordMapArray = coordMap.get(fromLong);
-        if (coordMapArray != null) {
-            if (coordMapArray.size() == 1) {
-                coordMap.remove(fromLong);
-            } else {
-                int i = coordMapArray.indexOf(edge);
-                if (i > -1) {
-                    coordMapArray.remove(i);
-                }
+                edgeMap.put(styleIdx, EdgeGraph.join(subPath, USE_REVERSE_LOOKUP));
             }
         }
     }
 
-    private void removeEdgeFromReverseCoordMap(Map<Long, List<IEdge>> coordMap, IEdge edge) {
-        long toLong = (((long) edge.getToX()) << 32) | (edge.getToY() & 0xffffffffL);
-        List<IEdge> coordMapArray = coordMap.get(toLong);
-        if (coordMapArray != null) {
-            if (coordMapArray.size() == 1) {
-                coordMap.remove(toLong);
-            } else {
-                int i = coordMapArray.indexOf(edge);
-                if (i > -1) {
-                    coordMapArray.remove(i);
-                }
-            }
-        }
-    }
-
-    private IEdge findNextEdgeInCoordMap(Map<Long, List<IEdge>> coordMap, IEdge edge) {
-        long toLong = (((long) edge.getToX()) << 32) | (edge.getToY() & 0xffffffffL);
-        List<IEdge> coordMapArray = coordMap.get(toLong);
-        if (coordMapArray != null && coordMapArray.size() > 0) {
-            return coordMapArray.get(0);
-        }
-        return null;
-    }
-
-    private IEdge updateEdgeInCoordMap(Map<Long, List<IEdge>> coordMap, IEdge edge, IEdge newEdge) {
-        long fromLong = (((long) edge.getFromX()) << 32) | (edge.getFromY() & 0xffffffffL);
-
-        coordMap.get(fromLong).remove(edge);
-
-        long fromLong2 = (((long) newEdge.getFromX()) << 32) | (newEdge.getFromY() & 0xffffffffL);
-
-        if (!coordMap.containsKey(fromLong2)) {
-            coordMap.put(fromLong2, new ArrayList<>());
-        }
-        coordMap.get(fromLong2).add(newEdge);
-        return null;
-    }
-
-    private IEdge updateEdgeInReverseCoordMap(Map<Long, List<IEdge>> coordMap, IEdge edge, IEdge newEdge) {
-        long toLong = (((long) edge.getToX()) << 32) | (edge.getToY() & 0xffffffffL);
-
-        coordMap.get(toLong).remove(edge);
-
-        long toLong2 = (((long) newEdge.getToX()) << 32) | (newEdge.getToY() & 0xffffffffL);
-
-        if (!coordMap.containsKey(toLong2)) {
-            coordMap.put(toLong2, new ArrayList<>());
-        }
-        coordMap.get(toLong2).add(newEdge);
-        return null;
-    }
-
     private void appendFillStyles(List<FillStyle> v1, FILLSTYLE[] v2) {
         for (FILLSTYLE s : v2) {
             v1.add(new FillStyle(s));
@@ -56,6 +56,13 @@ public class FLVOutputStream extends OutputStream {
         pos++;
     }
 
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        alignByte();
+        os.write(b, off, len);
+        pos += len;
+    }
+
     private void alignByte() throws IOException {
         if (bitPos > 0) {
             bitPos = 0;
@@ -156,6 +163,35 @@ public class FLVOutputStream extends OutputStream {
         writeUI32(size);
     }
 
+    /**
+     * Writes video tag directly from the source data, without creating
+     * VIDEODATA and FLVTAG objects.
+     *
+     * @param timeStamp Timestamp
+     * @param frameType Frame type
+     * @param codecId Codec id
+     * @param prefix Codec specific bytes preceding the data
+     * @param data Array with video data
+     * @param offset Offset of the video data in the array
+     * @param length Length of the video data
+     * @throws IOException
+     */
+    public void writeVideoTag(long timeStamp, int frameType, int codecId, byte[] prefix, byte[] data, int offset, int length) throws IOException {
+        long posBefore = getPos();
+        writeUI8(FLVTAG.DATATYPE_VIDEO);
+        writeUI24(1 + prefix.length + length);
+        writeUI24(timeStamp & 0xffffff);
+        writeUI8((int) ((timeStamp >> 24) & 0xff));
+        writeUI24(0);
+        writeUB(4, frameType);
+        writeUB(4, codecId);
+        write(prefix);
+        write(data, offset, length);
+        long posAfter = getPos();
+        long size = posAfter - posBefore;
+        writeUI32(size);
+    }
+
     public void writeSCRIPTDATASTRING(String s) throws IOException {
         byte[] bytes = Utf8Helper.getBytes(s);
         writeUI16(bytes.length);
@@ -34,13 +34,15 @@ import com.jpexs.decompiler.flash.tags.base.PlaceObjectTypeTag;
 import com.jpexs.decompiler.flash.tags.base.RemoveTag;
 import com.jpexs.decompiler.flash.timeline.Timelined;
 import com.jpexs.helpers.ByteArrayRange;
-import com.jpexs.helpers.Helper;
 import com.jpexs.helpers.Reference;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -108,7 +110,9 @@ public class MovieImporter {
                     if (printOut) {
                         System.out.println("Importing character " + characterId + " from file " + sourceFile.getName());
                     }
-                    importMovie(movieTag, Helper.readFile(sourceFile.getAbsolutePath()));
+                    try (InputStream is = new BufferedInputStream(new FileInputStream(sourceFile))) {
+                        importMovie(movieTag, is);
+                    }
                     movieCount++;
                 } catch (IOException ex) {
                     Logger.getLogger(ShapeImporter.class.getName()).log(Level.WARNING, "Cannot import movie " + characterId + " from file " + sourceFile.getName(), ex);
@@ -122,16 +126,21 @@ public class MovieImporter {
     }
 
     public void importMovie(DefineVideoStreamTag movie, byte[] data) throws IOException {
+        importMovie(movie, new ByteArrayInputStream(data));
+    }
+
+    public void importMovie(DefineVideoStreamTag movie, InputStream is) throws IOException {
         List<FLVTAG> videoTags = new ArrayList<>();
 
-        FLVInputStream flvIs = new FLVInputStream(new ByteArrayInputStream(data));
+        FLVInputStream flvIs = new FLVInputStream(is);
         Reference<Boolean> audioPresent = new Reference<>(false);
         Reference<Boolean> videoPresent = new Reference<>(false);
         flvIs.readHeader(audioPresent, videoPresent);
-        List<FLVTAG> flvTags = flvIs.readTags();
 
         Double duration = null;
-        for (FLVTAG tag : flvTags) {
+        // tags are read one by one, only video tags are kept
+        while (flvIs.available() > 0) {
+            FLVTAG tag = flvIs.readTag();
             if (tag.tagType == FLVTAG.DATATYPE_SCRIPT_DATA) {
                 SCRIPTDATA scriptData = (SCRIPTDATA) tag.data;
                 if (scriptData.name.type == 2 && "onMetaData".equals(scriptData.name.value)) {
@@ -53,7 +53,8 @@ public class ActionScriptSearch {
                 asms = scope;
             }
 
-            final List<ActionSearchResult> found = new ArrayList<>();
+            // results are filled by decompilation threads, kept in order of the scripts
+            final ActionSearchResult[] results = new ActionSearchResult[asms.size()];
             Pattern pat = regexp
                     ? Pattern.compile(txt, ignoreCase ? (Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE) : 0)
                     : Pattern.compile(Pattern.quote(txt), ignoreCase ? (Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE) : 0);
@@ -74,7 +75,7 @@ public class ActionScriptSearch {
                         asm.getASMSource(ScriptExportMode.PCODE, writer, null);
                         String text = writer.toString();
                         if (pat.matcher(text).find()) {
-                            found.add(new ActionSearchResult(asm, pcode, item.getKey()));
+                            results[pos - 1] = new ActionSearchResult(asm, pcode, item.getKey());
                         }
                     } else {
                         int fpos = pos;
@@ -93,22 +94,22 @@ public class ActionScriptSearch {
                                 }
 
                                 if (pat.matcher(result.text).find()) {
-                                    ActionSearchResult searchResult = new ActionSearchResult(asm, pcode, item.getKey());
-                                    found.add(searchResult);
+                                    results[fpos - 1] = new ActionSearchResult(asm, pcode, item.getKey());
                                 }
                             }
                         });
 
                         futures.add(text);
                     }
-                    for (Future<HighlightedText> future : futures) {
-                        try {
-                            future.get();
-                        } catch (CancellationException ex) {
-                            throw new InterruptedException();
-                        } catch (ExecutionException ex) {
-                            Logger.getLogger(ActionScriptSearch.class.getName()).log(Level.SEVERE, null, ex);
-                        }
+                }
+
+                for (Future<HighlightedText> future : futures) {
+                    try {
+                        future.get();
+                    } catch (CancellationException ex) {
+                        throw new InterruptedException();
+                    } catch (ExecutionException ex) {
+                        Logger.getLogger(ActionScriptSearch.class.getName()).log(Level.SEVERE, null, ex);
                     }
                 }
             } catch (InterruptedException ex) {
@@ -116,6 +117,13 @@ public class ActionScriptSearch {
                     future.cancel(true);
                 }
             }
+
+            List<ActionSearchResult> found = new ArrayList<>();
+            for (ActionSearchResult result : results) {
+                if (result != null) {
+                    found.add(result);
+                }
+            }
             return found;
         }
 
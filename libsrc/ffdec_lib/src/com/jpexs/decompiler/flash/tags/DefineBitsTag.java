@@ -35,6 +35,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -165,6 +166,16 @@ public class DefineBitsTag extends ImageTag implements TagChangedListener {
         return img;
     }
 
+    @Override
+    protected void updateImageCacheKey(MessageDigest md) {
+        super.updateImageCacheKey(md);
+        JPEGTablesTag jtt = swf.getJtt();
+        if (jtt != null) {
+            ByteArrayRange jttdata = jtt.jpegData;
+            md.update(jttdata.getArray(), jttdata.getPos(), jttdata.getLength());
+        }
+    }
+
     @Override
     public Dimension getImageDimension() {
         if (cachedImage != null) {
@@ -20,9 +20,11 @@ import com.jpexs.decompiler.flash.ReadOnlyTagList;
 import com.jpexs.decompiler.flash.SWF;
 import com.jpexs.decompiler.flash.SWFInputStream;
 import com.jpexs.decompiler.flash.SWFOutputStream;
+import com.jpexs.decompiler.flash.TagResolutionPool;
 import com.jpexs.decompiler.flash.exporters.commonshape.ExportRectangle;
 import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
 import com.jpexs.decompiler.flash.exporters.commonshape.SVGExporter;
+import com.jpexs.decompiler.flash.helpers.LazyObject;
 import com.jpexs.decompiler.flash.tags.base.BoundedTag;
 import com.jpexs.decompiler.flash.tags.base.CharacterIdTag;
 import com.jpexs.decompiler.flash.tags.base.CharacterTag;
@@ -45,6 +47,7 @@ import com.jpexs.decompiler.flash.types.annotations.SWFType;
 import com.jpexs.decompiler.flash.types.annotations.SWFVersion;
 import com.jpexs.helpers.ByteArrayRange;
 import com.jpexs.helpers.Cache;
+import com.jpexs.helpers.ImmediateFuture;
 import com.jpexs.helpers.SerializableImage;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
@@ -55,6 +58,11 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Defines a sprite character
@@ -62,12 +70,14 @@ import java.util.Set;
  * @author JPEXS
  */
 @SWFVersion(from = 3)
-public class DefineSpriteTag extends DrawableTag implements Timelined {
+public class DefineSpriteTag extends DrawableTag implements Timelined, LazyObject {
 
     public static final int ID = 39;
 
     public static final String NAME = "DefineSprite";
 
+    private static final Logger logger = Logger.getLogger(DefineSpriteTag.class.getName());
+
     /**
      * Character ID of sprite
      */
@@ -97,6 +107,17 @@ public class DefineSpriteTag extends DrawableTag implements Timelined {
 
     private boolean isSingleFrame;
 
+    /**
+     * Sub tags are kept as TagStubs until they are first needed
+     */
+    private volatile boolean subTagsResolved = true;
+
+    private boolean resolveParallel;
+
+    private boolean resolveSkipUnusualTags;
+
+    private int resolveLevel;
+
     /**
      * Constructor
      *
@@ -120,21 +141,103 @@ public class DefineSpriteTag extends DrawableTag implements Timelined {
      * @throws java.lang.InterruptedException
      */
     public DefineSpriteTag(SWFInputStream sis, int level, ByteArrayRange data, boolean parallel, boolean skipUnusualTags) throws IOException, InterruptedException {
+        this(sis, level, data, parallel, skipUnusualTags, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param sis
+     * @param data
+     * @param level
+     * @param parallel
+     * @param skipUnusualTags
+     * @param lazy Keep sub tags unresolved until they are first accessed
+     * @throws IOException
+     * @throws java.lang.InterruptedException
+     */
+    public DefineSpriteTag(SWFInputStream sis, int level, ByteArrayRange data, boolean parallel, boolean skipUnusualTags, boolean lazy) throws IOException, InterruptedException {
         super(sis.getSwf(), ID, NAME, data);
-        readData(sis, data, level, parallel, skipUnusualTags, false);
+        readData(sis, data, level, parallel, skipUnusualTags, lazy);
     }
 
     @Override
     public final void readData(SWFInputStream sis, ByteArrayRange data, int level, boolean parallel, boolean skipUnusualTags, boolean lazy) throws IOException, InterruptedException {
         spriteId = sis.readUI16("spriteId");
         frameCount = sis.readUI16("frameCount");
-        List<Tag> subTags = sis.readTagList(this, level + 1, parallel, skipUnusualTags, true, lazy);
+        List<Tag> subTags = sis.readTagList(this, level + 1, parallel, skipUnusualTags, !lazy, lazy);
         if (subTags.size() > 0 && subTags.get(subTags.size() - 1).getId() == EndTag.ID) {
             hasEndTag = true;
             subTags.remove(subTags.size() - 1);
         }
         this.subTags = subTags;
         readOnlyTags = null;
+        resolveLevel = level + 1;
+        resolveParallel = parallel;
+        resolveSkipUnusualTags = skipUnusualTags;
+        subTagsResolved = !lazy;
+    }
+
+    /**
+     * Resolves the sub tags which were left as TagStubs by lazy reading.
+     */
+    private void resolveSubTags() {
+        if (subTagsResolved) {
+            return;
+        }
+
+        synchronized (this) {
+            if (subTagsResolved) {
+                return;
+            }
+
+            List<Future<Tag>> futures = new ArrayList<>();
+            for (Tag t : subTags) {
+                if (t instanceof TagStub && ((TagStub) t).getDataStream() != null) {
+                    TagStub stub = (TagStub) t;
+                    if (resolveParallel) {
+                        futures.add(TagResolutionPool.schedule(new RecursiveTask<Tag>() {
+                            @Override
+                            protected Tag compute() {
+                                return resolveSubTag(stub);
+                            }
+                        }));
+                    } else {
+                        futures.add(new ImmediateFuture<>(resolveSubTag(stub)));
+                    }
+                } else {
+                    futures.add(new ImmediateFuture<>(t));
+                }
+            }
+
+            List<Tag> resolved = new ArrayList<>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    resolved.add(futures.get(i).get());
+                } catch (InterruptedException | ExecutionException ex) {
+                    logger.log(Level.SEVERE, "Error during tag reading", ex);
+                    resolved.add(subTags.get(i));
+                }
+            }
+
+            subTags = resolved;
+            readOnlyTags = null;
+            subTagsResolved = true;
+        }
+    }
+
+    @Override
+    public void load() {
+        resolveSubTags();
+    }
+
+    private Tag resolveSubTag(TagStub stub) {
+        try {
+            return SWFInputStream.resolveTag(stub, resolveLevel, resolveParallel, resolveSkipUnusualTags, true, true);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return stub;
+        }
     }
 
     /**
@@ -330,6 +433,7 @@ public class DefineSpriteTag extends DrawableTag implements Timelined {
 
     @Override
     public ReadOnlyTagList getTags() {
+        resolveSubTags();
         if (readOnlyTags == null) {
             readOnlyTags = new ReadOnlyTagList(subTags);
         }
@@ -339,30 +443,35 @@ public class DefineSpriteTag extends DrawableTag implements Timelined {
 
     @Override
     public void removeTag(int index) {
+        resolveSubTags();
         setModified(true);
         subTags.remove(index);
     }
 
     @Override
     public void removeTag(Tag tag) {
+        resolveSubTags();
         setModified(true);
         subTags.remove(tag);
     }
 
     @Override
     public void addTag(Tag tag) {
+        resolveSubTags();
         setModified(true);
         subTags.add(tag);
     }
 
     @Override
     public void addTag(int index, Tag tag) {
+        resolveSubTags();
         setModified(true);
         subTags.add(index, tag);
     }
 
     @Override
     public int indexOfTag(Tag tag) {
+        resolveSubTags();
         return subTags.indexOf(tag);
     }
 
@@ -440,6 +440,30 @@ public abstract class Tag implements NeedsCharacters, Exportable, Serializable {
         }
     }
 
+    /**
+     * Gets the tag bytes including the header, as they are written to the
+     * stream. Unmodified tags return the range they were read from, without
+     * copying.
+     *
+     * @return Tag bytes
+     */
+    public ByteArrayRange getTagRange() {
+        if (Configuration._debugCopy.get() || isModified() || isImported()) {
+            return new ByteArrayRange(getTagBytes());
+        }
+
+        return originalRange;
+    }
+
+    private byte[] getTagBytes() {
+        byte[] data = getData();
+        byte[] headerData = getHeader(data.length);
+        byte[] tagData = new byte[data.length + headerData.length];
+        System.arraycopy(headerData, 0, tagData, 0, headerData.length);
+        System.arraycopy(data, 0, tagData, headerData.length, data.length);
+        return tagData;
+    }
+
     public Tag cloneTag() throws InterruptedException, IOException {
         byte[] data = getData();
         SWFInputStream tagDataStream = new SWFInputStream(swf, data, 0, data.length);
@@ -590,12 +614,17 @@ public abstract class Tag implements NeedsCharacters, Exportable, Serializable {
     }
 
     public void createOriginalData() {
-        byte[] data = getData();
-        byte[] headerData = getHeader(data.length);
-        byte[] tagData = new byte[data.length + headerData.length];
-        System.arraycopy(headerData, 0, tagData, 0, headerData.length);
-        System.arraycopy(data, 0, tagData, headerData.length, data.length);
-        originalRange = new ByteArrayRange(tagData);
+        originalRange = new ByteArrayRange(getTagBytes());
+    }
+
+    /**
+     * Sets the original data to already written tag bytes, for example to the
+     * range of the tag in the saved SWF data.
+     *
+     * @param tagRange Tag bytes including the header
+     */
+    public void setOriginalRange(ByteArrayRange tagRange) {
+        originalRange = tagRange;
     }
 
     @Override
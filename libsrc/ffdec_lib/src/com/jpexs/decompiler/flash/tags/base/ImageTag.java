@@ -17,6 +17,7 @@
 package com.jpexs.decompiler.flash.tags.base;
 
 import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.cache.DecodedImageCache;
 import com.jpexs.decompiler.flash.configuration.Configuration;
 import com.jpexs.decompiler.flash.exporters.commonshape.ExportRectangle;
 import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
@@ -42,6 +43,7 @@ import com.jpexs.decompiler.flash.types.shaperecords.EndShapeRecord;
 import com.jpexs.decompiler.flash.types.shaperecords.StraightEdgeRecord;
 import com.jpexs.decompiler.flash.types.shaperecords.StyleChangeRecord;
 import com.jpexs.helpers.ByteArrayRange;
+import com.jpexs.helpers.Helper;
 import com.jpexs.helpers.SerializableImage;
 import java.awt.Dimension;
 import java.awt.Shape;
@@ -49,6 +51,8 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Set;
 
@@ -63,6 +67,8 @@ public abstract class ImageTag extends DrawableTag {
 
     protected SerializableImage cachedImage;
 
+    private String imageCacheKey;
+
     public ImageTag(SWF swf, int id, String name, ByteArrayRange data) {
         super(swf, id, name, data);
     }
@@ -112,7 +118,22 @@ public abstract class ImageTag extends DrawableTag {
             return cachedImage;
         }
 
-        SerializableImage image = getImage();
+        SerializableImage image = null;
+        String key = null;
+        if (DecodedImageCache.isEnabled()) {
+            key = getImageCacheKey();
+            if (key != null) {
+                image = DecodedImageCache.getInstance().get(key);
+            }
+        }
+
+        if (image == null) {
+            image = getImage();
+            if (key != null && image != null) {
+                DecodedImageCache.getInstance().put(key, image);
+            }
+        }
+
         if (Configuration.cacheImages.get()) {
             cachedImage = image;
         }
@@ -120,6 +141,57 @@ public abstract class ImageTag extends DrawableTag {
         return image;
     }
 
+    /**
+     * Gets key of the decoded image in the DecodedImageCache. The key is a hash
+     * of the tag type and the tag data without the character id, so the same
+     * image in different tags or files has the same key.
+     *
+     * @return Key or null when the image cannot be cached
+     */
+    public String getImageCacheKey() {
+        String key = imageCacheKey;
+        if (key != null) {
+            return key;
+        }
+
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new Error(ex);
+        }
+
+        md.update((byte) (getId() >> 8));
+        md.update((byte) getId());
+        updateImageCacheKey(md);
+        key = Helper.byteArrayToHex(md.digest());
+
+        // modified tag can change without clearing the cache, so its key is computed every time
+        if (!isModified() && getOriginalRange() != null) {
+            imageCacheKey = key;
+        }
+
+        return key;
+    }
+
+    /**
+     * Adds data which affect the decoded image to the image cache key.
+     *
+     * @param md Message digest
+     */
+    protected void updateImageCacheKey(MessageDigest md) {
+        ByteArrayRange range = getOriginalRange();
+        if (!isModified() && range != null) {
+            // skip character id
+            int dataLength = Math.max(0, getOriginalDataLength() - 2);
+            int pos = (int) (range.getPos() + range.getLength() - dataLength);
+            md.update(range.getArray(), pos, dataLength);
+        } else {
+            byte[] data = getData();
+            md.update(data, Math.min(2, data.length), Math.max(0, data.length - 2));
+        }
+    }
+
     /**
      * Gets converted image data. Converted means for example DefineBitsJPEG3 including alpha channel - PNG images
      * @return 
@@ -283,6 +355,7 @@ public abstract class ImageTag extends DrawableTag {
 
     public void clearCache() {
         cachedImage = null;
+        imageCacheKey = null;
     }
 
     @Override
@@ -155,6 +155,12 @@ public class DefineExternalImage extends ImageTag {
         return null;
     }
 
+    @Override
+    public String getImageCacheKey() {
+        // image is loaded from external file, which can change
+        return null;
+    }
+
     @Override
     protected SerializableImage getImage() {
         initImage();
@@ -189,6 +189,12 @@ public class DefineExternalImage2 extends ImageTag {
         return null;
     }
 
+    @Override
+    public String getImageCacheKey() {
+        // image is loaded from external file, which can change
+        return null;
+    }
+
     @Override
     public SerializableImage getImage() {
         initImage();
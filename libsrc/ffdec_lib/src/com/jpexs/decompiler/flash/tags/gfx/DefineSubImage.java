@@ -144,6 +144,12 @@ public class DefineSubImage extends ImageTag {
         return null;
     }
 
+    @Override
+    public String getImageCacheKey() {
+        // image is loaded from external file, which can change
+        return null;
+    }
+
     @Override
     protected SerializableImage getImage() {
         initImage();
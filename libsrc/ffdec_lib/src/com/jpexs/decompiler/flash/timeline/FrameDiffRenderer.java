@@ -0,0 +1,755 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.timeline;
+
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.exporters.commonshape.ExportRectangle;
+import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
+import com.jpexs.decompiler.flash.tags.DefineVideoStreamTag;
+import com.jpexs.decompiler.flash.tags.base.BoundedTag;
+import com.jpexs.decompiler.flash.tags.base.ButtonTag;
+import com.jpexs.decompiler.flash.tags.base.CharacterTag;
+import com.jpexs.decompiler.flash.tags.base.DrawableTag;
+import com.jpexs.decompiler.flash.tags.base.MorphShapeTag;
+import com.jpexs.decompiler.flash.tags.base.ShapeTag;
+import com.jpexs.decompiler.flash.tags.base.TextTag;
+import com.jpexs.decompiler.flash.types.ColorTransform;
+import com.jpexs.decompiler.flash.types.FILLSTYLE;
+import com.jpexs.decompiler.flash.types.FILLSTYLEARRAY;
+import com.jpexs.decompiler.flash.types.LINESTYLE2;
+import com.jpexs.decompiler.flash.types.LINESTYLEARRAY;
+import com.jpexs.decompiler.flash.types.MORPHFILLSTYLE;
+import com.jpexs.decompiler.flash.types.MORPHFILLSTYLEARRAY;
+import com.jpexs.decompiler.flash.types.MORPHLINESTYLE2;
+import com.jpexs.decompiler.flash.types.MORPHLINESTYLEARRAY;
+import com.jpexs.decompiler.flash.types.RECT;
+import com.jpexs.decompiler.flash.types.SHAPEWITHSTYLE;
+import com.jpexs.decompiler.flash.types.filters.FILTER;
+import com.jpexs.decompiler.flash.types.shaperecords.SHAPERECORD;
+import com.jpexs.decompiler.flash.types.shaperecords.StyleChangeRecord;
+import com.jpexs.helpers.SerializableImage;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Renders consecutive frames of a timeline incrementally.
+ *
+ * Depth states of the previously rendered frame are compared with the depth
+ * states of the new frame, including the frames of nested sprites and buttons.
+ * Bounds of the changed depths, expanded by their filters, are joined to a
+ * region, the previous frame is copied to the new image and only the region
+ * is rendered again. The graphics of the image is clipped to the region, so
+ * the pixels are the same as when the whole frame is rendered. Objects whose
+ * pixels depend on the clip, like gradients, bitmaps and filtered objects,
+ * are never cut by the region. Modified characters do not change the depth
+ * states, so the frame is rendered whole after the image or shape caches of
+ * the SWF are cleared.
+ *
+ * Usage: call beginFrame, fill the background and call Timeline.toImage as
+ * for the full rendering, then call endFrame before drawing anything which
+ * is not part of the frame.
+ *
+ * @author JPEXS
+ */
+public class FrameDiffRenderer {
+
+    /**
+     * Pixels added around the changed bounds for antialiasing.
+     */
+    private static final int MARGIN = 2;
+
+    /**
+     * Maximum nesting of sprites, deeper (possibly recursive) sprites are
+     * rendered whole.
+     */
+    private static final int MAX_NESTING = 32;
+
+    private final Timeline timeline;
+
+    private SerializableImage previous;
+
+    private Frame previousFrame;
+
+    private int previousTime;
+
+    private Matrix previousTransformation;
+
+    private double previousUnzoom;
+
+    private boolean previousHasCursor;
+
+    private Object previousKey;
+
+    private int previousCacheGeneration;
+
+    private Frame pendingFrame;
+
+    private int pendingTime;
+
+    private Matrix pendingTransformation;
+
+    private double pendingUnzoom;
+
+    private boolean pendingHasCursor;
+
+    private Object pendingKey;
+
+    private int pendingCacheGeneration;
+
+    private Rectangle region;
+
+    private boolean hasCursor;
+
+    private double unzoom;
+
+    private Rectangle2D dirty;
+
+    private int nesting;
+
+    private long fullFrameCount = 0;
+
+    private long partialFrameCount = 0;
+
+    public FrameDiffRenderer(Timeline timeline) {
+        this.timeline = timeline;
+    }
+
+    public Timeline getTimeline() {
+        return timeline;
+    }
+
+    /**
+     * Forgets the previous frame, next frame is rendered whole.
+     */
+    public void reset() {
+        previous = null;
+        previousFrame = null;
+        previousTransformation = null;
+        previousKey = null;
+        pendingFrame = null;
+        region = null;
+    }
+
+    /**
+     * Prepares image for rendering of a frame.
+     *
+     * @param image Image of the same size and type as the previous one
+     * @param frame Frame
+     * @param time Time
+     * @param transformation Transformation passed to Timeline.toImage
+     * @param unzoom Zoom passed to Timeline.toImage
+     * @param hasCursor Whether the render context has cursor position, the
+     * buttons are then always rendered again
+     * @param key Other parameters of the rendering, compared by equals, the
+     * frame is rendered whole when they change
+     * @return Region which has to be rendered, the image contains the
+     * previous frame outside of it and the graphics of the image is clipped
+     * to it. Null when the whole frame has to be rendered, the image is left
+     * untouched then.
+     */
+    public Rectangle beginFrame(SerializableImage image, int frame, int time, Matrix transformation, double unzoom, boolean hasCursor, Object key) {
+        region = null;
+        pendingFrame = frame < timeline.getFrameCount() ? timeline.getFrame(frame) : null;
+        pendingTime = time;
+        pendingTransformation = transformation.clone();
+        pendingUnzoom = unzoom;
+        pendingHasCursor = hasCursor;
+        pendingKey = key;
+        // modified characters are not seen in the depth states
+        pendingCacheGeneration = timeline.swf == null ? 0 : timeline.swf.getRenderCacheGeneration();
+
+        if (previous == null
+                || previousFrame == null
+                || pendingFrame == null
+                || timeline.fontFrameNum != -1
+                || previous.getWidth() != image.getWidth()
+                || previous.getHeight() != image.getHeight()
+                || previous.getType() != image.getType()
+                || previousHasCursor != hasCursor
+                || previousUnzoom != unzoom
+                || !sameMatrix(previousTransformation, transformation)
+                || !Objects.equals(previousKey, key)
+                || previousCacheGeneration != pendingCacheGeneration
+                || previousFrame.frame >= timeline.getFrameCount()
+                || timeline.getFrame(previousFrame.frame) != previousFrame) {
+            fullFrameCount++;
+            return null;
+        }
+
+        if (!previousFrame.backgroundColor.toColor().equals(pendingFrame.backgroundColor.toColor())) {
+            fullFrameCount++;
+            return null;
+        }
+
+        this.hasCursor = hasCursor;
+        this.unzoom = unzoom;
+        dirty = null;
+        nesting = 0;
+        boolean supported = diffFrames(previousFrame, previousTime, pendingFrame, time, transformation);
+        Rectangle2D changed = dirty;
+        dirty = null;
+        if (!supported) {
+            fullFrameCount++;
+            return null;
+        }
+
+        Rectangle result = new Rectangle();
+        if (changed != null) {
+            result = toPixels(changed).intersection(new Rectangle(image.getWidth(), image.getHeight()));
+            if (result.isEmpty()) {
+                result = new Rectangle();
+            }
+        }
+
+        if (!result.isEmpty()) {
+            List<Rectangle2D> whole = new ArrayList<>();
+            dirty = null;
+            nesting = 0;
+            supported = collectWhole(pendingFrame, time, transformation, whole);
+            dirty = null;
+            if (!supported) {
+                fullFrameCount++;
+                return null;
+            }
+
+            result = growToWhole(result, whole, new Rectangle(image.getWidth(), image.getHeight()));
+        }
+
+        if (result.width == image.getWidth() && result.height == image.getHeight()) {
+            fullFrameCount++;
+            return null;
+        }
+
+        image.getRaster().setDataElements(0, 0, previous.getRaster());
+        ((Graphics2D) image.getGraphics()).setClip(result);
+        partialFrameCount++;
+        region = result;
+        return result;
+    }
+
+    /**
+     * Finishes rendering of the frame. Removes the clip of the image and
+     * remembers the frame for rendering of the next one.
+     *
+     * @param image Image passed to beginFrame
+     */
+    public void endFrame(SerializableImage image) {
+        if (region != null) {
+            ((Graphics2D) image.getGraphics()).setClip(null);
+        }
+
+        if (pendingFrame == null) {
+            reset();
+            return;
+        }
+
+        if (previous == null || previous.getWidth() != image.getWidth() || previous.getHeight() != image.getHeight() || previous.getType() != image.getType()) {
+            previous = new SerializableImage(image.getWidth(), image.getHeight(), image.getType());
+        }
+
+        WritableRaster raster = image.getRaster();
+        if (region == null) {
+            previous.getRaster().setDataElements(0, 0, raster);
+        } else if (!region.isEmpty()) {
+            previous.getRaster().setDataElements(region.x, region.y, raster.createChild(region.x, region.y, region.width, region.height, 0, 0, null));
+        }
+
+        previousFrame = pendingFrame;
+        previousTime = pendingTime;
+        previousTransformation = pendingTransformation;
+        previousUnzoom = pendingUnzoom;
+        previousHasCursor = pendingHasCursor;
+        previousKey = pendingKey;
+        previousCacheGeneration = pendingCacheGeneration;
+        pendingFrame = null;
+        region = null;
+    }
+
+    /**
+     * Gets number of frames rendered whole and rendered partially.
+     *
+     * @return Statistics
+     */
+    public String getStat() {
+        return "full: " + fullFrameCount + ", partial: " + partialFrameCount;
+    }
+
+    private static boolean sameMatrix(Matrix m1, Matrix m2) {
+        return m1.scaleX == m2.scaleX
+                && m1.scaleY == m2.scaleY
+                && m1.rotateSkew0 == m2.rotateSkew0
+                && m1.rotateSkew1 == m2.rotateSkew1
+                && m1.translateX == m2.translateX
+                && m1.translateY == m2.translateY;
+    }
+
+    private static boolean sameColorTransform(ColorTransform c1, ColorTransform c2) {
+        if (c1 == c2) {
+            return true;
+        }
+        if (c1 == null || c2 == null) {
+            return false;
+        }
+
+        return c1.getRedMulti() == c2.getRedMulti()
+                && c1.getGreenMulti() == c2.getGreenMulti()
+                && c1.getBlueMulti() == c2.getBlueMulti()
+                && c1.getAlphaMulti() == c2.getAlphaMulti()
+                && c1.getRedAdd() == c2.getRedAdd()
+                && c1.getGreenAdd() == c2.getGreenAdd()
+                && c1.getBlueAdd() == c2.getBlueAdd()
+                && c1.getAlphaAdd() == c2.getAlphaAdd();
+    }
+
+    private static boolean sameFilters(List<FILTER> f1, List<FILTER> f2) {
+        boolean empty1 = f1 == null || f1.isEmpty();
+        boolean empty2 = f2 == null || f2.isEmpty();
+        if (empty1 || empty2) {
+            return empty1 && empty2;
+        }
+        if (f1.size() != f2.size()) {
+            return false;
+        }
+
+        // filters have no equals, the same placement shares them
+        for (int i = 0; i < f1.size(); i++) {
+            if (f1.get(i) != f2.get(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean samePlacement(DepthState l1, DepthState l2) {
+        return l1.getCharacter() == l2.getCharacter()
+                && Objects.equals(l1.matrix, l2.matrix)
+                && sameColorTransform(l1.colorTransForm, l2.colorTransForm)
+                && l1.blendMode == l2.blendMode
+                && sameFilters(l1.filters, l2.filters)
+                && l1.clipDepth == l2.clipDepth
+                && l1.ratio == l2.ratio
+                && l1.hasImage == l2.hasImage
+                && l1.cacheAsBitmap() == l2.cacheAsBitmap();
+    }
+
+    private static DepthState getVisibleLayer(Frame frame, int depth) {
+        if (frame == null) {
+            return null;
+        }
+
+        DepthState layer = frame.layers.get(depth);
+        if (layer == null || !layer.isVisible || layer.getCharacter() == null) {
+            return null;
+        }
+
+        return layer;
+    }
+
+    /**
+     * Adds changed bounds of two states of a timeline.
+     *
+     * @return False when the difference cannot be computed
+     */
+    private boolean diffFrames(Frame frame1, int time1, Frame frame2, int time2, Matrix transformation) {
+        if (frame1 == frame2 && time1 == time2) {
+            return true;
+        }
+        if (nesting > MAX_NESTING) {
+            return false;
+        }
+
+        TreeSet<Integer> depths = new TreeSet<>();
+        if (frame1 != null) {
+            depths.addAll(frame1.layers.keySet());
+        }
+        if (frame2 != null) {
+            depths.addAll(frame2.layers.keySet());
+        }
+
+        for (int depth : depths) {
+            DepthState layer1 = getVisibleLayer(frame1, depth);
+            DepthState layer2 = getVisibleLayer(frame2, depth);
+            if (layer1 != null && layer2 != null && samePlacement(layer1, layer2)) {
+                if (!diffContent(layer1, time1, layer2, time2, transformation)) {
+                    return false;
+                }
+                continue;
+            }
+
+            if (layer1 != null && !addBounds(layer1, time1, transformation)) {
+                return false;
+            }
+            if (layer2 != null && !addBounds(layer2, time2, transformation)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds changed bounds of a character placed the same way in both states.
+     */
+    private boolean diffContent(DepthState layer1, int time1, DepthState layer2, int time2, Matrix transformation) {
+        CharacterTag character = layer1.getCharacter();
+        if (!(character instanceof DrawableTag)) {
+            return !(character instanceof BoundedTag);
+        }
+
+        if (character.getScalingGridTag() != null) {
+            return false;
+        }
+
+        if (character instanceof ButtonTag && hasCursor) {
+            // state depends on the cursor
+            return addBounds(layer1, time1, transformation) && addBounds(layer2, time2, transformation);
+        }
+
+        DrawableTag drawable = (DrawableTag) character;
+        int frameCount = Math.max(1, drawable.getNumFrames());
+        int dtime1 = layer1.time + time1;
+        int dtime2 = layer2.time + time2;
+        if (!(character instanceof Timelined)) {
+            if (dtime1 % frameCount != dtime2 % frameCount) {
+                return addBounds(layer1, time1, transformation) && addBounds(layer2, time2, transformation);
+            }
+            return true;
+        }
+
+        Timeline subTimeline = ((Timelined) character).getTimeline();
+        int dframe1;
+        int dframe2;
+        if (character instanceof ButtonTag) {
+            dframe1 = ButtonTag.FRAME_UP;
+            dframe2 = ButtonTag.FRAME_UP;
+        } else {
+            dframe1 = dtime1 % frameCount;
+            dframe2 = dtime2 % frameCount;
+            dtime1 -= dframe1;
+            dtime2 -= dframe2;
+        }
+
+        Frame subFrame1 = dframe1 < subTimeline.getFrameCount() ? subTimeline.getFrame(dframe1) : null;
+        Frame subFrame2 = dframe2 < subTimeline.getFrameCount() ? subTimeline.getFrame(dframe2) : null;
+        Matrix subTransformation = transformation.concatenate(new Matrix(layer1.matrix));
+        if (layer1.filters == null || layer1.filters.isEmpty()) {
+            nesting++;
+            boolean supported = diffFrames(subFrame1, dtime1, subFrame2, dtime2, subTransformation);
+            nesting--;
+            return supported;
+        }
+
+        // filter spreads the change over the whole object
+        Rectangle2D saved = dirty;
+        dirty = null;
+        nesting++;
+        boolean supported = diffFrames(subFrame1, dtime1, subFrame2, dtime2, subTransformation);
+        nesting--;
+        boolean changed = dirty != null;
+        dirty = saved;
+        if (!supported) {
+            return false;
+        }
+        if (changed) {
+            return addBounds(layer1, time1, transformation) && addBounds(layer2, time2, transformation);
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds bounds of placed character including its filters.
+     */
+    private boolean addBounds(DepthState layer, int time, Matrix transformation) {
+        CharacterTag character = layer.getCharacter();
+        if (!(character instanceof DrawableTag)) {
+            // placeholder of other bounded characters is drawn
+            return !(character instanceof BoundedTag);
+        }
+
+        if (character.getScalingGridTag() != null) {
+            return false;
+        }
+
+        DrawableTag drawable = (DrawableTag) character;
+        Matrix mat = transformation.concatenate(new Matrix(layer.matrix));
+        Rectangle2D saved = dirty;
+        dirty = null;
+        boolean supported = true;
+        RECT rect = drawable.getRectWithStrokes();
+        if (rect.Xmin <= rect.Xmax && rect.Ymin <= rect.Ymax) {
+            add(mat.transform(new ExportRectangle(rect)));
+        }
+
+        if (character instanceof Timelined) {
+            if (nesting > MAX_NESTING) {
+                dirty = saved;
+                return false;
+            }
+
+            // nested strokes and filters can be out of the character bounds
+            Timeline subTimeline = ((Timelined) character).getTimeline();
+            int dtime = layer.time + time;
+            int[] dframes;
+            if (character instanceof ButtonTag) {
+                dframes = hasCursor
+                        ? new int[]{ButtonTag.FRAME_UP, ButtonTag.FRAME_OVER, ButtonTag.FRAME_DOWN}
+                        : new int[]{ButtonTag.FRAME_UP};
+            } else {
+                int frameCount = Math.max(1, drawable.getNumFrames());
+                dframes = new int[]{dtime % frameCount};
+                dtime -= dframes[0];
+            }
+
+            for (int dframe : dframes) {
+                if (dframe >= subTimeline.getFrameCount()) {
+                    continue;
+                }
+
+                Frame subFrame = subTimeline.getFrame(dframe);
+                nesting++;
+                for (int depth : subFrame.layers.keySet()) {
+                    DepthState subLayer = getVisibleLayer(subFrame, depth);
+                    if (subLayer != null && !addBounds(subLayer, dtime, mat)) {
+                        supported = false;
+                        break;
+                    }
+                }
+                nesting--;
+            }
+        }
+
+        Rectangle2D bounds = dirty;
+        dirty = saved;
+        if (!supported) {
+            return false;
+        }
+        if (bounds == null) {
+            return true;
+        }
+
+        double delta = 0;
+        if (layer.filters != null) {
+            for (FILTER filter : layer.filters) {
+                delta = Math.max(delta, Math.max(filter.getDeltaX(), filter.getDeltaY()));
+            }
+        }
+
+        // filtered and blended objects are drawn from interpolated images
+        double expand = (delta * unzoom + 1) * SWF.unitDivisor;
+        add(new ExportRectangle(bounds.getMinX() - expand, bounds.getMinY() - expand, bounds.getMaxX() + expand, bounds.getMaxY() + expand));
+        return true;
+    }
+
+    /**
+     * Grows the region until every object which has to be rendered whole is
+     * either fully inside or fully outside of it.
+     */
+    private static Rectangle growToWhole(Rectangle region, List<Rectangle2D> whole, Rectangle imageRect) {
+        List<Rectangle> wholePixels = new ArrayList<>();
+        for (Rectangle2D r : whole) {
+            Rectangle p = toPixels(r).intersection(imageRect);
+            if (!p.isEmpty()) {
+                wholePixels.add(p);
+            }
+        }
+
+        Rectangle result = region;
+        boolean grown = true;
+        while (grown) {
+            grown = false;
+            for (Rectangle p : wholePixels) {
+                if (p.intersects(result) && !result.contains(p)) {
+                    result = result.union(p);
+                    grown = true;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static Rectangle toPixels(Rectangle2D r) {
+        int x1 = (int) Math.floor(r.getMinX() / SWF.unitDivisor) - MARGIN;
+        int y1 = (int) Math.floor(r.getMinY() / SWF.unitDivisor) - MARGIN;
+        int x2 = (int) Math.ceil(r.getMaxX() / SWF.unitDivisor) + MARGIN;
+        int y2 = (int) Math.ceil(r.getMaxY() / SWF.unitDivisor) + MARGIN;
+        return new Rectangle(x1, y1, x2 - x1, y2 - y1);
+    }
+
+    /**
+     * Collects bounds of objects of a frame which cannot be rendered
+     * partially. Gradient and bitmap paints and interpolated images start
+     * their computation at the edge of the clip, so their pixels differ
+     * slightly when the clip cuts them.
+     *
+     * @return False when the frame contains objects which ignore the clip
+     */
+    private boolean collectWhole(Frame frame, int time, Matrix transformation, List<Rectangle2D> whole) {
+        if (nesting > MAX_NESTING) {
+            return false;
+        }
+
+        for (int depth : frame.layers.keySet()) {
+            DepthState layer = getVisibleLayer(frame, depth);
+            if (layer == null || !(layer.getCharacter() instanceof DrawableTag)) {
+                continue;
+            }
+
+            CharacterTag character = layer.getCharacter();
+            if (character instanceof DefineVideoStreamTag) {
+                // video frames are drawn to the image without the clip
+                return false;
+            }
+
+            boolean composited = (layer.filters != null && !layer.filters.isEmpty())
+                    || layer.blendMode > 1
+                    || layer.cacheAsBitmap()
+                    || layer.hasImage;
+            if (composited || (!(character instanceof Timelined) && hasPaint(character))) {
+                if (!addBounds(layer, time, transformation)) {
+                    return false;
+                }
+                whole.add(dirty);
+                dirty = null;
+                continue;
+            }
+
+            if (!(character instanceof Timelined)) {
+                continue;
+            }
+
+            Timeline subTimeline = ((Timelined) character).getTimeline();
+            Matrix mat = transformation.concatenate(new Matrix(layer.matrix));
+            int dtime = layer.time + time;
+            int[] dframes;
+            if (character instanceof ButtonTag) {
+                dframes = hasCursor
+                        ? new int[]{ButtonTag.FRAME_UP, ButtonTag.FRAME_OVER, ButtonTag.FRAME_DOWN}
+                        : new int[]{ButtonTag.FRAME_UP};
+            } else {
+                int frameCount = Math.max(1, ((DrawableTag) character).getNumFrames());
+                dframes = new int[]{dtime % frameCount};
+                dtime -= dframes[0];
+            }
+
+            for (int dframe : dframes) {
+                if (dframe >= subTimeline.getFrameCount()) {
+                    continue;
+                }
+
+                nesting++;
+                boolean supported = collectWhole(subTimeline.getFrame(dframe), dtime, mat, whole);
+                nesting--;
+                if (!supported) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether the character is painted by other than solid colors.
+     */
+    private static boolean hasPaint(CharacterTag character) {
+        if (character instanceof TextTag) {
+            return false;
+        }
+
+        if (character instanceof ShapeTag) {
+            SHAPEWITHSTYLE shapes = ((ShapeTag) character).getShapes();
+            if (hasPaint(shapes.fillStyles, shapes.lineStyles)) {
+                return true;
+            }
+
+            for (SHAPERECORD record : shapes.shapeRecords) {
+                if (record instanceof StyleChangeRecord) {
+                    StyleChangeRecord scr = (StyleChangeRecord) record;
+                    if (scr.stateNewStyles && hasPaint(scr.fillStyles, scr.lineStyles)) {
+                        return true;
+                    }
+                }
+            }
+
+            return false;
+        }
+
+        if (character instanceof MorphShapeTag) {
+            MorphShapeTag morphShape = (MorphShapeTag) character;
+            MORPHFILLSTYLEARRAY fillStyles = morphShape.getFillStyles();
+            if (fillStyles != null && fillStyles.fillStyles != null) {
+                for (MORPHFILLSTYLE fillStyle : fillStyles.fillStyles) {
+                    if (fillStyle.fillStyleType != MORPHFILLSTYLE.SOLID) {
+                        return true;
+                    }
+                }
+            }
+
+            MORPHLINESTYLEARRAY lineStyles = morphShape.getLineStyles();
+            if (lineStyles != null && lineStyles.lineStyles2 != null) {
+                for (MORPHLINESTYLE2 lineStyle : lineStyles.lineStyles2) {
+                    if (lineStyle.hasFillFlag && lineStyle.fillType.fillStyleType != MORPHFILLSTYLE.SOLID) {
+                        return true;
+                    }
+                }
+            }
+
+            return false;
+        }
+
+        // images and unknown drawables
+        return true;
+    }
+
+    private static boolean hasPaint(FILLSTYLEARRAY fillStyles, LINESTYLEARRAY lineStyles) {
+        if (fillStyles != null && fillStyles.fillStyles != null) {
+            for (FILLSTYLE fillStyle : fillStyles.fillStyles) {
+                if (fillStyle.fillStyleType != FILLSTYLE.SOLID) {
+                    return true;
+                }
+            }
+        }
+
+        if (lineStyles != null && lineStyles.lineStyles2 != null) {
+            for (LINESTYLE2 lineStyle : lineStyles.lineStyles2) {
+                if (lineStyle.hasFillFlag && lineStyle.fillType.fillStyleType != FILLSTYLE.SOLID) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void add(ExportRectangle rect) {
+        Rectangle2D r = new Rectangle2D.Double(rect.xMin, rect.yMin, rect.xMax - rect.xMin, rect.yMax - rect.yMin);
+        if (dirty == null) {
+            dirty = r;
+        } else {
+            dirty.add(r);
+        }
+    }
+}
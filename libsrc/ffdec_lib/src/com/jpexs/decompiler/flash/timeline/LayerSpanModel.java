@@ -0,0 +1,247 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.timeline;
+
+import com.jpexs.decompiler.flash.tags.base.CharacterTag;
+import com.jpexs.decompiler.flash.tags.base.MorphShapeTag;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Blocks of frames of each depth as displayed in the timeline view.
+ *
+ * A block starts at a keyframe and continues while the depth shows the same
+ * placement, or while the depth is empty. Blocks of each depth are stored as
+ * run-length encoded arrays sorted by frame, so the blocks visible in a frame
+ * range are found by binary search.
+ *
+ * @author JPEXS
+ */
+public class LayerSpanModel {
+
+    public enum SpanType {
+
+        EMPTY, NORMAL, MOTION_TWEEN, SHAPE_TWEEN
+    }
+
+    public static class Span {
+
+        public final int depth;
+
+        public final int startFrame;
+
+        public final int frameCount;
+
+        public final SpanType type;
+
+        public Span(int depth, int startFrame, int frameCount, SpanType type) {
+            this.depth = depth;
+            this.startFrame = startFrame;
+            this.frameCount = frameCount;
+            this.type = type;
+        }
+
+        public int getEndFrame() {
+            return startFrame + frameCount - 1;
+        }
+    }
+
+    private static final SpanType[] TYPES = SpanType.values();
+
+    private static class DepthSpans {
+
+        private int count;
+
+        private int[] starts = new int[4];
+
+        private int[] lengths = new int[4];
+
+        private byte[] types = new byte[4];
+
+        private void add(int start, int length, SpanType type) {
+            if (count == starts.length) {
+                int newSize = count * 2;
+                starts = Arrays.copyOf(starts, newSize);
+                lengths = Arrays.copyOf(lengths, newSize);
+                types = Arrays.copyOf(types, newSize);
+            }
+
+            starts[count] = start;
+            lengths[count] = length;
+            types[count] = (byte) type.ordinal();
+            count++;
+        }
+
+        /**
+         * Finds first span ending at or after the frame.
+         */
+        private int find(int frame) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] + lengths[mid] - 1 < frame) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            return low;
+        }
+    }
+
+    private final DepthSpans[] depths;
+
+    private final BitSet actionFrames = new BitSet();
+
+    /**
+     * Computes the spans of the timeline.
+     *
+     * @param timeline Timeline
+     */
+    public LayerSpanModel(Timeline timeline) {
+        List<Frame> frames = timeline.getFrames();
+        int frameCount = frames.size();
+        depths = new DepthSpans[timeline.getMaxDepth() + 1];
+
+        // frames and states of each depth, in frame order
+        DepthFrames[] depthFrames = new DepthFrames[depths.length];
+        for (int f = 0; f < frameCount; f++) {
+            Frame frame = frames.get(f);
+            if (!frame.actions.isEmpty()) {
+                actionFrames.set(f);
+            }
+
+            for (Map.Entry<Integer, DepthState> entry : frame.layers.entrySet()) {
+                int d = entry.getKey();
+                if (d < 0 || d >= depths.length) {
+                    continue;
+                }
+
+                if (depthFrames[d] == null) {
+                    depthFrames[d] = new DepthFrames();
+                }
+
+                depthFrames[d].add(f, entry.getValue());
+            }
+        }
+
+        for (int d = 0; d < depths.length; d++) {
+            if (depthFrames[d] != null) {
+                depths[d] = computeSpans(depthFrames[d], frameCount);
+            }
+        }
+    }
+
+    private static class DepthFrames {
+
+        private int count;
+
+        private int[] frames = new int[4];
+
+        private DepthState[] states = new DepthState[4];
+
+        private void add(int frame, DepthState state) {
+            if (count == frames.length) {
+                frames = Arrays.copyOf(frames, count * 2);
+                states = Arrays.copyOf(states, count * 2);
+            }
+
+            frames[count] = frame;
+            states[count] = state;
+            count++;
+        }
+    }
+
+    private static DepthSpans computeSpans(DepthFrames depthFrames, int frameCount) {
+        DepthSpans spans = new DepthSpans();
+        int count = depthFrames.count;
+        int[] frames = depthFrames.frames;
+        DepthState[] states = depthFrames.states;
+        int maxFrame = frames[count - 1];
+        int i = 0;
+        int f = 0;
+        while (f <= maxFrame) {
+            while (frames[i] < f) {
+                i++;
+            }
+
+            int end;
+            if (frames[i] != f) {
+                // empty frames, followed by frames without character
+                int j = i;
+                while (j < count && states[j].getCharacter() == null) {
+                    j++;
+                }
+
+                end = j < count ? frames[j] - 1 : frameCount - 1;
+                spans.add(f, end - f + 1, SpanType.EMPTY);
+            } else {
+                DepthState ds = states[i];
+                CharacterTag character = ds.getCharacter();
+                SpanType type = character instanceof MorphShapeTag ? SpanType.SHAPE_TWEEN : ds.motionTween ? SpanType.MOTION_TWEEN : SpanType.NORMAL;
+                int j = i;
+                while (j + 1 < count && frames[j + 1] == frames[j] + 1 && !states[j + 1].key) {
+                    j++;
+                }
+
+                end = frames[j];
+                spans.add(f, end - f + 1, type);
+            }
+
+            f = end + 1;
+        }
+
+        return spans;
+    }
+
+    /**
+     * Gets spans of the depth which overlap the frame range.
+     *
+     * @param depth Depth
+     * @param startFrame First frame of the range
+     * @param endFrame Last frame of the range
+     * @return Spans in frame order
+     */
+    public List<Span> getSpans(int depth, int startFrame, int endFrame) {
+        List<Span> result = new ArrayList<>();
+        if (depth < 0 || depth >= depths.length || depths[depth] == null) {
+            return result;
+        }
+
+        DepthSpans spans = depths[depth];
+        for (int i = spans.find(startFrame); i < spans.count && spans.starts[i] <= endFrame; i++) {
+            result.add(new Span(depth, spans.starts[i], spans.lengths[i], TYPES[spans.types[i]]));
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks whether the frame has actions.
+     *
+     * @param frame Frame
+     * @return True when the frame has DoAction tags
+     */
+    public boolean hasActions(int frame) {
+        return actionFrames.get(frame);
+    }
+}
@@ -116,6 +116,8 @@ public class Timeline {
 
     private final Map<Integer, Integer> depthMaxFrame = new HashMap<>();
 
+    private LayerSpanModel layerSpanModel;
+
     public final List<ASMSource> asmSources = new ArrayList<>();
 
     private final List<ASMSourceContainer> asmSourceContainers = new ArrayList<>();
@@ -161,6 +163,7 @@ public class Timeline {
         frames.add(frame);
         maxDepth = getMaxDepthInternal();
         calculateMaxDepthFrames();
+        layerSpanModel = null;
     }
 
     public AS2Package getAS2RootPackage() {
@@ -173,6 +176,21 @@ public class Timeline {
         return depthMaxFrame;
     }
 
+    /**
+     * Gets blocks of frames of each depth. The model is computed on first
+     * access and recomputed after the timeline changes.
+     *
+     * @return Layer span model
+     */
+    public synchronized LayerSpanModel getLayerSpanModel() {
+        ensureInitialized();
+        if (layerSpanModel == null) {
+            layerSpanModel = new LayerSpanModel(this);
+        }
+
+        return layerSpanModel;
+    }
+
     public List<SoundStreamBlockTag> getSoundStreamBlocks(SoundStreamHeadTypeTag head) {
         ensureInitialized();
         return soundStramBlocks.get(head.getCharacterId());
@@ -190,6 +208,7 @@ public class Timeline {
         initialized = false;
         frames.clear();
         depthMaxFrame.clear();
+        layerSpanModel = null;
         asmSources.clear();
         asmSourceContainers.clear();
         actionFrames.clear();
@@ -1069,6 +1088,11 @@ public class Timeline {
                         }
                     }
 
+                    //keep the clip of the caller, like the region of FrameDiffRenderer
+                    if (prevClip != null) {
+                        clip.intersect(new Area(prevClip));
+                    }
+
                     g.setTransform(new AffineTransform());
                     g.setClip(clip);
 
@@ -1076,6 +1100,9 @@ public class Timeline {
                     //g.setPaint(Color.red);
                     //g.setStroke(new BasicStroke(2));
                     //g.draw(clip);
+                } else if (prevClip != null) {
+                    g.setTransform(new AffineTransform());
+                    g.setClip(prevClip);
                 } else {
                     g.setClip(null);
                 }
@@ -1157,7 +1184,13 @@ public class Timeline {
 
                             Rectangle2D r = new Rectangle2D.Double(p1.xMin, p1.yMin, p1.getWidth(), p1.getHeight());
 
-                            g.setClip(r);
+                            if (prevClip == null) {
+                                g.setClip(r);
+                            } else {
+                                Area sliceClip = new Area(r);
+                                sliceClip.intersect(new Area(prevClip));
+                                g.setClip(sliceClip);
+                            }
                             drawDrawable(strokeTransformation, layer, transforms[s], g, colorTransform, layer.blendMode, blendMode, clips, transformation, isClip, layer.clipDepth, absMat, layer.time + time, layer.ratio, renderContext, image, fullImage, (DrawableTag) character, layer.filters, unzoom, clrTrans, sameImage, viewRect, fullTransformation, false, DRAW_MODE_SHAPES, canUseSmoothing);
                             s++;
                         }
@@ -1260,11 +1293,10 @@ public class Timeline {
                 Tag drawableTag = (Tag) drawable;
                 RECT boundRect = drawable.getRect();
                 boolean createNew = false;
-                if (exporter.exportedTags.containsKey(drawableTag)) {
-                    assetName = exporter.exportedTags.get(drawableTag);
-                } else {
+                assetName = exporter.getExportedTagId(drawableTag, layer.ratio, clrTrans);
+                if (assetName == null) {
                     assetName = getTagIdPrefix(drawableTag, exporter);
-                    exporter.exportedTags.put(drawableTag, assetName);
+                    exporter.setExportedTagId(drawableTag, layer.ratio, clrTrans, assetName);
                     createNew = true;
                 }
                 ExportRectangle rect = new ExportRectangle(boundRect);
@@ -27,6 +27,7 @@ import java.awt.image.RasterFormatException;
 import java.awt.image.WritableRaster;
 
 /**
+ * Blend mode composite. Rows are composed in tiles on multiple threads.
  *
  * @author JPEXS
  */
@@ -172,6 +173,10 @@ public final class BlendComposite implements Composite {
             int width = Math.min(src.getWidth(), dstIn.getWidth());
             int height = Math.min(src.getHeight(), dstIn.getHeight());
 
+            FilterTiles.run(height, width, (from, to) -> compose(src, dstIn, dstOut, width, from, to));
+        }
+
+        private void compose(Raster src, Raster dstIn, WritableRaster dstOut, int width, int fromY, int toY) {
             float alpha = composite.getAlpha();
 
             int[] result = new int[4];
@@ -181,7 +186,7 @@ public final class BlendComposite implements Composite {
             int[] srcPixels = new int[width];
             int[] dstPixels = new int[width];
 
-            for (int y = 0; y < height; y++) {
+            for (int y = fromY; y < toY; y++) {
                 src.getDataElements(0, y, width, 1, srcPixels);
                 dstIn.getDataElements(0, y, width, 1, dstPixels);
                 for (int x = 0; x < width; x++) {
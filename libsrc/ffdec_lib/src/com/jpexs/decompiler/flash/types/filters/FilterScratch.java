@@ -0,0 +1,109 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.types.filters;
+
+import java.util.Arrays;
+
+/**
+ * Scratch buffers of the filters, reused by each thread.
+ *
+ * A buffer is valid until the same buffer is requested again on the same
+ * thread. Buffers longer than the limit are allocated for each use, so large
+ * images do not stay in the memory.
+ *
+ * @author JPEXS
+ */
+final class FilterScratch {
+
+    /**
+     * Maximal length of a reused buffer
+     */
+    private static final int MAX_REUSED_LENGTH = 1 << 22;
+
+    private static final ThreadLocal<FilterScratch> scratch = ThreadLocal.withInitial(FilterScratch::new);
+
+    private int[] blurTemp = new int[0];
+
+    private int[] columnHits = new int[0];
+
+    private final long[][] columnSums = new long[][]{new long[0], new long[0], new long[0], new long[0]};
+
+    private FilterScratch() {
+    }
+
+    /**
+     * Gets temporary pixels of the blur.
+     *
+     * @param length Length
+     * @return Buffer with undefined content
+     */
+    static int[] getBlurTemp(int length) {
+        if (length > MAX_REUSED_LENGTH) {
+            return new int[length];
+        }
+
+        FilterScratch s = scratch.get();
+        if (s.blurTemp.length < length) {
+            s.blurTemp = new int[length];
+        }
+
+        return s.blurTemp;
+    }
+
+    /**
+     * Gets numbers of pixels summed in columns.
+     *
+     * @param length Length
+     * @return Zeroed buffer
+     */
+    static int[] getColumnHits(int length) {
+        if (length > MAX_REUSED_LENGTH) {
+            return new int[length];
+        }
+
+        FilterScratch s = scratch.get();
+        if (s.columnHits.length < length) {
+            s.columnHits = new int[length];
+        } else {
+            Arrays.fill(s.columnHits, 0, length, 0);
+        }
+
+        return s.columnHits;
+    }
+
+    /**
+     * Gets sums of a color channel in columns.
+     *
+     * @param channel Channel, 0 to 3
+     * @param length Length
+     * @return Zeroed buffer
+     */
+    static long[] getColumnSums(int channel, int length) {
+        if (length > MAX_REUSED_LENGTH) {
+            return new long[length];
+        }
+
+        FilterScratch s = scratch.get();
+        if (s.columnSums[channel].length < length) {
+            s.columnSums[channel] = new long[length];
+        } else {
+            Arrays.fill(s.columnSums[channel], 0, length, 0);
+        }
+
+        return s.columnSums[channel];
+    }
+}
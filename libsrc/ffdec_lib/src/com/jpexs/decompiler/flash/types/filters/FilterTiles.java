@@ -0,0 +1,104 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.types.filters;
+
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.helpers.SharedForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs image processing in tiles on a shared thread pool.
+ *
+ * Work is split to ranges of rows or columns, each range is processed by
+ * exactly the same code as a whole image would be, so the result does not
+ * depend on the number of tiles.
+ *
+ * @author JPEXS
+ */
+final class FilterTiles {
+
+    /**
+     * Minimal number of pixels in one tile
+     */
+    static final int MIN_TILE_PIXELS = 16384;
+
+    private static final SharedForkJoinPool pool = new SharedForkJoinPool("Filtering");
+
+    /**
+     * Processing of a range of rows, columns or pixels.
+     */
+    interface RangeTask {
+
+        /**
+         * Processes the range.
+         *
+         * @param from First item, inclusive
+         * @param to Last item, exclusive
+         */
+        void run(int from, int to);
+    }
+
+    private FilterTiles() {
+    }
+
+    private static int getTileCount(int count, int itemPixels) {
+        if (!Configuration.parallelSpeedUp.get()) {
+            return 1;
+        }
+
+        if (pool.isWorkerThread()) {
+            return 1;
+        }
+
+        long tiles = (long) count * itemPixels / MIN_TILE_PIXELS;
+        tiles = Math.min(tiles, Configuration.getParallelThreadCount());
+        tiles = Math.min(tiles, count);
+        return (int) Math.max(tiles, 1);
+    }
+
+    /**
+     * Processes items from 0 to count in tiles. First tile is processed on
+     * the calling thread. Returns after all the tiles are processed.
+     *
+     * @param count Number of items
+     * @param itemPixels Number of pixels of one item, for example width of a
+     * row
+     * @param task Task
+     */
+    static void run(int count, int itemPixels, RangeTask task) {
+        int tiles = getTileCount(count, itemPixels);
+        if (tiles <= 1) {
+            task.run(0, count);
+            return;
+        }
+
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[tiles - 1];
+        for (int i = 1; i < tiles; i++) {
+            final int from = (int) ((long) count * i / tiles);
+            final int to = (int) ((long) count * (i + 1) / tiles);
+            tasks[i - 1] = pool.submit(() -> task.run(from, to));
+        }
+
+        try {
+            task.run(0, (int) ((long) count / tiles));
+        } finally {
+            for (ForkJoinTask<?> t : tasks) {
+                t.join();
+            }
+        }
+    }
+}
@@ -56,10 +56,16 @@ public class Filtering {
 
     private static final Rectangle RECTANGLE_512_1 = new Rectangle(512, 1);
 
-    private static void boxBlurHorizontal(int[] pixels, int[] mask, int[] newColors, int w, int h, int radius) {
-        int index = 0;
+    private static boolean isMasked(int[] mask, int index) {
+        return (mask == null) || (((mask[index] >> 24) & 0xff) > 0);
+    }
 
-        for (int y = 0; y < h; y++) {
+    /**
+     * Blurs rows from fromY to toY of src to dst with a running sum.
+     */
+    private static void boxBlurHorizontal(int[] src, int[] dst, int[] mask, int w, int fromY, int toY, int radius) {
+        for (int y = fromY; y < toY; y++) {
+            int index = y * w;
             int hits = 0;
             long r = 0;
             long g = 0;
@@ -68,15 +74,13 @@ public class Filtering {
             for (int x = -radius; x < w; x++) {
                 int oldPixel = x - radius - 1;
                 if (oldPixel >= 0) {
-
-                    int color = pixels[index + oldPixel];
-                    if ((mask == null) || (((mask[index + oldPixel] >> 24) & 0xff) > 0)) {
+                    if (isMasked(mask, index + oldPixel)) {
+                        int color = src[index + oldPixel];
                         if (color != 0) {
                             a -= (color >> 24) & 0xff;
                             r -= ((color >> 16) & 0xff);
                             g -= ((color >> 8) & 0xff);
                             b -= ((color) & 0xff);
-
                         }
                         hits--;
                     }
@@ -84,8 +88,8 @@ public class Filtering {
 
                 int newPixel = x + radius;
                 if (newPixel < w) {
-                    int color = pixels[index + newPixel];
-                    if ((mask == null) || (((mask[index + newPixel] >> 24) & 0xff) > 0)) {
+                    if (isMasked(mask, index + newPixel)) {
+                        int color = src[index + newPixel];
                         if (color != 0) {
                             a += (color >> 24) & 0xff;
                             r += ((color >> 16) & 0xff);
@@ -97,93 +101,80 @@ public class Filtering {
                 }
 
                 if (x >= 0) {
-                    if ((mask == null) || (((mask[index + x] >> 24) & 0xff) > 0)) {
-                        if (hits == 0) {
-                            newColors[x] = 0;
-                        } else {
-                            newColors[x] = RGBA.toInt((int) (r / hits) & 0xff, (int) (g / hits) & 0xff, (int) (b / hits) & 0xff, (int) (a / hits));
-                        }
+                    if (hits != 0 && isMasked(mask, index + x)) {
+                        dst[index + x] = RGBA.toInt((int) (r / hits) & 0xff, (int) (g / hits) & 0xff, (int) (b / hits) & 0xff, (int) (a / hits));
                     } else {
-                        newColors[x] = 0;
+                        dst[index + x] = 0;
                     }
                 }
             }
-
-            System.arraycopy(newColors, 0, pixels, index, w);
-
-            index += w;
         }
     }
 
-    private static void boxBlurVertical(int[] pixels, int[] mask, int[] newColors, int w, int h, int radius) {
-        int oldPixelOffset = -(radius + 1) * w;
-        int newPixelOffset = (radius) * w;
-
-        for (int x = 0; x < w; x++) {
-            int hits = 0;
-            long r = 0;
-            long g = 0;
-            long b = 0;
-            long a = 0;
-            int index = -radius * w + x;
-            for (int y = -radius; y < h; y++) {
-                int oldPixel = y - radius - 1;
-                if (oldPixel >= 0) {
-                    int color = pixels[index + oldPixelOffset];
-                    if ((mask == null) || (((mask[index + oldPixelOffset] >> 24) & 0xff) > 0)) {
+    /**
+     * Blurs columns from fromX to toX of src to dst with a running sum. The
+     * columns are processed together row by row, so the image is read in
+     * memory order.
+     */
+    private static void boxBlurVertical(int[] src, int[] dst, int[] mask, int w, int h, int fromX, int toX, int radius) {
+        int count = toX - fromX;
+        int[] hits = FilterScratch.getColumnHits(count);
+        long[] r = FilterScratch.getColumnSums(0, count);
+        long[] g = FilterScratch.getColumnSums(1, count);
+        long[] b = FilterScratch.getColumnSums(2, count);
+        long[] a = FilterScratch.getColumnSums(3, count);
+
+        for (int y = -radius; y < h; y++) {
+            int oldPixel = y - radius - 1;
+            if (oldPixel >= 0) {
+                int index = oldPixel * w + fromX;
+                for (int i = 0; i < count; i++, index++) {
+                    if (isMasked(mask, index)) {
+                        int color = src[index];
                         if (color != 0) {
-                            a -= (color >> 24) & 0xff;
-                            r -= ((color >> 16) & 0xff);
-                            g -= ((color >> 8) & 0xff);
-                            b -= ((color) & 0xff);
-
+                            a[i] -= (color >> 24) & 0xff;
+                            r[i] -= ((color >> 16) & 0xff);
+                            g[i] -= ((color >> 8) & 0xff);
+                            b[i] -= ((color) & 0xff);
                         }
-                        hits--;
+                        hits[i]--;
                     }
-
                 }
+            }
 
-                int newPixel = y + radius;
-                if (newPixel < h) {
-                    if ((mask == null) || (((mask[index + newPixelOffset] >> 24) & 0xff) > 0)) {
-                        int color = pixels[index + newPixelOffset];
+            int newPixel = y + radius;
+            if (newPixel < h) {
+                int index = newPixel * w + fromX;
+                for (int i = 0; i < count; i++, index++) {
+                    if (isMasked(mask, index)) {
+                        int color = src[index];
                         if (color != 0) {
-                            a += (color >> 24) & 0xff;
-                            r += ((color >> 16) & 0xff);
-                            g += ((color >> 8) & 0xff);
-                            b += ((color) & 0xff);
-
+                            a[i] += (color >> 24) & 0xff;
+                            r[i] += ((color >> 16) & 0xff);
+                            g[i] += ((color >> 8) & 0xff);
+                            b[i] += ((color) & 0xff);
                         }
-                        hits++;
+                        hits[i]++;
                     }
                 }
+            }
 
-                if (y >= 0) {
-                    if ((mask == null) || (((mask[y * w + x] >> 24) & 0xff) > 0)) {
-                        if (hits == 0) {
-                            newColors[y] = 0;
-                        } else {
-                            newColors[y] = RGBA.toInt((int) (r / hits) & 0xff, (int) (g / hits) & 0xff, (int) (b / hits) & 0xff, (int) (a / hits) & 0xff);
-                        }
+            if (y >= 0) {
+                int index = y * w + fromX;
+                for (int i = 0; i < count; i++, index++) {
+                    int n = hits[i];
+                    if (n != 0 && isMasked(mask, index)) {
+                        dst[index] = RGBA.toInt((int) (r[i] / n) & 0xff, (int) (g[i] / n) & 0xff, (int) (b[i] / n) & 0xff, (int) (a[i] / n) & 0xff);
                     } else {
-                        newColors[y] = 0;
+                        dst[index] = 0;
                     }
                 }
-
-                index += w;
-            }
-
-            for (int y = 0; y < h; y++) {
-                pixels[y * w + x] = newColors[y];
             }
         }
     }
 
-    private static void premultiply(int[] p) {
-        int length = p.length;
-        int offset = 0;
-        length += offset;
-        for (int i = offset; i < length; i++) {
+    private static void premultiply(int[] p, int from, int to) {
+        for (int i = from; i < to; i++) {
             int rgb = p[i];
             int a = rgb >> 24 & 0xff;
             int r = rgb >> 16 & 0xff;
@@ -197,11 +188,8 @@ public class Filtering {
         }
     }
 
-    private static void unpremultiply(int[] p) {
-        int length = p.length;
-        int offset = 0;
-        length += offset;
-        for (int i = offset; i < length; i++) {
+    private static void unpremultiply(int[] p, int from, int to) {
+        for (int i = from; i < to; i++) {
             int rgb = p[i];
             int a = rgb >> 24 & 0xff;
             int r = rgb >> 16 & 0xff;
@@ -237,17 +225,24 @@ public class Filtering {
         return new SerializableImage(ret);
     }
 
+    /**
+     * Blurs the pixels in place. Each iteration runs horizontal pass from
+     * src to a temporary buffer and vertical pass back, both split to tiles
+     * of whole rows or columns. The temporary buffers are reused by the
+     * threads.
+     */
     private static void blur(int[] src, int width, int height, int hRadius, int vRadius, int iterations, int[] mask) {
-        int[] inPixels = src;
-        premultiply(inPixels);
+        FilterTiles.run(src.length, 1, (from, to) -> premultiply(src, from, to));
 
-        int[] tempRow = new int[width];
-        int[] tempColumn = new int[height];
+        int[] temp = FilterScratch.getBlurTemp(src.length);
+        int hr = hRadius / 2;
+        int vr = vRadius / 2;
         for (int i = 0; i < iterations; i++) {
-            boxBlurHorizontal(inPixels, mask, tempRow, width, height, hRadius / 2);
-            boxBlurVertical(inPixels, mask, tempColumn, width, height, vRadius / 2);
+            FilterTiles.run(height, width, (from, to) -> boxBlurHorizontal(src, temp, mask, width, from, to, hr));
+            FilterTiles.run(width, height, (from, to) -> boxBlurVertical(temp, src, mask, width, height, from, to, vr));
         }
-        unpremultiply(inPixels);
+
+        FilterTiles.run(src.length, 1, (from, to) -> unpremultiply(src, from, to));
     }
 
     public static SerializableImage bevel(SerializableImage src, int blurX, int blurY, float strength, int type, int highlightColor, int shadowColor, float angle, float distance, boolean knockout, int iterations) {
@@ -364,12 +359,14 @@ public class Filtering {
         int[] ret = getRGB(retImg);
         blur(ret, width, height, blurX, blurY, iterations, mask);
 
-        for (int i = 0; i < srcPixels.length; i++) {
-            int ah = (int) (((ret[i] >> 16) & 0xFF) * strength);
-            int as = (int) ((ret[i] & 0xFF) * strength);
-            int ra = cut(ah - as, -255, 255);
-            ret[i] = gradientPixels[255 + ra];
-        }
+        FilterTiles.run(ret.length, 1, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int ah = (int) (((ret[i] >> 16) & 0xFF) * strength);
+                int as = (int) ((ret[i] & 0xFF) * strength);
+                int ra = cut(ah - as, -255, 255);
+                ret[i] = gradientPixels[255 + ra];
+            }
+        });
 
         setRGB(retImg, width, height, ret);
 
@@ -411,45 +408,53 @@ public class Filtering {
         int width = src.getWidth();
         int height = src.getHeight();
         int[] srcPixels = getRGB(src);
-        int[] shadow = new int[srcPixels.length];
-        for (int i = 0; i < srcPixels.length; i++) {
-            int alpha = (srcPixels[i] >> 24) & 0xff;
-            if (inner) {
-                alpha = 255 - alpha;
-            }            
-            Color shadowColor;
-            shadowColor = new Color(color.getRed(), color.getGreen(), color.getBlue(), cut(color.getAlpha() * alpha / 255 * strength));
-            shadow[i] = shadowColor.getRGB();
-        }
+        int[] shadowColors = new int[256];
+        for (int alpha = 0; alpha < 256; alpha++) {
+            Color shadowColor = new Color(color.getRed(), color.getGreen(), color.getBlue(), cut(color.getAlpha() * alpha / 255 * strength));
+            shadowColors[alpha] = shadowColor.getRGB();
+        }
+
+        int[] shadowPixels = new int[srcPixels.length];
+        FilterTiles.run(srcPixels.length, 1, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int alpha = (srcPixels[i] >> 24) & 0xff;
+                if (inner) {
+                    alpha = 255 - alpha;
+                }
+                shadowPixels[i] = shadowColors[alpha];
+            }
+        });
 
         Color colorAlpha = ALPHA;
         double angleRad = angle / 180 * Math.PI;
         double moveX = (distance * Math.cos(angleRad));
         double moveY = (distance * Math.sin(angleRad));
-        shadow = moveRGB(width, height, shadow, moveX, moveY, inner ? color : colorAlpha);
+        int[] shadow = moveRGB(width, height, shadowPixels, moveX, moveY, inner ? color : colorAlpha);
 
         if (blurX > 0 || blurY > 0) {
             blur(shadow, width, height, blurX, blurY, iterations, null);
         }
 
         if (knockout || inner) {
-            for (int i = 0; i < shadow.length; i++) {
-                int mask = (srcPixels[i] >> 24) & 0xff;
-                if (!inner) {
-                    mask = 255 - mask;
-                }
+            FilterTiles.run(shadow.length, 1, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    int mask = (srcPixels[i] >> 24) & 0xff;
+                    if (!inner) {
+                        mask = 255 - mask;
+                    }
 
-                if (inner && compositeSource && !knockout) {
-                    Color shadowColor = new Color(shadow[i], true);
-                    Color srcColor = new Color(srcPixels[i], true);
-                    srcColor = new Color(srcColor.getRed(), srcColor.getGreen(), srcColor.getBlue(), 255);
+                    if (inner && compositeSource && !knockout) {
+                        Color shadowColor = new Color(shadow[i], true);
+                        Color srcColor = new Color(srcPixels[i], true);
+                        srcColor = new Color(srcColor.getRed(), srcColor.getGreen(), srcColor.getBlue(), 255);
 
-                    Color resultColor = over(shadowColor, srcColor);
+                        Color resultColor = over(shadowColor, srcColor);
 
-                    shadow[i] = resultColor.getRGB();
+                        shadow[i] = resultColor.getRGB();
+                    }
+                    shadow[i] = (shadow[i] & 0xffffff) + ((mask * ((shadow[i] >> 24) & 0xff) / 255) << 24);
                 }
-                shadow[i] = (shadow[i] & 0xffffff) + ((mask * ((shadow[i] >> 24) & 0xff) / 255) << 24);
-            }
+            });
         }
 
         BufferedImage retCanvas = new BufferedImage(width, height, src.getType());
@@ -490,13 +495,13 @@ public class Filtering {
             revPixels[i] = (srcPixels[i] & 0xffffff) + ((255 - ((srcPixels[i] >> 24) & 0xff)) << 24);
         }
 
-        int[] shadow = new int[srcPixels.length];
+        int[] shadowPixels = new int[srcPixels.length];
         for (int i = 0; i < srcPixels.length; i++) {
-            shadow[i] = 0 + ((cut(strength * ((srcPixels[i] >> 24) & 0xff))) << 24);
+            shadowPixels[i] = 0 + ((cut(strength * ((srcPixels[i] >> 24) & 0xff))) << 24);
         }
 
         Color colorAlpha = ALPHA;
-        shadow = moveRGB(width, height, shadow, moveX, moveY, colorAlpha);
+        int[] shadow = moveRGB(width, height, shadowPixels, moveX, moveY, colorAlpha);
 
         int[] mask = null;
         if (type == INNER) {
@@ -508,19 +513,16 @@ public class Filtering {
 
         blur(shadow, width, height, blurX, blurY, iterations, mask);
 
-        if (mask != null) {
-            for (int i = 0; i < mask.length; i++) {
-                int m = (mask[i] >> 24);
-                if (m == 0) {
+        int[] fmask = mask;
+        FilterTiles.run(shadow.length, 1, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (fmask != null && (fmask[i] >> 24) == 0) {
                     shadow[i] = 0;
                 }
+                int a = (shadow[i] >> 24) & 0xff;
+                shadow[i] = gradientPixels[a];
             }
-        }
-
-        for (int i = 0; i < shadow.length; i++) {
-            int a = (shadow[i] >> 24) & 0xff;
-            shadow[i] = gradientPixels[a];
-        }
+        });
 
         BufferedImage retCanvas = new BufferedImage(width, height, src.getType());
         setRGB(retCanvas, width, height, shadow);
@@ -570,9 +572,34 @@ public class Filtering {
     }
 
     public static SerializableImage convolution(SerializableImage src, float[] matrix, int w, int h) {
-        BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), src.getType());
-        BufferedImageOp op = new ConvolveOp(new Kernel(w, h, matrix), ConvolveOp.EDGE_ZERO_FILL, new RenderingHints(null));
-        op.filter(src.getBufferedImage(), dst);
+        BufferedImage srcImg = src.getBufferedImage();
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int type = src.getType();
+        BufferedImage dst = new BufferedImage(width, height, type);
+        if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_ARGB_PRE && type != BufferedImage.TYPE_INT_RGB) {
+            BufferedImageOp op = new ConvolveOp(new Kernel(w, h, matrix), ConvolveOp.EDGE_ZERO_FILL, new RenderingHints(null));
+            op.filter(srcImg, dst);
+            return new SerializableImage(dst);
+        }
+
+        // each tile is convolved with the rows around it which the kernel reaches
+        FilterTiles.run(height, width, (from, to) -> {
+            Kernel kernel = new Kernel(w, h, matrix);
+            BufferedImageOp op = new ConvolveOp(kernel, ConvolveOp.EDGE_ZERO_FILL, new RenderingHints(null));
+            if (from == 0 && to == height) {
+                op.filter(srcImg, dst);
+                return;
+            }
+
+            int y0 = Math.max(0, from - kernel.getYOrigin());
+            int y1 = Math.min(height, to + h - 1 - kernel.getYOrigin());
+            BufferedImage tileSrc = new BufferedImage(width, y1 - y0, type);
+            tileSrc.getRaster().setDataElements(0, 0, width, y1 - y0, srcImg.getRaster().getDataElements(0, y0, width, y1 - y0, null));
+            BufferedImage tileDst = new BufferedImage(width, y1 - y0, type);
+            op.filter(tileSrc, tileDst);
+            dst.getRaster().setDataElements(0, from, width, to - from, tileDst.getRaster().getDataElements(0, from - y0, width, to - from, null));
+        });
         return new SerializableImage(dst);
     }
 
@@ -584,22 +611,24 @@ public class Filtering {
          return new SerializableImage(src.getColorModel(), displayRaster, true, null);*/
         BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), src.getType());
         int[] pixels = getRGB(src.getBufferedImage()).clone();
-        for (int i = 0; i < pixels.length; i++) {
-            int rgb = pixels[i];
-            int a = (rgb >> 24) & 0xff;
-            int r = (rgb >> 16) & 0xff;
-            int g = (rgb >> 8) & 0xff;
-            int b = rgb & 0xff;
-            float[] mr = matrix[0];
-            int r2 = cut(mr[0] * r + mr[1] * g + mr[2] * b + mr[3] * a + mr[4]);
-            float[] mg = matrix[1];
-            int g2 = cut(mg[0] * r + mg[1] * g + mg[2] * b + mg[3] * a + mg[4]);
-            float[] mb = matrix[2];
-            int b2 = cut(mb[0] * r + mb[1] * g + mb[2] * b + mb[3] * a + mb[4]);
-            float[] ma = matrix[3];
-            int a2 = cut(ma[0] * r + ma[1] * g + ma[2] * b + ma[3] * a + ma[4]);
-            pixels[i] = (a2 << 24) | (r2 << 16) | (g2 << 8) | b2;
-        }
+        float[] mr = matrix[0];
+        float[] mg = matrix[1];
+        float[] mb = matrix[2];
+        float[] ma = matrix[3];
+        FilterTiles.run(pixels.length, 1, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int rgb = pixels[i];
+                int a = (rgb >> 24) & 0xff;
+                int r = (rgb >> 16) & 0xff;
+                int g = (rgb >> 8) & 0xff;
+                int b = rgb & 0xff;
+                int r2 = cut(mr[0] * r + mr[1] * g + mr[2] * b + mr[3] * a + mr[4]);
+                int g2 = cut(mg[0] * r + mg[1] * g + mg[2] * b + mg[3] * a + mg[4]);
+                int b2 = cut(mb[0] * r + mb[1] * g + mb[2] * b + mb[3] * a + mb[4]);
+                int a2 = cut(ma[0] * r + ma[1] * g + ma[2] * b + ma[3] * a + ma[4]);
+                pixels[i] = (a2 << 24) | (r2 << 16) | (g2 << 8) | b2;
+            }
+        });
         setRGB(dst, src.getWidth(), src.getHeight(), pixels);
         return new SerializableImage(dst);
     }
@@ -634,18 +663,11 @@ public class Filtering {
             int redMultTerm, int greenMultTerm, int blueMultTerm, int alphaMultTerm) {
         BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), src.getType());
         int[] pixels = getRGB(src.getBufferedImage()).clone();
-        for (int i = 0; i < pixels.length; i++) {
-            int rgb = pixels[i];
-            int a = (rgb >> 24) & 0xff;
-            int r = (rgb >> 16) & 0xff;
-            int g = (rgb >> 8) & 0xff;
-            int b = rgb & 0xff;
-            r = cut(((r * redMultTerm) / 256) + redAddTerm);
-            g = cut(((g * greenMultTerm) / 256) + greenAddTerm);
-            b = cut(((b * blueMultTerm) / 256) + blueAddTerm);
-            a = cut(((a * alphaMultTerm) / 256) + alphaAddTerm);
-            pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
-        }
+        FilterTiles.run(pixels.length, 1, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                pixels[i] = colorEffect(pixels[i], redAddTerm, greenAddTerm, blueAddTerm, alphaAddTerm, redMultTerm, greenMultTerm, blueMultTerm, alphaMultTerm);
+            }
+        });
         setRGB(dst, src.getWidth(), src.getHeight(), pixels);
         return new SerializableImage(dst);
     }
@@ -71,6 +71,16 @@ public class MP3FRAME {
     }
     
     public int getSampleCount() {
+        return getSampleCount(h);
+    }
+
+    /**
+     * Gets number of samples per channel of a frame.
+     *
+     * @param h Frame header
+     * @return Number of samples
+     */
+    public static int getSampleCount(Header h) {
        if (h.version() == Header.MPEG1) {
            switch(h.layer()) {
                case 1:
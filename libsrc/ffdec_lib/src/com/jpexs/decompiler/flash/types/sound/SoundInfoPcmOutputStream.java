@@ -0,0 +1,218 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.types.sound;
+
+import com.jpexs.decompiler.flash.types.SOUNDINFO;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Applies in point, out point and envelope of SOUNDINFO to decoded 16 bit PCM
+ * data written to this stream. When SOUNDINFO is set, the output is always
+ * stereo. Without SOUNDINFO the data are passed unchanged.
+ *
+ * Parameters depending on the sampling rate are computed on the first write,
+ * as MP3 decoder sets the sampling rate of the format when decoding the first
+ * frame.
+ *
+ * @author JPEXS
+ */
+class SoundInfoPcmOutputStream extends OutputStream {
+
+    private final OutputStream os;
+
+    private final SoundFormat soundFormat;
+
+    private final SOUNDINFO soundInfo;
+
+    // position of the next written byte in the decoded data
+    private long pos;
+
+    private final long skipTo;
+
+    private boolean initialized = false;
+
+    private int frameSize;
+
+    private int inPointBytes;
+
+    private int outPointBytes;
+
+    private int[] envelopePos;
+
+    private final byte[] frame = new byte[4];
+
+    private int frameLength = 0;
+
+    private final byte[] outBuf = new byte[4096];
+
+    private int outLength = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param os Output stream
+     * @param soundFormat Format of the decoded data
+     * @param soundInfo Sound info, can be null
+     * @param pos Position of the first written byte in the decoded data, must
+     * be a multiple of the sample size
+     * @param skipTo Decoded data before this position are dropped, must be a
+     * multiple of the sample size
+     */
+    public SoundInfoPcmOutputStream(OutputStream os, SoundFormat soundFormat, SOUNDINFO soundInfo, long pos, long skipTo) {
+        this.os = os;
+        this.soundFormat = soundFormat;
+        this.soundInfo = soundInfo;
+        this.pos = pos;
+        this.skipTo = skipTo;
+    }
+
+    /**
+     * Gets position in the decoded data of an output position.
+     *
+     * @param soundFormat Format of the decoded data
+     * @param soundInfo Sound info, can be null
+     * @param outputPos Position in the output data
+     * @return Position in the decoded data
+     */
+    public static long getDecodedPosition(SoundFormat soundFormat, SOUNDINFO soundInfo, long outputPos) {
+        int frameSize = soundFormat.stereo ? 4 : 2;
+        if (soundInfo == null) {
+            return outputPos - outputPos % frameSize;
+        }
+
+        return getInPointBytes(soundFormat, soundInfo) + outputPos / 4 * frameSize;
+    }
+
+    private static int getInPointBytes(SoundFormat soundFormat, SOUNDINFO soundInfo) {
+        int inPoint = (soundInfo.hasInPoint ? (int) Math.round(soundInfo.inPoint * soundFormat.samplingRate / 44100.0) : 0);
+        return inPoint * 2 /*16bit*/ * (soundFormat.stereo ? 2 : 1);
+    }
+
+    private void initialize() {
+        initialized = true;
+        int samplingRate = soundFormat.samplingRate;
+        boolean stereo = soundFormat.stereo;
+        frameSize = stereo ? 4 : 2;
+        inPointBytes = getInPointBytes(soundFormat, soundInfo);
+        int outPoint = (soundInfo.hasOutPoint ? (int) Math.round(soundInfo.outPoint * samplingRate / 44100.0) : Integer.MAX_VALUE);
+        outPointBytes = soundInfo.hasOutPoint ? outPoint * 2 /*16bit*/ * (stereo ? 2 : 1) : Integer.MAX_VALUE;
+        if (soundInfo.hasEnvelope) {
+            envelopePos = new int[soundInfo.envelopeRecords.length];
+            for (int e = 0; e < envelopePos.length; e++) {
+                envelopePos[e] = inPointBytes + (int) (soundInfo.envelopeRecords[e].pos44 * samplingRate / 44100.0 * 2 * (stereo ? 2 : 1));
+            }
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (pos < skipTo) {
+            int skip = (int) Math.min(len, skipTo - pos);
+            pos += skip;
+            off += skip;
+            len -= skip;
+        }
+
+        if (len == 0) {
+            return;
+        }
+
+        if (soundInfo == null) {
+            pos += len;
+            os.write(b, off, len);
+            return;
+        }
+
+        if (!initialized) {
+            initialize();
+        }
+
+        for (int i = 0; i < len; i++) {
+            frame[frameLength++] = b[off + i];
+            if (frameLength == frameSize) {
+                writeFrame(pos);
+                pos += frameSize;
+                frameLength = 0;
+            }
+        }
+
+        flushOutput();
+    }
+
+    private void writeFrame(long i) throws IOException {
+        if (i < inPointBytes || i >= outPointBytes) {
+            return;
+        }
+
+        int left = ((frame[0] & 0xff) + ((frame[1] & 0xff) << 8)) << 16 >> 16;
+        int right = left;
+        if (frameSize == 4) {
+            right = ((frame[2] & 0xff) + ((frame[3] & 0xff) << 8)) << 16 >> 16;
+        }
+
+        if (envelopePos != null) {
+            for (int e = 0; e < envelopePos.length - 1; e++) {
+                int envPosBytes = envelopePos[e];
+                int envNextPosBytes = envelopePos[e + 1];
+                if (i >= envPosBytes && i <= envNextPosBytes) {
+                    double p = (i - envPosBytes) / (double) (envNextPosBytes - envPosBytes);
+
+                    int leftLevel = (int) (soundInfo.envelopeRecords[e].leftLevel + (soundInfo.envelopeRecords[e + 1].leftLevel - soundInfo.envelopeRecords[e].leftLevel) * p);
+                    int rightLevel = (int) (soundInfo.envelopeRecords[e].rightLevel + (soundInfo.envelopeRecords[e + 1].rightLevel - soundInfo.envelopeRecords[e].rightLevel) * p);
+                    double leftMultiplier = leftLevel / 32768.0;
+                    double rightMultiplier = rightLevel / 32768.0;
+
+                    left = (int) Math.round(left * leftMultiplier);
+                    right = (int) Math.round(right * rightMultiplier);
+                    break;
+                }
+            }
+        }
+
+        if (outLength + 4 > outBuf.length) {
+            flushOutput();
+        }
+
+        outBuf[outLength++] = (byte) left;
+        outBuf[outLength++] = (byte) (left >> 8);
+        outBuf[outLength++] = (byte) right;
+        outBuf[outLength++] = (byte) (right >> 8);
+    }
+
+    private void flushOutput() throws IOException {
+        if (outLength > 0) {
+            os.write(outBuf, 0, outLength);
+            outLength = 0;
+        }
+    }
+
+    /**
+     * Checks whether the rest of the decoded data would be dropped by the out
+     * point.
+     *
+     * @return True when no more output will be written
+     */
+    public boolean isAfterOutPoint() {
+        return initialized && pos >= outPointBytes;
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.types.sound;
+
+import com.jpexs.decompiler.flash.SWFInputStream;
+import com.jpexs.decompiler.flash.types.SOUNDINFO;
+import com.jpexs.helpers.ByteArrayRange;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sound.sampled.AudioFormat;
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.BitstreamException;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.MarkingBufferedInputStream;
+import javazoom.jl.decoder.MarkingPushbackInputStream;
+
+/**
+ * Decodes sound in background thread to a bounded ring buffer and provides
+ * the decoded data as an input stream. Playback of a long sound can start as
+ * soon as the first frames are decoded and does not need the whole decoded
+ * sound in memory. The data are the same as the data of WAV file created by
+ * SoundFormat.createWav.
+ *
+ * Seeking restarts decoding from the nearest seek point before the target.
+ * Seek points are the starts of the sound data blocks, MP3 frames and every
+ * 64 kB of uncompressed data, with their positions in the decoded data. They
+ * are collected by another background thread, until they are available,
+ * seeking decodes from the start of the sound.
+ *
+ * @author JPEXS
+ */
+public class SoundPcmStream extends InputStream {
+
+    private static final int UNCOMPRESSED_SEEK_STEP = 65536;
+
+    // MP3 frame can use data of previous frames (bit reservoir, up to 511
+    // bytes) and its output overlaps with the previous frame, so decoding
+    // starts this number of frames and bytes before the target and the
+    // output of these frames is dropped
+    private static final int MP3_PREROLL_FRAMES = 2;
+
+    private static final int MP3_PREROLL_BYTES = 1024;
+
+    private final SoundFormat soundFormat;
+
+    private final SOUNDINFO soundInfo;
+
+    private final List<ByteArrayRange> dataRanges;
+
+    private final Object lock = new Object();
+
+    private final byte[] buffer;
+
+    private int bufferStart = 0;
+
+    private int bufferLength = 0;
+
+    private boolean decodingFinished = false;
+
+    private IOException decodingError = null;
+
+    // incremented on seek and close, decoder thread of older generation stops
+    private int generation = 0;
+
+    private boolean closed = false;
+
+    private SoundFormat decodedFormat = null;
+
+    private AudioFormat audioFormat = null;
+
+    private volatile SeekPoint[] seekPoints = null;
+
+    private static class SeekPoint {
+
+        private final int range;
+
+        private final int offset;
+
+        // position in all sound data
+        private final long dataPos;
+
+        private final long decodedPos;
+
+        // index of MP3 frame starting at this point
+        private final int frame;
+
+        public SeekPoint(int range, int offset, long dataPos, long decodedPos, int frame) {
+            this.range = range;
+            this.offset = offset;
+            this.dataPos = dataPos;
+            this.decodedPos = decodedPos;
+            this.frame = frame;
+        }
+    }
+
+    private static final SeekPoint START = new SeekPoint(0, 0, 0, 0, 0);
+
+    private static class DecodingStoppedException extends IOException {
+    }
+
+    /**
+     * Constructor. Starts decoding.
+     *
+     * @param soundFormat Sound format
+     * @param soundInfo Sound info, can be null
+     * @param dataRanges Sound data
+     * @param bufferSize Size of the buffer of decoded data in bytes
+     */
+    public SoundPcmStream(SoundFormat soundFormat, SOUNDINFO soundInfo, List<ByteArrayRange> dataRanges, int bufferSize) {
+        this.soundFormat = copyFormat(soundFormat);
+        this.soundInfo = soundInfo;
+        this.dataRanges = dataRanges;
+        this.buffer = new byte[bufferSize];
+        startDecoding(START, START, 0);
+
+        Thread indexThread = new Thread(this::buildSeekPoints, "Sound seek index");
+        indexThread.setDaemon(true);
+        indexThread.setPriority(Thread.MIN_PRIORITY);
+        indexThread.start();
+    }
+
+    private static SoundFormat copyFormat(SoundFormat soundFormat) {
+        return new SoundFormat(soundFormat.formatId, soundFormat.samplingRate, soundFormat.stereo);
+    }
+
+    private void startDecoding(SeekPoint start, SeekPoint target, long skipTo) {
+        final int gen = generation;
+        Thread thread = new Thread(() -> decode(gen, start, target, skipTo), "Sound decoder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void decode(int gen, SeekPoint start, SeekPoint target, long skipTo) {
+        SoundFormat format = copyFormat(soundFormat);
+        SoundDecoder decoder = format.getDecoder();
+        OutputStream bufferOs = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                put(gen, format, b, off, len);
+            }
+        };
+
+        SoundInfoPcmOutputStream pcmOs = new SoundInfoPcmOutputStream(bufferOs, format, soundInfo, target.decodedPos, skipTo);
+        OutputStream decoderOs = pcmOs;
+        if (target.frame > start.frame) {
+            decoderOs = new FrameDroppingOutputStream(pcmOs, target.frame - start.frame);
+        }
+
+        IOException error = null;
+        try {
+            if (decoder != null) {
+                for (int r = start.range; r < dataRanges.size() && !pcmOs.isAfterOutPoint(); r++) {
+                    ByteArrayRange dataRange = dataRanges.get(r);
+                    SWFInputStream sis = new SWFInputStream(null, dataRange.getArray(), 0, dataRange.getPos() + dataRange.getLength());
+                    sis.seek(dataRange.getPos() + (r == start.range ? start.offset : 0));
+                    decoder.decode(sis, decoderOs);
+                }
+            }
+        } catch (DecodingStoppedException ex) {
+            return;
+        } catch (IOException ex) {
+            error = ex;
+        } catch (RuntimeException ex) {
+            error = new IOException(ex);
+        }
+
+        synchronized (lock) {
+            if (gen != generation) {
+                return;
+            }
+
+            if (audioFormat == null) {
+                setFormat(format);
+            }
+
+            decodingFinished = true;
+            decodingError = error;
+            lock.notifyAll();
+        }
+    }
+
+    private void setFormat(SoundFormat format) {
+        decodedFormat = copyFormat(format);
+        int channels = soundInfo != null || format.stereo ? 2 : 1;
+        audioFormat = new AudioFormat(format.samplingRate, 16, channels, true, false);
+    }
+
+    private void put(int gen, SoundFormat format, byte[] b, int off, int len) throws IOException {
+        synchronized (lock) {
+            while (len > 0) {
+                while (gen == generation && bufferLength == buffer.length) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException ex) {
+                        throw new DecodingStoppedException();
+                    }
+                }
+
+                if (gen != generation) {
+                    throw new DecodingStoppedException();
+                }
+
+                if (audioFormat == null) {
+                    setFormat(format);
+                }
+
+                int end = (bufferStart + bufferLength) % buffer.length;
+                int cnt = Math.min(len, Math.min(buffer.length - bufferLength, buffer.length - end));
+                System.arraycopy(b, off, buffer, end, cnt);
+                bufferLength += cnt;
+                off += cnt;
+                len -= cnt;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Gets format of the decoded data. Waits until the first data are
+     * decoded.
+     *
+     * @return Audio format
+     * @throws IOException On interrupt
+     */
+    public AudioFormat getAudioFormat() throws IOException {
+        synchronized (lock) {
+            while (audioFormat == null && !closed) {
+                waitForData();
+            }
+
+            if (audioFormat == null) {
+                setFormat(soundFormat);
+            }
+
+            return audioFormat;
+        }
+    }
+
+    private void waitForData() throws IOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int cnt;
+        while ((cnt = read(b, 0, 1)) == 0) {
+        }
+        return cnt == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        synchronized (lock) {
+            while (bufferLength == 0 && !decodingFinished && !closed) {
+                waitForData();
+            }
+
+            if (bufferLength == 0) {
+                if (decodingError != null) {
+                    throw decodingError;
+                }
+                return -1;
+            }
+
+            int cnt = Math.min(len, Math.min(bufferLength, buffer.length - bufferStart));
+            System.arraycopy(buffer, bufferStart, b, off, cnt);
+            bufferStart = (bufferStart + cnt) % buffer.length;
+            bufferLength -= cnt;
+            lock.notifyAll();
+            return cnt;
+        }
+    }
+
+    @Override
+    public int available() {
+        synchronized (lock) {
+            return bufferLength;
+        }
+    }
+
+    /**
+     * Continues reading from a position. Decoding restarts from the nearest
+     * seek point, the data before the position are dropped.
+     *
+     * @param pos Position in bytes of the decoded data
+     */
+    public void seek(long pos) {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+
+            generation++;
+            bufferStart = 0;
+            bufferLength = 0;
+            decodingFinished = false;
+            decodingError = null;
+            lock.notifyAll();
+
+            SoundFormat format = decodedFormat != null ? decodedFormat : soundFormat;
+            long decodedPos = SoundInfoPcmOutputStream.getDecodedPosition(format, soundInfo, pos);
+            SeekPoint[] points = seekPoints;
+            if (points == null || points.length == 0) {
+                startDecoding(START, START, decodedPos);
+                return;
+            }
+
+            int target = findSeekPoint(points, decodedPos);
+            int start = target;
+            if (soundFormat.formatId == SoundFormat.FORMAT_MP3) {
+                while (start > 0 && (points[target].frame - points[start].frame < MP3_PREROLL_FRAMES || points[target].dataPos - points[start].dataPos < MP3_PREROLL_BYTES)) {
+                    start--;
+                }
+            }
+
+            startDecoding(points[start], points[target], decodedPos);
+        }
+    }
+
+    private static int findSeekPoint(SeekPoint[] points, long decodedPos) {
+
+        int low = 0;
+        int high = points.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (points[mid].decodedPos <= decodedPos) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Checks whether the seek points were collected, so seeking does not
+     * decode from the start.
+     *
+     * @return True when seek points are available
+     */
+    public boolean isSeekIndexReady() {
+        return seekPoints != null;
+    }
+
+    private boolean isClosed() {
+        synchronized (lock) {
+            return closed;
+        }
+    }
+
+    private void buildSeekPoints() {
+        List<SeekPoint> points = new ArrayList<>();
+        SoundFormat format = copyFormat(soundFormat);
+        SoundDecoder decoder = format.getDecoder();
+        if (decoder == null) {
+            return;
+        }
+
+        SeekIndexState state = new SeekIndexState();
+        try {
+            for (int r = 0; r < dataRanges.size(); r++) {
+                if (isClosed()) {
+                    return;
+                }
+
+                ByteArrayRange dataRange = dataRanges.get(r);
+                switch (format.formatId) {
+                    case SoundFormat.FORMAT_MP3:
+                        addMp3SeekPoints(points, r, dataRange, state);
+                        break;
+                    case SoundFormat.FORMAT_UNCOMPRESSED_NATIVE_ENDIAN:
+                    case SoundFormat.FORMAT_UNCOMPRESSED_LITTLE_ENDIAN:
+                        for (int offset = 0; offset < dataRange.getLength(); offset += UNCOMPRESSED_SEEK_STEP) {
+                            addSeekPoint(points, r, offset, state.dataPos + offset, state.decodedPos + offset, 0);
+                        }
+                        state.decodedPos += dataRange.getLength();
+                        break;
+                    default:
+                        addSeekPoint(points, r, 0, state.dataPos, state.decodedPos, 0);
+                        CountingOutputStream cos = new CountingOutputStream();
+                        SWFInputStream sis = new SWFInputStream(null, dataRange.getArray(), 0, dataRange.getPos() + dataRange.getLength());
+                        sis.seek(dataRange.getPos());
+                        decoder.decode(sis, cos);
+                        state.decodedPos += cos.count;
+                        break;
+                }
+                state.dataPos += dataRange.getLength();
+            }
+        } catch (IOException | RuntimeException ex) {
+            // seeking decodes from the start
+            return;
+        }
+
+        seekPoints = points.toArray(new SeekPoint[points.size()]);
+    }
+
+    private static class SeekIndexState {
+
+        private long dataPos = 0;
+
+        private long decodedPos = 0;
+
+        private int mp3Frame = 0;
+    }
+
+    private static void addSeekPoint(List<SeekPoint> points, int range, int offset, long dataPos, long decodedPos, int frame) {
+        // decoding must start at a sample boundary
+        if (decodedPos % 4 == 0) {
+            points.add(new SeekPoint(range, offset, dataPos, decodedPos, frame));
+        }
+    }
+
+    private static void addMp3SeekPoints(List<SeekPoint> points, int range, ByteArrayRange dataRange, SeekIndexState state) throws IOException {
+        MarkingBufferedInputStream mis = new MarkingBufferedInputStream(new ByteArrayInputStream(dataRange.getArray(), dataRange.getPos(), dataRange.getLength()));
+        Bitstream bitstream = new Bitstream(mis);
+        long initLen = mis.getPosition();
+        MarkingPushbackInputStream mpis = bitstream.getSource();
+        try {
+            while (true) {
+                int frameStart = (int) (initLen + mpis.getPosition());
+                Header h = bitstream.readFrame();
+                if (h == null) {
+                    break;
+                }
+
+                addSeekPoint(points, range, frameStart, state.dataPos + frameStart, state.decodedPos, state.mp3Frame);
+                state.decodedPos += MP3FRAME.getSampleCount(h) * (h.mode() == Header.SINGLE_CHANNEL ? 1 : 2) * 2;
+                state.mp3Frame++;
+                bitstream.closeFrame();
+            }
+        } catch (BitstreamException ex) {
+            // rest of the block has no seek points
+        }
+    }
+
+    /**
+     * Drops output of the first frames, MP3 decoder writes each frame by one
+     * write call.
+     */
+    private static class FrameDroppingOutputStream extends OutputStream {
+
+        private final OutputStream os;
+
+        private int framesToDrop;
+
+        public FrameDroppingOutputStream(OutputStream os, int framesToDrop) {
+            this.os = os;
+            this.framesToDrop = framesToDrop;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (framesToDrop > 0) {
+                framesToDrop--;
+                return;
+            }
+
+            os.write(b, off, len);
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    /**
+     * Stops decoding.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            generation++;
+            lock.notifyAll();
+        }
+    }
+}
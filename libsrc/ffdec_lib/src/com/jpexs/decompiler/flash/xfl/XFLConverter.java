@@ -167,22 +167,28 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -229,7 +235,36 @@ public class XFLConverter {
 
     public static final String PUBLISH_DATA_FORMAT = "_EMBED_SWF_";
 
-    private final Random random = new Random(123); // predictable random
+    private static final long RANDOM_SEED = 123;
+
+    /**
+     * Maximum number of library files waiting to be written
+     */
+    private static final int PACKAGE_WRITER_QUEUE_SIZE = 16;
+
+    /**
+     * Placeholder of outline color which is resolved when the symbol is
+     * written
+     */
+    private static final Pattern OUTLINE_COLOR_PLACEHOLDER_PATTERN = Pattern.compile("color=\"\\{outlineColor([0-9]+)\\}\"");
+
+    private final Random random = new Random(RANDOM_SEED); // predictable random
+
+    /**
+     * Symbols are converted in parallel, their outline colors are assigned
+     * later in symbol order
+     */
+    private final boolean deferOutlineColors;
+
+    private int deferredOutlineColorCount = 0;
+
+    public XFLConverter() {
+        this(false);
+    }
+
+    private XFLConverter(boolean deferOutlineColors) {
+        this.deferOutlineColors = deferOutlineColors;
+    }
 
     /**
      * Adds "(depht xxx)" to layer name
@@ -1526,16 +1561,18 @@ public class XFLConverter {
         return date.getTime() / 1000;
     }
 
-    private void convertLibrary(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, Map<Integer, ScriptPack> characterScriptPacks, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, HashMap<String, byte[]> files, HashMap<String, byte[]> datfiles, FLAVersion flaVersion, XFLXmlWriter writer) throws XMLStreamException {
+    private void convertLibrary(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, Map<Integer, ScriptPack> characterScriptPacks, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, XFLPackageWriter packageWriter, ExecutorService executor, FLAVersion flaVersion, XFLXmlWriter writer) throws XMLStreamException, IOException, InterruptedException {
 
         //TODO: Imported assets
         //linkageImportForRS="true" linkageIdentifier="xxx" linkageURL="yyy.swf"
-        convertMedia(swf, characterVariables, characterClasses, nonLibraryShapes, backgroundColor, tags, characters, files, datfiles, flaVersion, writer);
-        convertSymbols(swf, characterVariables, characterClasses, characterScriptPacks, nonLibraryShapes, backgroundColor, tags, characters, files, datfiles, flaVersion, writer);
+        convertMedia(swf, characterVariables, characterClasses, nonLibraryShapes, backgroundColor, tags, characters, packageWriter, executor, flaVersion, writer);
+        convertSymbols(swf, characterVariables, characterClasses, characterScriptPacks, nonLibraryShapes, backgroundColor, tags, characters, packageWriter, executor, flaVersion, writer);
     }
 
-    private void convertSymbols(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, Map<Integer, ScriptPack> characterScriptPacks, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, HashMap<String, byte[]> files, HashMap<String, byte[]> datfiles, FLAVersion flaVersion, XFLXmlWriter writer) throws XMLStreamException {
-        boolean hasSymbol = false;
+    private void convertSymbols(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, Map<Integer, ScriptPack> characterScriptPacks, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, XFLPackageWriter packageWriter, ExecutorService executor, FLAVersion flaVersion, XFLXmlWriter writer) throws XMLStreamException, IOException, InterruptedException {
+        // media are already converted, symbols only check which sounds were exported
+        Set<String> files = new HashSet<>(packageWriter.getLibraryFiles());
+        List<Callable<SymbolItem>> tasks = new ArrayList<>();
         for (int ch : characters.keySet()) {
             CharacterTag symbol = characters.get(ch);
             if ((symbol instanceof ShapeTag) && nonLibraryShapes.contains(symbol.getCharacterId())) {
@@ -1543,316 +1580,302 @@ public class XFLConverter {
             }
 
             if ((symbol instanceof ShapeTag) || (symbol instanceof DefineSpriteTag) || (symbol instanceof ButtonTag)) {
-                XFLXmlWriter symbolStr = new XFLXmlWriter();
-
-                symbolStr.writeStartElement("DOMSymbolItem", new String[]{
-                    "xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance",
-                    "xmlns", "http://ns.adobe.com/xfl/2008/",
-                    "name", "Symbol " + symbol.getCharacterId(),
-                    "lastModified", Long.toString(getTimestamp(swf))}); //TODO:itemID
-                if (symbol instanceof ShapeTag) {
-                    symbolStr.writeAttribute("symbolType", "graphic");
-                } else if (symbol instanceof ButtonTag) {
-                    symbolStr.writeAttribute("symbolType", "button");
-                    if (((ButtonTag) symbol).trackAsMenu()) {
-                        symbolStr.writeAttribute("trackAsMenu", true);
+                tasks.add(() -> {
+                    XFLConverter converter = new XFLConverter(true);
+                    return converter.convertSymbol(swf, characterVariables, characterClasses, characterScriptPacks, nonLibraryShapes, backgroundColor, tags, characters, symbol, files, flaVersion);
+                });
+            }
+        }
+
+        boolean hasSymbol = false;
+        OrderedTasks<SymbolItem> results = new OrderedTasks<>(executor, tasks);
+        while (results.hasNext()) {
+            SymbolItem item = results.next();
+            if (item == null) {
+                continue;
+            }
+
+            String symbolFile = item.fileName;
+            String itemIcon = item.itemIcon;
+            packageWriter.addLibraryFile(symbolFile, Utf8Helper.getBytes(resolveOutlineColors(item.data, item.outlineColorCount)));
+
+            if (!hasSymbol) {
+                writer.writeStartElement("symbols");
+            }
+
+            // write symbLink
+            writer.writeStartElement("Include", new String[]{"href", symbolFile});
+            if (itemIcon != null) {
+                writer.writeAttribute("itemIcon", itemIcon);
+            }
+            writer.writeAttribute("loadImmediate", false);
+            if (flaVersion.ordinal() >= FLAVersion.CS5_5.ordinal()) {
+                writer.writeAttribute("lastModified", getTimestamp(swf));
+                //TODO: itemID="518de416-00000341"
+            }
+            writer.writeEndElement();
+            hasSymbol = true;
+        }
+
+        if (hasSymbol) {
+            writer.writeEndElement();
+        }
+    }
+
+    private SymbolItem convertSymbol(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, Map<Integer, ScriptPack> characterScriptPacks, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, CharacterTag symbol, Set<String> files, FLAVersion flaVersion) throws XMLStreamException {
+        XFLXmlWriter symbolStr = new XFLXmlWriter();
+
+        symbolStr.writeStartElement("DOMSymbolItem", new String[]{
+            "xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance",
+            "xmlns", "http://ns.adobe.com/xfl/2008/",
+            "name", "Symbol " + symbol.getCharacterId(),
+            "lastModified", Long.toString(getTimestamp(swf))}); //TODO:itemID
+        if (symbol instanceof ShapeTag) {
+            symbolStr.writeAttribute("symbolType", "graphic");
+        } else if (symbol instanceof ButtonTag) {
+            symbolStr.writeAttribute("symbolType", "button");
+            if (((ButtonTag) symbol).trackAsMenu()) {
+                symbolStr.writeAttribute("trackAsMenu", true);
+            }
+        }
+        boolean linkageExportForAS = false;
+        if (characterClasses.containsKey(symbol.getCharacterId())) {
+            linkageExportForAS = true;
+            symbolStr.writeAttribute("linkageClassName", characterClasses.get(symbol.getCharacterId()));
+        }
+        if (characterVariables.containsKey(symbol.getCharacterId())) {
+            linkageExportForAS = true;
+            symbolStr.writeAttribute("linkageIdentifier", characterVariables.get(symbol.getCharacterId()));
+        }
+        if (linkageExportForAS) {
+            symbolStr.writeAttribute("linkageExportForAS", true);
+        }
+
+        DefineScalingGridTag scalingGrid = symbol.getScalingGridTag();
+        if (scalingGrid != null) {
+            symbolStr.writeAttribute("scaleGridLeft", doubleToString(scalingGrid.splitter.Xmin / SWF.unitDivisor));
+            symbolStr.writeAttribute("scaleGridRight", doubleToString(scalingGrid.splitter.Xmax / SWF.unitDivisor));
+            symbolStr.writeAttribute("scaleGridTop", doubleToString(scalingGrid.splitter.Ymin / SWF.unitDivisor));
+            symbolStr.writeAttribute("scaleGridBottom", doubleToString(scalingGrid.splitter.Ymax / SWF.unitDivisor));
+        }
+        
+        String itemIcon = null;
+        if (symbol instanceof ButtonTag) {
+            symbolStr.writeStartElement("timeline");
+            itemIcon = "0";
+            symbolStr.writeStartElement("DOMTimeline", new String[]{"name", "Symbol " + symbol.getCharacterId(), "currentFrame", "0"});
+            symbolStr.writeStartElement("layers");
+
+            ButtonTag button = (ButtonTag) symbol;
+            List<BUTTONRECORD> records = button.getRecords();
+
+            int maxDepth = 0;
+            for (BUTTONRECORD rec : records) {
+                if (rec.placeDepth > maxDepth) {
+                    maxDepth = rec.placeDepth;
+                }
+            }
+
+            DefineButtonSoundTag defineButtonSound = button.getSounds();
+            int soundLayerOffset = 0;
+            if (defineButtonSound != null) {
+                soundLayerOffset = 1;
+                symbolStr.writeStartElement("DOMLayer", new String[]{"name", "Layer 1"});
+                symbolStr.writeStartElement("frames");
+                for (int frame = 1; frame <= 4; frame++) {
+
+                    int soundChar = 0;
+                    SOUNDINFO soundInfo = null;
+                    switch (frame) {
+                        case 1:
+                            soundChar = defineButtonSound.buttonSoundChar0;
+                            soundInfo = defineButtonSound.buttonSoundInfo0;
+                            break;
+                        case 2:
+                            soundChar = defineButtonSound.buttonSoundChar1;
+                            soundInfo = defineButtonSound.buttonSoundInfo1;
+                            break;
+                        case 3:
+                            soundChar = defineButtonSound.buttonSoundChar2;
+                            soundInfo = defineButtonSound.buttonSoundInfo2;
+                            break;
+                        case 4:
+                            soundChar = defineButtonSound.buttonSoundChar3;
+                            soundInfo = defineButtonSound.buttonSoundInfo3;
+                            break;
                     }
+                    symbolStr.writeStartElement("DOMFrame", new String[]{
+                        "index", Integer.toString(frame - 1),
+                        "keyMode", Integer.toString(KEY_MODE_NORMAL),});
+                    if (soundChar > 0) {
+                        DefineSoundTag sound = (DefineSoundTag) swf.getCharacter(soundChar);
+                        convertSoundUsage(symbolStr, sound, soundInfo);
+                    }
+                    symbolStr.writeStartElement("elements");
+                    symbolStr.writeEndElement(); //elements
+                    symbolStr.writeEndElement(); //DOMFrame
                 }
-                boolean linkageExportForAS = false;
-                if (characterClasses.containsKey(symbol.getCharacterId())) {
-                    linkageExportForAS = true;
-                    symbolStr.writeAttribute("linkageClassName", characterClasses.get(symbol.getCharacterId()));
-                }
-                if (characterVariables.containsKey(symbol.getCharacterId())) {
-                    linkageExportForAS = true;
-                    symbolStr.writeAttribute("linkageIdentifier", characterVariables.get(symbol.getCharacterId()));
-                }
-                if (linkageExportForAS) {
-                    symbolStr.writeAttribute("linkageExportForAS", true);
-                }
+                symbolStr.writeEndElement(); // frames
+                symbolStr.writeEndElement(); // DOMLayer
+            }
 
-                DefineScalingGridTag scalingGrid = symbol.getScalingGridTag();
-                if (scalingGrid != null) {
-                    symbolStr.writeAttribute("scaleGridLeft", doubleToString(scalingGrid.splitter.Xmin / SWF.unitDivisor));
-                    symbolStr.writeAttribute("scaleGridRight", doubleToString(scalingGrid.splitter.Xmax / SWF.unitDivisor));
-                    symbolStr.writeAttribute("scaleGridTop", doubleToString(scalingGrid.splitter.Ymin / SWF.unitDivisor));
-                    symbolStr.writeAttribute("scaleGridBottom", doubleToString(scalingGrid.splitter.Ymax / SWF.unitDivisor));
+            for (int i = maxDepth; i >= 1; i--) {
+                symbolStr.writeStartElement("DOMLayer", new String[]{"name", "Layer " + (maxDepth - i + 1 + soundLayerOffset)});
+                if (i == 1) {
+                    symbolStr.writeAttribute("current", true);
+                    symbolStr.writeAttribute("isSelected", true);
                 }
-                
-                String itemIcon = null;
-                if (symbol instanceof ButtonTag) {
-                    symbolStr.writeStartElement("timeline");
-                    itemIcon = "0";
-                    symbolStr.writeStartElement("DOMTimeline", new String[]{"name", "Symbol " + symbol.getCharacterId(), "currentFrame", "0"});
-                    symbolStr.writeStartElement("layers");
+                symbolStr.writeAttribute("color", randomOutlineColor());
+                symbolStr.writeStartElement("frames");
+                int lastFrame = 0;
 
-                    ButtonTag button = (ButtonTag) symbol;
-                    List<BUTTONRECORD> records = button.getRecords();
+                loopframes:
+                for (int frame = 1; frame <= 4; frame++) {
 
-                    int maxDepth = 0;
                     for (BUTTONRECORD rec : records) {
-                        if (rec.placeDepth > maxDepth) {
-                            maxDepth = rec.placeDepth;
-                        }
-                    }
-
-                    DefineButtonSoundTag defineButtonSound = button.getSounds();
-                    int soundLayerOffset = 0;
-                    if (defineButtonSound != null) {
-                        soundLayerOffset = 1;
-                        symbolStr.writeStartElement("DOMLayer", new String[]{"name", "Layer 1"});
-                        symbolStr.writeStartElement("frames");
-                        for (int frame = 1; frame <= 4; frame++) {
-
-                            int soundChar = 0;
-                            SOUNDINFO soundInfo = null;
+                        if (rec.placeDepth == i) {
+                            boolean ok = false;
                             switch (frame) {
                                 case 1:
-                                    soundChar = defineButtonSound.buttonSoundChar0;
-                                    soundInfo = defineButtonSound.buttonSoundInfo0;
+                                    ok = rec.buttonStateUp;
                                     break;
                                 case 2:
-                                    soundChar = defineButtonSound.buttonSoundChar1;
-                                    soundInfo = defineButtonSound.buttonSoundInfo1;
+                                    ok = rec.buttonStateOver;
                                     break;
                                 case 3:
-                                    soundChar = defineButtonSound.buttonSoundChar2;
-                                    soundInfo = defineButtonSound.buttonSoundInfo2;
+                                    ok = rec.buttonStateDown;
                                     break;
                                 case 4:
-                                    soundChar = defineButtonSound.buttonSoundChar3;
-                                    soundInfo = defineButtonSound.buttonSoundInfo3;
+                                    ok = rec.buttonStateHitTest;
                                     break;
                             }
-                            symbolStr.writeStartElement("DOMFrame", new String[]{
-                                "index", Integer.toString(frame - 1),
-                                "keyMode", Integer.toString(KEY_MODE_NORMAL),});
-                            if (soundChar > 0) {
-                                DefineSoundTag sound = (DefineSoundTag) swf.getCharacter(soundChar);
-                                convertSoundUsage(symbolStr, sound, soundInfo);
+                            if (!ok) {
+                                continue;
                             }
-                            symbolStr.writeStartElement("elements");
-                            symbolStr.writeEndElement(); //elements
-                            symbolStr.writeEndElement(); //DOMFrame
-                        }
-                        symbolStr.writeEndElement(); // frames
-                        symbolStr.writeEndElement(); // DOMLayer
-                    }
-
-                    for (int i = maxDepth; i >= 1; i--) {
-                        symbolStr.writeStartElement("DOMLayer", new String[]{"name", "Layer " + (maxDepth - i + 1 + soundLayerOffset)});
-                        if (i == 1) {
-                            symbolStr.writeAttribute("current", true);
-                            symbolStr.writeAttribute("isSelected", true);
-                        }
-                        symbolStr.writeAttribute("color", randomOutlineColor());
-                        symbolStr.writeStartElement("frames");
-                        int lastFrame = 0;
-
-                        loopframes:
-                        for (int frame = 1; frame <= 4; frame++) {
-
-                            for (BUTTONRECORD rec : records) {
-                                if (rec.placeDepth == i) {
-                                    boolean ok = false;
-                                    switch (frame) {
-                                        case 1:
-                                            ok = rec.buttonStateUp;
-                                            break;
-                                        case 2:
-                                            ok = rec.buttonStateOver;
-                                            break;
-                                        case 3:
-                                            ok = rec.buttonStateDown;
-                                            break;
-                                        case 4:
-                                            ok = rec.buttonStateHitTest;
-                                            break;
-                                    }
-                                    if (!ok) {
-                                        continue;
-                                    }
-                                    CXFORMWITHALPHA colorTransformAlpha = null;
-                                    int blendMode = 0;
-                                    List<FILTER> filters = new ArrayList<>();
-                                    if (button instanceof DefineButton2Tag) {
-                                        colorTransformAlpha = rec.colorTransform;
-                                        if (rec.buttonHasBlendMode) {
-                                            blendMode = rec.blendMode;
-                                        }
-                                        if (rec.buttonHasFilterList) {
-                                            filters = rec.filterList;
-                                        }
-                                    }
-                                    CharacterTag character = characters.get(rec.characterId);
-                                    if (character != null) {
-                                        MATRIX matrix = rec.placeMatrix;
-                                        XFLXmlWriter recCharWriter = new XFLXmlWriter();
-
-                                        int characterId = character.getCharacterId();
-                                        if ((character instanceof ShapeTag) && (nonLibraryShapes.contains(characterId))) {
-                                            ShapeTag shape = (ShapeTag) character;
-                                            convertShape(characters, matrix, shape.getShapeNum(), shape.getShapes().shapeRecords, shape.getShapes().fillStyles, shape.getShapes().lineStyles, false, false, recCharWriter);
-                                        } else if (character instanceof TextTag) {
-                                            convertText(null, (TextTag) character, matrix, filters, null, recCharWriter);
-                                        } else if (character instanceof DefineVideoStreamTag) {
-                                            convertVideoInstance(null, matrix, (DefineVideoStreamTag) character, null, recCharWriter);
-                                        } else {
-                                            convertSymbolInstance(null, matrix, colorTransformAlpha, false, blendMode, filters, true, null, null, null, characters.get(rec.characterId), characters, tags, flaVersion, recCharWriter);
-                                        }
+                            CXFORMWITHALPHA colorTransformAlpha = null;
+                            int blendMode = 0;
+                            List<FILTER> filters = new ArrayList<>();
+                            if (button instanceof DefineButton2Tag) {
+                                colorTransformAlpha = rec.colorTransform;
+                                if (rec.buttonHasBlendMode) {
+                                    blendMode = rec.blendMode;
+                                }
+                                if (rec.buttonHasFilterList) {
+                                    filters = rec.filterList;
+                                }
+                            }
+                            CharacterTag character = characters.get(rec.characterId);
+                            if (character != null) {
+                                MATRIX matrix = rec.placeMatrix;
+                                XFLXmlWriter recCharWriter = new XFLXmlWriter();
+
+                                int characterId = character.getCharacterId();
+                                if ((character instanceof ShapeTag) && (nonLibraryShapes.contains(characterId))) {
+                                    ShapeTag shape = (ShapeTag) character;
+                                    convertShape(characters, matrix, shape.getShapeNum(), shape.getShapes().shapeRecords, shape.getShapes().fillStyles, shape.getShapes().lineStyles, false, false, recCharWriter);
+                                } else if (character instanceof TextTag) {
+                                    convertText(null, (TextTag) character, matrix, filters, null, recCharWriter);
+                                } else if (character instanceof DefineVideoStreamTag) {
+                                    convertVideoInstance(null, matrix, (DefineVideoStreamTag) character, null, recCharWriter);
+                                } else {
+                                    convertSymbolInstance(null, matrix, colorTransformAlpha, false, blendMode, filters, true, null, null, null, characters.get(rec.characterId), characters, tags, flaVersion, recCharWriter);
+                                }
 
-                                        int duration = frame - lastFrame;
-                                        lastFrame = frame;
-                                        if (duration > 0) {
-                                            if (duration > 1) {
-                                                symbolStr.writeStartElement("DOMFrame", new String[]{
-                                                    "index", Integer.toString(frame - duration),
-                                                    "duration", Integer.toString(duration - 1),
-                                                    "keyMode", Integer.toString(KEY_MODE_NORMAL),});
-                                                symbolStr.writeElementValue("elements", "");
-                                                symbolStr.writeEndElement();
-                                            }
-                                            symbolStr.writeStartElement("DOMFrame", new String[]{
-                                                "index", Integer.toString(frame - 1),
-                                                "keyMode", Integer.toString(KEY_MODE_NORMAL),});
-                                            symbolStr.writeStartElement("elements");
-                                            symbolStr.writeCharactersRaw(recCharWriter.toString());
-                                            symbolStr.writeEndElement();
-                                            symbolStr.writeEndElement();
-                                        }
-                                    } else {
-                                        logger.log(Level.WARNING, "Character with id={0} was not found.", rec.characterId);
+                                int duration = frame - lastFrame;
+                                lastFrame = frame;
+                                if (duration > 0) {
+                                    if (duration > 1) {
+                                        symbolStr.writeStartElement("DOMFrame", new String[]{
+                                            "index", Integer.toString(frame - duration),
+                                            "duration", Integer.toString(duration - 1),
+                                            "keyMode", Integer.toString(KEY_MODE_NORMAL),});
+                                        symbolStr.writeElementValue("elements", "");
+                                        symbolStr.writeEndElement();
                                     }
+                                    symbolStr.writeStartElement("DOMFrame", new String[]{
+                                        "index", Integer.toString(frame - 1),
+                                        "keyMode", Integer.toString(KEY_MODE_NORMAL),});
+                                    symbolStr.writeStartElement("elements");
+                                    symbolStr.writeCharactersRaw(recCharWriter.toString());
+                                    symbolStr.writeEndElement();
+                                    symbolStr.writeEndElement();
                                 }
+                            } else {
+                                logger.log(Level.WARNING, "Character with id={0} was not found.", rec.characterId);
                             }
                         }
-                        symbolStr.writeEndElement(); // frames
-                        symbolStr.writeEndElement(); // DOMLayer
                     }
-                    symbolStr.writeEndElement(); // layers
-                    symbolStr.writeEndElement(); // DOMTimeline
-                    symbolStr.writeEndElement(); // timeline
-                } else if (symbol instanceof DefineSpriteTag) {
-                    DefineSpriteTag sprite = (DefineSpriteTag) symbol;
-                    if (sprite.getTags().isEmpty()) { //probably AS2 class
-                        continue;
-                    }
-                    final ScriptPack spriteScriptPack = characterScriptPacks.containsKey(sprite.spriteId) ? characterScriptPacks.get(sprite.spriteId) : null;
-                    convertTimeline(swf.getAbcIndex(), sprite.spriteId, characterVariables.get(sprite.spriteId), nonLibraryShapes, backgroundColor, tags, sprite.getTags(), characters, "Symbol " + symbol.getCharacterId(), flaVersion, files, symbolStr, spriteScriptPack);
-
-                } else if (symbol instanceof ShapeTag) {
-                    symbolStr.writeStartElement("timeline");
-                    itemIcon = "1";
-                    ShapeTag shape = (ShapeTag) symbol;
-                    symbolStr.writeStartElement("DOMTimeline", new String[]{"name", "Symbol " + symbol.getCharacterId(), "currentFrame", "0"});
-                    symbolStr.writeStartElement("layers");
-                    SHAPEWITHSTYLE shapeWithStyle = shape.getShapes();
-                    if (shapeWithStyle != null) {
-                        convertShape(characters, null, shape.getShapeNum(), shapeWithStyle.shapeRecords, shapeWithStyle.fillStyles, shapeWithStyle.lineStyles, false, true, symbolStr);
-                    }
-
-                    symbolStr.writeEndElement(); // layers
-                    symbolStr.writeEndElement(); // DOMTimeline
-                    symbolStr.writeEndElement(); // timeline
-                }
-                
-                symbolStr.writeEndElement(); // DOMSymbolItem
-                String symbolStr2 = prettyFormatXML(symbolStr.toString());
-                String symbolFile = "Symbol " + symbol.getCharacterId() + ".xml";
-                files.put(symbolFile, Utf8Helper.getBytes(symbolStr2));
-
-                if (!hasSymbol) {
-                    writer.writeStartElement("symbols");
                 }
+                symbolStr.writeEndElement(); // frames
+                symbolStr.writeEndElement(); // DOMLayer
+            }
+            symbolStr.writeEndElement(); // layers
+            symbolStr.writeEndElement(); // DOMTimeline
+            symbolStr.writeEndElement(); // timeline
+        } else if (symbol instanceof DefineSpriteTag) {
+            DefineSpriteTag sprite = (DefineSpriteTag) symbol;
+            if (sprite.getTags().isEmpty()) { //probably AS2 class
+                return null;
+            }
+            final ScriptPack spriteScriptPack = characterScriptPacks.containsKey(sprite.spriteId) ? characterScriptPacks.get(sprite.spriteId) : null;
+            convertTimeline(swf.getAbcIndex(), sprite.spriteId, characterVariables.get(sprite.spriteId), nonLibraryShapes, backgroundColor, tags, sprite.getTags(), characters, "Symbol " + symbol.getCharacterId(), flaVersion, files, symbolStr, spriteScriptPack);
 
-                // write symbLink
-                writer.writeStartElement("Include", new String[]{"href", symbolFile});
-                if (itemIcon != null) {
-                    writer.writeAttribute("itemIcon", itemIcon);
-                }
-                writer.writeAttribute("loadImmediate", false);
-                if (flaVersion.ordinal() >= FLAVersion.CS5_5.ordinal()) {
-                    writer.writeAttribute("lastModified", getTimestamp(swf));
-                    //TODO: itemID="518de416-00000341"
-                }
-                writer.writeEndElement();
-                hasSymbol = true;
+        } else if (symbol instanceof ShapeTag) {
+            symbolStr.writeStartElement("timeline");
+            itemIcon = "1";
+            ShapeTag shape = (ShapeTag) symbol;
+            symbolStr.writeStartElement("DOMTimeline", new String[]{"name", "Symbol " + symbol.getCharacterId(), "currentFrame", "0"});
+            symbolStr.writeStartElement("layers");
+            SHAPEWITHSTYLE shapeWithStyle = shape.getShapes();
+            if (shapeWithStyle != null) {
+                convertShape(characters, null, shape.getShapeNum(), shapeWithStyle.shapeRecords, shapeWithStyle.fillStyles, shapeWithStyle.lineStyles, false, true, symbolStr);
             }
-        }
 
-        if (hasSymbol) {
-            writer.writeEndElement();
+            symbolStr.writeEndElement(); // layers
+            symbolStr.writeEndElement(); // DOMTimeline
+            symbolStr.writeEndElement(); // timeline
         }
+        
+        symbolStr.writeEndElement(); // DOMSymbolItem
+        String symbolStr2 = prettyFormatXML(symbolStr.toString());
+        String symbolFile = "Symbol " + symbol.getCharacterId() + ".xml";
+        return new SymbolItem(symbolFile, symbolStr2, itemIcon, deferredOutlineColorCount);
     }
 
-    private void convertMedia(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, HashMap<String, byte[]> files, HashMap<String, byte[]> datfiles, FLAVersion flaVersion, XFLXmlWriter writer) throws XMLStreamException {
-        boolean hasMedia = false;
+    private void convertMedia(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, XFLPackageWriter packageWriter, ExecutorService executor, FLAVersion flaVersion, XFLXmlWriter writer) throws XMLStreamException, IOException, InterruptedException {
+        Map<Integer, Boolean> bitmapSmoothing = getBitmapSmoothing(swf);
+        List<Callable<MediaItem>> tasks = new ArrayList<>();
         for (int ch : characters.keySet()) {
             CharacterTag symbol = characters.get(ch);
             if (symbol instanceof ImageTag
                     || symbol instanceof DefineSoundTag
                     || symbol instanceof DefineVideoStreamTag) {
                 //symbol instanceof SoundStreamHeadTypeTag  FIXME
-                hasMedia = true;                
+                tasks.add(() -> convertMediaData(swf, tags, symbol, bitmapSmoothing));
             }
         }
 
-        if (!hasMedia) {
+        if (tasks.isEmpty()) {
             return;
         }
 
         int mediaCount = 0;
         writer.writeStartElement("media");
 
-        for (int ch : characters.keySet()) {
-            CharacterTag symbol = characters.get(ch);
+        OrderedTasks<MediaItem> results = new OrderedTasks<>(executor, tasks);
+        while (results.hasNext()) {
+            MediaItem item = results.next();
+            CharacterTag symbol = item.symbol;
             if (symbol instanceof ImageTag) {
                 ImageTag imageTag = (ImageTag) symbol;
-                boolean allowSmoothing = false;
-
-                //find if smoothed - a bitmap is smoothed when there is a shape with fillstyle smoothed bitmap
-                looptags:
-                for (Tag tag : swf.getTags()) {
-                    if (tag instanceof ShapeTag) {
-                        Set<Integer> needed = new HashSet<>();
-                        tag.getNeededCharacters(needed, swf);
-                        ShapeTag sht = (ShapeTag) tag;
-                        if (needed.contains(imageTag.getCharacterId())) {
-                            List<FILLSTYLE> fs = new ArrayList<>();
-                            SHAPEWITHSTYLE s = sht.getShapes();
-                            for (FILLSTYLE f : s.fillStyles.fillStyles) {
-                                fs.add(f);
-                            }
-                            for (SHAPERECORD r : s.shapeRecords) {
-                                if (r instanceof StyleChangeRecord) {
-                                    StyleChangeRecord scr = (StyleChangeRecord) r;
-                                    if (scr.stateNewStyles) {
-                                        for (FILLSTYLE f : scr.fillStyles.fillStyles) {
-                                            fs.add(f);
-                                        }
-                                    }
-                                }
-                            }
-                            for (FILLSTYLE f : fs) {
-                                if (Arrays.asList(FILLSTYLE.REPEATING_BITMAP, FILLSTYLE.CLIPPED_BITMAP, FILLSTYLE.NON_SMOOTHED_REPEATING_BITMAP, FILLSTYLE.NON_SMOOTHED_CLIPPED_BITMAP).contains(f.fillStyleType) && f.bitmapId == imageTag.getCharacterId()) {
-                                    allowSmoothing = f.fillStyleType == FILLSTYLE.CLIPPED_BITMAP || f.fillStyleType == FILLSTYLE.REPEATING_BITMAP;
-                                    break looptags;
-                                }
-                            }
-                        }
-                    }
-                }
-
-                byte[] imageBytes = Helper.readStream(imageTag.getConvertedImageData());
-                SerializableImage image = imageTag.getImageCached();
                 ImageFormat format = imageTag.getImageFormat();
                 String symbolFile = "bitmap" + symbol.getCharacterId() + imageTag.getImageFormat().getExtension();
-                files.put(symbolFile, imageBytes);
+                packageWriter.addLibraryFile(symbolFile, item.data);
                 writer.writeStartElement("DOMBitmapItem", new String[]{
                     "name", symbolFile,
                     "sourceLastImported", Long.toString(getTimestamp(swf)),
-                    "externalFileSize", Integer.toString(imageBytes.length),});
-                if (allowSmoothing) {
+                    "externalFileSize", Integer.toString(item.data.length),});
+                if (item.allowSmoothing) {
                     writer.writeAttribute("allowSmoothing", true);
                 }
                 switch (format) {
@@ -1875,160 +1898,22 @@ public class XFLConverter {
                 writer.writeAttribute("quality", 50);
                 writer.writeAttribute("href", symbolFile);
                 writer.writeAttribute("bitmapDataHRef", "M " + (mediaCount + 1) + " " + getTimestamp(swf) + ".dat");
-                writer.writeAttribute("frameRight", image.getWidth());
-                writer.writeAttribute("frameBottom", image.getHeight());
+                writer.writeAttribute("frameRight", item.width);
+                writer.writeAttribute("frameBottom", item.height);
                 writer.writeEndElement();
                 mediaCount++;
-            } else if (/*(symbol instanceof SoundStreamHeadTypeTag) || FIXME */(symbol instanceof DefineSoundTag)) {
-                int soundFormat = 0;
-                int soundRate = 0;
-                boolean soundType = false;
-                boolean soundSize = false;
-                long soundSampleCount = 0;
-                byte[] soundData = SWFInputStream.BYTE_ARRAY_EMPTY;
-                int[] rateMap = {5, 11, 22, 44};
-                String exportFormat = "flv";
-                if (false) { //FIXME symbol instanceof SoundStreamHeadTypeTag) {
-                    SoundStreamHeadTypeTag sstream = null; //(SoundStreamHeadTypeTag) symbol;
-                    soundFormat = sstream.getSoundFormatId();
-                    soundRate = sstream.getSoundRate();
-                    soundType = sstream.getSoundType();
-                    soundSize = sstream.getSoundSize();
-                    soundSampleCount = sstream.getSoundSampleCount();
-                    boolean found = false;
-                    for (Tag t : tags) {
-                        if (found && (t instanceof SoundStreamBlockTag)) {
-                            SoundStreamBlockTag bl = (SoundStreamBlockTag) t;
-                            soundData = bl.streamSoundData.getRangeData();
-                            break;
-                        }
-                        if (t == symbol) {
-                            found = true;
-                        }
-                    }
-                } else if (symbol instanceof DefineSoundTag) {
-                    DefineSoundTag sound = (DefineSoundTag) symbol;
-                    soundFormat = sound.soundFormat;
-                    soundRate = sound.soundRate;
-                    soundType = sound.soundType;
-                    soundData = sound.soundData.getRangeData();
-                    soundSize = sound.soundSize;
-                    soundSampleCount = sound.soundSampleCount;
-                }
-                int format = 0;
-                int bits = 0;
-                if ((soundFormat == SoundFormat.FORMAT_ADPCM)
-                        || (soundFormat == SoundFormat.FORMAT_UNCOMPRESSED_LITTLE_ENDIAN)
-                        || (soundFormat == SoundFormat.FORMAT_UNCOMPRESSED_NATIVE_ENDIAN)) {
-                    exportFormat = "wav";
-                    if (soundType) { //stereo
-                        format += 1;
-                    }
-                    switch (soundRate) {
-                        case 0:
-                            format += 2;
-                            break;
-                        case 1:
-                            format += 6;
-                            break;
-                        case 2:
-                            format += 10;
-                            break;
-                        case 3:
-                            format += 14;
-                            break;
-                    }
-                }
-                if (soundFormat == SoundFormat.FORMAT_SPEEX) {
-                    bits = 18;
-                }
-                if (soundFormat == SoundFormat.FORMAT_ADPCM) {
-                    exportFormat = "wav";
-                    try {
-                        SWFInputStream sis = new SWFInputStream(swf, soundData);
-                        int adpcmCodeSize = (int) sis.readUB(2, "adpcmCodeSize");
-                        bits = 2 + adpcmCodeSize;
-                    } catch (IOException ex) {
-                        logger.log(Level.SEVERE, null, ex);
-                    }
-                }
-                if (soundFormat == SoundFormat.FORMAT_MP3) {
-                    exportFormat = "mp3";
-                    if (!soundType) { //mono
-                        format += 1;
-                    }
-                    format += 4; //quality best
-                    try {
-                        SWFInputStream sis = new SWFInputStream(swf, soundData);
-                        MP3SOUNDDATA s = new MP3SOUNDDATA(sis, false);
-                        if (!s.frames.isEmpty()) {
-                            MP3FRAME frame = s.frames.get(0);
-                            int bitRate = frame.getBitRate();
-
-                            switch (bitRate) {
-                                case 8:
-                                    bits = 6;
-                                    break;
-                                case 16:
-                                    bits = 7;
-                                    break;
-                                case 20:
-                                    bits = 8;
-                                    break;
-                                case 24:
-                                    bits = 9;
-                                    break;
-                                case 32:
-                                    bits = 10;
-                                    break;
-                                case 48:
-                                    bits = 11;
-                                    break;
-                                case 56:
-                                    bits = 12;
-                                    break;
-                                case 64:
-                                    bits = 13;
-                                    break;
-                                case 80:
-                                    bits = 14;
-                                    break;
-                                case 112:
-                                    bits = 15;
-                                    break;
-                                case 128:
-                                    bits = 16;
-                                    break;
-                                case 160:
-                                    bits = 17;
-                                    break;
-
-                            }
-                        }
-                    } catch (IOException | IndexOutOfBoundsException ex) {
-                        logger.log(Level.SEVERE, null, ex);
-                    }
-                }
-                SoundTag st = (SoundTag) symbol;
-                SoundFormat fmt = st.getSoundFormat();
-                byte[] data = SWFInputStream.BYTE_ARRAY_EMPTY;
-                try {
-                    data = new SoundExporter().exportSound(st, SoundExportMode.MP3_WAV);
-                } catch (IOException ex) {
-                    logger.log(Level.SEVERE, null, ex);
-                }
-
-                String symbolFile = "sound" + symbol.getCharacterId() + "." + exportFormat;
-                files.put(symbolFile, data);
+            } else if (symbol instanceof DefineSoundTag) {
+                String symbolFile = "sound" + symbol.getCharacterId() + "." + item.soundExportFormat;
+                packageWriter.addLibraryFile(symbolFile, item.data);
                 writer.writeStartElement("DOMSoundItem", new String[]{
                     "name", symbolFile,
                     "sourceLastImported", Long.toString(getTimestamp(swf)),
-                    "externalFileSize", Integer.toString(data.length)});
+                    "externalFileSize", Integer.toString(item.data.length)});
                 writer.writeAttribute("href", symbolFile);
-                writer.writeAttribute("format", rateMap[soundRate] + "kHz" + " " + (soundSize ? "16bit" : "8bit") + " " + (soundType ? "Stereo" : "Mono"));
-                writer.writeAttribute("exportFormat", format);
-                writer.writeAttribute("exportBits", bits);
-                writer.writeAttribute("sampleCount", soundSampleCount);
+                writer.writeAttribute("format", item.soundFormatName);
+                writer.writeAttribute("exportFormat", item.exportFormat);
+                writer.writeAttribute("exportBits", item.exportBits);
+                writer.writeAttribute("sampleCount", item.sampleCount);
 
                 boolean linkageExportForAS = false;
                 if (characterClasses.containsKey(symbol.getCharacterId())) {
@@ -2064,16 +1949,10 @@ public class XFLConverter {
                         break;
                 }
 
-                byte[] data = SWFInputStream.BYTE_ARRAY_EMPTY;
-                try {
-                    data = new MovieExporter().exportMovie(video, MovieExportMode.FLV);
-                } catch (IOException ex) {
-                    logger.log(Level.SEVERE, null, ex);
-                }
                 String symbolFile = "movie" + symbol.getCharacterId() + "." + "flv";
-                if (data.length == 0) { //Video has zero length, this probably means it is "Video - Actionscript-controlled"
+                if (item.data.length == 0) { //Video has zero length, this probably means it is "Video - Actionscript-controlled"
                     long ts = getTimestamp(swf);
-                    String datFileName = "M " + (datfiles.size() + 1) + " " + ts + ".dat";
+                    String datFileName = "M " + (packageWriter.getBinFileCount() + 1) + " " + ts + ".dat";
                     writer.writeEmptyElement("DOMVideoItem", new String[]{
                         "name", symbolFile,
                         "sourceExternalFilepath", "./LIBRARY/" + symbolFile,
@@ -2082,7 +1961,7 @@ public class XFLConverter {
                         "channels", "0",
                         "isSpecial", "true"});
                     //Use the dat file, otherwise it does not work
-                    datfiles.put(datFileName, new byte[]{ //Magic numbers, if anybody knows why, please tell me
+                    packageWriter.addBinFile(datFileName, new byte[]{ //Magic numbers, if anybody knows why, please tell me
                         (byte) 0x03, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
                         (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
                         (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
@@ -2098,11 +1977,11 @@ public class XFLConverter {
                         (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00
                     });
                 } else {
-                    files.put(symbolFile, data);
+                    packageWriter.addLibraryFile(symbolFile, item.data);
                     writer.writeStartElement("DOMVideoItem", new String[]{
                         "name", symbolFile,
                         "sourceLastImported", Long.toString(getTimestamp(swf)),
-                        "externalFileSize", Integer.toString(data.length)});
+                        "externalFileSize", Integer.toString(item.data.length)});
                     writer.writeAttribute("href", symbolFile);
                     writer.writeAttribute("videoType", videoType);
                     writer.writeAttribute("fps", (int) swf.frameRate); // todo: is the cast to int needed?
@@ -2132,6 +2011,219 @@ public class XFLConverter {
         writer.writeEndElement();
     }
 
+    /**
+     * Finds whether bitmaps are smoothed - a bitmap is smoothed when there is
+     * a shape with fillstyle smoothed bitmap. First shape which uses the bitmap
+     * decides.
+     *
+     * @param swf SWF
+     * @return Map of bitmap id to smoothing
+     */
+    private static Map<Integer, Boolean> getBitmapSmoothing(SWF swf) {
+        Map<Integer, Boolean> ret = new HashMap<>();
+        for (Tag tag : swf.getTags()) {
+            if (tag instanceof ShapeTag) {
+                Set<Integer> needed = new HashSet<>();
+                tag.getNeededCharacters(needed, swf);
+                ShapeTag sht = (ShapeTag) tag;
+                List<FILLSTYLE> fs = new ArrayList<>();
+                SHAPEWITHSTYLE s = sht.getShapes();
+                for (FILLSTYLE f : s.fillStyles.fillStyles) {
+                    fs.add(f);
+                }
+                for (SHAPERECORD r : s.shapeRecords) {
+                    if (r instanceof StyleChangeRecord) {
+                        StyleChangeRecord scr = (StyleChangeRecord) r;
+                        if (scr.stateNewStyles) {
+                            for (FILLSTYLE f : scr.fillStyles.fillStyles) {
+                                fs.add(f);
+                            }
+                        }
+                    }
+                }
+                for (FILLSTYLE f : fs) {
+                    if (Arrays.asList(FILLSTYLE.REPEATING_BITMAP, FILLSTYLE.CLIPPED_BITMAP, FILLSTYLE.NON_SMOOTHED_REPEATING_BITMAP, FILLSTYLE.NON_SMOOTHED_CLIPPED_BITMAP).contains(f.fillStyleType)
+                            && needed.contains(f.bitmapId) && !ret.containsKey(f.bitmapId)) {
+                        ret.put(f.bitmapId, f.fillStyleType == FILLSTYLE.CLIPPED_BITMAP || f.fillStyleType == FILLSTYLE.REPEATING_BITMAP);
+                    }
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Converts data of media item. Can be run in parallel.
+     */
+    private MediaItem convertMediaData(SWF swf, ReadOnlyTagList tags, CharacterTag symbol, Map<Integer, Boolean> bitmapSmoothing) {
+        MediaItem item = new MediaItem(symbol);
+        if (symbol instanceof ImageTag) {
+            ImageTag imageTag = (ImageTag) symbol;
+            item.allowSmoothing = bitmapSmoothing.getOrDefault(imageTag.getCharacterId(), false);
+            item.data = Helper.readStream(imageTag.getConvertedImageData());
+            SerializableImage image = imageTag.getImageCached();
+            item.width = image.getWidth();
+            item.height = image.getHeight();
+        } else if (/*(symbol instanceof SoundStreamHeadTypeTag) || FIXME */(symbol instanceof DefineSoundTag)) {
+            int soundFormat = 0;
+            int soundRate = 0;
+            boolean soundType = false;
+            boolean soundSize = false;
+            long soundSampleCount = 0;
+            byte[] soundData = SWFInputStream.BYTE_ARRAY_EMPTY;
+            int[] rateMap = {5, 11, 22, 44};
+            String exportFormat = "flv";
+            if (false) { //FIXME symbol instanceof SoundStreamHeadTypeTag) {
+                SoundStreamHeadTypeTag sstream = null; //(SoundStreamHeadTypeTag) symbol;
+                soundFormat = sstream.getSoundFormatId();
+                soundRate = sstream.getSoundRate();
+                soundType = sstream.getSoundType();
+                soundSize = sstream.getSoundSize();
+                soundSampleCount = sstream.getSoundSampleCount();
+                boolean found = false;
+                for (Tag t : tags) {
+                    if (found && (t instanceof SoundStreamBlockTag)) {
+                        SoundStreamBlockTag bl = (SoundStreamBlockTag) t;
+                        soundData = bl.streamSoundData.getRangeData();
+                        break;
+                    }
+                    if (t == symbol) {
+                        found = true;
+                    }
+                }
+            } else if (symbol instanceof DefineSoundTag) {
+                DefineSoundTag sound = (DefineSoundTag) symbol;
+                soundFormat = sound.soundFormat;
+                soundRate = sound.soundRate;
+                soundType = sound.soundType;
+                soundData = sound.soundData.getRangeData();
+                soundSize = sound.soundSize;
+                soundSampleCount = sound.soundSampleCount;
+            }
+            int format = 0;
+            int bits = 0;
+            if ((soundFormat == SoundFormat.FORMAT_ADPCM)
+                    || (soundFormat == SoundFormat.FORMAT_UNCOMPRESSED_LITTLE_ENDIAN)
+                    || (soundFormat == SoundFormat.FORMAT_UNCOMPRESSED_NATIVE_ENDIAN)) {
+                exportFormat = "wav";
+                if (soundType) { //stereo
+                    format += 1;
+                }
+                switch (soundRate) {
+                    case 0:
+                        format += 2;
+                        break;
+                    case 1:
+                        format += 6;
+                        break;
+                    case 2:
+                        format += 10;
+                        break;
+                    case 3:
+                        format += 14;
+                        break;
+                }
+            }
+            if (soundFormat == SoundFormat.FORMAT_SPEEX) {
+                bits = 18;
+            }
+            if (soundFormat == SoundFormat.FORMAT_ADPCM) {
+                exportFormat = "wav";
+                try {
+                    SWFInputStream sis = new SWFInputStream(swf, soundData);
+                    int adpcmCodeSize = (int) sis.readUB(2, "adpcmCodeSize");
+                    bits = 2 + adpcmCodeSize;
+                } catch (IOException ex) {
+                    logger.log(Level.SEVERE, null, ex);
+                }
+            }
+            if (soundFormat == SoundFormat.FORMAT_MP3) {
+                exportFormat = "mp3";
+                if (!soundType) { //mono
+                    format += 1;
+                }
+                format += 4; //quality best
+                try {
+                    SWFInputStream sis = new SWFInputStream(swf, soundData);
+                    MP3SOUNDDATA s = new MP3SOUNDDATA(sis, false);
+                    if (!s.frames.isEmpty()) {
+                        MP3FRAME frame = s.frames.get(0);
+                        int bitRate = frame.getBitRate();
+
+                        switch (bitRate) {
+                            case 8:
+                                bits = 6;
+                                break;
+                            case 16:
+                                bits = 7;
+                                break;
+                            case 20:
+                                bits = 8;
+                                break;
+                            case 24:
+                                bits = 9;
+                                break;
+                            case 32:
+                                bits = 10;
+                                break;
+                            case 48:
+                                bits = 11;
+                                break;
+                            case 56:
+                                bits = 12;
+                                break;
+                            case 64:
+                                bits = 13;
+                                break;
+                            case 80:
+                                bits = 14;
+                                break;
+                            case 112:
+                                bits = 15;
+                                break;
+                            case 128:
+                                bits = 16;
+                                break;
+                            case 160:
+                                bits = 17;
+                                break;
+
+                        }
+                    }
+                } catch (IOException | IndexOutOfBoundsException ex) {
+                    logger.log(Level.SEVERE, null, ex);
+                }
+            }
+            SoundTag st = (SoundTag) symbol;
+            SoundFormat fmt = st.getSoundFormat();
+            byte[] data = SWFInputStream.BYTE_ARRAY_EMPTY;
+            try {
+                data = new SoundExporter().exportSound(st, SoundExportMode.MP3_WAV);
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, null, ex);
+            }
+
+            item.soundExportFormat = exportFormat;
+            item.soundFormatName = rateMap[soundRate] + "kHz" + " " + (soundSize ? "16bit" : "8bit") + " " + (soundType ? "Stereo" : "Mono");
+            item.exportFormat = format;
+            item.exportBits = bits;
+            item.sampleCount = soundSampleCount;
+            item.data = data;
+        } else if (symbol instanceof DefineVideoStreamTag) {
+            DefineVideoStreamTag video = (DefineVideoStreamTag) symbol;
+            byte[] data = SWFInputStream.BYTE_ARRAY_EMPTY;
+            try {
+                data = new MovieExporter().exportMovie(video, MovieExportMode.FLV);
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, null, ex);
+            }
+            item.data = data;
+        }
+
+        return item;
+    }
+
     private String prettyFormatXML(String input) {
         return new XmlPrettyFormat().prettyFormat(input, 5, false);
     }
@@ -2235,7 +2327,7 @@ public class XFLConverter {
         }
     }
 
-    private static void convertFrame(boolean shapeTween, SoundStreamHeadTypeTag soundStreamHead, StartSoundTag startSound, int frame, int duration, String actionScript, String elements, HashMap<String, byte[]> files, XFLXmlWriter writer) throws XMLStreamException {
+    private static void convertFrame(boolean shapeTween, SoundStreamHeadTypeTag soundStreamHead, StartSoundTag startSound, int frame, int duration, String actionScript, String elements, Set<String> files, XFLXmlWriter writer) throws XMLStreamException {
         DefineSoundTag sound = null;
         if (startSound != null) {
             SWF swf = startSound.getSwf();
@@ -2296,7 +2388,7 @@ public class XFLConverter {
         writer.writeEndElement();
     }
 
-    private static void convertFrames(List<Integer> onlyFrames, int startFrame, int endFrame, String prevStr, String afterStr, List<Integer> nonLibraryShapes, ReadOnlyTagList tags, ReadOnlyTagList timelineTags, HashMap<Integer, CharacterTag> characters, int depth, FLAVersion flaVersion, HashMap<String, byte[]> files, XFLXmlWriter writer) throws XMLStreamException {
+    private static void convertFrames(List<Integer> onlyFrames, int startFrame, int endFrame, String prevStr, String afterStr, List<Integer> nonLibraryShapes, ReadOnlyTagList tags, ReadOnlyTagList timelineTags, HashMap<Integer, CharacterTag> characters, int depth, FLAVersion flaVersion, Set<String> files, XFLXmlWriter writer) throws XMLStreamException {
         boolean lastIn = true;
         XFLXmlWriter writer2 = new XFLXmlWriter();
         prevStr += "<frames>";
@@ -2862,7 +2954,7 @@ public class XFLConverter {
         return hasLabel;
     }
 
-    private void convertSoundLayer(ReadOnlyTagList timeLineTags, HashMap<String, byte[]> files, XFLXmlWriter writer) throws XMLStreamException {
+    private void convertSoundLayer(ReadOnlyTagList timeLineTags, Set<String> files, XFLXmlWriter writer) throws XMLStreamException {
         int soundLayerIndex = 0;
         XFLXmlWriter writer2 = new XFLXmlWriter();
         List<StartSoundTag> startSounds = new ArrayList<>();
@@ -2880,7 +2972,7 @@ public class XFLConverter {
                     continue;
                 }
 
-                if (!files.containsKey("sound" + s.soundId + "." + s.getExportFormat().toString().toLowerCase())) { //Sound was not exported
+                if (!files.contains("sound" + s.soundId + "." + s.getExportFormat().toString().toLowerCase())) { //Sound was not exported
                     startSound = null; // ignore
                 }
 
@@ -2890,7 +2982,7 @@ public class XFLConverter {
                 }
             } else if (t instanceof SoundStreamHeadTypeTag) {
                 SoundStreamHeadTypeTag soundStreamHead = (SoundStreamHeadTypeTag) t;
-                if (!files.containsKey("sound" + soundStreamHead.getCharacterId() + "." + soundStreamHead.getExportFormat().toString().toLowerCase())) { //Sound was not exported
+                if (!files.contains("sound" + soundStreamHead.getCharacterId() + "." + soundStreamHead.getExportFormat().toString().toLowerCase())) { //Sound was not exported
                     soundStreamHead = null; // ignore
                 }
 
@@ -2941,6 +3033,9 @@ public class XFLConverter {
     }
 
     private String randomOutlineColor() {
+        if (deferOutlineColors) {
+            return "{outlineColor" + (deferredOutlineColorCount++) + "}";
+        }
         RGB outlineColor = new RGB();
         do {
             outlineColor.red = random.nextInt(256);
@@ -2950,6 +3045,23 @@ public class XFLConverter {
         return outlineColor.toHexRGB();
     }
 
+    private String resolveOutlineColors(String data, int outlineColorCount) {
+        if (outlineColorCount == 0) {
+            return data;
+        }
+        String[] outlineColors = new String[outlineColorCount];
+        for (int i = 0; i < outlineColorCount; i++) {
+            outlineColors[i] = randomOutlineColor();
+        }
+        Matcher m = OUTLINE_COLOR_PLACEHOLDER_PATTERN.matcher(data);
+        StringBuffer sb = new StringBuffer();
+        while (m.find()) {
+            m.appendReplacement(sb, Matcher.quoteReplacement("color=\"" + outlineColors[Integer.parseInt(m.group(1))] + "\""));
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
     private String getMembersToClassName(GraphTargetItem item) {
         List<String> ret = new ArrayList<>();
         while (item instanceof GetMemberActionItem) {
@@ -2980,7 +3092,7 @@ public class XFLConverter {
         return String.join(".", ret);
     }
     
-    private void convertTimeline(AbcIndexing abcIndex, int spriteId, String linkageIdentifier, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, ReadOnlyTagList timelineTags, HashMap<Integer, CharacterTag> characters, String name, FLAVersion flaVersion, HashMap<String, byte[]> files, XFLXmlWriter writer, ScriptPack scriptPack) throws XMLStreamException {
+    private void convertTimeline(AbcIndexing abcIndex, int spriteId, String linkageIdentifier, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, ReadOnlyTagList timelineTags, HashMap<Integer, CharacterTag> characters, String name, FLAVersion flaVersion, Set<String> files, XFLXmlWriter writer, ScriptPack scriptPack) throws XMLStreamException {
         
         List<String> classNames = new ArrayList<>();
         //Searches for Object.registerClass("linkageIdentifier",mypkg.MyClass);        
@@ -3213,7 +3325,7 @@ public class XFLConverter {
         writer.writeEndElement();//DOMLayer        
     }
 
-    private boolean writeLayer(int index, List<Integer> onlyFrames, int d, int startFrame, int endFrame, int parentLayer, XFLXmlWriter writer, List<Integer> nonLibraryShapes, ReadOnlyTagList tags, ReadOnlyTagList timelineTags, HashMap<Integer, CharacterTag> characters, FLAVersion flaVersion, HashMap<String, byte[]> files) throws XMLStreamException {
+    private boolean writeLayer(int index, List<Integer> onlyFrames, int d, int startFrame, int endFrame, int parentLayer, XFLXmlWriter writer, List<Integer> nonLibraryShapes, ReadOnlyTagList tags, ReadOnlyTagList timelineTags, HashMap<Integer, CharacterTag> characters, FLAVersion flaVersion, Set<String> files) throws XMLStreamException {
         XFLXmlWriter layerPrev = new XFLXmlWriter();
         layerPrev.writeStartElement("DOMLayer", new String[]{
             "name", "Layer " + (index + 1) + (DEBUG_EXPORT_LAYER_DEPTHS ? " (depth " + d + ")" : ""),
@@ -3700,17 +3812,13 @@ public class XFLConverter {
         Path.createDirectorySafe(scriptsDir);
         
         File xflDataDir = null;
-        String xflFile = null;
         if (!settings.compressed) {
             xflDataDir = new File(Path.combine(flaFile.getParentFile().getAbsolutePath(), baseName)); //c:/mydir/myfile/
-            xflFile = Path.combine(xflDataDir.getAbsolutePath(), baseName + ".xfl"); // c:/mydir/myfile.xfl
             Path.createDirectorySafe(xflDataDir);        
         }
         
         
         
-        final HashMap<String, byte[]> files = new HashMap<>();
-        final HashMap<String, byte[]> datfiles = new HashMap<>();
         HashMap<Integer, CharacterTag> characters = getCharacters(swf.getTags());
         List<Integer> nonLibraryShapes = getNonLibraryShapes(swf.getTags(), characters);
         Map<Integer, String> characterClasses = getCharacterClasses(swf.getTags());
@@ -3727,6 +3835,14 @@ public class XFLConverter {
         double width = twipToPixel(swf.displayRect.getWidth());
         double height = twipToPixel(swf.displayRect.getHeight());
 
+        XFLPackageWriter packageWriter = new XFLPackageWriter(handler, settings.compressed ? outfile : xflDataDir.getAbsolutePath(), settings.compressed, PACKAGE_WRITER_QUEUE_SIZE);
+        ExecutorService executor = null;
+        if (parallel) {
+            executor = Executors.newFixedThreadPool(Configuration.getParallelThreadCount());
+            // initialize shared index before symbols are converted in parallel
+            swf.getAbcIndex();
+        }
+
         XFLXmlWriter domDocument = new XFLXmlWriter();
         try {
             domDocument.writeStartElement("DOMDocument", new String[]{
@@ -3757,11 +3873,11 @@ public class XFLConverter {
             }
 
             convertFonts(swf.getTags(), domDocument);
-            convertLibrary(swf, characterVariables, characterClasses, characterScriptPacks, nonLibraryShapes, backgroundColor, swf.getTags(), characters, files, datfiles, flaVersion, domDocument);
+            convertLibrary(swf, characterVariables, characterClasses, characterScriptPacks, nonLibraryShapes, backgroundColor, swf.getTags(), characters, packageWriter, executor, flaVersion, domDocument);
 
             //domDocument.writeStartElement("timelines");
             ScriptPack documentScriptPack = characterScriptPacks.containsKey(0) ? characterScriptPacks.get(0) : null;
-            convertTimeline(swf.getAbcIndex(), -1, null, nonLibraryShapes, backgroundColor, swf.getTags(), swf.getTags(), characters, "Scene 1", flaVersion, files, domDocument, documentScriptPack);
+            convertTimeline(swf.getAbcIndex(), -1, null, nonLibraryShapes, backgroundColor, swf.getTags(), swf.getTags(), characters, "Scene 1", flaVersion, packageWriter.getLibraryFiles(), domDocument, documentScriptPack);
             //domDocument.writeEndElement();
 
             if (hasAmfMetadata) {
@@ -3779,43 +3895,17 @@ public class XFLConverter {
             domDocument.writeEndElement();
         } catch (XMLStreamException ex) {
             logger.log(Level.SEVERE, null, ex);
+        } catch (IOException | InterruptedException | RuntimeException | Error ex) {
+            packageWriter.abort();
+            throw ex;
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
         }
 
         String domDocumentStr = prettyFormatXML(domDocument.toString());
 
-        if (settings.exportScript) {
-            for (Tag t : swf.getTags()) {
-                if (t instanceof DoInitActionTag) {
-                    DoInitActionTag dia = (DoInitActionTag) t;
-                    int chid = dia.getCharacterId();
-                    if (characters.containsKey(chid)) {
-                        if (characters.get(chid) instanceof DefineSpriteTag) {
-                            DefineSpriteTag sprite = (DefineSpriteTag) characters.get(chid);
-                            if (sprite.getTags().isEmpty()) {
-                                String data = convertActionScript12(dia);
-                                String expName = dia.getSwf().getExportName(dia.spriteId);
-                                expName = expName != null ? expName : "_unk_";
-                                String expPath = expName;
-                                final String prefix = "__Packages.";
-                                if (expPath.startsWith(prefix)) {
-                                    expPath = expPath.substring(prefix.length());
-                                }
-                                String expDir = "";
-                                if (expPath.contains(".")) {
-                                    expDir = expPath.substring(0, expPath.lastIndexOf('.'));
-                                    expDir = expDir.replace(".", File.separator);
-                                }
-                                expPath = expPath.replace(".", File.separator);
-                                File cdir = new File(scriptsDir.getAbsolutePath() + File.separator + expDir);
-                                Path.createDirectorySafe(cdir);
-                                writeFile(handler, Utf8Helper.getBytes(data), scriptsDir.getAbsolutePath() + File.separator + expPath + ".as");
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
         int flaSwfVersion = swf.version > flaVersion.maxSwfVersion() ? flaVersion.maxSwfVersion() : swf.version;
         boolean greaterThanCC = flaVersion.ordinal() >= FLAVersion.CC.ordinal();
         XFLXmlWriter publishSettings = new XFLXmlWriter();
@@ -4065,43 +4155,50 @@ public class XFLConverter {
 
         String publishSettingsStr = publishSettings.toString();
 
-        if (settings.compressed) {
-            final String domDocumentF = domDocumentStr;
-            final String publishSettingsF = publishSettingsStr;
-            final String outfileF = outfile;
-            new RetryTask(() -> {
-                try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(outfileF))) {
-                    out.putNextEntry(new ZipEntry("DOMDocument.xml"));
-                    out.write(Utf8Helper.getBytes(domDocumentF));
-                    out.putNextEntry(new ZipEntry("PublishSettings.xml"));
-                    out.write(Utf8Helper.getBytes(publishSettingsF));
-                    for (String fileName : files.keySet()) {
-                        out.putNextEntry(new ZipEntry("LIBRARY/" + fileName));
-                        out.write(files.get(fileName));
-                    }
-                    for (String fileName : datfiles.keySet()) {
-                        out.putNextEntry(new ZipEntry("bin/" + fileName));
-                        out.write(datfiles.get(fileName));
+        try {
+            packageWriter.addFile("DOMDocument.xml", Utf8Helper.getBytes(domDocumentStr));
+            packageWriter.addFile("PublishSettings.xml", Utf8Helper.getBytes(publishSettingsStr));
+            if (!settings.compressed) {
+                packageWriter.addFile(baseName + ".xfl", Utf8Helper.getBytes("PROXY-CS5"));
+            }
+            packageWriter.finish();
+        } finally {
+            packageWriter.abort();
+        }
+
+        if (settings.exportScript) {
+            for (Tag t : swf.getTags()) {
+                if (t instanceof DoInitActionTag) {
+                    DoInitActionTag dia = (DoInitActionTag) t;
+                    int chid = dia.getCharacterId();
+                    if (characters.containsKey(chid)) {
+                        if (characters.get(chid) instanceof DefineSpriteTag) {
+                            DefineSpriteTag sprite = (DefineSpriteTag) characters.get(chid);
+                            if (sprite.getTags().isEmpty()) {
+                                String data = convertActionScript12(dia);
+                                String expName = dia.getSwf().getExportName(dia.spriteId);
+                                expName = expName != null ? expName : "_unk_";
+                                String expPath = expName;
+                                final String prefix = "__Packages.";
+                                if (expPath.startsWith(prefix)) {
+                                    expPath = expPath.substring(prefix.length());
+                                }
+                                String expDir = "";
+                                if (expPath.contains(".")) {
+                                    expDir = expPath.substring(0, expPath.lastIndexOf('.'));
+                                    expDir = expDir.replace(".", File.separator);
+                                }
+                                expPath = expPath.replace(".", File.separator);
+                                File cdir = new File(scriptsDir.getAbsolutePath() + File.separator + expDir);
+                                Path.createDirectorySafe(cdir);
+                                writeFile(handler, Utf8Helper.getBytes(data), scriptsDir.getAbsolutePath() + File.separator + expPath + ".as");
+                            }
+                        }
                     }
                 }
-            }, handler).run();
-
-        } else {
-            Path.createDirectorySafe(xflDataDir);
-            writeFile(handler, Utf8Helper.getBytes(domDocumentStr), xflDataDir.getAbsolutePath() + File.separator + "DOMDocument.xml");
-            writeFile(handler, Utf8Helper.getBytes(publishSettingsStr), xflDataDir.getAbsolutePath() + File.separator + "PublishSettings.xml");
-            File libraryDir = new File(xflDataDir.getAbsolutePath() + File.separator + "LIBRARY");
-            libraryDir.mkdir();
-            File binDir = new File(xflDataDir.getAbsolutePath() + File.separator + "bin");
-            binDir.mkdir();
-            for (String fileName : files.keySet()) {
-                writeFile(handler, files.get(fileName), libraryDir.getAbsolutePath() + File.separator + fileName);
             }
-            for (String fileName : datfiles.keySet()) {
-                writeFile(handler, datfiles.get(fileName), binDir.getAbsolutePath() + File.separator + fileName);
-            }
-            writeFile(handler, Utf8Helper.getBytes("PROXY-CS5"), xflFile);
         }
+
         if (useAS3 && settings.exportScript) {
             try {
                 ScriptExportSettings scriptExportSettings = new ScriptExportSettings(ScriptExportMode.AS, false, true);
@@ -4260,6 +4357,131 @@ public class XFLConverter {
         return tw / SWF.unitDivisor;
     }
 
+    private static class SymbolItem {
+
+        private final String fileName;
+
+        private final String data;
+
+        private final String itemIcon;
+
+        private final int outlineColorCount;
+
+        public SymbolItem(String fileName, String data, String itemIcon, int outlineColorCount) {
+            this.fileName = fileName;
+            this.data = data;
+            this.itemIcon = itemIcon;
+            this.outlineColorCount = outlineColorCount;
+        }
+    }
+
+    private static class MediaItem {
+
+        private final CharacterTag symbol;
+
+        private byte[] data;
+
+        private boolean allowSmoothing;
+
+        private int width;
+
+        private int height;
+
+        private String soundExportFormat;
+
+        private String soundFormatName;
+
+        private int exportFormat;
+
+        private int exportBits;
+
+        private long sampleCount;
+
+        public MediaItem(CharacterTag symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    /**
+     * Runs tasks on executor and returns their results in the order of the
+     * tasks. Only a limited number of tasks is submitted ahead, so results of
+     * all the tasks are never held in memory at once. Without executor, the
+     * tasks run on the calling thread.
+     *
+     * @param <T> Result type
+     */
+    private static class OrderedTasks<T> {
+
+        private final ExecutorService executor;
+
+        private final Iterator<Callable<T>> tasks;
+
+        private final Deque<Future<T>> running = new ArrayDeque<>();
+
+        private final int maxRunning;
+
+        public OrderedTasks(ExecutorService executor, List<Callable<T>> tasks) {
+            this.executor = executor;
+            this.tasks = tasks.iterator();
+            this.maxRunning = 2 * Configuration.getParallelThreadCount();
+        }
+
+        public boolean hasNext() {
+            return !running.isEmpty() || tasks.hasNext();
+        }
+
+        public T next() throws XMLStreamException, IOException, InterruptedException {
+            if (executor == null) {
+                try {
+                    return tasks.next().call();
+                } catch (XMLStreamException | IOException | InterruptedException | RuntimeException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new IOException(ex);
+                }
+            }
+
+            while (running.size() < maxRunning && tasks.hasNext()) {
+                running.add(executor.submit(tasks.next()));
+            }
+
+            Future<T> future = running.remove();
+            try {
+                return future.get();
+            } catch (ExecutionException ex) {
+                cancel();
+                Throwable cause = ex.getCause();
+                if (cause instanceof XMLStreamException) {
+                    throw (XMLStreamException) cause;
+                }
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            } catch (InterruptedException ex) {
+                cancel();
+                throw ex;
+            }
+        }
+
+        private void cancel() {
+            for (Future<T> future : running) {
+                future.cancel(true);
+            }
+
+            running.clear();
+        }
+    }
+
     private static class HTMLTextParser extends DefaultHandler {
 
         public XFLXmlWriter result = new XFLXmlWriter();
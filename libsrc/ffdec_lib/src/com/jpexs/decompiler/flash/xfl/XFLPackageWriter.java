@@ -0,0 +1,260 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.xfl;
+
+import com.jpexs.decompiler.flash.AbortRetryIgnoreHandler;
+import com.jpexs.decompiler.flash.RetryTask;
+import com.jpexs.helpers.Path;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes files of XFL document to FLA archive or to XFL directory.
+ *
+ * Files are passed through a bounded queue to a single writer thread, so the
+ * conversion does not need to keep all the library files in memory and waits
+ * when the writer is behind. Files are written in the order they were added.
+ *
+ * @author JPEXS
+ */
+class XFLPackageWriter {
+
+    private static final Entry END = new Entry(null, null);
+
+    private final AbortRetryIgnoreHandler handler;
+
+    private final BlockingQueue<Entry> queue;
+
+    private final Thread thread;
+
+    private final Set<String> libraryFiles = new HashSet<>();
+
+    private int binFileCount = 0;
+
+    private ZipOutputStream zip;
+
+    private File baseDir;
+
+    private volatile Throwable error;
+
+    private boolean finished = false;
+
+    private static class Entry {
+
+        private final String path;
+
+        private final byte[] data;
+
+        public Entry(String path, byte[] data) {
+            this.path = path;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param handler Abort/retry/ignore handler
+     * @param outfile FLA file when compressed, XFL directory otherwise
+     * @param compressed Write FLA archive
+     * @param queueSize Maximum number of files waiting to be written
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    public XFLPackageWriter(AbortRetryIgnoreHandler handler, String outfile, boolean compressed, int queueSize) throws IOException, InterruptedException {
+        this.handler = handler;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        if (compressed) {
+            new RetryTask(() -> {
+                zip = new ZipOutputStream(new FileOutputStream(outfile));
+            }, handler).run();
+        } else {
+            baseDir = new File(outfile);
+            Path.createDirectorySafe(baseDir);
+            new File(baseDir, "LIBRARY").mkdir();
+            new File(baseDir, "bin").mkdir();
+        }
+
+        thread = new Thread(this::writeLoop, "XFL writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void writeLoop() {
+        try {
+            Entry entry;
+            while ((entry = queue.take()) != END) {
+                write(entry);
+            }
+        } catch (Throwable t) {
+            error = t;
+            // release the producer
+            queue.clear();
+        }
+    }
+
+    private void write(Entry entry) throws IOException, InterruptedException {
+        if (zip != null) {
+            zip.putNextEntry(new ZipEntry(entry.path));
+            zip.write(entry.data);
+            zip.closeEntry();
+        } else {
+            File file = new File(baseDir, entry.path.replace("/", File.separator));
+            new RetryTask(() -> {
+                try (FileOutputStream fos = new FileOutputStream(file)) {
+                    fos.write(entry.data);
+                }
+            }, handler).run();
+        }
+    }
+
+    private void add(String path, byte[] data) throws IOException, InterruptedException {
+        checkError();
+        queue.put(new Entry(path, data));
+        checkError();
+    }
+
+    private void checkError() throws IOException, InterruptedException {
+        Throwable t = error;
+        if (t == null) {
+            return;
+        }
+
+        queue.clear();
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        }
+        if (t instanceof InterruptedException) {
+            throw (InterruptedException) t;
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new IOException(t);
+    }
+
+    /**
+     * Adds file to the LIBRARY folder.
+     *
+     * @param name File name
+     * @param data Data
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    public void addLibraryFile(String name, byte[] data) throws IOException, InterruptedException {
+        libraryFiles.add(name);
+        add("LIBRARY/" + name, data);
+    }
+
+    public boolean hasLibraryFile(String name) {
+        return libraryFiles.contains(name);
+    }
+
+    public Set<String> getLibraryFiles() {
+        return libraryFiles;
+    }
+
+    /**
+     * Adds file to the bin folder.
+     *
+     * @param name File name
+     * @param data Data
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    public void addBinFile(String name, byte[] data) throws IOException, InterruptedException {
+        binFileCount++;
+        add("bin/" + name, data);
+    }
+
+    public int getBinFileCount() {
+        return binFileCount;
+    }
+
+    /**
+     * Adds file to the root of the document.
+     *
+     * @param name File name
+     * @param data Data
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    public void addFile(String name, byte[] data) throws IOException, InterruptedException {
+        add(name, data);
+    }
+
+    /**
+     * Waits until all files are written and closes the output.
+     *
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    public void finish() throws IOException, InterruptedException {
+        if (finished) {
+            return;
+        }
+
+        finished = true;
+        try {
+            checkError();
+            queue.put(END);
+            thread.join();
+            checkError();
+        } finally {
+            closeOutput();
+        }
+    }
+
+    /**
+     * Stops writing after an error of the conversion.
+     */
+    public void abort() {
+        if (finished) {
+            return;
+        }
+
+        finished = true;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            closeOutput();
+        } catch (IOException ex) {
+            //ignore
+        }
+    }
+
+    private void closeOutput() throws IOException {
+        if (zip != null) {
+            zip.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.helpers;
+
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Fork/join pool with daemon workers sized by the configured thread count.
+ *
+ * The pool is replaced when the thread count changes. Tasks are submitted
+ * under the same lock as the pool is replaced, so the replaced pool is shut
+ * down only after all its tasks were submitted, and it still runs them.
+ *
+ * @author JPEXS
+ */
+public final class SharedForkJoinPool {
+
+    private final String threadName;
+
+    private ForkJoinPool pool;
+
+    private int poolParallelism;
+
+    private static class Worker extends ForkJoinWorkerThread {
+
+        private final SharedForkJoinPool owner;
+
+        public Worker(ForkJoinPool pool, SharedForkJoinPool owner) {
+            super(pool);
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param threadName Name of the worker threads, index of the worker is
+     * appended
+     */
+    public SharedForkJoinPool(String threadName) {
+        this.threadName = threadName;
+    }
+
+    private ForkJoinPool getPool() {
+        int parallelism = Configuration.getParallelThreadCount();
+        if (pool == null || poolParallelism != parallelism) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+
+            poolParallelism = parallelism;
+            pool = new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                @Override
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                    ForkJoinWorkerThread thread = new Worker(pool, SharedForkJoinPool.this);
+                    thread.setName(threadName + "-" + thread.getPoolIndex());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }, null, false);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Submits the task to the pool.
+     *
+     * @param <T> Result type
+     * @param task Task
+     * @return Submitted task
+     */
+    public synchronized <T> ForkJoinTask<T> submit(ForkJoinTask<T> task) {
+        return getPool().submit(task);
+    }
+
+    /**
+     * Submits the task to the pool.
+     *
+     * @param task Task
+     * @return Submitted task
+     */
+    public synchronized ForkJoinTask<?> submit(Runnable task) {
+        return getPool().submit(task);
+    }
+
+    /**
+     * Checks whether the current thread is a worker of this pool, including
+     * the replaced ones.
+     *
+     * @return True when the current thread is a worker
+     */
+    public boolean isWorkerThread() {
+        Thread thread = Thread.currentThread();
+        return thread instanceof Worker && ((Worker) thread).owner == this;
+    }
+}
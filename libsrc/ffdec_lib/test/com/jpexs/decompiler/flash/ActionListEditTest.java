@@ -0,0 +1,238 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.action.Action;
+import com.jpexs.decompiler.flash.action.ActionDefineFunctionPushRegistersCleaner;
+import com.jpexs.decompiler.flash.action.ActionList;
+import com.jpexs.decompiler.flash.action.ActionListEdit;
+import com.jpexs.decompiler.flash.action.ActionListReader;
+import com.jpexs.decompiler.flash.action.parser.ActionParseException;
+import com.jpexs.decompiler.flash.action.parser.pcode.ASMParser;
+import com.jpexs.decompiler.flash.action.swf4.ActionPush;
+import com.jpexs.decompiler.flash.exporters.modes.ScriptExportMode;
+import com.jpexs.decompiler.flash.helpers.CodeFormatting;
+import com.jpexs.decompiler.flash.helpers.HighlightedTextWriter;
+import com.jpexs.helpers.utf8.Utf8Helper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ * Tests batch edits of action lists. The edited list is compared with the
+ * expected code assembled from P-code byte by byte, so the jump offsets and
+ * container sizes must match. The assembler puts ConstantPool at the start of
+ * the code, so the first action is at index 1.
+ *
+ * @author JPEXS
+ */
+public class ActionListEditTest {
+
+    private static final int SWF_VERSION = 10;
+
+    private static final String BRANCHES = "Push 1\n"
+            + "If a\n"
+            + "Push \"x\"\n"
+            + "Trace\n"
+            + "a:Push \"y\"\n"
+            + "Trace\n"
+            + "Push 2\n"
+            + "If a\n"
+            + "Stop\n";
+
+    private static ActionList parse(String pcode) throws IOException, ActionParseException {
+        return ASMParser.parse(0, true, pcode, SWF_VERSION, true, Utf8Helper.charsetName);
+    }
+
+    private static String toPcode(ActionList actions) {
+        HighlightedTextWriter writer = new HighlightedTextWriter(new CodeFormatting(), false);
+        Action.actionsToString(new ArrayList<>(), 0, actions, SWF_VERSION, ScriptExportMode.PCODE, writer);
+        return writer.toString();
+    }
+
+    private static void assertSameCode(ActionList actual, ActionList expected) {
+        assertEquals(Action.actionsToBytes(actual, true, SWF_VERSION), Action.actionsToBytes(expected, true, SWF_VERSION),
+                "Expected:\n" + toPcode(expected) + "Actual:\n" + toPcode(actual));
+    }
+
+    private static void assertCode(ActionList actions, String expectedPcode) throws IOException, ActionParseException {
+        assertSameCode(actions, parse(expectedPcode));
+    }
+
+    private static Action push(Object... values) {
+        return new ActionPush(values, Utf8Helper.charsetName);
+    }
+
+    @Test
+    public void testRemoveJumpTarget() throws IOException, ActionParseException {
+        ActionList actions = parse(BRANCHES);
+        ActionListEdit edit = actions.beginEdit();
+        edit.remove(3);
+        edit.remove(5);
+        edit.commit();
+        assertCode(actions, "Push 1\n"
+                + "If a\n"
+                + "Trace\n"
+                + "a:Trace\n"
+                + "Push 2\n"
+                + "If a\n"
+                + "Stop\n");
+    }
+
+    @Test
+    public void testInsertBeforeJumpTarget() throws IOException, ActionParseException {
+        ActionList actions = parse(BRANCHES);
+        ActionListEdit edit = actions.beginEdit();
+        edit.insert(5, push("z"));
+        edit.insert(5, push("w"));
+        edit.insert(1, push(0));
+        edit.commit();
+        assertCode(actions, "Push 0\n"
+                + "Push 1\n"
+                + "If a\n"
+                + "Push \"x\"\n"
+                + "Trace\n"
+                + "Push \"z\"\n"
+                + "Push \"w\"\n"
+                + "a:Push \"y\"\n"
+                + "Trace\n"
+                + "Push 2\n"
+                + "If a\n"
+                + "Stop\n");
+    }
+
+    @Test
+    public void testReplaceJumpTarget() throws IOException, ActionParseException {
+        ActionList actions = parse(BRANCHES);
+        ActionListEdit edit = actions.beginEdit();
+        edit.replace(actions.get(5), push("longer string"));
+        edit.commit();
+        assertCode(actions, "Push 1\n"
+                + "If a\n"
+                + "Push \"x\"\n"
+                + "Trace\n"
+                + "a:Push \"longer string\"\n"
+                + "Trace\n"
+                + "Push 2\n"
+                + "If a\n"
+                + "Stop\n");
+    }
+
+    @Test
+    public void testRemoveContainerLastAction() throws IOException, ActionParseException {
+        ActionList actions = parse("Push 1\n"
+                + "If a\n"
+                + "DefineFunction \"f\" 0 {\n"
+                + "Push \"in\"\n"
+                + "Trace\n"
+                + "}\n"
+                + "a:Stop\n");
+        ActionListEdit edit = actions.beginEdit();
+        edit.remove(5);
+        edit.commit();
+        assertCode(actions, "Push 1\n"
+                + "If a\n"
+                + "DefineFunction \"f\" 0 {\n"
+                + "Push \"in\"\n"
+                + "}\n"
+                + "a:Stop\n");
+    }
+
+    @Test
+    public void testBatchRemoveMatchesSingleRemovals() throws IOException, ActionParseException {
+        String pcode = "a:Push 1\n"
+                + "If b\n"
+                + "Push \"x\"\n"
+                + "Trace\n"
+                + "Jump c\n"
+                + "b:Push \"y\"\n"
+                + "Trace\n"
+                + "DefineFunction \"f\" 0 {\n"
+                + "Push \"in\"\n"
+                + "Trace\n"
+                + "}\n"
+                + "c:Push 2\n"
+                + "If a\n"
+                + "Stop\n";
+        List<Integer> indices = Arrays.asList(3, 6, 10, 11);
+
+        ActionList single = parse(pcode);
+        List<Action> singleActions = new ArrayList<>(single);
+        for (int index : indices) {
+            assertTrue(ActionListReader.removeAction(single, single.indexOf(singleActions.get(index)), true));
+        }
+
+        ActionList batch = parse(pcode);
+        ActionListEdit edit = batch.beginEdit();
+        for (int index : indices) {
+            edit.remove(index);
+        }
+        edit.commit();
+
+        assertSameCode(batch, single);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCommitTwice() throws IOException, ActionParseException {
+        ActionList actions = parse(BRANCHES);
+        ActionListEdit edit = actions.beginEdit();
+        edit.remove(0);
+        edit.commit();
+        edit.commit();
+    }
+
+    @Test
+    public void testCleanerReplacesJumpsToRestoreWithReturn() throws IOException, ActionParseException, InterruptedException {
+        ActionList actions = parse("DefineFunction \"f\" 0 {\n"
+                + "Push register1\n"
+                + "Push 5\n"
+                + "StoreRegister 1\n"
+                + "Pop\n"
+                + "Push register1 3\n"
+                + "Less2\n"
+                + "If b\n"
+                + "Push 7\n"
+                + "Jump c\n"
+                + "b:Push 8\n"
+                + "c:StoreRegister 0\n"
+                + "Pop\n"
+                + "StoreRegister 1\n"
+                + "Pop\n"
+                + "Push register0\n"
+                + "Return\n"
+                + "}\n"
+                + "Stop\n");
+        new ActionDefineFunctionPushRegistersCleaner().actionListParsed(actions, null);
+        assertCode(actions, "DefineFunction \"f\" 0 {\n"
+                + "Push 5\n"
+                + "StoreRegister 1\n"
+                + "Pop\n"
+                + "Push register1 3\n"
+                + "Less2\n"
+                + "If b\n"
+                + "Push 7\n"
+                + "Return\n"
+                + "b:Push 8\n"
+                + "Return\n"
+                + "}\n"
+                + "Stop\n");
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.abc.usages;
+
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.abc.ABC;
+import com.jpexs.decompiler.flash.abc.avm2.AVM2Code;
+import com.jpexs.decompiler.flash.abc.avm2.instructions.AVM2Instruction;
+import com.jpexs.decompiler.flash.abc.types.ABCException;
+import com.jpexs.decompiler.flash.abc.types.MethodBody;
+import com.jpexs.decompiler.flash.abc.types.MethodInfo;
+import com.jpexs.decompiler.flash.abc.types.Multiname;
+import com.jpexs.decompiler.flash.abc.types.traits.TraitClass;
+import com.jpexs.decompiler.flash.abc.types.traits.TraitMethodGetterSetter;
+import com.jpexs.decompiler.flash.abc.types.traits.TraitSlotConst;
+import com.jpexs.decompiler.flash.abc.types.traits.Traits;
+import com.jpexs.decompiler.flash.tags.ABCContainerTag;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Compares usages found by MultinameUsageIndex with usages found by walking
+ * the whole ABC, as ABC.findMultinameUsage did before the index.
+ *
+ * @author JPEXS
+ */
+public class MultinameUsageIndexTest {
+
+    /**
+     * Walk of the whole ABC.
+     */
+    private static class ReferenceWalk {
+
+        private final ABC abc;
+
+        private final int multinameIndex;
+
+        private final boolean exactMatch;
+
+        private final List<MultinameUsage> ret = new ArrayList<>();
+
+        public ReferenceWalk(ABC abc, int multinameIndex, boolean exactMatch) {
+            this.abc = abc;
+            this.multinameIndex = multinameIndex;
+            this.exactMatch = exactMatch;
+        }
+
+        public List<MultinameUsage> find() {
+            if (multinameIndex == 0) {
+                return ret;
+            }
+            for (int s = 0; s < abc.script_info.size(); s++) {
+                checkMethod(abc.script_info.get(s).init_index, s, -1, 0, TraitMultinameUsage.TRAITS_TYPE_SCRIPT, true, null, -1);
+                checkTraits(abc.script_info.get(s).traits, TraitMultinameUsage.TRAITS_TYPE_SCRIPT, s, -1, -1);
+            }
+            loopm:
+            for (int t = 1; t < abc.constants.getMultinameCount(); t++) {
+                Multiname multiname = abc.constants.getMultiname(t);
+                if (multiname.kind == Multiname.TYPENAME) {
+                    if (multiname.qname_index == multinameIndex) {
+                        ret.add(new TypeNameMultinameUsage(abc, multinameIndex, t, -1));
+                        continue;
+                    }
+                    for (int mp : multiname.params) {
+                        if (mp == multinameIndex) {
+                            ret.add(new TypeNameMultinameUsage(abc, multinameIndex, t, -1));
+                            continue loopm;
+                        }
+                    }
+                }
+            }
+            return ret;
+        }
+
+        private boolean isSameName(int checkedNameIndex) {
+            if (multinameIndex == checkedNameIndex) {
+                return true;
+            }
+            if (exactMatch) {
+                return false;
+            }
+            Multiname expectedQName = abc.constants.getMultiname(multinameIndex);
+            Multiname checkedName = abc.constants.getMultiname(checkedNameIndex);
+            if (checkedName == null) {
+                return false;
+            }
+            if (expectedQName.name_index != checkedName.name_index) {
+                return false;
+            }
+            if (checkedName.kind == Multiname.QNAME) {
+                return expectedQName.namespace_index == checkedName.namespace_index;
+            }
+            if (checkedName.kind != Multiname.MULTINAME) {
+                return false;
+            }
+            for (int ns : abc.constants.getNamespaceSet(checkedName.namespace_set_index).namespaces) {
+                if (ns == expectedQName.namespace_index) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void checkMethod(int methodInfo, int scriptIndex, int classIndex, int traitIndex, int traitsType, boolean isInitializer, Traits traits, int parentTraitIndex) {
+            MethodInfo info = abc.method_info.get(methodInfo);
+            for (int p = 0; p < info.param_types.length; p++) {
+                if (isSameName(info.param_types[p])) {
+                    ret.add(new MethodParamsMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
+                    break;
+                }
+            }
+            if (isSameName(info.ret_type)) {
+                ret.add(new MethodReturnTypeMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
+            }
+            MethodBody body = abc.findBody(methodInfo);
+            if (body != null) {
+                checkTraits(body.traits, traitsType, scriptIndex, classIndex, traitIndex);
+                for (ABCException e : body.exceptions) {
+                    if (isSameName(e.name_index) || isSameName(e.type_index)) {
+                        ret.add(new MethodBodyMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
+                        return;
+                    }
+                }
+                for (AVM2Instruction ins : body.getCode().code) {
+                    for (int o = 0; o < ins.definition.operands.length; o++) {
+                        if (ins.definition.operands[o] == AVM2Code.DAT_MULTINAME_INDEX && isSameName(ins.operands[o])) {
+                            ret.add(new MethodBodyMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void checkTraits(Traits traits, int traitsType, int scriptIndex, int classIndex, int parentTraitIndex) {
+            for (int t = 0; t < traits.traits.size(); t++) {
+                if (traits.traits.get(t) instanceof TraitClass) {
+                    TraitClass tc = (TraitClass) traits.traits.get(t);
+                    if (isSameName(tc.name_index)) {
+                        ret.add(new ClassNameMultinameUsage(abc, multinameIndex, tc.class_info, scriptIndex));
+                    }
+                    int c = tc.class_info;
+                    if (isSameName(abc.instance_info.get(c).super_index)) {
+                        ret.add(new SuperClassMultinameUsage(abc, multinameIndex, c, scriptIndex));
+                    }
+                    for (int i = 0; i < abc.instance_info.get(c).interfaces.length; i++) {
+                        if (isSameName(abc.instance_info.get(c).interfaces[i])) {
+                            ret.add(new SuperInterfaceMultinameUsage(abc, multinameIndex, c, scriptIndex));
+                        }
+                    }
+                    checkMethod(abc.instance_info.get(c).iinit_index, -1, c, 0, TraitMultinameUsage.TRAITS_TYPE_INSTANCE, true, null, -1);
+                    checkMethod(abc.class_info.get(c).cinit_index, -1, c, 0, TraitMultinameUsage.TRAITS_TYPE_CLASS, true, null, -1);
+                    checkTraits(abc.instance_info.get(c).instance_traits, TraitMultinameUsage.TRAITS_TYPE_INSTANCE, -1, c, -1);
+                    checkTraits(abc.class_info.get(c).static_traits, TraitMultinameUsage.TRAITS_TYPE_CLASS, -1, c, -1);
+                }
+                if (traits.traits.get(t) instanceof TraitSlotConst) {
+                    TraitSlotConst tsc = (TraitSlotConst) traits.traits.get(t);
+                    if (isSameName(tsc.name_index)) {
+                        ret.add(new ConstVarNameMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, t, traitsType, traits, parentTraitIndex));
+                    }
+                    if (isSameName(tsc.type_index)) {
+                        ret.add(new ConstVarTypeMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, t, traitsType, traits, parentTraitIndex));
+                    }
+                }
+                if (traits.traits.get(t) instanceof TraitMethodGetterSetter) {
+                    TraitMethodGetterSetter tmgs = (TraitMethodGetterSetter) traits.traits.get(t);
+                    if (isSameName(tmgs.name_index)) {
+                        ret.add(new MethodNameMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, t, traitsType, false, traits, parentTraitIndex));
+                    }
+                    checkMethod(tmgs.method_info, scriptIndex, classIndex, t, traitsType, false, traits, parentTraitIndex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Describes the usage by its class and all its fields.
+     */
+    private static String describe(MultinameUsage usage) throws IllegalAccessException {
+        StringBuilder sb = new StringBuilder(usage.getClass().getSimpleName());
+        for (Class<?> c = usage.getClass(); c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.getType() == ABC.class) {
+                    continue;
+                }
+                field.setAccessible(true);
+                Object value = field.get(usage);
+                if (value instanceof Traits) {
+                    value = "traits@" + System.identityHashCode(value);
+                }
+                sb.append(" ").append(field.getName()).append("=").append(value);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static List<String> describe(List<MultinameUsage> usages) throws IllegalAccessException {
+        List<String> ret = new ArrayList<>();
+        for (MultinameUsage usage : usages) {
+            ret.add(describe(usage));
+        }
+        return ret;
+    }
+
+    @DataProvider(name = "provideFiles")
+    public Object[][] provideFiles() {
+        return new Object[][]{
+            {"testdata/as3/as3.swf"},
+            {"testdata/as3_new/bin/as3_new.flex.swf"}
+        };
+    }
+
+    @Test(dataProvider = "provideFiles")
+    public void testFindUsagesMatchesWalk(String file) throws IOException, InterruptedException, IllegalAccessException {
+        SWF swf;
+        try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            swf = new SWF(is, false);
+        }
+
+        for (ABCContainerTag tag : swf.getAbcList()) {
+            ABC abc = tag.getABC();
+            MultinameUsageIndex index = new MultinameUsageIndex(abc);
+            for (int m = 0; m < abc.constants.getMultinameCount(); m++) {
+                for (boolean exactMatch : new boolean[]{true, false}) {
+                    assertEquals(describe(index.findUsages(m, exactMatch)), describe(new ReferenceWalk(abc, m, exactMatch).find()),
+                            file + ", multiname " + m + ", exact match " + exactMatch);
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void testTypeNamesMatchExactly() throws IOException, InterruptedException, IllegalAccessException {
+        SWF swf;
+        try (BufferedInputStream is = new BufferedInputStream(new FileInputStream("testdata/as3_new/bin/as3_new.flex.swf"))) {
+            swf = new SWF(is, false);
+        }
+
+        ABC abc = null;
+        Multiname typeName = null;
+        loopabc:
+        for (ABCContainerTag tag : swf.getAbcList()) {
+            abc = tag.getABC();
+            for (int m = 1; m < abc.constants.getMultinameCount(); m++) {
+                if (abc.constants.getMultiname(m).kind == Multiname.TYPENAME) {
+                    typeName = abc.constants.getMultiname(m);
+                    break loopabc;
+                }
+            }
+        }
+        assertNotNull(typeName, "Type name");
+
+        // type name of a copy of the qname, it has the same name and namespace
+        Multiname qname = abc.constants.getMultiname(typeName.qname_index);
+        int copyIndex = abc.constants.addMultiname(Multiname.createQName(qname.kind == Multiname.QNAMEA, qname.name_index, qname.namespace_index));
+        int copyTypeNameIndex = abc.constants.addMultiname(Multiname.createTypeName(copyIndex, typeName.params));
+
+        List<MultinameUsage> usages = new MultinameUsageIndex(abc).findUsages(typeName.qname_index, false);
+        assertEquals(describe(usages), describe(new ReferenceWalk(abc, typeName.qname_index, false).find()));
+        for (MultinameUsage usage : usages) {
+            if (usage instanceof TypeNameMultinameUsage) {
+                assertNotEquals(((TypeNameMultinameUsage) usage).getTypenameIndex(), copyTypeNameIndex);
+            }
+        }
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.exporters.shape;
+
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
+import com.jpexs.decompiler.flash.tags.Tag;
+import com.jpexs.decompiler.flash.tags.base.ShapeTag;
+import com.jpexs.decompiler.flash.types.ColorTransform;
+import com.jpexs.decompiler.flash.types.GRADRECORD;
+import com.jpexs.decompiler.flash.types.RGB;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests joining of shape edges into paths.
+ *
+ * @author JPEXS
+ */
+public class EdgeGraphTest {
+
+    private static long getKey(int x, int y) {
+        return (((long) x) << 32) | (y & 0xffffffffL);
+    }
+
+    private static void addToMap(Map<Long, List<IEdge>> map, long key, IEdge edge) {
+        List<IEdge> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            map.put(key, list);
+        }
+
+        list.add(edge);
+    }
+
+    private static void removeFromMap(Map<Long, List<IEdge>> map, long key, IEdge edge) {
+        List<IEdge> list = map.get(key);
+        list.remove(edge);
+        if (list.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    private static IEdge getFirst(Map<Long, List<IEdge>> map, IEdge prevEdge) {
+        List<IEdge> list = map.get(getKey(prevEdge.getToX(), prevEdge.getToY()));
+        return list == null || list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * Joining as it was done by ShapeExporterBase before EdgeGraph.
+     */
+    private static List<IEdge> referenceJoin(List<IEdge> path, boolean reverseLookup) {
+        List<IEdge> subPath = new ArrayList<>(path);
+        Map<Long, List<IEdge>> coordMap = new HashMap<>();
+        Map<Long, List<IEdge>> reverseCoordMap = new HashMap<>();
+        for (IEdge edge : subPath) {
+            addToMap(coordMap, getKey(edge.getFromX(), edge.getFromY()), edge);
+            addToMap(reverseCoordMap, getKey(edge.getToX(), edge.getToY()), edge);
+        }
+
+        List<IEdge> result = new ArrayList<>();
+        IEdge prevEdge = null;
+        while (!subPath.isEmpty()) {
+            int idx = 0;
+            while (idx < subPath.size()) {
+                if (prevEdge != null) {
+                    IEdge subPathEdge = subPath.get(idx);
+                    if (prevEdge.getToX() != subPathEdge.getFromX() || prevEdge.getToY() != subPathEdge.getFromY()) {
+                        IEdge edge = getFirst(coordMap, prevEdge);
+                        IEdge revEdge = edge == null && reverseLookup ? getFirst(reverseCoordMap, prevEdge) : null;
+                        if (edge != null) {
+                            idx = subPath.indexOf(edge);
+                        } else if (revEdge != null) {
+                            idx = subPath.indexOf(revEdge);
+                            IEdge r = revEdge.reverseWithNewFillStyle(revEdge.getFillStyleIdx());
+                            removeFromMap(coordMap, getKey(revEdge.getFromX(), revEdge.getFromY()), revEdge);
+                            removeFromMap(reverseCoordMap, getKey(revEdge.getToX(), revEdge.getToY()), revEdge);
+                            addToMap(coordMap, getKey(r.getFromX(), r.getFromY()), r);
+                            addToMap(reverseCoordMap, getKey(r.getToX(), r.getToY()), r);
+                            subPath.set(idx, r);
+                        } else {
+                            idx = 0;
+                            prevEdge = null;
+                        }
+
+                        continue;
+                    }
+                }
+
+                IEdge edge = subPath.remove(idx);
+                result.add(edge);
+                removeFromMap(coordMap, getKey(edge.getFromX(), edge.getFromY()), edge);
+                removeFromMap(reverseCoordMap, getKey(edge.getToX(), edge.getToY()), edge);
+                prevEdge = edge;
+            }
+        }
+
+        return result;
+    }
+
+    private static String toString(IEdge edge) {
+        String s = "[" + edge.getFromX() + "," + edge.getFromY();
+        if (edge instanceof CurvedEdge) {
+            CurvedEdge curvedEdge = (CurvedEdge) edge;
+            s += " " + curvedEdge.getControlX() + "," + curvedEdge.getControlY();
+        }
+
+        return s + " " + edge.getToX() + "," + edge.getToY() + " s" + edge.getLineStyleIdx() + "/" + edge.getFillStyleIdx() + "]";
+    }
+
+    private static String toString(List<IEdge> path) {
+        StringBuilder sb = new StringBuilder();
+        for (IEdge edge : path) {
+            sb.append(toString(edge));
+        }
+
+        return sb.toString();
+    }
+
+    private static List<IEdge> createRandomPath(Random random, int count, int gridSize) {
+        List<IEdge> path = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int fromX = random.nextInt(gridSize);
+            int fromY = random.nextInt(gridSize);
+            int toX = random.nextInt(gridSize);
+            int toY = random.nextInt(gridSize);
+            if (random.nextBoolean()) {
+                path.add(new StraightEdge(fromX, fromY, toX, toY, i, 1));
+            } else {
+                path.add(new CurvedEdge(fromX, fromY, random.nextInt(100), -random.nextInt(100), toX, toY, i, 1));
+            }
+
+            if (random.nextInt(10) == 0) {
+                // duplicate edge
+                path.add(path.get(path.size() - 1));
+            }
+        }
+
+        return path;
+    }
+
+    @Test
+    public void testJoinMatchesPreviousImplementation() {
+        Random random = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            List<IEdge> path = createRandomPath(random, 1 + random.nextInt(60), 2 + random.nextInt(8));
+            for (boolean reverseLookup : new boolean[]{false, true}) {
+                List<IEdge> expected = referenceJoin(path, reverseLookup);
+                List<IEdge> actual = EdgeGraph.join(path, reverseLookup);
+                assertEquals(toString(actual), toString(expected), "Path " + toString(path) + ", reverse lookup " + reverseLookup);
+            }
+        }
+    }
+
+    @Test
+    public void testJoinShuffledClosedPath() {
+        List<IEdge> path = new ArrayList<>();
+        IEdge e1 = new StraightEdge(0, 0, 10, 0, 0, 1);
+        IEdge e2 = new StraightEdge(10, 0, 10, 10, 0, 1);
+        IEdge e3 = new CurvedEdge(10, 10, 5, 15, 0, 10, 0, 1);
+        IEdge e4Reversed = new StraightEdge(0, 0, 0, 10, 0, 1);
+        path.add(e3);
+        path.add(e1);
+        path.add(e4Reversed);
+        path.add(e2);
+
+        List<IEdge> joined = EdgeGraph.join(path, false);
+        assertEquals(toString(joined), toString(e3) + toString(e1) + toString(e2) + toString(e4Reversed));
+
+        joined = EdgeGraph.join(path, true);
+        assertEquals(joined.size(), 4);
+        assertSame(joined.get(0), e3);
+        assertEquals(toString(joined.get(1)), "[0,10 0,0 s0/1]");
+        assertSame(joined.get(2), e1);
+        assertSame(joined.get(3), e2);
+        assertEquals(toString(path), toString(e3) + toString(e1) + toString(e4Reversed) + toString(e2), "Source path is not modified");
+    }
+
+    @Test
+    public void testJoinEmptyPath() {
+        assertTrue(EdgeGraph.join(new ArrayList<>(), true).isEmpty());
+    }
+
+    @Test
+    public void testJoinLongPath() {
+        // even edges first, then odd edges, so each next edge is looked up
+        int count = 100000;
+        List<IEdge> path = new ArrayList<>(count);
+        for (int start = 0; start < 2; start++) {
+            for (int i = start; i < count; i += 2) {
+                path.add(new StraightEdge(i, 0, i + 1, 0, 0, 1));
+            }
+        }
+
+        List<IEdge> joined = EdgeGraph.join(path, true);
+        assertEquals(joined.size(), count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(joined.get(i).getFromX(), i);
+        }
+    }
+
+    /**
+     * Checks that each path of a fill ends where it started.
+     */
+    private static class ClosedFillChecker extends ShapeExporterBase {
+
+        private boolean inFill = false;
+
+        private double startX;
+
+        private double startY;
+
+        private double x;
+
+        private double y;
+
+        private boolean inPath = false;
+
+        private int pathCount = 0;
+
+        private final List<String> openPaths = new ArrayList<>();
+
+        public ClosedFillChecker(ShapeTag shape) {
+            super(shape.getShapeNum(), shape.getSwf(), shape.getShapes(), null);
+        }
+
+        private void endPath() {
+            if (inFill && inPath) {
+                pathCount++;
+                if (x != startX || y != startY) {
+                    openPaths.add("[" + startX + "," + startY + "] - [" + x + "," + y + "]");
+                }
+            }
+
+            inPath = false;
+        }
+
+        @Override
+        public void beginShape() {
+        }
+
+        @Override
+        public void endShape() {
+        }
+
+        @Override
+        public void beginAliasedFills() {
+        }
+
+        @Override
+        public void beginFills() {
+        }
+
+        @Override
+        public void endFills() {
+        }
+
+        @Override
+        public void beginLines() {
+        }
+
+        @Override
+        public void endLines(boolean close) {
+        }
+
+        @Override
+        public void beginFill(RGB color) {
+            inFill = true;
+        }
+
+        @Override
+        public void beginGradientFill(int type, GRADRECORD[] gradientRecords, Matrix matrix, int spreadMethod, int interpolationMethod, float focalPointRatio) {
+            inFill = true;
+        }
+
+        @Override
+        public void beginBitmapFill(int bitmapId, Matrix matrix, boolean repeat, boolean smooth, ColorTransform colorTransform) {
+            inFill = true;
+        }
+
+        @Override
+        public void endFill() {
+            endPath();
+            inFill = false;
+        }
+
+        @Override
+        public void lineStyle(double thickness, RGB color, boolean pixelHinting, String scaleMode, int startCaps, int endCaps, int joints, float miterLimit) {
+        }
+
+        @Override
+        public void lineGradientStyle(int type, GRADRECORD[] gradientRecords, Matrix matrix, int spreadMethod, int interpolationMethod, float focalPointRatio) {
+        }
+
+        @Override
+        public void lineBitmapStyle(int bitmapId, Matrix matrix, boolean repeat, boolean smooth, ColorTransform colorTransform) {
+        }
+
+        @Override
+        public void moveTo(double x, double y) {
+            endPath();
+            inPath = true;
+            startX = x;
+            startY = y;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public void lineTo(double x, double y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public void curveTo(double controlX, double controlY, double anchorX, double anchorY) {
+            x = anchorX;
+            y = anchorY;
+        }
+    }
+
+    @DataProvider(name = "provideFiles")
+    public Object[][] provideFiles() {
+        return new Object[][]{
+            {"testdata/graphics/graphics.swf"},
+            {"testdata/morphshape/morphshape.swf"}
+        };
+    }
+
+    @Test(dataProvider = "provideFiles")
+    public void testExportedFillsAreClosed(String file) throws IOException, InterruptedException {
+        SWF swf;
+        try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            swf = new SWF(is, false);
+        }
+
+        int pathCount = 0;
+        for (Tag tag : swf.getTags()) {
+            if (tag instanceof ShapeTag) {
+                ShapeTag shape = (ShapeTag) tag;
+                ClosedFillChecker checker = new ClosedFillChecker(shape);
+                checker.export();
+                assertTrue(checker.openPaths.isEmpty(), "Shape " + shape.getCharacterId() + " has open fill paths " + checker.openPaths);
+                pathCount += checker.pathCount;
+            }
+        }
+
+        assertTrue(pathCount > 0, "Fill paths");
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.timeline;
+
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
+import com.jpexs.decompiler.flash.tags.base.CharacterTag;
+import com.jpexs.decompiler.flash.tags.base.ShapeTag;
+import com.jpexs.decompiler.flash.types.FILLSTYLE;
+import com.jpexs.decompiler.flash.types.RGB;
+import com.jpexs.helpers.SerializableImage;
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Random;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.fail;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Compares frames rendered by FrameDiffRenderer with frames rendered whole
+ * pixel by pixel.
+ *
+ * @author JPEXS
+ */
+public class FrameDiffRendererTest {
+
+    @DataProvider(name = "provideFiles")
+    public Object[][] provideFiles() {
+        return new Object[][]{
+            {"testdata/graphics/graphics.swf"},
+            {"testdata/morphshape/morphshape.swf"},
+            {"testdata/timeline/timeline.swf"},
+            {"testdata/scenes/scenes.swf"}
+        };
+    }
+
+    private static SWF openSwf(String file) throws IOException, InterruptedException {
+        try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            return new SWF(is, false);
+        }
+    }
+
+    private static SerializableImage render(Timeline timeline, int frame, Color backgroundColor, double zoom, FrameDiffRenderer diffRenderer) {
+        return SWF.frameToImageGet(timeline, frame, 0, null, 0, timeline.displayRect, new Matrix(), null, backgroundColor, zoom, true, diffRenderer);
+    }
+
+    private static void assertSameImage(SerializableImage actual, SerializableImage expected, String message) {
+        int width = expected.getWidth();
+        int height = expected.getHeight();
+        assertEquals(actual.getWidth(), width, message);
+        assertEquals(actual.getHeight(), height, message);
+        int[] actualPixels = actual.getBufferedImage().getRGB(0, 0, width, height, null, 0, width);
+        int[] expectedPixels = expected.getBufferedImage().getRGB(0, 0, width, height, null, 0, width);
+        for (int i = 0; i < expectedPixels.length; i++) {
+            if (actualPixels[i] != expectedPixels[i]) {
+                fail(message + ": pixel [" + (i % width) + "," + (i / width) + "] differs, expected "
+                        + Integer.toHexString(expectedPixels[i]) + ", actual " + Integer.toHexString(actualPixels[i]));
+            }
+        }
+    }
+
+    private static void checkFrames(String file, Timeline timeline, int[] frames, Color backgroundColor, double zoom) {
+        FrameDiffRenderer diffRenderer = new FrameDiffRenderer(timeline);
+        for (int frame : frames) {
+            SerializableImage expected = render(timeline, frame, backgroundColor, zoom, null);
+            SerializableImage actual = render(timeline, frame, backgroundColor, zoom, diffRenderer);
+            assertSameImage(actual, expected, file + ", frame " + frame + ", zoom " + zoom);
+        }
+    }
+
+    @Test(dataProvider = "provideFiles")
+    public void testConsecutiveFrames(String file) throws IOException, InterruptedException {
+        Timeline timeline = openSwf(file).getTimeline();
+        int frameCount = timeline.getFrameCount();
+        int[] frames = new int[frameCount * 2];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = i % frameCount;
+        }
+
+        checkFrames(file, timeline, frames, null, 1);
+        checkFrames(file, timeline, frames, Color.white, 1.5);
+    }
+
+    @Test(dataProvider = "provideFiles")
+    public void testRandomFrames(String file) throws IOException, InterruptedException {
+        Timeline timeline = openSwf(file).getTimeline();
+        Random random = new Random(1);
+        int[] frames = new int[40];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = random.nextInt(timeline.getFrameCount());
+        }
+
+        checkFrames(file, timeline, frames, null, 1);
+    }
+
+    @Test
+    public void testModifiedCharacter() throws IOException, InterruptedException {
+        String file = "testdata/graphics/graphics.swf";
+        SWF swf = openSwf(file);
+        Timeline timeline = swf.getTimeline();
+        FrameDiffRenderer diffRenderer = new FrameDiffRenderer(timeline);
+        render(timeline, 0, null, 1, diffRenderer);
+
+        FILLSTYLE fillStyle = null;
+        for (DepthState layer : timeline.getFrame(0).layers.values()) {
+            CharacterTag character = layer.getCharacter();
+            if (character instanceof ShapeTag) {
+                for (FILLSTYLE fs : ((ShapeTag) character).getShapes().fillStyles.fillStyles) {
+                    if (fs.fillStyleType == FILLSTYLE.SOLID) {
+                        fillStyle = fs;
+                        character.setModified(true);
+                        break;
+                    }
+                }
+            }
+            if (fillStyle != null) {
+                break;
+            }
+        }
+
+        assertNotNull(fillStyle, "Solid fill on the first frame");
+        fillStyle.color = new RGB(fillStyle.color.red ^ 0xff, fillStyle.color.green ^ 0xff, fillStyle.color.blue ^ 0xff);
+        swf.clearImageCache();
+        swf.clearShapeCache();
+
+        SerializableImage expected = render(timeline, 0, null, 1, null);
+        SerializableImage actual = render(timeline, 0, null, 1, diffRenderer);
+        assertSameImage(actual, expected, file + ", modified shape");
+    }
+}
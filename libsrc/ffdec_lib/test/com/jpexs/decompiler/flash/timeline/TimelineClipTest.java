@@ -0,0 +1,99 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.timeline;
+
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.exporters.commonshape.ExportRectangle;
+import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
+import com.jpexs.decompiler.flash.tags.base.RenderContext;
+import com.jpexs.decompiler.flash.types.RECT;
+import com.jpexs.helpers.SerializableImage;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that Timeline.toImage keeps the clip of the caller. The clip of a
+ * parent mask is passed to the nested sprites the same way, so the masks of
+ * the sprite are intersected with it.
+ *
+ * @author JPEXS
+ */
+public class TimelineClipTest {
+
+    private static SerializableImage render(Timeline timeline, int frame, Rectangle clip) {
+        RECT rect = timeline.displayRect;
+        SerializableImage image = new SerializableImage((int) (rect.getWidth() / SWF.unitDivisor), (int) (rect.getHeight() / SWF.unitDivisor), SerializableImage.TYPE_INT_ARGB_PRE);
+        image.fillTransparent();
+        if (clip != null) {
+            ((Graphics2D) image.getGraphics()).setClip(clip);
+        }
+
+        Matrix m = new Matrix();
+        m.translate(-rect.Xmin, -rect.Ymin);
+        ExportRectangle viewRect = new ExportRectangle(rect);
+        timeline.toImage(frame, 0, new RenderContext(), image, image, false, m, new Matrix(), m, null, 1, false, viewRect, m, true, Timeline.DRAW_MODE_ALL, 0, true);
+        return image;
+    }
+
+    @Test
+    public void testMasksKeepCallerClip() throws IOException, InterruptedException {
+        SWF swf;
+        try (BufferedInputStream is = new BufferedInputStream(new FileInputStream("testdata/graphics/graphics.swf"))) {
+            swf = new SWF(is, false);
+        }
+
+        Timeline timeline = swf.getTimeline();
+        int maskedFrames = 0;
+        for (int frame = 0; frame < timeline.getFrameCount(); frame++) {
+            boolean hasMask = false;
+            for (DepthState layer : timeline.getFrame(frame).layers.values()) {
+                if (layer.clipDepth > -1) {
+                    hasMask = true;
+                }
+            }
+            if (!hasMask) {
+                continue;
+            }
+
+            maskedFrames++;
+            SerializableImage full = render(timeline, frame, null);
+            int width = full.getWidth();
+            int height = full.getHeight();
+            Rectangle clip = new Rectangle(width / 4, height / 4, width / 2, height / 2);
+            SerializableImage clipped = render(timeline, frame, clip);
+            int[] fullPixels = full.getBufferedImage().getRGB(0, 0, width, height, null, 0, width);
+            int[] clippedPixels = clipped.getBufferedImage().getRGB(0, 0, width, height, null, 0, width);
+            for (int i = 0; i < fullPixels.length; i++) {
+                int x = i % width;
+                int y = i / width;
+                int expected = clip.contains(x, y) ? fullPixels[i] : 0;
+                if (clippedPixels[i] != expected) {
+                    fail("Frame " + frame + ": pixel [" + x + "," + y + "] differs, expected "
+                            + Integer.toHexString(expected) + ", actual " + Integer.toHexString(clippedPixels[i]));
+                }
+            }
+        }
+
+        assertTrue(maskedFrames > 0, "Frames with masks");
+    }
+}
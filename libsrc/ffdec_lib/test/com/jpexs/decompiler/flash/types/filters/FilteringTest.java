@@ -0,0 +1,179 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS, All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package com.jpexs.decompiler.flash.types.filters;
+
+import com.jpexs.helpers.SerializableImage;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Compares tiled filters and blend modes with the previous single threaded
+ * implementation pixel by pixel.
+ *
+ * @author JPEXS
+ */
+public class FilteringTest {
+
+    private static final Color[] GRADIENT_COLORS = new Color[]{
+        new Color(255, 0, 0, 0),
+        new Color(255, 255, 0, 128),
+        new Color(0, 0, 255, 255)
+    };
+
+    private static final float[] GRADIENT_RATIOS = new float[]{0, 0.4f, 1};
+
+    @DataProvider(name = "provideSizes")
+    public Object[][] provideSizes() {
+        return new Object[][]{
+            {37, 23, 1},
+            {320, 240, 2},
+            {517, 389, 3}
+        };
+    }
+
+    private static SerializableImage createImage(int width, int height, long seed) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        Random random = new Random(seed);
+        for (int i = 0; i < 12; i++) {
+            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            double x = random.nextInt(width) - width / 4.0;
+            double y = random.nextInt(height) - height / 4.0;
+            g.fill(new Ellipse2D.Double(x, y, random.nextInt(width / 2 + 1) + 1, random.nextInt(height / 2 + 1) + 1));
+        }
+        g.dispose();
+        return new SerializableImage(img);
+    }
+
+    private static void assertSameImage(SerializableImage actual, SerializableImage expected, String message) {
+        int width = expected.getWidth();
+        int height = expected.getHeight();
+        assertEquals(actual.getWidth(), width, message);
+        assertEquals(actual.getHeight(), height, message);
+        int[] actualPixels = actual.getBufferedImage().getRGB(0, 0, width, height, null, 0, width);
+        int[] expectedPixels = expected.getBufferedImage().getRGB(0, 0, width, height, null, 0, width);
+        for (int i = 0; i < expectedPixels.length; i++) {
+            if (actualPixels[i] != expectedPixels[i]) {
+                fail(message + ": pixel [" + (i % width) + "," + (i / width) + "] differs, expected "
+                        + Integer.toHexString(expectedPixels[i]) + ", actual " + Integer.toHexString(actualPixels[i]));
+            }
+        }
+    }
+
+    @Test(dataProvider = "provideSizes")
+    public void testBlur(int width, int height, long seed) {
+        SerializableImage src = createImage(width, height, seed);
+        for (int iterations = 1; iterations <= 3; iterations++) {
+            assertSameImage(Filtering.blur(src, 10, 4, iterations), FilteringReference.blur(src, 10, 4, iterations), "blur " + iterations);
+        }
+        assertSameImage(Filtering.blur(src, 0, 31, 2), FilteringReference.blur(src, 0, 31, 2), "vertical blur");
+        assertSameImage(Filtering.blur(src, 2000, 2, 1), FilteringReference.blur(src, 2000, 2, 1), "large blur");
+    }
+
+    @Test(dataProvider = "provideSizes")
+    public void testShadowAndGlow(int width, int height, long seed) {
+        SerializableImage src = createImage(width, height, seed);
+        Color color = new Color(10, 200, 30, 180);
+        for (boolean inner : new boolean[]{false, true}) {
+            for (boolean knockout : new boolean[]{false, true}) {
+                String params = " inner=" + inner + " knockout=" + knockout;
+                assertSameImage(Filtering.dropShadow(src, 8, 6, 45, 4, color, inner, 2, 1.5f, knockout, true),
+                        FilteringReference.dropShadow(src, 8, 6, 45, 4, color, inner, 2, 1.5f, knockout, true), "dropShadow" + params);
+                assertSameImage(Filtering.glow(src, 12, 12, 2f, color, inner, knockout, 1),
+                        FilteringReference.glow(src, 12, 12, 2f, color, inner, knockout, 1), "glow" + params);
+            }
+        }
+    }
+
+    @Test(dataProvider = "provideSizes")
+    public void testBevel(int width, int height, long seed) {
+        SerializableImage src = createImage(width, height, seed);
+        for (int type : new int[]{Filtering.INNER, Filtering.OUTER, Filtering.FULL}) {
+            assertSameImage(Filtering.bevel(src, 6, 6, 1f, type, 0xffffffff, 0xff000000, 45, 4, false, 1),
+                    FilteringReference.bevel(src, 6, 6, 1f, type, 0xffffffff, 0xff000000, 45, 4, false, 1), "bevel " + type);
+            assertSameImage(Filtering.gradientBevel(src, GRADIENT_COLORS, GRADIENT_RATIOS, 4, 8, 2f, type, 30, 3, true, 2),
+                    FilteringReference.gradientBevel(src, GRADIENT_COLORS, GRADIENT_RATIOS, 4, 8, 2f, type, 30, 3, true, 2), "gradientBevel " + type);
+            assertSameImage(Filtering.gradientGlow(src, 8, 8, 45, 2, GRADIENT_COLORS, GRADIENT_RATIOS, type, 2, 1f, false),
+                    FilteringReference.gradientGlow(src, 8, 8, 45, 2, GRADIENT_COLORS, GRADIENT_RATIOS, type, 2, 1f, false), "gradientGlow " + type);
+        }
+    }
+
+    @Test(dataProvider = "provideSizes")
+    public void testConvolutionAndColorMatrix(int width, int height, long seed) {
+        SerializableImage src = createImage(width, height, seed);
+        float[] matrix = new float[]{
+            0.1f, -0.2f, 0.3f, 0f, 0.05f,
+            0.2f, 0.5f, -0.1f, 0.1f, 0.3f,
+            -0.3f, 0.4f, 0.6f, 0.2f, 0.1f
+        };
+        assertSameImage(Filtering.convolution(src, matrix, 5, 3), FilteringReference.convolution(src, matrix, 5, 3), "convolution 5x3");
+        assertSameImage(Filtering.convolution(src, matrix, 3, 5), FilteringReference.convolution(src, matrix, 3, 5), "convolution 3x5");
+        float[] identity = new float[]{0, 0, 0, 0, 1, 0, 0, 0, 0};
+        assertSameImage(Filtering.convolution(src, identity, 3, 3), FilteringReference.convolution(src, identity, 3, 3), "convolution identity");
+
+        float[][] colorMatrix = new float[][]{
+            {0.5f, 0.2f, 0.1f, 0f, 10f},
+            {0.1f, 0.9f, 0f, 0f, -20f},
+            {0f, 0.3f, 0.6f, 0.1f, 0f},
+            {0f, 0f, 0f, 0.8f, 5f}
+        };
+        assertSameImage(Filtering.colorMatrix(src, colorMatrix), FilteringReference.colorMatrix(src, colorMatrix), "colorMatrix");
+        assertSameImage(Filtering.colorEffect(src, 10, -20, 30, 0, 200, 256, 300, 128),
+                FilteringReference.colorEffect(src, 10, -20, 30, 0, 200, 256, 300, 128), "colorEffect");
+    }
+
+    private static SerializableImage blend(SerializableImage dst, SerializableImage src, Composite composite) {
+        BufferedImage img = new BufferedImage(dst.getWidth(), dst.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(dst.getBufferedImage(), 0, 0, null);
+        g.setComposite(composite);
+        g.drawImage(src.getBufferedImage(), 0, 0, null);
+        g.dispose();
+        return new SerializableImage(img);
+    }
+
+    @Test(dataProvider = "provideSizes")
+    public void testBlendComposite(int width, int height, long seed) {
+        SerializableImage dst = createImage(width, height, seed);
+        SerializableImage src = createImage(width, height, seed + 100);
+        BlendComposite[] composites = new BlendComposite[]{
+            BlendComposite.Alpha, BlendComposite.Erase, BlendComposite.Invert, BlendComposite.Multiply,
+            BlendComposite.Screen, BlendComposite.Darken, BlendComposite.Lighten, BlendComposite.Overlay,
+            BlendComposite.HardLight, BlendComposite.Difference, BlendComposite.Add, BlendComposite.Subtract
+        };
+        BlendCompositeReference[] references = new BlendCompositeReference[]{
+            BlendCompositeReference.Alpha, BlendCompositeReference.Erase, BlendCompositeReference.Invert, BlendCompositeReference.Multiply,
+            BlendCompositeReference.Screen, BlendCompositeReference.Darken, BlendCompositeReference.Lighten, BlendCompositeReference.Overlay,
+            BlendCompositeReference.HardLight, BlendCompositeReference.Difference, BlendCompositeReference.Add, BlendCompositeReference.Subtract
+        };
+        for (int i = 0; i < composites.length; i++) {
+            assertSameImage(blend(dst, src, composites[i]), blend(dst, src, references[i]), "blend " + composites[i].getMode());
+        }
+    }
+}
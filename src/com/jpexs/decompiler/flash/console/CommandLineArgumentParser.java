@@ -256,6 +256,30 @@ public class CommandLineArgumentParser {
         return commandLineMode;
     }
 
+    /**
+     * Ends the command with the status. When serving a daemon request, only
+     * the command ends and the status is returned to the client.
+     *
+     * @param status Exit status
+     */
+    private static void exit(int status) {
+        if (CommandLineDaemon.isServing()) {
+            throw new CommandLineDaemon.ExitRequest(status);
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Resets options of the previous command.
+     */
+    static void resetState() {
+        commandLineMode = false;
+        showStat = false;
+        Configuration.showStat = false;
+        stdOut = null;
+        stdErr = null;
+    }
+
     public static void printConfigurationSettings() {
         Map<String, Field> fields = Configuration.getConfigurationFields();
         String[] keys = new String[fields.size()];
@@ -386,6 +410,8 @@ public class CommandLineArgumentParser {
             out.println("         frame:canvas - HTML5 Canvas format for Frames");
             out.println("         frame:pdf - PDF format for Frames");
             out.println("         frame:bmp - BMP format for Frames");
+            out.println("         frame:svg_library - SVG format for Frames, shared symbols in library.svg");
+            out.println("         frame:svg_animated - Single animated SVG for Frames");
             out.println("         sprite:png - PNG format for Sprites");
             out.println("         sprite:gif - GIF format for Sprites");
             out.println("         sprite:avi - AVI format for Sprites");
@@ -393,6 +419,8 @@ public class CommandLineArgumentParser {
             out.println("         sprite:canvas - HTML5 Canvas format for Sprites");
             out.println("         sprite:pdf - PDF format for Sprites");
             out.println("         sprite:bmp - BMP format for Sprites");
+            out.println("         sprite:svg_library - SVG format for Sprites, shared symbols in library.svg");
+            out.println("         sprite:svg_animated - Single animated SVG for Sprites");
             out.println("         button:png - PNG format for Buttons");
             out.println("         button:svg - SVG format for Buttons");
             out.println("         button:bmp - BMP format for Buttons");
@@ -719,6 +747,20 @@ public class CommandLineArgumentParser {
             out.println(" ...<exportMode>: wrapper|projector_win||projector_mac|projector_linux");
         }
 
+        if (filter == null || filter.equals("daemon")) {
+            out.println(" " + (cnt++) + ") -daemon [<port>] [<maxswfs>]");
+            out.println(" ...starts commandline daemon which serves commands run with -client parameter without starting new JVM");
+            out.println(" ...<port>: Loopback port to listen on. Defaults to " + CommandLineDaemon.DEFAULT_PORT + ", 0 means any free port");
+            out.println(" ...<maxswfs>: Number of SWF files kept open for read only commands. Defaults to " + CommandLineDaemon.DEFAULT_MAX_OPEN_SWFS);
+            out.println(" ...commands are served one at a time, the client must be run in the directory where the daemon was started (relative paths are resolved against it), otherwise the command is rejected");
+        }
+
+        if (filter == null || filter.equals("client")) {
+            out.println(" " + (cnt++) + ") -client <command> [<parameters>]");
+            out.println(" ...runs the command in running daemon (see -daemon), prints its output and returns its exit code");
+            out.println(" ...must be the first parameter, the command cannot read standard input");
+        }
+
         if (filter == null || filter.equals("charset")) {
             out.println(" " + (cnt++) + ") -charset <charsetName>");
             out.println(" ...sets desired character set for reading/writing SWF files with SWF version <= 5");
@@ -828,6 +870,12 @@ public class CommandLineArgumentParser {
             out.println(PREFIX + "-swf2exe wrapper result.exe myfile.swf");
         }
 
+        if (filter == null || filter.equals("daemon")) {
+            out.println(PREFIX + "-daemon");
+            out.println(PREFIX + "-client -export script /home/me/out /home/me/myfile.swf");
+            exampleFound = true;
+        }
+
         if (!exampleFound) {
             out.println("Sorry, no example found for command " + filter + ", Let us know in issue tracker when you need it.");
         }
@@ -922,7 +970,7 @@ public class CommandLineArgumentParser {
                     break;
                 case "-info":
                     parseInfo(args, charset);
-                    System.exit(0);
+                    exit(0);
                     break;
                 case "-stdout":
                     parseStdOut(args);
@@ -965,156 +1013,158 @@ public class CommandLineArgumentParser {
             Translator.main(new String[]{});
         } else if (command.equals("swf2exe")) {
             parseSwf2Exe(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("abcmerge")) {
             parseAbcMerge(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("swf2swc")) {
             parseSwf2Swc(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("linkreport")) {
             parseLinkReport(selectionClasses, args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("getinstancemetadata")) {
             parseGetInstanceMetadata(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("setinstancemetadata")) {
             parseSetInstanceMetadata(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("removeinstancemetadata")) {
             parseRemoveInstanceMetadata(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("removefromcontextmenu")) {
             if (!args.isEmpty()) {
                 badArguments(command);
             }
             ContextMenuTools.addToContextMenu(false, true);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("addtocontextmenu")) {
             if (!args.isEmpty()) {
                 badArguments(command);
             }
             ContextMenuTools.addToContextMenu(true, true);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("proxy")) {
             parseProxy(args);
+        } else if (command.equals("daemon")) {
+            parseDaemon(args);
         } else if (command.equals("export")) {
             parseExport(selectionClasses, selection, selectionIds, args, handler, traceLevel, format, zoom, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("compress")) {
             parseCompress(args);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("decompress")) {
             parseDecompress(args);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("decrypt")) {
             parseDecrypt(args);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("swf2xml")) {
             parseSwf2Xml(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("xml2swf")) {
             parseXml2Swf(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("extract")) {
             parseExtract(args);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("memorysearch")) {
             parseMemorySearch(args);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("deobfuscate")) {
             parseDeobfuscate(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("renameinvalididentifiers")) {
             parseRenameInvalidIdentifiers(args);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("dumpswf")) {
             parseDumpSwf(args);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("dumpas2")) {
             parseDumpAS2(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("dumpas3")) {
             parseDumpAS3(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("enabledebugging")) {
             parseEnableDebugging(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("flashpaper2pdf")) {
             parseFlashPaperToPdf(selection, zoom, args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("replace")) {
             parseReplace(args, charset, air);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("replacealpha")) {
             parseReplaceAlpha(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("replacecharacter")) {
             parseReplaceCharacter(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("replacecharacterid")) {
             parseReplaceCharacterId(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("convert")) {
             parseConvert(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("remove")) {
             parseRemove(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("removecharacter")) {
             parseRemoveCharacter(args, false, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("removecharacterwithdependencies")) {
             parseRemoveCharacter(args, true, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("doc")) {
             parseDoc(args);
         } else if (command.equals("importsymbolclass")) {
             parseImportSymbolClass(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("importmovies")) {
             parseImportMovies(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("importsounds")) {
             parseImportSounds(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("importshapes")) {
             parseImportShapes(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("importimages")) {
             parseImportImages(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("importtext")) {
             parseImportText(args, charset);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("importscript")) {
             parseImportScript(args, charset, air);
-            System.exit(0);
+            exit(0);
         } else if (command.equals("as3compiler")) {
             ActionScript3Parser.compile(null /*?*/, args.pop(), args.pop(), 0, 0);
         } else if (nextParam.equals("--debugtool")) {
             parseDebugTool(args, charset);
         } else if (nextParam.equals("--compareresources")) {
             parseCompareResources(args);
-            System.exit(0);
+            exit(0);
         } else if (nextParam.equals("--resourcedates")) {
             parseResourceDates(args);
-            System.exit(0);
+            exit(0);
         } else if (nextParam.equals("-listconfigs")) {
             printHeader();
             printConfigurationSettings();
-            System.exit(0);
+            exit(0);
         } else if (nextParam.equals("-help") || nextParam.equals("--help") || nextParam.equals("/?") || nextParam.equals("\\_") /* /? translates as this on windows */) {
             printHeader();
             printCmdLineUsage(null, false);
-            System.exit(0);
+            exit(0);
         } else if (nextParam.equals("--webhelp")) { //for generating commandline usage on webpages
             ByteArrayOutputStream whbaos = new ByteArrayOutputStream();
             printCmdLineUsage(new PrintStream(whbaos, true), true, null);
             String wh = new String(whbaos.toByteArray());
             wh = wh.replace("<", "&lt;").replace(">", "&gt;");
             System.out.println(wh);
-            System.exit(0);
+            exit(0);
         } else {
             args.push(nextParamOriginal); // file names should be the original one
             List<String> fileNames = new ArrayList<>();
@@ -1164,7 +1214,7 @@ public class CommandLineArgumentParser {
     public static void badArguments(String command) {
         System.err.println("Error: Bad Commandline Arguments!");
         printCmdLineUsage(command, false);
-        System.exit(1);
+        exit(1);
     }
 
     @SuppressWarnings("unchecked")
@@ -1343,7 +1393,7 @@ public class CommandLineArgumentParser {
                 reportPacks = selectionClasses != null ? swf.getScriptPacksByClassNames(selectionClasses) : swf.getAS3Packs();
             } catch (Exception ex) {
                 System.err.println("Error while getting packs");
-                System.exit(1);
+                exit(1);
                 return;
             }
             try {
@@ -1434,7 +1484,7 @@ public class CommandLineArgumentParser {
             public void swfAction(SWF swf, OutputStream stdout) throws IOException {
                 if (!processTimelined(swf, stdout)) {
                     System.err.println("No instance with name " + fInstance + " found");
-                    System.exit(0);
+                    exit(0);
                 }
             }
 
@@ -1454,7 +1504,7 @@ public class CommandLineArgumentParser {
                             Amf3Value oldValue = pt.getAmfData();
                             if (oldValue == null) {
                                 System.err.println("No metadata for instance " + instanceName + " found");
-                                System.exit(1); //TODO? Different exit code
+                                exit(1); //TODO? Different exit code
                             }
                             Object actualValue = oldValue.getValue();
 
@@ -1467,11 +1517,11 @@ public class CommandLineArgumentParser {
                                     } else {
                                         System.err.println("No value with key " + fKey + " exists");
                                         System.err.println("Available keys: " + String.join(",", ot.dynamicMembersKeySet()));
-                                        System.exit(1);
+                                        exit(1);
                                     }
                                 } else {
                                     System.err.println("Metadata present, but not as Object type, cannot get key " + fKey);
-                                    System.exit(1);
+                                    exit(1);
                                 }
                             }
 
@@ -1594,7 +1644,7 @@ public class CommandLineArgumentParser {
                 valueBytes = Helper.readFileEx(valueFile.getAbsolutePath());
             } catch (IOException ex) {
                 System.err.println("Cannot read value: " + ex.getMessage());
-                System.exit(1);
+                exit(1);
                 return;
             }
         } else if (value != null) {
@@ -1607,7 +1657,7 @@ public class CommandLineArgumentParser {
 
         if (valueBytes.length < 1) {
             System.err.println("No value to set specified");
-            System.exit(1);
+            exit(1);
         }
 
         Object amfValue = null;
@@ -1624,7 +1674,7 @@ public class CommandLineArgumentParser {
             }
         } catch (IOException | Amf3ParseException | NoSerializerExistsException ex) {
             System.err.println("Error parsing input value: " + ex.getMessage());
-            System.exit(1);
+            exit(1);
             return;
         }
 
@@ -1637,7 +1687,7 @@ public class CommandLineArgumentParser {
             public void swfAction(SWF swf, OutputStream stdout) throws IOException {
                 if (!processTimelined(swf, stdout)) {
                     System.err.println("No instance with name " + fInstance + " found");
-                    System.exit(0);
+                    exit(0);
                 }
             }
 
@@ -1775,7 +1825,7 @@ public class CommandLineArgumentParser {
             public void swfAction(SWF swf, OutputStream stdout) throws IOException {
                 if (!processTimelined(swf, stdout)) {
                     System.err.println("No instance with name " + fInstance + " found");
-                    System.exit(0);
+                    exit(0);
                 }
             }
 
@@ -1795,7 +1845,7 @@ public class CommandLineArgumentParser {
                             Amf3Value oldValue = pt4.getAmfData();
                             if (oldValue == null) {
                                 System.err.println("No metadata for instance " + instanceName + " found");
-                                System.exit(1); //TODO? Different exit code
+                                exit(1); //TODO? Different exit code
                             }
                             Object actualValue = oldValue.getValue();
 
@@ -1813,11 +1863,11 @@ public class CommandLineArgumentParser {
                                     } else {
                                         System.err.println("No value with key " + fKey + " exists");
                                         System.err.println("Available keys: " + String.join(",", ot.dynamicMembersKeySet()));
-                                        System.exit(1);
+                                        exit(1);
                                     }
                                 } else {
                                     System.err.println("Metadata present, but not as Object type, cannot remove key " + fKey);
-                                    System.exit(1);
+                                    exit(1);
                                 }
                             } else {
                                 pt4.amfData = null;
@@ -2010,6 +2060,50 @@ public class CommandLineArgumentParser {
         }
     }
 
+    private static void parseDaemon(Stack<String> args) {
+        int port = CommandLineDaemon.DEFAULT_PORT;
+        int maxOpenSwfs = CommandLineDaemon.DEFAULT_MAX_OPEN_SWFS;
+        try {
+            if (!args.isEmpty()) {
+                port = Integer.parseInt(args.pop());
+            }
+            if (!args.isEmpty()) {
+                maxOpenSwfs = Integer.parseInt(args.pop());
+            }
+        } catch (NumberFormatException nex) {
+            badArguments("daemon");
+        }
+
+        if (!args.isEmpty() || port < 0 || port > 65535 || maxOpenSwfs < 0) {
+            badArguments("daemon");
+        }
+
+        try {
+            CommandLineDaemon.run(port, maxOpenSwfs);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Cannot start daemon", ex);
+            exit(1);
+        }
+    }
+
+    /**
+     * Opens SWF file for a command which does not modify it. Daemon reuses
+     * the SWF opened by previous commands.
+     *
+     * @param file SWF file
+     * @param charset Charset
+     * @return SWF
+     */
+    private static SWF openReadOnlySwf(File file, String charset) throws IOException, InterruptedException {
+        if (CommandLineDaemon.isServing() && !StdInAwareFileInputStream.STDIN_PATH.equals(file.getPath())) {
+            return CommandLineDaemon.openSwf(file, charset);
+        }
+
+        try (StdInAwareFileInputStream is = new StdInAwareFileInputStream(file)) {
+            return new SWF(is, Configuration.parallelSpeedUp.get(), charset);
+        }
+    }
+
     private static void parseStat(Stack<String> args) {
         showStat = true;
         Configuration.showStat = showStat;
@@ -2292,7 +2386,7 @@ public class CommandLineArgumentParser {
 
         if (!args.isEmpty() && args.peek().equals("-selectas3class")) {
             System.err.println("Error: -selectas3class parameter was REMOVED. Please use -selectclass instead. See --help for usage.");
-            System.exit(1);
+            exit(1);
         }
 
         printHeader();
@@ -2339,7 +2433,11 @@ public class CommandLineArgumentParser {
                 OpenableSourceInfo sourceInfo = new OpenableSourceInfo(null, inFile.getAbsolutePath(), inFile.getName());
                 SWF swf;
                 try {
-                    swf = new SWF(new BufferedInputStream(new StdInAwareFileInputStream(inFile)), sourceInfo.getFile(), sourceInfo.getFileTitle(), null, Configuration.parallelSpeedUp.get(), false, true, charset);
+                    if (CommandLineDaemon.isServing() && !StdInAwareFileInputStream.STDIN_PATH.equals(inFile.getPath())) {
+                        swf = CommandLineDaemon.openSwf(inFile, charset);
+                    } else {
+                        swf = new SWF(new BufferedInputStream(new StdInAwareFileInputStream(inFile)), sourceInfo.getFile(), sourceInfo.getFileTitle(), null, Configuration.parallelSpeedUp.get(), false, true, charset);
+                    }
                 } catch (FileNotFoundException | SwfOpenException ex) {
                     // FileNotFoundException when anti virus software blocks to open the file
                     logger.log(Level.SEVERE, "Failed to open swf: " + inFile.getName(), ex);
@@ -2366,7 +2464,7 @@ public class CommandLineArgumentParser {
                 }
 
                 final Level level = traceLevel;
-                swf.addEventListener(new EventListener() {
+                EventListener exportListener = new EventListener() {
                     @Override
                     public void handleExportingEvent(String type, int index, int count, Object data) {
                         if (level.intValue() <= Level.FINE.intValue()) {
@@ -2390,13 +2488,14 @@ public class CommandLineArgumentParser {
                     @Override
                     public void handleEvent(String event, Object data) {
                     }
-                });
+                };
+                swf.addEventListener(exportListener);
 
                 // First check all the specified export formats
                 for (String exportFormat : exportFormats) {
                     if (Arrays.asList(removedExportFormats).contains(exportFormat)) {
                         System.err.println("Error: Export format : " + exportFormat + " was REMOVED. Run application with --help parameter to see available formats.");
-                        System.exit(1);
+                        exit(1);
                     } else if (!Arrays.asList(validExportItems).contains(exportFormat)) {
                         System.err.println("Invalid export item:" + exportFormat);
                         badArguments("export");
@@ -2542,13 +2641,14 @@ public class CommandLineArgumentParser {
                     System.out.println("Export finished: " + inFile.getName() + " Export time: " + Helper.formatTimeSec(time));
                 }
 
+                swf.removeEventListener(exportListener);
                 swf.clearAllCache();
                 CancellableWorker.cancelBackgroundThreads();
             }
         } catch (OutOfMemoryError | Exception ex) {
             System.err.print("FAIL: Exporting Failed on Exception - ");
             logger.log(Level.SEVERE, null, ex);
-            System.exit(1);
+            exit(1);
         }
 
         if (showStat) {
@@ -2559,7 +2659,7 @@ public class CommandLineArgumentParser {
         long time = stopTime - startTime;
         System.out.println("Export finished. Total export time: " + Helper.formatTimeSec(time));
         System.out.println(exportOK ? "OK" : "FAIL");
-        System.exit(exportOK ? 0 : 1);
+        exit(exportOK ? 0 : 1);
     }
 
     private static void exportFla(boolean compressed, String outDir, File inFile, SWF swf, boolean multipleExportTypes, Map<String, String> formats, AbortRetryIgnoreHandler handler) throws IOException, InterruptedException {
@@ -2621,7 +2721,7 @@ public class CommandLineArgumentParser {
                 break;
             default:
                 System.err.println("Invalid level, must be one of: controlflow,traps,deadcode or 1,2,3/max");
-                System.exit(1);
+                exit(1);
                 return;
         }
         File inFile = new File(args.pop());
@@ -2633,14 +2733,14 @@ public class CommandLineArgumentParser {
                 outFile = tmpFile;
             } catch (IOException ex) {
                 System.err.println("Unable to create temp file");
-                System.exit(1);
+                exit(1);
             }
         }
         try (StdInAwareFileInputStream is = new StdInAwareFileInputStream(inFile); FileOutputStream fos = new FileOutputStream(outFile)) {
             SWF swf = new SWF(is, Configuration.parallelSpeedUp.get(), charset);
             if (!swf.isAS3()) {
                 System.out.println("Warning: The file is not AS3. Only AS3 deobfuscation from commandline is available.");
-                System.exit(0);
+                exit(0);
             }
             swf.deobfuscate(lev);
             swf.saveTo(fos);
@@ -2653,13 +2753,13 @@ public class CommandLineArgumentParser {
             System.out.println("OK");
         } catch (FileNotFoundException ex) {
             System.err.println("File not found.");
-            System.exit(1);
+            exit(1);
         } catch (InterruptedException ex) {
             logger.log(Level.SEVERE, null, ex);
-            System.exit(1);
+            exit(1);
         } catch (IOException ex) {
             logger.log(Level.SEVERE, "Error", ex);
-            System.exit(1);
+            exit(1);
         } finally {
             if (tmpFile != null && tmpFile.exists()) {
                 tmpFile.delete();
@@ -2686,7 +2786,7 @@ public class CommandLineArgumentParser {
                         break;
                     default:
                         System.out.println("Unsupported compression method: " + compressionString);
-                        System.exit(0);
+                        exit(0);
                         break;
                 }
             }
@@ -2696,13 +2796,13 @@ public class CommandLineArgumentParser {
                 System.out.println(result ? "OK" : "FAIL");
             } catch (FileNotFoundException ex) {
                 System.err.println("File not found.");
-                System.exit(1);
+                exit(1);
             }
         } catch (IOException ex) {
             logger.log(Level.SEVERE, null, ex);
         }
 
-        System.exit(result ? 0 : 1);
+        exit(result ? 0 : 1);
     }
 
     private static void parseDecrypt(Stack<String> args) {
@@ -2717,13 +2817,13 @@ public class CommandLineArgumentParser {
                 System.out.println(result ? "OK" : "FAIL");
             } catch (FileNotFoundException ex) {
                 System.err.println("File not found.");
-                System.exit(1);
+                exit(1);
             }
         } catch (IOException ex) {
             logger.log(Level.SEVERE, null, ex);
         }
 
-        System.exit(result ? 0 : 1);
+        exit(result ? 0 : 1);
     }
     private static void parseDecompress(Stack<String> args) {
         if (args.size() < 2) {
@@ -2737,13 +2837,13 @@ public class CommandLineArgumentParser {
                 System.out.println(result ? "OK" : "FAIL");
             } catch (FileNotFoundException ex) {
                 System.err.println("File not found.");
-                System.exit(1);
+                exit(1);
             }
         } catch (IOException ex) {
             logger.log(Level.SEVERE, null, ex);
         }
 
-        System.exit(result ? 0 : 1);
+        exit(result ? 0 : 1);
     }
 
     private static void parseSwf2Xml(Stack<String> args, String charset) {
@@ -2757,7 +2857,7 @@ public class CommandLineArgumentParser {
                 new SwfXmlExporter().exportXml(swf, new File(args.pop()));
             } catch (FileNotFoundException ex) {
                 System.err.println("File not found.");
-                System.exit(1);
+                exit(1);
             } catch (InterruptedException ex) {
                 logger.log(Level.SEVERE, null, ex);
             }
@@ -2831,7 +2931,7 @@ public class CommandLineArgumentParser {
             OpenableSourceInfo sourceInfo = new OpenableSourceInfo(null, fileName, null);
             if (!sourceInfo.isBundle()) {
                 System.err.println("Error: <infile> should be a bundle. (ZIP or non SWF binary file)");
-                System.exit(1);
+                exit(1);
             }
             Bundle bundle = sourceInfo.getBundle(noCheck, mode);
             List<Map.Entry<String, SeekableInputStream>> streamsToExtract = new ArrayList<>();
@@ -2982,13 +3082,13 @@ public class CommandLineArgumentParser {
                 System.out.println(result ? "OK" : "FAIL");
             } catch (FileNotFoundException ex) {
                 System.err.println("File not found.");
-                System.exit(1);
+                exit(1);
             }
         } catch (IOException ex) {
             logger.log(Level.SEVERE, null, ex);
         }
 
-        System.exit(result ? 0 : 1);
+        exit(result ? 0 : 1);
     }
 
     private static String parseCharset(Stack<String> args) {
@@ -3144,16 +3244,16 @@ public class CommandLineArgumentParser {
 
             if (job == null) {
                 System.err.println("No pages found. Maybe it is not a FlashPaper file");
-                System.exit(2);
+                exit(2);
             }
             job.end();
 
         } catch (FileNotFoundException ex) {
             System.err.println("File not found");
-            System.exit(1);
+            exit(1);
         } catch (IOException | InterruptedException ex) {
             System.err.println("I/O error during reading");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -3176,12 +3276,12 @@ public class CommandLineArgumentParser {
 
             } catch (IOException e) {
                 System.err.println("I/O Error during reading replacements file");
-                System.exit(1);
+                exit(1);
             }
 
             if (args.isEmpty()) {
                 System.err.println("Replacements file is empty.");
-                System.exit(1);
+                exit(1);
             }
         }
 
@@ -3209,7 +3309,7 @@ public class CommandLineArgumentParser {
                             characterTag = swf.getCharacter(characterId);
                         } else {
                             System.err.println("CharacterId does not exist");
-                            System.exit(1);
+                            exit(1);
                         }
 
                         String repFile = args.pop();
@@ -3232,7 +3332,7 @@ public class CommandLineArgumentParser {
                             }
                             if (soundStreamHead == null) {
                                 System.err.println((characterTag == null ? "Main timeline " : "DefineSprite(" + characterId + ")") + " does not contain any SoundStreamHead");
-                                System.exit(1);
+                                exit(1);
                             }
                             boolean ok = false;
                             try {
@@ -3243,11 +3343,11 @@ public class CommandLineArgumentParser {
                                     supportedRatesStr.add("" + i);
                                 }
                                 System.err.println("Import FAILED. Input file has unsupported sampling rate (" + usre.getSoundRate() + "). Supported rates for this sound format: " + String.join(", ", supportedRatesStr) + ".");
-                                System.exit(2);
+                                exit(2);
                             }
                             if (!ok) {
                                 System.err.println("Import FAILED. Maybe unsuppoted media type? Only MP3 and uncompressed WAV are available.");
-                                System.exit(1);
+                                exit(1);
                             }
                         } else if (characterTag instanceof DefineBinaryDataTag) {
                             DefineBinaryDataTag defineBinaryData = (DefineBinaryDataTag) characterTag;
@@ -3300,13 +3400,13 @@ public class CommandLineArgumentParser {
                                     supportedRatesStr.add("" + i);
                                 }
                                 System.err.println("Import FAILED. Input file has unsupported sampling rate (" + usre.getSoundRate() + "). Supported rates for this sound format: " + String.join(", ", supportedRatesStr) + ".");
-                                System.exit(2);
+                                exit(2);
                             } catch (SoundImportException sie) {
                                 ok = false;
                             }
                             if (!ok) {
                                 System.err.println("Import FAILED. Maybe unsuppoted media type? Only MP3 and uncompressed WAV are available.");
-                                System.exit(1);
+                                exit(1);
                             }
                         } else if (characterTag instanceof DefineVideoStreamTag) {
                             DefineVideoStreamTag movie = (DefineVideoStreamTag) characterTag;
@@ -3314,11 +3414,11 @@ public class CommandLineArgumentParser {
                                 new MovieImporter().importMovie(movie, data);
                             } catch (IOException iex) {
                                 System.err.println("Import FAILED: " + iex.getMessage());
-                                System.exit(1);
+                                exit(1);
                             }
                         } else {
                             System.err.println("The specified tag type is not supported for import");
-                            System.exit(1);
+                            exit(1);
                         }
                     } else {
                         Map<String, ASMSource> asms = swf.getASMs(false);
@@ -3371,7 +3471,7 @@ public class CommandLineArgumentParser {
 
                         if (!found) {
                             System.err.println(objectToReplace + " is not reocginized as a CharacterId or a script name.");
-                            System.exit(1);
+                            exit(1);
                         }
                     }
 
@@ -3386,12 +3486,12 @@ public class CommandLineArgumentParser {
                     }
                 } catch (IOException e) {
                     System.err.println("I/O error during writing");
-                    System.exit(2);
+                    exit(2);
                 }
             }
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during reading");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -3430,7 +3530,7 @@ public class CommandLineArgumentParser {
                     }
                     if (!swf.getCharacters().containsKey(imageId)) {
                         System.err.println("ImageId does not exist");
-                        System.exit(1);
+                        exit(1);
                     }
 
                     CharacterTag characterTag = swf.getCharacter(imageId);
@@ -3455,12 +3555,12 @@ public class CommandLineArgumentParser {
                     }
                 } catch (IOException e) {
                     System.err.println("I/O error during writing");
-                    System.exit(2);
+                    exit(2);
                 }
             }
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during reading");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -3486,7 +3586,7 @@ public class CommandLineArgumentParser {
                     }
                     if (!swf.getCharacters().containsKey(characterId)) {
                         System.err.println("CharacterId does not exist");
-                        System.exit(1);
+                        exit(1);
                     }
 
                     CharacterTag characterTag = swf.getCharacter(characterId);
@@ -3501,7 +3601,7 @@ public class CommandLineArgumentParser {
                     }
                     if (!swf.getCharacters().containsKey(newCharacterId)) {
                         System.err.println("NewCharacterId does not exist");
-                        System.exit(1);
+                        exit(1);
                     }
 
                     swf.replaceCharacterTags(characterTag, newCharacterId);
@@ -3517,12 +3617,12 @@ public class CommandLineArgumentParser {
                     }
                 } catch (IOException e) {
                     System.err.println("I/O error during writing");
-                    System.exit(2);
+                    exit(2);
                 }
             }
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during reading");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -3573,12 +3673,12 @@ public class CommandLineArgumentParser {
                     }
                 } catch (IOException e) {
                     System.err.println("I/O error during writing");
-                    System.exit(2);
+                    exit(2);
                 }
             }
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during reading");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -3604,7 +3704,7 @@ public class CommandLineArgumentParser {
                 }
                 if (!swf.getCharacters().containsKey(characterId)) {
                     System.err.println("CharacterId does not exist");
-                    System.exit(1);
+                    exit(1);
                 }
 
                 CharacterTag characterTag = swf.getCharacter(characterId);
@@ -3631,7 +3731,7 @@ public class CommandLineArgumentParser {
                     System.err.println("Converting text tag is currently not supported");
                 } else {
                     System.err.println("The specified tag type is not supported for import");
-                    System.exit(1);
+                    exit(1);
                 }
 
                 try {
@@ -3640,12 +3740,12 @@ public class CommandLineArgumentParser {
                     }
                 } catch (IOException e) {
                     System.err.println("I/O error during writing");
-                    System.exit(2);
+                    exit(2);
                 }
             }
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during reading");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -3668,12 +3768,12 @@ public class CommandLineArgumentParser {
                         tagNo = Integer.parseInt(tagNoToRemoveStr);
                     } catch (NumberFormatException nfe) {
                         System.err.println("Tag number should be integer");
-                        System.exit(1);
+                        exit(1);
                         return;
                     }
                     if (tagNo < 0 || tagNo >= swf.getTags().size()) {
                         System.err.println("Tag number does not exist. Tag number should be between 0 and " + (swf.getTags().size() - 1));
-                        System.exit(1);
+                        exit(1);
                     }
 
                     if (!tagNumbersToRemove.contains(tagNo)) {
@@ -3696,12 +3796,12 @@ public class CommandLineArgumentParser {
                     }
                 } catch (IOException e) {
                     System.err.println("I/O error during writing");
-                    System.exit(2);
+                    exit(2);
                 }
             }
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during reading");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -3772,7 +3872,7 @@ public class CommandLineArgumentParser {
                 outStream = new PrintStream(out, "UTF-8");
             } catch (UnsupportedEncodingException | FileNotFoundException ex) {
                 Logger.getLogger(CommandLineArgumentParser.class.getName()).log(Level.SEVERE, ex.getLocalizedMessage());
-                System.exit(1);
+                exit(1);
                 return;
             }
         }
@@ -3802,7 +3902,7 @@ public class CommandLineArgumentParser {
                     }
                     if (!swf.getCharacters().containsKey(characterId)) {
                         System.err.println("CharacterId does not exist");
-                        System.exit(1);
+                        exit(1);
                     }
 
                     CharacterTag characterTag = swf.getCharacter(characterId);
@@ -3819,12 +3919,12 @@ public class CommandLineArgumentParser {
                     }
                 } catch (IOException e) {
                     System.err.println("I/O error during writing");
-                    System.exit(2);
+                    exit(2);
                 }
             }
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during reading");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -3845,7 +3945,7 @@ public class CommandLineArgumentParser {
 
             if (!importFile.exists()) {
                 System.err.println("Symbol class file " + importFile + " does not exist.");
-                System.exit(1);
+                exit(1);
             }
             importer.importSymbolClasses(importFile, swf);
             try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(outFile))) {
@@ -3853,7 +3953,7 @@ public class CommandLineArgumentParser {
             }
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during writing");
-            System.exit(2);
+            exit(2);
         }
 
     }
@@ -3886,7 +3986,7 @@ public class CommandLineArgumentParser {
             }
             if (!shapesDir.exists()) {
                 System.err.println("Shapes directory does not exist: " + shapesDir.getAbsolutePath());
-                System.exit(1);
+                exit(1);
             }
             ShapeImporter shapeImporter = new ShapeImporter();
             int shapeCount = shapeImporter.bulkImport(shapesDir, swf, noFill, true);
@@ -3898,7 +3998,7 @@ public class CommandLineArgumentParser {
             System.out.println("" + shapeCount + " shapes successfully imported");
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during writing");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -3923,7 +4023,7 @@ public class CommandLineArgumentParser {
             }
             if (!moviesDir.exists()) {
                 System.err.println("Movies directory does not exist: " + moviesDir.getAbsolutePath());
-                System.exit(1);
+                exit(1);
             }
             MovieImporter movieImporter = new MovieImporter();
             int movieCount = movieImporter.bulkImport(moviesDir, swf, true);
@@ -3934,7 +4034,7 @@ public class CommandLineArgumentParser {
             System.out.println("" + movieCount + " movies successfully imported");
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during writing");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -3959,7 +4059,7 @@ public class CommandLineArgumentParser {
             }
             if (!soundsDir.exists()) {
                 System.err.println("Sounds directory does not exist: " + soundsDir.getAbsolutePath());
-                System.exit(1);
+                exit(1);
             }
             SoundImporter soundImporter = new SoundImporter();
             int soundCount = soundImporter.bulkImport(soundsDir, swf, true);
@@ -3970,7 +4070,7 @@ public class CommandLineArgumentParser {
             System.out.println("" + soundCount + " sounds successfully imported");
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during writing");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -3995,7 +4095,7 @@ public class CommandLineArgumentParser {
             }
             if (!imagesDir.exists()) {
                 System.err.println("Images directory does not exist: " + imagesDir.getAbsolutePath());
-                System.exit(1);
+                exit(1);
             }
             ImageImporter imageImporter = new ImageImporter();
             int imageCount = imageImporter.bulkImport(imagesDir, swf, true);
@@ -4006,7 +4106,7 @@ public class CommandLineArgumentParser {
             System.out.println("" + imageCount + " images successfully imported");
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during writing");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -4097,7 +4197,7 @@ public class CommandLineArgumentParser {
             }
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during writing");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -4106,7 +4206,7 @@ public class CommandLineArgumentParser {
         String flexLocation = Configuration.flexSdkLocation.get();
         if (Configuration.useFlexAs3Compiler.get() && (flexLocation.isEmpty() || (!new File(flexLocation).exists()))) {
             System.err.println("Flex AS3 compiler enabled but Flex SDK path not set");
-            System.exit(1);
+            exit(1);
         }
 
         if (args.size() < 3) {
@@ -4134,12 +4234,12 @@ public class CommandLineArgumentParser {
                     }
                 } catch (IOException e) {
                     System.err.println("I/O error during writing");
-                    System.exit(2);
+                    exit(2);
                 }
             }
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during reading");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -4164,7 +4264,7 @@ public class CommandLineArgumentParser {
             }
         }
 
-        System.exit(result ? 0 : 1);
+        exit(result ? 0 : 1);
     }
 
     private static void replaceAS2PCode(String text, ASMSource src) throws IOException, InterruptedException {
@@ -4176,7 +4276,7 @@ public class CommandLineArgumentParser {
                 src.setActions(ASMParser.parse(0, true, text, src.getSwf().version, false, src.getSwf().getCharset()));
             } catch (ActionParseException ex) {
                 System.err.println("%error% on line %line%".replace("%error%", ex.text).replace("%line%", Long.toString(ex.line)));
-                System.exit(1);
+                exit(1);
             }
         }
         src.setModified();
@@ -4190,13 +4290,13 @@ public class CommandLineArgumentParser {
             src.setActions(par.actionsFromString(as, src.getSwf().getCharset()));
         } catch (ValueTooLargeException ex) {
             System.err.println("Script or some of its functions are too large");
-            System.exit(1);
+            exit(1);
         } catch (ActionParseException ex) {
             System.err.println("%error% on line %line%".replace("%error%", ex.text).replace("%line%", Long.toString(ex.line)));
-            System.exit(1);
+            exit(1);
         } catch (CompilationException ex) {
             System.err.println("%error% on line %line%".replace("%error%", ex.text).replace("%line%", Long.toString(ex.line)));
-            System.exit(1);
+            exit(1);
         }
         src.setModified();
     }
@@ -4250,9 +4350,11 @@ public class CommandLineArgumentParser {
                 abc.bodies.get(bodyIndex).setCode(acode);
             } catch (AVM2ParseException ex) {
                 System.err.println("%error% on line %line%".replace("%error%", ex.text).replace("%line%", Long.toString(ex.line)));
-                System.exit(1);
+                exit(1);
             }
         }
+        abc.getMultinameUsageIndex().invalidateMethod(abc.bodies.get(bodyIndex).method_info);
+        abc.getMethodDependencyCache().invalidateMethod(abc.bodies.get(bodyIndex).method_info);
         ((Tag) abc.parentTag).setModified(true);
     }
 
@@ -4279,7 +4381,7 @@ public class CommandLineArgumentParser {
             } else {
 
             }
-            System.exit(1);
+            exit(1);
         }
 
         try {
@@ -4292,7 +4394,7 @@ public class CommandLineArgumentParser {
                 r = r.replace("%col%", "" + item.getCol());
                 logger.log(Level.SEVERE, r);
             }
-            System.exit(1);
+            exit(1);
         }
     }
 
@@ -4311,7 +4413,7 @@ public class CommandLineArgumentParser {
                     out = new File(args.pop());
                     if (out.isDirectory()) {
                         logger.log(Level.SEVERE, "File is a directory");
-                        System.exit(1);
+                        exit(1);
                     } else {
                         pw = new PrintWriter(out);
                     }
@@ -4392,12 +4494,12 @@ public class CommandLineArgumentParser {
                         }
                     } catch (IOException ex) {
                         logger.log(Level.SEVERE, "Cannot read.");
-                        System.exit(1);
+                        exit(1);
                     }
             }
         }
         if (!found) {
-            System.exit(1);
+            exit(1);
         }
     }
 
@@ -4484,7 +4586,7 @@ public class CommandLineArgumentParser {
             Main.parseOpenable(sourceInfo);
         } catch (Exception ex) {
             logger.log(Level.SEVERE, null, ex);
-            System.exit(1);
+            exit(1);
         }
     }
 
@@ -4494,16 +4596,14 @@ public class CommandLineArgumentParser {
         }
         File file = new File(args.pop());
         try {
-            try (StdInAwareFileInputStream is = new StdInAwareFileInputStream(file)) {
-                SWF swf = new SWF(is, Configuration.parallelSpeedUp.get(), charset);
-                Map<String, ASMSource> asms = swf.getASMs(false);
-                for (String as2 : asms.keySet()) {
-                    System.out.println(as2);
-                }
+            SWF swf = openReadOnlySwf(file, charset);
+            Map<String, ASMSource> asms = swf.getASMs(false);
+            for (String as2 : asms.keySet()) {
+                System.out.println(as2);
             }
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during reading");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -4576,13 +4676,13 @@ public class CommandLineArgumentParser {
             System.out.println("OK");
         } catch (FileNotFoundException ex) {
             logger.log(Level.SEVERE, "Cannot read {0}", file);
-            System.exit(1);
+            exit(1);
         } catch (IOException ex) {
             logger.log(Level.SEVERE, "Reading error {0}", file);
-            System.exit(2);
+            exit(2);
         } catch (InterruptedException ex) {
             logger.log(Level.SEVERE, "Cancelled {0}", file);
-            System.exit(3);
+            exit(3);
         }
 
         System.out.println("Finished");
@@ -4594,16 +4694,14 @@ public class CommandLineArgumentParser {
         }
         File file = new File(args.pop());
         try {
-            try (StdInAwareFileInputStream is = new StdInAwareFileInputStream(file)) {
-                SWF swf = new SWF(is, Configuration.parallelSpeedUp.get(), charset);
-                List<ScriptPack> packs = swf.getAS3Packs();
-                for (ScriptPack entry : packs) {
-                    System.out.println(entry.getClassPath().toString() + " " + entry.scriptIndex);
-                }
+            SWF swf = openReadOnlySwf(file, charset);
+            List<ScriptPack> packs = swf.getAS3Packs();
+            for (ScriptPack entry : packs) {
+                System.out.println(entry.getClassPath().toString() + " " + entry.scriptIndex);
             }
         } catch (IOException | InterruptedException e) {
             System.err.println("I/O error during reading");
-            System.exit(2);
+            exit(2);
         }
     }
 
@@ -4638,24 +4736,24 @@ public class CommandLineArgumentParser {
                     stdout = new FileOutputStream(stdOutFile);
                 } catch (FileNotFoundException ex) {
                     System.err.println("File not found: " + ex.getMessage());
-                    System.exit(1);
+                    exit(1);
                 }
             } else {
                 stdout = System.out;
             }
 
-            try (StdInAwareFileInputStream is = new StdInAwareFileInputStream(inFile)) {
-                SWF swf = new SWF(is, Configuration.parallelSpeedUp.get(), charset);
+            try {
+                SWF swf = openReadOnlySwf(inFile, charset);
                 action.swfAction(swf, stdout);
             } catch (FileNotFoundException ex) {
                 System.err.println("File not found: " + ex.getMessage());
-                System.exit(1);
+                exit(1);
             } catch (InterruptedException ex) {
                 logger.log(Level.SEVERE, null, ex);
-                System.exit(1);
+                exit(1);
             } catch (IOException ex) {
                 logger.log(Level.SEVERE, "Error", ex);
-                System.exit(1);
+                exit(1);
             }
         } finally {
             if (stdOutFile != null) {
@@ -4680,7 +4778,7 @@ public class CommandLineArgumentParser {
                     stdout = new FileOutputStream(stdOutFile);
                 } catch (FileNotFoundException ex) {
                     System.err.println("File not found: " + ex.getMessage());
-                    System.exit(1);
+                    exit(1);
                 }
             } else {
                 stdout = System.out;
@@ -4693,7 +4791,7 @@ public class CommandLineArgumentParser {
                     outFile = tmpFile;
                 } catch (IOException ex) {
                     System.err.println("Unable to create temp file");
-                    System.exit(1);
+                    exit(1);
                 }
             }
             try (StdInAwareFileInputStream is = new StdInAwareFileInputStream(inFile); FileOutputStream fos = new FileOutputStream(outFile)) {
@@ -4702,24 +4800,24 @@ public class CommandLineArgumentParser {
                 swf.saveTo(fos);
             } catch (FileNotFoundException ex) {
                 System.err.println("File not found: " + ex.getMessage());
-                System.exit(1);
+                exit(1);
             } catch (InterruptedException ex) {
                 logger.log(Level.SEVERE, null, ex);
-                System.exit(1);
+                exit(1);
             } catch (IOException ex) {
                 logger.log(Level.SEVERE, "Error", ex);
-                System.exit(1);
+                exit(1);
             }
 
             if (tmpFile != null) {
                 try {
                     if (!inFile.delete()) {
                         System.err.println("Cannot overwrite original file");
-                        System.exit(1);
+                        exit(1);
                     }
                     if (!tmpFile.renameTo(inFile)) {
                         System.err.println("Cannot rename tempfile to original file");
-                        System.exit(1);
+                        exit(1);
                     }
                     tmpFile = null;
                     System.out.println(inFile + " overwritten.");
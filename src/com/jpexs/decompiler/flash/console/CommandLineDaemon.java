@@ -0,0 +1,377 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jpexs.decompiler.flash.console;
+
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.configuration.ConfigurationItem;
+import com.jpexs.decompiler.flash.gui.Main;
+import com.jpexs.helpers.Helper;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Commandline daemon. Keeps the JVM warm and serves commandline commands to
+ * clients connecting over a loopback socket, so repeated commands do not pay
+ * for the JVM startup, configuration loading and playerglobal parsing.
+ *
+ * Requests are served one at a time, as the commands write to System.out and
+ * System.err, which are redirected to the client for the duration of the
+ * request. SWF files opened by read only commands are kept in a LRU cache and
+ * reused until they are modified on disk.
+ *
+ * Port and access token are written to daemon.properties in the FFDec home
+ * directory, readable only by the owner, clients read them from there.
+ * Clients must run in the directory of the daemon, as relative paths in the
+ * arguments are resolved against it.
+ *
+ * @author JPEXS
+ */
+public class CommandLineDaemon {
+
+    private static final Logger logger = Logger.getLogger(CommandLineDaemon.class.getName());
+
+    public static final int PROTOCOL_VERSION = 1;
+
+    public static final int DEFAULT_PORT = 55565;
+
+    public static final int DEFAULT_MAX_OPEN_SWFS = 4;
+
+    public static final String INFO_FILE_NAME = "daemon.properties";
+
+    /**
+     * Time for the client to send its request, the daemon serves one request
+     * at a time, so a stalled client must not block it.
+     */
+    public static final int REQUEST_TIMEOUT_MS = 10000;
+
+    public static final byte FRAME_STDOUT = 1;
+
+    public static final byte FRAME_STDERR = 2;
+
+    public static final byte FRAME_EXIT = 3;
+
+    private static volatile boolean serving = false;
+
+    private static Map<String, SWF> openSwfs;
+
+    /**
+     * Thrown instead of System.exit while a daemon request is served.
+     */
+    static class ExitRequest extends Error {
+
+        private final int status;
+
+        public ExitRequest(int status) {
+            super(null, null, false, false);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * Checks whether a daemon request is being served in this JVM.
+     *
+     * @return True when serving a request
+     */
+    public static boolean isServing() {
+        return serving;
+    }
+
+    public static File getInfoFile() {
+        return new File(Configuration.getFFDecHome(), INFO_FILE_NAME);
+    }
+
+    /**
+     * Opens SWF file for read only command. The SWF is reused by the next
+     * commands until the file changes on disk.
+     *
+     * @param file SWF file
+     * @param charset Charset
+     * @return SWF
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    static SWF openSwf(File file, String charset) throws IOException, InterruptedException {
+        File absFile = file.getAbsoluteFile();
+        String key = absFile.getPath() + "|" + absFile.length() + "|" + absFile.lastModified() + "|" + charset;
+        SWF swf = openSwfs.get(key);
+        if (swf == null) {
+            try (InputStream is = new BufferedInputStream(new FileInputStream(absFile))) {
+                swf = new SWF(is, absFile.getPath(), absFile.getName(), null, Configuration.parallelSpeedUp.get(), false, true, charset);
+            }
+
+            openSwfs.put(key, swf);
+        }
+
+        return swf;
+    }
+
+    /**
+     * Serves commands until the process is killed.
+     *
+     * @param port Port
+     * @param maxOpenSwfs Maximum number of cached SWF files
+     * @throws IOException On error
+     */
+    public static void run(int port, int maxOpenSwfs) throws IOException {
+        openSwfs = new LinkedHashMap<String, SWF>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SWF> eldest) {
+                return size() > maxOpenSwfs;
+            }
+        };
+
+        byte[] tokenBytes = new byte[16];
+        new SecureRandom().nextBytes(tokenBytes);
+        String token = Helper.byteArrayToHex(tokenBytes);
+
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            File infoFile = getInfoFile();
+            Properties info = new Properties();
+            info.setProperty("port", Integer.toString(serverSocket.getLocalPort()));
+            info.setProperty("token", token);
+            try (OutputStream os = createPrivateFile(infoFile)) {
+                info.store(os, null);
+            }
+
+            infoFile.deleteOnExit();
+            System.out.println("Daemon listening on port " + serverSocket.getLocalPort());
+
+            while (true) {
+                try (Socket socket = serverSocket.accept()) {
+                    serve(socket, token);
+                } catch (IOException ex) {
+                    logger.log(Level.WARNING, "Daemon request failed", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates file readable and writable only by the owner.
+     *
+     * @param file File
+     * @return Output stream of the file
+     * @throws IOException On error
+     */
+    private static OutputStream createPrivateFile(File file) throws IOException {
+        Path path = file.toPath();
+        Files.deleteIfExists(path);
+        try {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException ex) {
+            //not a POSIX file system
+            Files.createFile(path);
+            file.setReadable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(false, false);
+            file.setWritable(true, true);
+        }
+
+        return Files.newOutputStream(path);
+    }
+
+    private static void serve(Socket socket, String token) throws IOException {
+        socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        PrintStream out = new PrintStream(new FrameOutputStream(dos, FRAME_STDOUT), true);
+        PrintStream err = new PrintStream(new FrameOutputStream(dos, FRAME_STDERR), true);
+        int status;
+        int version = dis.readInt();
+        if (version != PROTOCOL_VERSION) {
+            err.println("Error: Unsupported daemon protocol version " + version);
+            status = 1;
+        } else if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), dis.readUTF().getBytes(StandardCharsets.UTF_8))) {
+            err.println("Error: Invalid daemon access token");
+            status = 1;
+        } else {
+            File workingDirectory = new File(dis.readUTF()).getAbsoluteFile();
+            String[] args = new String[dis.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = dis.readUTF();
+            }
+
+            // relative paths are resolved against the directory of the daemon,
+            // the arguments are not known to be paths, so they cannot be rewritten
+            File daemonDirectory = new File("").getAbsoluteFile();
+            if (!workingDirectory.equals(daemonDirectory)) {
+                err.println("Error: Daemon runs in directory " + daemonDirectory + ", run the client there");
+                status = 1;
+            } else {
+                // the command may run long, the client waits for it
+                socket.setSoTimeout(0);
+                status = runCommand(args, out, err);
+            }
+        }
+
+        out.flush();
+        err.flush();
+        synchronized (dos) {
+            dos.writeByte(FRAME_EXIT);
+            dos.writeInt(status);
+            dos.flush();
+        }
+    }
+
+    private static int runCommand(String[] args, PrintStream out, PrintStream err) {
+        for (String arg : args) {
+            if (arg.equalsIgnoreCase("-daemon")) {
+                err.println("Error: Daemon cannot be started from daemon");
+                return 1;
+            }
+        }
+
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        InputStream oldIn = System.in;
+        Map<ConfigurationItem<?>, Object[]> config = saveConfiguration();
+        int status = 0;
+        System.setOut(out);
+        System.setErr(err);
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+        Main.initLogging(Configuration._debugMode.get());
+        serving = true;
+        try {
+            String[] filesToOpen = CommandLineArgumentParser.parseArguments(args);
+            if (filesToOpen != null) {
+                System.err.println("Error: GUI cannot be opened from daemon");
+                status = 1;
+            }
+        } catch (ExitRequest ex) {
+            status = ex.getStatus();
+        } catch (Throwable t) {
+            t.printStackTrace();
+            status = 1;
+        } finally {
+            serving = false;
+            System.out.flush();
+            System.err.flush();
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            System.setIn(oldIn);
+            Main.initLogging(Configuration._debugMode.get());
+            restoreConfiguration(config);
+            CommandLineArgumentParser.resetState();
+        }
+
+        if (status != 0) {
+            // failed command may leave the SWFs in unknown state
+            openSwfs.clear();
+        }
+
+        return status;
+    }
+
+    private static Map<ConfigurationItem<?>, Object[]> saveConfiguration() {
+        Map<ConfigurationItem<?>, Object[]> result = new HashMap<>();
+        for (Field field : Configuration.getConfigurationFields().values()) {
+            ConfigurationItem<?> item = ConfigurationItem.getItem(field);
+            result.put(item, new Object[]{item.hasValue(), item.get()});
+        }
+
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void restoreConfiguration(Map<ConfigurationItem<?>, Object[]> config) {
+        for (Map.Entry<ConfigurationItem<?>, Object[]> entry : config.entrySet()) {
+            ConfigurationItem<Object> item = (ConfigurationItem<Object>) entry.getKey();
+            boolean hasValue = (Boolean) entry.getValue()[0];
+            Object value = entry.getValue()[1];
+            if (item.hasValue() == hasValue && Objects.equals(item.get(), value)) {
+                continue;
+            }
+
+            if (hasValue) {
+                item.set(value);
+            } else {
+                item.unset();
+            }
+        }
+    }
+
+    /**
+     * Sends written data to the client as frames of the given type.
+     */
+    private static class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream dos;
+
+        private final byte type;
+
+        public FrameOutputStream(DataOutputStream dos, byte type) {
+            this.dos = dos;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+
+            synchronized (dos) {
+                dos.writeByte(type);
+                dos.writeInt(len);
+                dos.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (dos) {
+                dos.flush();
+            }
+        }
+    }
+}
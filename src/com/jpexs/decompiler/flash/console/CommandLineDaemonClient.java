@@ -0,0 +1,102 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jpexs.decompiler.flash.console;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * Client of the commandline daemon. Forwards the arguments to the daemon,
+ * prints its output and returns its exit code.
+ *
+ * @author JPEXS
+ */
+public class CommandLineDaemonClient {
+
+    /**
+     * Runs command in the daemon.
+     *
+     * @param args Commandline arguments
+     * @return Exit code of the command, 1 when the daemon is not available
+     */
+    public static int run(String[] args) {
+        Properties info = new Properties();
+        try (InputStream is = new FileInputStream(CommandLineDaemon.getInfoFile())) {
+            info.load(is);
+        } catch (IOException ex) {
+            System.err.println("Error: Daemon is not running, start it with -daemon");
+            return 1;
+        }
+
+        int port;
+        try {
+            port = Integer.parseInt(info.getProperty("port"));
+        } catch (NumberFormatException ex) {
+            System.err.println("Error: Invalid daemon info file " + CommandLineDaemon.getInfoFile());
+            return 1;
+        }
+
+        String token = info.getProperty("token", "");
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            dos.writeInt(CommandLineDaemon.PROTOCOL_VERSION);
+            dos.writeUTF(token);
+            dos.writeUTF(new File("").getAbsolutePath());
+            dos.writeInt(args.length);
+            for (String arg : args) {
+                dos.writeUTF(arg);
+            }
+            dos.flush();
+
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            byte[] buf = new byte[4096];
+            while (true) {
+                byte type = dis.readByte();
+                if (type == CommandLineDaemon.FRAME_EXIT) {
+                    return dis.readInt();
+                }
+
+                PrintStream out = type == CommandLineDaemon.FRAME_STDERR ? System.err : System.out;
+                int len = dis.readInt();
+                while (len > 0) {
+                    int cnt = Math.min(len, buf.length);
+                    dis.readFully(buf, 0, cnt);
+                    out.write(buf, 0, cnt);
+                    len -= cnt;
+                }
+                out.flush();
+            }
+        } catch (EOFException ex) {
+            System.err.println("Error: Daemon closed the connection");
+            return 1;
+        } catch (IOException ex) {
+            System.err.println("Error: Cannot connect to daemon: " + ex.getMessage());
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jpexs.decompiler.flash.gui;
+
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.abc.ABC;
+import com.jpexs.decompiler.flash.abc.ScriptPack;
+import com.jpexs.decompiler.flash.action.ActionList;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.helpers.HighlightedText;
+import com.jpexs.decompiler.flash.helpers.hilight.HighlightSpecialType;
+import com.jpexs.decompiler.flash.helpers.hilight.Highlighting;
+import com.jpexs.decompiler.flash.tags.base.ASMSource;
+import com.jpexs.decompiler.flash.tags.base.DrawableTag;
+import com.jpexs.decompiler.flash.timeline.TagScript;
+import com.jpexs.decompiler.flash.treeitems.TreeItem;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.Timer;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * Decompiles scripts the user is likely to open next while the GUI is idle.
+ *
+ * After a script is selected and its own decompilation finished, the nearest
+ * scripts of the same tree node and the classes imported by the selected
+ * script are decompiled one by one on a low priority thread. The results go
+ * to the AS2/AS3 caches of the SWF, where the script panels find them. Any
+ * request of the user cancels the prefetch immediately.
+ *
+ * @author JPEXS
+ */
+public class DecompilationPrefetcher {
+
+    private static final Logger logger = Logger.getLogger(DecompilationPrefetcher.class.getName());
+
+    private static final int IDLE_DELAY = 500;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Decompilation prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final Timer idleTimer;
+
+    private TreeItem selectedItem;
+
+    private List<TreeItem> pendingItems;
+
+    private Future<?> prefetchFuture;
+
+    // scripts decompiled by the prefetch and not requested yet
+    private final Set<Object> prefetchedItems = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private final AtomicInteger prefetchCount = new AtomicInteger();
+
+    private final AtomicInteger cancelCount = new AtomicInteger();
+
+    private final AtomicInteger hitCount = new AtomicInteger();
+
+    private final AtomicInteger missCount = new AtomicInteger();
+
+    public DecompilationPrefetcher() {
+        idleTimer = new Timer(IDLE_DELAY, e -> startPrefetch());
+        idleTimer.setRepeats(false);
+    }
+
+    /**
+     * Schedules prefetch of the neighbours of the selected script. The
+     * prefetch starts when the GUI is idle.
+     *
+     * @param model Tree model
+     * @param selectedPath Path of the selected script
+     */
+    public void schedule(TreeModel model, TreePath selectedPath) {
+        View.checkAccess();
+
+        cancel();
+        if (!Configuration.decompilationPrefetch.get() || model == null || selectedPath == null || selectedPath.getParentPath() == null) {
+            return;
+        }
+
+        TreeItem item = getScript((TreeItem) selectedPath.getLastPathComponent());
+        if (item == null) {
+            return;
+        }
+
+        int maxCount = Configuration.decompilationPrefetchCount.get();
+        Object parent = selectedPath.getParentPath().getLastPathComponent();
+        int childCount = model.getChildCount(parent);
+        int index = model.getIndexOfChild(parent, selectedPath.getLastPathComponent());
+        List<TreeItem> items = new ArrayList<>();
+        for (int d = 1; index != -1 && items.size() < maxCount && (index + d < childCount || index - d >= 0); d++) {
+            for (int i : new int[]{index + d, index - d}) {
+                if (i >= 0 && i < childCount && items.size() < maxCount) {
+                    TreeItem sibling = getScript((TreeItem) model.getChild(parent, i));
+                    if (sibling != null) {
+                        items.add(sibling);
+                    }
+                }
+            }
+        }
+
+        selectedItem = item;
+        pendingItems = items;
+        idleTimer.restart();
+    }
+
+    /**
+     * Gets the script which would be decompiled when the tree item is
+     * selected.
+     *
+     * @param item Tree item
+     * @return Script or null
+     */
+    private static TreeItem getScript(TreeItem item) {
+        if (item instanceof ScriptPack) {
+            return item;
+        }
+
+        if (item instanceof TagScript) {
+            item = ((TagScript) item).getTag();
+            if (item instanceof ASMSource) {
+                return item;
+            }
+        }
+
+        if (item instanceof ASMSource && !(item instanceof DrawableTag)) {
+            return item;
+        }
+
+        return null;
+    }
+
+    private void startPrefetch() {
+        if (pendingItems == null) {
+            return;
+        }
+
+        if (Main.isWorking()) {
+            // the selected script is still decompiling
+            idleTimer.restart();
+            return;
+        }
+
+        TreeItem item = selectedItem;
+        List<TreeItem> items = pendingItems;
+        selectedItem = null;
+        pendingItems = null;
+        prefetchFuture = executor.submit(() -> {
+            try {
+                prefetch(item, items);
+            } catch (InterruptedException ex) {
+                // cancelled by a request
+            } catch (Exception ex) {
+                logger.log(Level.FINE, "Decompilation prefetch failed", ex);
+            }
+        });
+    }
+
+    private void prefetch(TreeItem selectedItem, List<TreeItem> items) throws InterruptedException {
+        List<TreeItem> allItems = new ArrayList<>(items);
+        if (selectedItem instanceof ScriptPack) {
+            allItems.addAll(getImportedScripts((ScriptPack) selectedItem, Configuration.decompilationPrefetchCount.get()));
+        }
+
+        for (TreeItem item : allItems) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            if (item instanceof ScriptPack) {
+                ScriptPack pack = (ScriptPack) item;
+                if (!SWF.isCached(pack)) {
+                    SWF.getCached(pack);
+                    markPrefetched(pack, SWF.isCached(pack));
+                }
+            } else if (item instanceof ASMSource && Configuration.decompile.get()) {
+                ASMSource asm = (ASMSource) item;
+                if (!SWF.isCached(asm)) {
+                    ActionList actions = asm.getActions();
+                    SWF.getCached(asm, actions);
+                    markPrefetched(asm, SWF.isCached(asm));
+                }
+            }
+        }
+    }
+
+    private void markPrefetched(Object item, boolean cached) {
+        if (cached) {
+            prefetchedItems.add(item);
+            prefetchCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the scripts of the classes imported by the decompiled script.
+     *
+     * @param pack Script
+     * @param maxCount Maximum number of scripts
+     * @return Scripts
+     */
+    private static List<ScriptPack> getImportedScripts(ScriptPack pack, int maxCount) {
+        List<ScriptPack> result = new ArrayList<>();
+        HighlightedText text = SWF.getFromCache(pack);
+        if (text == null || maxCount <= 0) {
+            return result;
+        }
+
+        Set<String> importedNames = new HashSet<>();
+        for (Highlighting h : text.getSpecialHighlights()) {
+            if (h.getProperties().subtype == HighlightSpecialType.TYPE_NAME && h.getProperties().specialValue != null) {
+                importedNames.add(h.getProperties().specialValue);
+            }
+        }
+
+        importedNames.remove(pack.getClassPath().toRawString());
+        if (importedNames.isEmpty() || pack.allABCs == null) {
+            return result;
+        }
+
+        for (ABC abc : pack.allABCs) {
+            for (ScriptPack p : abc.getScriptPacks(null, pack.allABCs)) {
+                if (importedNames.remove(p.getClassPath().toRawString())) {
+                    result.add(p);
+                    if (result.size() >= maxCount) {
+                        return result;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Records a request of the user and cancels the prefetch.
+     *
+     * @param item Requested script
+     * @param cached Whether the decompiled script was in the cache
+     */
+    public void scriptRequested(Object item, boolean cached) {
+        cancel();
+        if (prefetchedItems.remove(item) && cached) {
+            hitCount.incrementAndGet();
+        } else if (!cached) {
+            missCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Cancels the scheduled and running prefetch.
+     */
+    public void cancel() {
+        View.checkAccess();
+
+        idleTimer.stop();
+        selectedItem = null;
+        pendingItems = null;
+        if (prefetchFuture != null) {
+            if (!prefetchFuture.isDone()) {
+                prefetchFuture.cancel(true);
+                cancelCount.incrementAndGet();
+            }
+
+            prefetchFuture = null;
+        }
+    }
+
+    /**
+     * Gets number of requested scripts which were decompiled by the prefetch.
+     *
+     * @return Hit count
+     */
+    public int getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Gets number of requested scripts which were not in the cache.
+     *
+     * @return Miss count
+     */
+    public int getMissCount() {
+        return missCount.get();
+    }
+
+    public String getStat() {
+        return "prefetched: " + prefetchCount.get()
+                + " hits: " + hitCount.get()
+                + " misses: " + missCount.get()
+                + " cancelled: " + cancelCount.get();
+    }
+}
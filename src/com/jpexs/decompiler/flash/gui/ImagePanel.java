@@ -44,6 +44,7 @@ import com.jpexs.decompiler.flash.tags.base.SoundTag;
 import com.jpexs.decompiler.flash.tags.base.TextTag;
 import com.jpexs.decompiler.flash.timeline.DepthState;
 import com.jpexs.decompiler.flash.timeline.Frame;
+import com.jpexs.decompiler.flash.timeline.FrameDiffRenderer;
 import com.jpexs.decompiler.flash.timeline.Timeline;
 import com.jpexs.decompiler.flash.timeline.Timelined;
 import com.jpexs.decompiler.flash.types.BUTTONCONDACTION;
@@ -98,11 +99,13 @@ import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
 import java.awt.image.VolatileImage;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -200,6 +203,14 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
 
     private int msPerFrame;
 
+    private static final int RENDER_BUFFER_COUNT = 3;
+
+    private SerializableImage[] renderBuffers = new SerializableImage[RENDER_BUFFER_COUNT];
+
+    private int renderBufferPos = 0;
+
+    private FrameDiffRenderer diffRenderer;
+
     private final boolean lowQuality = false;
 
     private Object lock = new Object();
@@ -255,7 +266,7 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
 
     private ExportRectangle _viewRect = new ExportRectangle(0, 0, 1, 1);
 
-    private boolean playing = false;
+    private volatile boolean playing = false;
 
     private boolean autoPlayed = false;
 
@@ -808,7 +819,10 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
                             y = (int) offsetPoint.getY();
                         }
 
-                        g2.drawImage(img.getBufferedImage(), x, y, x + img.getWidth(), y + img.getHeight(), 0, 0, img.getWidth(), img.getHeight(), null);
+                        BufferedImage bi = img.getBufferedImage();
+                        synchronized (bi) {
+                            g2.drawImage(bi, x, y, x + img.getWidth(), y + img.getHeight(), 0, 0, img.getWidth(), img.getHeight(), null);
+                        }
 
                         if (hilightedEdge != null || hilightedPoints != null) {
                             hilightEdgeColor += hilightEdgeColorStep;
@@ -2015,7 +2029,13 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
             if (_img == null) {
                 return null;
             }
-            return _img.getBufferedImage();
+
+            //the image is a reused render buffer, return a copy
+            BufferedImage bi = _img.getBufferedImage();
+            synchronized (bi) {
+                ColorModel cm = bi.getColorModel();
+                return new BufferedImage(cm, bi.copyData(null), cm.isAlphaPremultiplied(), null);
+            }
         }
 
         public synchronized void setImg(SerializableImage img) {
@@ -2139,6 +2159,21 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
                 df.setGroupingUsed(false);
                 g2d.drawString("frameLoss:" + df.format(getFrameLoss()) + "%", 20, 20);
             }
+
+            if (Configuration.showPlaybackStatistics.get() && playing && timer != null) {
+                DecimalFormat df = new DecimalFormat();
+                df.setMaximumFractionDigits(1);
+                df.setMinimumFractionDigits(0);
+                df.setGroupingUsed(false);
+                String stat = "fps: " + df.format(fpsMeasured) + " / " + df.format(fpsShouldBe)
+                        + ", render: " + df.format(renderTimeMs) + " ms"
+                        + ", skipped: " + skippedFramesMeasured;
+                int y = Configuration._debugMode.get() ? 40 : 20;
+                g2d.setColor(Color.black);
+                g2d.drawString(stat, 21, y + 1);
+                g2d.setColor(Color.yellow);
+                g2d.drawString(stat, 20, y);
+            }
         }
     }
 
@@ -2887,7 +2922,8 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
         displayObjectCache.clear();
     }
 
-    private void nextFrame(Timer thisTimer, final int cnt, final int timeShouldBe) {
+    private void nextFrame(Timer thisTimer, final int cnt, final int timeShouldBe, final long presentTimeMs) {
+        Runnable present = null;
         synchronized (ImagePanel.class) {
             if (timelined != null && timer == thisTimer) {
                 int frameCount = timelined.getTimeline().getFrameCount();
@@ -2915,13 +2951,27 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
                 } else {
                     time = timeShouldBe;
                 }
-                drawFrame(thisTimer, true);
+                present = renderFrame(thisTimer, true);
+            }
+        }
+
+        if (present != null) {
+            //frame was rendered ahead, wait for its tick without blocking other panels
+            long waitMs = presentTimeMs - System.currentTimeMillis();
+            if (waitMs > 0) {
+                try {
+                    Thread.sleep(waitMs);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
             }
+            present.run();
         }
         fireMediaDisplayStateChanged();
     }
 
-    private static SerializableImage getFrame(Rectangle realRect, RECT rect, ExportRectangle viewRect, SWF swf, int frame, int time, Timelined drawable, RenderContext renderContext, int selectedDepth, int freeTransformDepth, double zoom, Reference<Point2D> registrationPointRef, Reference<Rectangle2D> boundsRef, Matrix transform, Matrix temporaryMatrix, Matrix newMatrix) {
+    private static SerializableImage getFrame(SerializableImage buffer, Rectangle realRect, RECT rect, ExportRectangle viewRect, SWF swf, int frame, int time, Timelined drawable, RenderContext renderContext, int selectedDepth, int freeTransformDepth, double zoom, Reference<Point2D> registrationPointRef, Reference<Rectangle2D> boundsRef, Matrix transform, Matrix temporaryMatrix, Matrix newMatrix, FrameDiffRenderer diffRenderer) {
         Timeline timeline = drawable.getTimeline();
         SerializableImage img;
         //RECT rect = drawable.getRect();
@@ -2934,8 +2984,15 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
         if (height == 0) {
             height = 1;
         }
-        SerializableImage image = new SerializableImage((int) Math.ceil(width / SWF.unitDivisor),
-                (int) Math.ceil(height / SWF.unitDivisor), SerializableImage.TYPE_INT_ARGB);
+        int imageWidth = (int) Math.ceil(width / SWF.unitDivisor);
+        int imageHeight = (int) Math.ceil(height / SWF.unitDivisor);
+        SerializableImage image;
+        if (buffer != null && buffer.getWidth() == imageWidth && buffer.getHeight() == imageHeight && buffer.getType() == SerializableImage.TYPE_INT_ARGB) {
+            //reuse the pixels, but not the graphics state left by the previous frame
+            image = new SerializableImage(buffer.getBufferedImage());
+        } else {
+            image = new SerializableImage(imageWidth, imageHeight, SerializableImage.TYPE_INT_ARGB);
+        }
         image.fillTransparent();
 
         Matrix m = new Matrix();
@@ -2950,14 +3007,30 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
             timeline.getFrame(frame).layers.get(freeTransformDepth).matrix = newMatrix.toMATRIX();
         }
 
+        boolean canUseSmoothing = !Configuration.disableBitmapSmoothing.get();
+        Rectangle region = null;
+        if (diffRenderer != null) {
+            region = diffRenderer.beginFrame(image, frame, time, m, zoom, renderContext.cursorPosition != null, Arrays.asList(realRect, viewRect, renderContext.mouseButton, canUseSmoothing));
+        }
+
         RGB backgroundColor = timeline.getFrame(frame).backgroundColor;
         if (backgroundColor != null) {
             Graphics2D g = (Graphics2D) image.getBufferedImage().getGraphics();
+            if (region != null) {
+                g.setClip(region);
+            }
             g.setPaint(backgroundColor.toColor());
             g.fillRect(realRect.x, realRect.y, realRect.width, realRect.height);
         }
 
-        timeline.toImage(frame, time, renderContext, image, image, false, m, new Matrix(), m, null, zoom, true, viewRect, fullM, true, Timeline.DRAW_MODE_ALL, 0, !Configuration.disableBitmapSmoothing.get());
+        //objects under cursor are searched during the rendering
+        if (region == null || !region.isEmpty() || renderContext.cursorPosition != null) {
+            timeline.toImage(frame, time, renderContext, image, image, false, m, new Matrix(), m, null, zoom, true, viewRect, fullM, true, Timeline.DRAW_MODE_ALL, 0, canUseSmoothing);
+        }
+
+        if (diffRenderer != null) {
+            diffRenderer.endFrame(image);
+        }
 
         Graphics2D gg = (Graphics2D) image.getGraphics();
         gg.setStroke(new BasicStroke(3));
@@ -3190,6 +3263,42 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
     }
 
     private void drawFrame(Timer thisTimer, boolean display) {
+        Runnable present = renderFrame(thisTimer, display);
+        if (present != null) {
+            present.run();
+        }
+    }
+
+    /**
+     * Gets buffer for rendering next frame. The buffers are reused in a ring,
+     * the buffer of currently displayed image is skipped.
+     *
+     * @return Buffer or null when not created yet
+     */
+    private synchronized SerializableImage getNextRenderBuffer() {
+        SerializableImage displayed = iconPanel.getImg();
+        for (int i = 0; i < RENDER_BUFFER_COUNT; i++) {
+            renderBufferPos = (renderBufferPos + 1) % RENDER_BUFFER_COUNT;
+            if (renderBuffers[renderBufferPos] != displayed) {
+                break;
+            }
+        }
+
+        return renderBuffers[renderBufferPos];
+    }
+
+    /**
+     * Renders frame. The sounds, actions and displaying of the frame are left
+     * to the returned presentation, so the frame can be rendered ahead and
+     * presented on its tick.
+     *
+     * @param thisTimer Timer of the playback
+     * @param display Render and display the frame, otherwise only its sounds
+     * and actions are executed
+     * @return Presentation of the frame or null when there is nothing to
+     * present
+     */
+    private Runnable renderFrame(Timer thisTimer, boolean display) {
         Timelined timelined;
         MouseEvent lastMouseEvent;
         int frame;
@@ -3228,7 +3337,7 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
         }
 
         if (timelined == null) {
-            return;
+            return null;
         }
 
         /*synchronized (ImagePanel.this) {
@@ -3244,10 +3353,11 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
         renderContext.stateUnderCursor = new ArrayList<>();
 
         SerializableImage img;
+        Timeline timeline;
         try {
-            Timeline timeline = timelined.getTimeline();
+            timeline = timelined.getTimeline();
             if (frame >= timeline.getFrameCount()) {
-                return;
+                return null;
             }
 
             double zoomDouble = zoom.fit ? getZoomToFit() : zoom.value;
@@ -3326,7 +3436,27 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
                         } else if (_viewRect.getHeight() < 0 || _viewRect.getWidth() < 0) {
                             img = new SerializableImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR);
                         } else {
-                            img = getFrame(realRect, rect, _viewRect, swf, frame, frozen ? 0 : time, timelined, renderContext, selectedDepth, freeTransformDepth, zoomDouble, registrationPointRef, boundsRef, trans2, tempTrans2 == null ? null : new Matrix(tempTrans2), transform);
+                            //only playback renders the frames one after another
+                            FrameDiffRenderer frameDiffRenderer = null;
+                            if (playing && freeTransformDepth == -1) {
+                                if (diffRenderer == null || diffRenderer.getTimeline() != timelined.getTimeline()) {
+                                    diffRenderer = new FrameDiffRenderer(timelined.getTimeline());
+                                }
+                                frameDiffRenderer = diffRenderer;
+                            } else {
+                                diffRenderer = null;
+                            }
+
+                            SerializableImage buffer = getNextRenderBuffer();
+                            if (buffer == null) {
+                                img = getFrame(null, realRect, rect, _viewRect, swf, frame, frozen ? 0 : time, timelined, renderContext, selectedDepth, freeTransformDepth, zoomDouble, registrationPointRef, boundsRef, trans2, tempTrans2 == null ? null : new Matrix(tempTrans2), transform, frameDiffRenderer);
+                            } else {
+                                //the EDT may still be copying the buffer to the screen
+                                synchronized (buffer.getBufferedImage()) {
+                                    img = getFrame(buffer, realRect, rect, _viewRect, swf, frame, frozen ? 0 : time, timelined, renderContext, selectedDepth, freeTransformDepth, zoomDouble, registrationPointRef, boundsRef, trans2, tempTrans2 == null ? null : new Matrix(tempTrans2), transform, frameDiffRenderer);
+                                }
+                            }
+                            renderBuffers[renderBufferPos] = img;
                         }
                         /*if(freeTransformDepth > -1) 
                         {
@@ -3349,6 +3479,7 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
                 }
 
                 sw.stop();
+                addRenderTime(sw.getElapsedMilliseconds());
                 if (sw.getElapsedMilliseconds() > 100) {
                     if (Configuration.showSlowRenderingWarning.get()) {
                         logger.log(Level.WARNING, "Slow rendering. {0}. frame, time={1}, {2}ms", new Object[]{frame, time, sw.getElapsedMilliseconds()});
@@ -3359,7 +3490,41 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
                     img = renderContext.borderImage;
                 }
             }
+        } catch (Throwable ex) {
+            // swf was closed during the rendering probably
+            ex.printStackTrace();
+            return null;
+        }
+
+        final SerializableImage renderedImg = img;
+        final Timeline renderedTimeline = timeline;
+        final boolean renderedShownAgain = shownAgain;
+        final Point renderedCursorPosition = cursorPosition;
+        return new Runnable() {
+            @Override
+            public void run() {
+                presentFrame(thisTimer, display, renderedImg, renderedTimeline, frame, time, mouseButton, swf, renderContext, renderedShownAgain, renderedCursorPosition);
+            }
+        };
+    }
 
+    /**
+     * Plays sounds, executes actions and displays the rendered frame.
+     *
+     * @param thisTimer Timer of the playback
+     * @param display Display the frame
+     * @param img Rendered image
+     * @param timeline Timeline
+     * @param frame Frame
+     * @param time Time
+     * @param mouseButton Mouse button
+     * @param swf SWF
+     * @param renderContext Render context of the rendered frame
+     * @param shownAgain Frame was already shown
+     * @param cursorPosition Cursor position
+     */
+    private void presentFrame(Timer thisTimer, boolean display, SerializableImage img, Timeline timeline, int frame, int time, int mouseButton, SWF swf, RenderContext renderContext, boolean shownAgain, Point cursorPosition) {
+        try {
             if (!shownAgain && autoPlayed) {
                 if (!muted) {
                     List<Integer> sounds = new ArrayList<>();
@@ -3449,6 +3614,7 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
             synchronized (ImagePanel.this) {
                 if (timer == thisTimer) {
                     iconPanel.setImg(img);
+                    addPresentedFrame();
                     lastMouseOverButton = iconPanel.mouseOverButton;
                     iconPanel.mouseOverButton = renderContext.mouseOverButton;
                     View.execInEventDispatchLater(new Runnable() {
@@ -3569,6 +3735,8 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
     public synchronized void clearAll() {
         stopInternal();
         clearImagePanel();
+        renderBuffers = new SerializableImage[RENDER_BUFFER_COUNT];
+        diffRenderer = null;
         timelined = null;
         swf = null;
         lda = null;
@@ -3610,26 +3778,66 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
 
     private int skippedFrames = 0;
 
-    private float fpsShouldBe = 0;
+    private volatile float fpsShouldBe = 0;
 
-    private float fpsIs = 0;
+    private volatile float fpsIs = 0;
 
     private Timer fpsTimer;
 
     private int startFrame = 0;
 
+    /**
+     * Tick of the last frame presented by the playback task.
+     */
+    private int presentedTick = 0;
+
+    private int presentedFrames = 0;
+
+    private volatile float fpsMeasured = 0;
+
+    private volatile int skippedFramesMeasured = 0;
+
+    /**
+     * Moving average of the frame rendering time in milliseconds.
+     */
+    private volatile double renderTimeMs = 0;
+
     private synchronized void setFpsIs(float val) {
         fpsIs = val;
     }
 
-    private synchronized float getFpsIs() {
+    private float getFpsIs() {
         return fpsIs;
     }
 
-    private synchronized float getFrameLoss() {
+    private float getFrameLoss() {
         return 100 - (getFpsIs() / fpsShouldBe * 100);
     }
 
+    private void addRenderTime(long ms) {
+        double avg = renderTimeMs;
+        renderTimeMs = avg == 0 ? ms : avg * 0.8 + ms * 0.2;
+    }
+
+    /**
+     * Gets how long before its tick the frame should start rendering.
+     *
+     * @return Time in milliseconds
+     */
+    private long getRenderLeadTime() {
+        return Math.min((long) Math.ceil(renderTimeMs), getMsPerFrame());
+    }
+
+    private synchronized void addPresentedFrame() {
+        presentedFrames++;
+    }
+
+    private synchronized int getAndResetPresentedFrames() {
+        int ret = presentedFrames;
+        presentedFrames = 0;
+        return ret;
+    }
+
     private synchronized void setSkippedFrames(int val) {
         skippedFrames = val;
     }
@@ -3682,8 +3890,15 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
                         if (frameCount == 0) {
                             return;
                         }
+                        //The frame is rendered ahead of its tick by the expected rendering time and presented on the tick
+                        long leadTime = first ? 0 : getRenderLeadTime();
                         //How many ticks (= times where frame should be displayed in framerate) are there from hitting play button
-                        int ticksFromStart = (int) Math.floor((frameTimeMsIs - startRun) / (double) getMsPerFrame());
+                        int ticksFromStart = (int) Math.floor((frameTimeMsIs + leadTime - startRun) / (double) getMsPerFrame());
+                        if (!first && ticksFromStart <= presentedTick) {
+                            ticksFromStart = presentedTick + 1;
+                        }
+                        presentedTick = ticksFromStart;
+                        long presentTimeMs = first ? 0 : startRun + (long) getMsPerFrame() * ticksFromStart;
 
                         //How many frames are there between last displayed frame and now. For perfect display(=no framedrop), value should be 1
                         int skipFrames;
@@ -3718,17 +3933,15 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
                         if (first) {
                             drawFrame(thisTimer, true);
                         } else {
-                            nextFrame(thisTimer, skipFrames, currentFrameTicks);
+                            nextFrame(thisTimer, skipFrames, currentFrameTicks, presentTimeMs);
                         }
 
                         long afterDrawFrameTimeMsIs = System.currentTimeMillis();
 
-                        int nextFrameOverMax = frameOverMaxShouldBeNow;
-                        while (delay < 0) { //while the frame time already passed
-                            nextFrameOverMax++;
-                            long nextFrameOverMaxTimeMsShouldBe = startRun + getMsPerFrame() * nextFrameOverMax;
-                            delay = nextFrameOverMaxTimeMsShouldBe - afterDrawFrameTimeMsIs;
-                        }
+                        //Start rendering of the next frame so it is ready on its tick. When we are late, start immediately,
+                        //the frames which cannot be displayed in time are skipped by the next run.
+                        long nextTickTimeMs = startRun + (long) getMsPerFrame() * (ticksFromStart + 1);
+                        delay = Math.max(0, nextTickTimeMs - getRenderLeadTime() - afterDrawFrameTimeMsIs);
                     }
                     synchronized (ImagePanel.this) {
                         if (timer != thisTimer) {
@@ -3762,18 +3975,27 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
                 || (!stillFrame && timeline.getRealFrameCount() <= 1 && timeline.isSingleFrame());
 
         if (fpsTimer == null) {
-            fpsTimer = new Timer();
+            fpsTimer = new Timer("Playback statistics", true);
             fpsTimer.schedule(new TimerTask() {
                 @Override
                 public void run() {
-                    float skipped = getAndResetSkippedFrames();
+                    int skipped = getAndResetSkippedFrames();
                     setFpsIs(fpsShouldBe - skipped);
+                    skippedFramesMeasured = skipped;
+                    fpsMeasured = getAndResetPresentedFrames();
+                    if (Configuration.showPlaybackStatistics.get() && isPlaying()) {
+                        iconPanel.repaint();
+                    }
                 }
             }, 1000, 1000);
         }
-        timer = new Timer();
+        //Frames are rendered and presented by the thread of this timer, not by the EDT
+        timer = new Timer("Playback render", true);
         fpsShouldBe = timeline.frameRate;
         fpsIs = fpsShouldBe;
+        fpsMeasured = fpsShouldBe;
+        skippedFramesMeasured = 0;
+        presentedTick = 0;
         scheduleTask(singleFrame, 0, true);
     }
 
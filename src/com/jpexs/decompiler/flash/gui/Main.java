@@ -44,6 +44,7 @@ import com.jpexs.decompiler.flash.configuration.CustomConfigurationKeys;
 import com.jpexs.decompiler.flash.configuration.SwfSpecificConfiguration;
 import com.jpexs.decompiler.flash.configuration.SwfSpecificCustomConfiguration;
 import com.jpexs.decompiler.flash.console.CommandLineArgumentParser;
+import com.jpexs.decompiler.flash.console.CommandLineDaemonClient;
 import com.jpexs.decompiler.flash.console.ContextMenuTools;
 import com.jpexs.decompiler.flash.exporters.modes.ExeExportMode;
 import com.jpexs.decompiler.flash.gfx.GfxConvertor;
@@ -2686,6 +2687,10 @@ public class Main {
      * @throws IOException On error
      */
     public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equalsIgnoreCase("-client")) {
+            System.exit(CommandLineDaemonClient.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+
         decodeLaunch5jArgs(args);
         setSessionLoaded(false);
 
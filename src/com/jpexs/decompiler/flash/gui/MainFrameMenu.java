@@ -21,6 +21,7 @@ import com.jpexs.decompiler.flash.ApplicationInfo;
 import com.jpexs.decompiler.flash.Bundle;
 import com.jpexs.decompiler.flash.OpenableSourceInfo;
 import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.cache.SwfBodyCache;
 import com.jpexs.decompiler.flash.configuration.Configuration;
 import com.jpexs.decompiler.flash.configuration.ConfigurationItemChangeListener;
 import com.jpexs.decompiler.flash.console.ContextMenuTools;
@@ -1372,6 +1373,7 @@ public abstract class MainFrameMenu implements MenuBuilder {
             }, PRIORITY_MEDIUM, null, true, null, false);
             addMenuItem("/debug/emptyAllCache", "Empty all caches", "continue16", e -> {
                 Cache.clearAll();
+                SwfBodyCache.clear();
             }, PRIORITY_MEDIUM, null, true, null, false);
             addMenuItem("/debug/memoryInformation", "Memory information", "continue16", e -> {
                 String architecture = System.getProperty("sun.arch.data.model");
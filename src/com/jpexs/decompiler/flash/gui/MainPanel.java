@@ -111,6 +111,7 @@ import com.jpexs.decompiler.flash.gui.tagtree.AbstractTagTreeModel;
 import com.jpexs.decompiler.flash.gui.tagtree.FilteredTreeModel;
 import com.jpexs.decompiler.flash.gui.tagtree.TagTree;
 import com.jpexs.decompiler.flash.gui.tagtree.TagTreeContextMenu;
+import com.jpexs.decompiler.flash.gui.tagtree.TagTreeFilterIndex;
 import com.jpexs.decompiler.flash.gui.tagtree.TagTreeModel;
 import com.jpexs.decompiler.flash.gui.tagtree.TreeRoot;
 import com.jpexs.decompiler.flash.gui.timeline.TimelineViewPanel;
@@ -272,6 +273,7 @@ import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -403,6 +405,8 @@ public final class MainPanel extends JPanel implements TreeSelectionListener, Se
 
     private ActionPanel actionPanel;
 
+    private final DecompilationPrefetcher decompilationPrefetcher = new DecompilationPrefetcher();
+
     private final PreviewPanel previewPanel;
 
     private final HeaderInfoPanel headerPanel;
@@ -441,6 +445,8 @@ public final class MainPanel extends JPanel implements TreeSelectionListener, Se
 
     private List<List<String>> unfilteredTreeExpandedNodes = new ArrayList<>();
     private List<List<String>> unfilteredTagListExpandedNodes = new ArrayList<>();
+    private final Map<AbstractTagTree, CancellableWorker<TagTreeFilterIndex.Result>> filterWorkers = new HashMap<>();
+    private final Map<AbstractTagTree, String> filterWorkerFilters = new HashMap<>();
     
     public ScrollPosStorage scrollPosStorage;
 
@@ -1429,6 +1435,10 @@ public final class MainPanel extends JPanel implements TreeSelectionListener, Se
         return actionPanel;
     }
 
+    public DecompilationPrefetcher getDecompilationPrefetcher() {
+        return decompilationPrefetcher;
+    }
+
     private void updateUi(final Openable openable) {
         View.checkAccess();
 
@@ -1469,7 +1479,7 @@ public final class MainPanel extends JPanel implements TreeSelectionListener, Se
                 public void run() {
                     while (!Thread.currentThread().isInterrupted()) {
                         DecompilerPool d = fSwf.getDecompilerPool();
-                        statusPanel.setStatus(fSwf.getFileTitle() + " " + d.getStat());
+                        statusPanel.setStatus(fSwf.getFileTitle() + " " + d.getStat() + " " + decompilationPrefetcher.getStat());
 
                         try {
                             Thread.sleep(100);
@@ -1705,13 +1715,15 @@ public final class MainPanel extends JPanel implements TreeSelectionListener, Se
     private void doFilter(AbstractTagTree tree, QuickTreeFindPanel findPanel, List<List<String>> unfilteredExpandedNodes) {
         TreeModel model = tree.getModel();
         String oldFilter = "";
-        if (model instanceof FilteredTreeModel) {
+        if (filterWorkers.containsKey(tree)) {
+            oldFilter = filterWorkerFilters.get(tree);
+        } else if (model instanceof FilteredTreeModel) {
             oldFilter = ((FilteredTreeModel) model).getFilter();
         }
         String newFilter = findPanel.getFilter();
 
-        if (isFilterEmpty(oldFilter)) {
-            unfilteredExpandedNodes.clear();;
+        if (isFilterEmpty(oldFilter) && !(model instanceof FilteredTreeModel)) {
+            unfilteredExpandedNodes.clear();
             unfilteredExpandedNodes.addAll(View.getExpandedNodes(tree));
         }
 
@@ -1719,17 +1731,69 @@ public final class MainPanel extends JPanel implements TreeSelectionListener, Se
             return;
         }
 
-        TreePath selectionPaths[] = tree.getSelectionPaths();
-        tree.setModel(new FilteredTreeModel(newFilter, tree.getFullModel(), tree));
-        if (!isFilterEmpty(newFilter)) {
-            for (int i = 0; i < tree.getRowCount(); i++) {
-                tree.expandRow(i);
+        CancellableWorker<?> oldWorker = filterWorkers.remove(tree);
+        filterWorkerFilters.remove(tree);
+        if (oldWorker != null) {
+            oldWorker.cancel(true);
+        }
+
+        if (isFilterEmpty(newFilter)) {
+            if (model instanceof FilteredTreeModel) {
+                TreePath selectionPaths[] = tree.getSelectionPaths();
+                tree.setModel(tree.getFullModel());
+                View.expandTreeNodes(tree, unfilteredExpandedNodes);
+                tree.setSelectionPaths(selectionPaths);
             }
-        } else {
-            tree.setModel(tree.getFullModel());
-            View.expandTreeNodes(tree, unfilteredExpandedNodes);
+            return;
         }
-        tree.setSelectionPaths(selectionPaths);
+
+        // the index is built from the tree model, the search runs in background
+        AbstractTagTreeModel fullModel = tree.getFullModel();
+        TagTreeFilterIndex index = TagTreeFilterIndex.getIndex(fullModel);
+        TagTreeFilterIndex.Result previous = model instanceof FilteredTreeModel ? ((FilteredTreeModel) model).getResult() : null;
+        int limit = Configuration.quickFilterMaxResults.get();
+        CancellableWorker<TagTreeFilterIndex.Result> worker = new CancellableWorker<TagTreeFilterIndex.Result>() {
+            @Override
+            protected TagTreeFilterIndex.Result doInBackground() throws Exception {
+                return index.search(newFilter, previous, limit);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+
+                View.execInEventDispatch(() -> {
+                    if (filterWorkers.get(tree) != this) {
+                        return;
+                    }
+
+                    filterWorkers.remove(tree);
+                    filterWorkerFilters.remove(tree);
+                    TagTreeFilterIndex.Result result;
+                    try {
+                        result = get();
+                        if (!result.getIndex().isValid()) {
+                            result = TagTreeFilterIndex.getIndex(fullModel).search(newFilter, null, limit);
+                        }
+                    } catch (InterruptedException | ExecutionException ex) {
+                        logger.log(Level.SEVERE, "Error during filtering", ex);
+                        return;
+                    }
+
+                    TreePath selectionPaths[] = tree.getSelectionPaths();
+                    tree.setModel(new FilteredTreeModel(result, limit, fullModel, tree));
+                    for (int i = 0; i < tree.getRowCount(); i++) {
+                        tree.expandRow(i);
+                    }
+                    tree.setSelectionPaths(selectionPaths);
+                });
+            }
+        };
+        filterWorkers.put(tree, worker);
+        filterWorkerFilters.put(tree, newFilter);
+        worker.execute();
     }
 
     public void doFilter() {
@@ -5121,6 +5185,7 @@ public final class MainPanel extends JPanel implements TreeSelectionListener, Se
                 abcPanel.setAbc(scriptLeaf.abc);
                 abcPanel.decompiledTextArea.setScript(scriptLeaf, true);
                 abcPanel.decompiledTextArea.setNoTrait();
+                decompilationPrefetcher.schedule(tree.getModel(), treePath);
             }
 
             if (Configuration.displayAs3TraitsListAndConstantsPanel.get()) {
@@ -5219,6 +5284,7 @@ public final class MainPanel extends JPanel implements TreeSelectionListener, Se
             showCard(CARDPREVIEWPANEL);
         } else if (treeItem instanceof ASMSource && (!(treeItem instanceof DrawableTag) || preferScript)) {
             getActionPanel().setSource((ASMSource) treeItem, !forceReload);
+            decompilationPrefetcher.schedule(tree.getModel(), treePath);
             showCard(CARDACTIONSCRIPTPANEL);
         } else if (treeItem instanceof ImageTag) {
             showPreview(treeItem, previewPanel, -1, null);
@@ -23,19 +23,21 @@ import com.jpexs.decompiler.flash.gui.player.Zoom;
 import com.jpexs.decompiler.flash.tags.Tag;
 import com.jpexs.decompiler.flash.tags.base.SoundTag;
 import com.jpexs.decompiler.flash.types.SOUNDINFO;
-import com.jpexs.decompiler.flash.types.sound.SoundFormat;
+import com.jpexs.decompiler.flash.types.sound.SoundPcmStream;
 import com.jpexs.helpers.ByteArrayRange;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.DataLine;
@@ -66,7 +68,9 @@ public class SoundTagPlayer implements MediaDisplay {
 
     private boolean rewindAfterStop = false;
 
-    private AudioInputStream audioStream;
+    private InputStream audioStream;
+
+    private SoundPcmStream pcmStream;
 
     private SourceDataLine sourceLine;
 
@@ -144,6 +148,12 @@ public class SoundTagPlayer implements MediaDisplay {
 
     private static final int FRAME_DIVISOR = 8000;
 
+    // shorter sounds are decoded at once and cached, as they are often
+    // played repeatedly, longer sounds are decoded while playing
+    private static final int MAX_CACHED_SOUND_SIZE = 1024 * 1024;
+
+    private static final int STREAM_BUFFER_SIZE = 256 * 1024;
+
     public SoundTagPlayer(final SOUNDINFO soundInfo, final SoundTag tag, int loops, boolean async) throws LineUnavailableException, IOException, UnsupportedAudioFileException {
         this.tag = tag;
         this.loopCount = loops;
@@ -187,45 +197,55 @@ public class SoundTagPlayer implements MediaDisplay {
     }
 
     private void openSound(SOUNDINFO soundInfo, SoundTag tag) throws IOException, LineUnavailableException, UnsupportedAudioFileException {
-        SWF swf = ((Tag) tag).getSwf();
-        wavData = swf.getFromCache(soundInfo, tag);
-        if (wavData == null) {
-            List<ByteArrayRange> soundData = tag.getRawSoundData();
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            tag.getSoundFormat().createWav(soundInfo, soundData, baos);
-            wavData = baos.toByteArray();
-            swf.putToCache(soundInfo, tag, wavData);
-        }
-
         long soundLength44 = 0;
-        boolean isUnCompressed = tag.getSoundFormatId() == SoundFormat.FORMAT_UNCOMPRESSED_LITTLE_ENDIAN ||
-                tag.getSoundFormatId() == SoundFormat.FORMAT_UNCOMPRESSED_NATIVE_ENDIAN;
-        int sampleLen = (isUnCompressed ? (tag.getSoundSize() ? 2 : 1) : 2) * (tag.getSoundFormat().stereo ? 2 : 1);
         switch (tag.getSoundRate()) {
             case 0: //5.5kHz
                 soundLength44 = 8 * tag.getTotalSoundSampleCount();
-                microsecPerByte = 1000000d / (5512.5d * sampleLen);
                 break;
             case 1: //11kHz
                 soundLength44 = 4 * tag.getTotalSoundSampleCount();
-                microsecPerByte = 1000000d / (11025d * sampleLen);
                 break;
             case 2: //22kHz
                 soundLength44 = 2 * tag.getTotalSoundSampleCount();
-                microsecPerByte = 1000000d / (22050d * sampleLen);
                 break;
             case 3: //44kHz
                 soundLength44 = tag.getTotalSoundSampleCount();
-                microsecPerByte = 1000000d / (44100d * sampleLen);
                 break;
         }
         lengthInMicroSec = soundLength44 * 1000000 / 44100;
 
+        SWF swf = ((Tag) tag).getSwf();
+        wavData = swf.getFromCache(soundInfo, tag);
+        if (wavData == null && soundLength44 * 4 <= MAX_CACHED_SOUND_SIZE) {
+            List<ByteArrayRange> soundData = tag.getRawSoundData();
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            tag.getSoundFormat().createWav(soundInfo, soundData, baos);
+            wavData = baos.toByteArray();
+            swf.putToCache(soundInfo, tag, wavData);
+        }
+
+        AudioFormat format;
+        if (wavData != null) {
+            AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(new ByteArrayInputStream(wavData));
+            format = audioInputStream.getFormat();
+            audioStream = audioInputStream;
+        } else {
+            SoundPcmStream stream = new SoundPcmStream(tag.getSoundFormat(), soundInfo, tag.getRawSoundData(), STREAM_BUFFER_SIZE);
+            synchronized (playLock) {
+                pcmStream = stream;
+                if (closed) {
+                    stream.close();
+                }
+            }
+            format = stream.getAudioFormat();
+            audioStream = stream;
+        }
+
         synchronized (playLock) {
-            audioStream = AudioSystem.getAudioInputStream(new ByteArrayInputStream(wavData));
-            DataLine.Info info = new DataLine.Info(SourceDataLine.class, audioStream.getFormat());
+            microsecPerByte = 1000000d / (format.getSampleRate() * format.getFrameSize());
+            DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
             sourceLine = (SourceDataLine) AudioSystem.getLine(info);
-            sourceLine.open(audioStream.getFormat());
+            sourceLine.open(format);
             sourceLine.start();
         }
     }
@@ -263,11 +283,25 @@ public class SoundTagPlayer implements MediaDisplay {
         timer.cancel();
         synchronized (playLock) {
             closed = true;
+            if (pcmStream != null) {
+                pcmStream.close();
+            }
         }
     }
 
     private void reloadAudioStream() throws IOException, UnsupportedAudioFileException {
+        seekAudioStream(0);
+    }
+
+    private void seekAudioStream(long posBytes) throws IOException, UnsupportedAudioFileException {
+        if (pcmStream != null) {
+            pcmStream.seek(posBytes);
+            return;
+        }
+
+        audioStream.close();
         audioStream = AudioSystem.getAudioInputStream(new ByteArrayInputStream(wavData));
+        audioStream.skip(posBytes);
     }
 
     private void playLoop() {
@@ -287,9 +321,7 @@ public class SoundTagPlayer implements MediaDisplay {
                     if (!getPausedFlag()) {
                         if (newPositionMicrosec != null) {
                             long newPosBytes = (long) (newPositionMicrosec / microsecPerByte);
-                            audioStream.close();
-                            reloadAudioStream();
-                            audioStream.skip(newPosBytes);
+                            seekAudioStream(newPosBytes);
                             newPositionMicrosec = null;
                             posBytes = newPosBytes;
                         }
@@ -322,8 +354,8 @@ public class SoundTagPlayer implements MediaDisplay {
                     sourceLine.drain();
                     sourceLine.stop();
                     sourceLine.close();
+                    audioStream.close();
                 }
-                audioStream.close();
             } catch (IOException ex) {
                 Logger.getLogger(SoundTagPlayer.class.getName()).log(Level.SEVERE, null, ex);
             } catch (UnsupportedAudioFileException ex) {
@@ -336,6 +336,8 @@ public class ASMSourceEditorPane extends DebuggableEditorPane implements CaretLi
                 }
             }
 
+            abc.getMultinameUsageIndex().invalidateMethod(methodIndex);
+            abc.getMethodDependencyCache().invalidateMethod(methodIndex);
             ((Tag) abc.parentTag).setModified(true);
             abc.script_info.get(scriptIndex).setModified(true);
             textWithHex = null;
@@ -874,6 +874,7 @@ public class DecompiledEditorPane extends DebuggableEditorPane implements CaretL
         HighlightedText decompiledText = SWF.getFromCache(scriptLeaf);
 
         boolean decompileNeeded = decompiledText == null;
+        abcPanel.getMainPanel().getDecompilationPrefetcher().scriptRequested(scriptLeaf, !decompileNeeded);
 
         if (decompileNeeded) {
             CancellableWorker worker = new CancellableWorker() {
@@ -509,6 +509,11 @@ public class ActionPanel extends JPanel implements SearchListener<ScriptSearchRe
 
         boolean disassemblingNeeded = actions == null;
         boolean decompileNeeded = decompiledText == null;
+        if (decompile) {
+            mainPanel.getDecompilationPrefetcher().scriptRequested(asm, !decompileNeeded);
+        } else {
+            mainPanel.getDecompilationPrefetcher().cancel();
+        }
 
         if (disassemblingNeeded || decompileNeeded) {
             CancellableWorker worker = new CancellableWorker() {
@@ -251,6 +251,9 @@ public class DumpTree extends JTree {
         this.mainPanel = mainPanel;
         setCellRenderer(new DumpTreeCellRenderer());
         setRootVisible(false);
+        // fixed row height lets the tree lay out only the visible rows of large expanded nodes
+        setRowHeight(Math.max(getFont().getSize() + 5, 16));
+        setLargeModel(true);
         if (View.isOceanic()) {
             setBackground(Color.white);
             setUI(new BasicTreeUI() {
@@ -675,22 +678,7 @@ public class DumpTree extends JTree {
             if (sd instanceof DumpInfoSwfNode) {
                 DumpInfoSwfNode si = (DumpInfoSwfNode) sd;
                 if (si.getSwf() == item.getOpenable()) {                    
-                    DumpInfo di = si;
-                    while (model.getChildCount(di) > 0) {
-                        boolean found = false;
-                        for (DumpInfo child : di.getChildInfos()) {
-                            if (child.startByte > address) {
-                                break;
-                            }
-                            if (child.getEndByte() >= address) {
-                                di = child;
-                                found = true;
-                            }
-                        }
-                        if (!found) {
-                            break;
-                        }
-                    }
+                    DumpInfo di = model.getDumpInfoAt(si, address);
                     di = di.parent; // tagId is selected, lets select the tag instead
                     TreePath selPath = model.getDumpInfoPath(di);
                     
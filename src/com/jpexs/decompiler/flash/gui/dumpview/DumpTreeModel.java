@@ -18,9 +18,11 @@ package com.jpexs.decompiler.flash.gui.dumpview;
 
 import com.jpexs.decompiler.flash.SWF;
 import com.jpexs.decompiler.flash.dumpview.DumpInfo;
+import com.jpexs.decompiler.flash.dumpview.DumpInfoSwfNode;
 import com.jpexs.decompiler.flash.treeitems.Openable;
 import com.jpexs.decompiler.flash.treeitems.OpenableList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import javax.swing.event.TreeModelEvent;
 import javax.swing.event.TreeModelListener;
@@ -66,36 +68,54 @@ public final class DumpTreeModel implements TreeModel {
         }
     }
 
-    private List<DumpInfo> searchDumpInfo(DumpInfo dumpInfo, DumpInfo parent, List<DumpInfo> path) {
-        List<DumpInfo> ret = null;
-        int cnt = getChildCount(parent);
-        for (int i = 0; i < cnt; i++) {
-            DumpInfo n = getChild(parent, i);
-            List<DumpInfo> newPath = new ArrayList<>();
-            newPath.addAll(path);
-            newPath.add(n);
-
-            if (dumpInfo == n) {
-                return newPath;
+    /**
+     * Gets path of the node. The path is built from the parent links, so the
+     * tags outside of the path are not resolved.
+     *
+     * @param dumpInfo Node
+     * @return Path or null when the node is not in this tree
+     */
+    public TreePath getDumpInfoPath(DumpInfo dumpInfo) {
+        List<Object> path = new ArrayList<>();
+        DumpInfo di = dumpInfo;
+        while (!(di instanceof DumpInfoSwfNode)) {
+            if (di == null || di.parent == null || di.parent.getChildIndex(di) == -1) {
+                return null;
             }
 
-            ret = searchDumpInfo(dumpInfo, n, newPath);
-            if (ret != null) {
-                return ret;
-            }
+            path.add(di);
+            di = di.parent;
         }
-        return ret;
-    }
 
-    public TreePath getDumpInfoPath(DumpInfo dumpInfo) {
-        List<DumpInfo> path = new ArrayList<>();
-        path.add(getRoot());
-        path = searchDumpInfo(dumpInfo, getRoot(), path);
-        if (path == null) {
+        if (root.getChildIndex(di) == -1) {
             return null;
         }
-        TreePath tp = new TreePath(path.toArray(new Object[path.size()]));
-        return tp;
+
+        path.add(di);
+        path.add(root);
+        Collections.reverse(path);
+        return new TreePath(path.toArray());
+    }
+
+    /**
+     * Gets the deepest node containing the address. Tags on the way are
+     * resolved, the children are looked up by their interval index.
+     *
+     * @param dumpInfo Node to start from
+     * @param address Address
+     * @return Node
+     */
+    public DumpInfo getDumpInfoAt(DumpInfo dumpInfo, long address) {
+        while (getChildCount(dumpInfo) > 0) {
+            DumpInfo child = dumpInfo.getChildAt(address);
+            if (child == null) {
+                break;
+            }
+
+            dumpInfo = child;
+        }
+
+        return dumpInfo;
     }
 
     @Override
@@ -128,7 +148,11 @@ public final class DumpTreeModel implements TreeModel {
 
     @Override
     public int getIndexOfChild(Object o, Object o1) {
-        return ((DumpInfo) o).getChildInfos().indexOf(o1);
+        if (!(o1 instanceof DumpInfo)) {
+            return -1;
+        }
+
+        return ((DumpInfo) o).getChildIndex((DumpInfo) o1);
     }
 
     @Override
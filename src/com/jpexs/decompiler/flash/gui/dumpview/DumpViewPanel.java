@@ -22,6 +22,7 @@ import com.jpexs.decompiler.flash.gui.FasterScrollPane;
 import com.jpexs.decompiler.flash.gui.MyTextField;
 import com.jpexs.decompiler.flash.gui.View;
 import com.jpexs.decompiler.flash.gui.hexview.HexView;
+import com.jpexs.decompiler.flash.gui.hexview.HexViewData;
 import com.jpexs.decompiler.flash.gui.hexview.HexViewListener;
 import com.jpexs.helpers.Helper;
 import com.jpexs.helpers.utf8.Utf8Helper;
@@ -33,13 +34,13 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
-import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreePath;
 
 /**
@@ -92,37 +93,23 @@ public class DumpViewPanel extends JPanel {
                 }
 
                 if (address != -1) {
-                    TreeModel model = dumpTree.getModel();
-                    DumpInfo di = DumpInfoSwfNode.getSwfNode(selectedDumpInfo);
-                    while (model.getChildCount(di) > 0) {
-                        boolean found = false;
-                        for (DumpInfo child : di.getChildInfos()) {
-                            if (child.startByte > address) {
-                                break;
-                            }
-                            if (child.getEndByte() >= address) {
-                                di = child;
-                                found = true;
-                            }
-                        }
-                        if (!found) {
-                            break;
-                        }
-                    }
+                    DumpTreeModel model = dumpTree.getModel();
+                    DumpInfo di = model.getDumpInfoAt(DumpInfoSwfNode.getSwfNode(selectedDumpInfo), address);
                     List<Object> path = new ArrayList<>();
                     while (di != null) {
-                        path.add(0, di);
+                        path.add(di);
                         di = di.parent;
                     }
-                    path.add(0, model.getRoot());
+                    path.add(model.getRoot());
+                    Collections.reverse(path);
                     TreePath tp = new TreePath(path.toArray());
                     skipNextScroll = true;
                     dumpTree.setSelectionPath(tp);
                     dumpTree.scrollPathToVisible(tp);
                 }
 
-                byte[] data = dumpViewHexTable.getData();
-                byteMouseMoved(lastAddressUnderCursor, lastAddressUnderCursor == -1 ? 0 : data[lastAddressUnderCursor]);
+                HexViewData data = dumpViewHexTable.getData();
+                byteMouseMoved(lastAddressUnderCursor, lastAddressUnderCursor == -1 ? 0 : data.get(lastAddressUnderCursor));
             }
 
             @Override
@@ -131,8 +118,8 @@ public class DumpViewPanel extends JPanel {
                 if (address == -1) {
                     address = dumpViewHexTable.getFocusedByteIdx();
                     if (address != -1) {
-                        byte[] data = dumpViewHexTable.getData();
-                        b = data[address];
+                        HexViewData data = dumpViewHexTable.getData();
+                        b = data.get(address);
                     }
                 }
 
@@ -218,14 +205,14 @@ public class DumpViewPanel extends JPanel {
             return;
         }
 
-        byte[] data = dumpViewHexTable.getData();
+        HexViewData data = dumpViewHexTable.getData();
 
         byte[] textBytes = Utf8Helper.getBytes(text);
         byte[] hex = getAsHex(text);
         byte[] foundArray = textBytes;
 
-        int pos = textBytes == null ? -1 : findHex(data, textBytes, 0, data.length);
-        int hexPos = hex == null ? -1 : findHex(data, hex, 0, data.length);
+        int pos = textBytes == null ? -1 : findHex(data, textBytes, 0, data.length());
+        int hexPos = hex == null ? -1 : findHex(data, hex, 0, data.length());
 
         if (pos == -1 || (hexPos != -1 && hexPos < pos)) {
             pos = hexPos;
@@ -240,7 +227,7 @@ public class DumpViewPanel extends JPanel {
         }
     }
 
-    private int findHex(byte[] data, byte[] searchData, int from, int to) {
+    private int findHex(HexViewData data, byte[] searchData, int from, int to) {
         for (int i = from; i < to; i++) {
             if (isMatch(data, searchData, i)) {
                 return i;
@@ -250,13 +237,13 @@ public class DumpViewPanel extends JPanel {
         return -1;
     }
 
-    private boolean isMatch(byte[] data, byte[] searchData, int pos) {
-        if (pos + searchData.length > data.length) {
+    private boolean isMatch(HexViewData data, byte[] searchData, int pos) {
+        if (pos + searchData.length > data.length()) {
             return false;
         }
 
         for (int i = 0; i < searchData.length; i++) {
-            if (data[pos + i] != searchData[i]) {
+            if (data.get(pos + i) != searchData[i]) {
                 return false;
             }
         }
@@ -0,0 +1,62 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jpexs.decompiler.flash.gui.hexview;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hex view data backed by a read only byte buffer. Array passed to the
+ * constructor is wrapped, not copied.
+ *
+ * @author JPEXS
+ */
+public class ByteBufferHexViewData implements HexViewData {
+
+    private final ByteBuffer buffer;
+
+    private final byte[] array;
+
+    public ByteBufferHexViewData(byte[] data) {
+        this.buffer = ByteBuffer.wrap(data).asReadOnlyBuffer();
+        this.array = data;
+    }
+
+    public ByteBufferHexViewData(ByteBuffer buffer) {
+        this.buffer = buffer.asReadOnlyBuffer();
+        this.array = null;
+    }
+
+    /**
+     * Checks whether the data wrap the array.
+     *
+     * @param data Array
+     * @return True when the data are backed by the array
+     */
+    public boolean isBackedBy(byte[] data) {
+        return array != null && array == data;
+    }
+
+    @Override
+    public int length() {
+        return buffer.limit();
+    }
+
+    @Override
+    public byte get(int pos) {
+        return buffer.get(pos);
+    }
+}
@@ -37,6 +37,7 @@ import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
 import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
+import javax.swing.border.Border;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.table.DefaultTableCellRenderer;
@@ -74,6 +75,12 @@ public class HexView extends JTable {
 
     private HexViewListener listener;
 
+    private final Border mouseOverBorder = BorderFactory.createLineBorder(Color.black, 2);
+
+    private final Border focusedBorder = BorderFactory.createLineBorder(Color.blue, 2);
+
+    private final Border emptyBorder = BorderFactory.createEmptyBorder(2, 2, 2, 2);
+
     private class HighlightCellRenderer extends DefaultTableCellRenderer {
 
         public int byteIndex;
@@ -110,11 +117,11 @@ public class HexView extends JTable {
 
             if (idx != -1 && (idx == mouseOverIdx
                     || (idx >= selectionStart && idx <= selectionEnd))) {
-                l.setBorder(BorderFactory.createLineBorder(Color.black, 2));
+                l.setBorder(mouseOverBorder);
             } else if (idx != -1 && idx == focusedIdx) {
-                l.setBorder(BorderFactory.createLineBorder(Color.blue, 2));
+                l.setBorder(focusedBorder);
             } else {
-                l.setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
+                l.setBorder(emptyBorder);
             }
 
             return l;
@@ -136,9 +143,12 @@ public class HexView extends JTable {
             int row = table.getSelectedRow();
 
             int idx = getIdxByColAndRow(row, col);
+            int oldFocusedIdx = focusedIdx;
             focusedIdx = idx;
+            repaintByte(oldFocusedIdx);
+            repaintByte(idx);
             if (listener != null) {
-                listener.byteValueChanged(idx, idx == -1 ? 0 : getModel().getData()[idx]);
+                listener.byteValueChanged(idx, idx == -1 ? 0 : getModel().getData().get(idx));
             }
         }
     }
@@ -177,12 +187,9 @@ public class HexView extends JTable {
 
         @Override
         public void mouseExited(MouseEvent e) {
-            HexView table = (HexView) e.getSource();
-            Point point = e.getPoint();
-            int col = table.columnAtPoint(point);
-            int row = table.rowAtPoint(point);
+            int oldMouseOverIdx = mouseOverIdx;
             mouseOverIdx = -1;
-            getModel().fireTableCellUpdated(row, col);
+            repaintByte(oldMouseOverIdx);
             if (listener != null) {
                 listener.byteMouseMoved(-1, (byte) 0);
             }
@@ -198,11 +205,17 @@ public class HexView extends JTable {
             int col = table.columnAtPoint(point);
             int row = table.rowAtPoint(point);
             int idx = getIdxByColAndRow(row, col);
+            if (idx == mouseOverIdx) {
+                return;
+            }
+
+            int oldMouseOverIdx = mouseOverIdx;
             mouseOverIdx = idx;
-            getModel().fireTableCellUpdated(row, col);
+            repaintByte(oldMouseOverIdx);
+            repaintByte(idx);
 
             if (listener != null) {
-                listener.byteMouseMoved(idx, idx == -1 ? 0 : getModel().getData()[idx]);
+                listener.byteMouseMoved(idx, idx == -1 ? 0 : getModel().getData().get(idx));
             }
         }
     }
@@ -270,6 +283,15 @@ public class HexView extends JTable {
     }
 
     public void setData(byte[] data, long[] highlightStarts, long[] highlightEnds) {
+        HexViewData oldData = getData();
+        if (oldData instanceof ByteBufferHexViewData && ((ByteBufferHexViewData) oldData).isBackedBy(data)) {
+            setData(oldData, highlightStarts, highlightEnds);
+        } else {
+            setData(new ByteBufferHexViewData(data), highlightStarts, highlightEnds);
+        }
+    }
+
+    public void setData(HexViewData data, long[] highlightStarts, long[] highlightEnds) {
 
         if ((highlightStarts == null) ^ (highlightEnds == null)) {
             throw new Error("highlightStarts and highlightEnds should be both null or not null.");
@@ -284,35 +306,67 @@ public class HexView extends JTable {
         this.highlightEnds = highlightEnds;
     }
 
-    public byte[] getData() {
+    public HexViewData getData() {
         return getModel().getData();
     }
 
     public void selectByte(long byteNum) {
-        byte[] data = getData();
-        if (data.length < byteNum) {
-            byteNum = data.length - 1;
+        HexViewData data = getData();
+        if (data.length() < byteNum) {
+            byteNum = data.length() - 1;
         }
         scrollToByte(byteNum);
         if (listener != null) {
-            listener.byteValueChanged((int) byteNum, data[(int) byteNum]);
+            listener.byteValueChanged((int) byteNum, data.get((int) byteNum));
         }
     }
 
     public void selectBytes(long byteNum, int length) {
+        repaintBytes(selectionStart, selectionEnd);
         selectionStart = (int) byteNum;
         selectionEnd = (int) (byteNum + length - 1);
         scrollToByte(new long[]{byteNum}, new long[]{byteNum + length - 1});
         if (listener != null) {
-            listener.byteValueChanged((int) byteNum, getData()[(int) byteNum]);
+            listener.byteValueChanged((int) byteNum, getData().get((int) byteNum));
         }
-        getModel().fireTableDataChanged();
+        repaintBytes(selectionStart, selectionEnd);
     }
 
     public void clearSelectedBytes() {
+        repaintBytes(selectionStart, selectionEnd);
         selectionStart = -1;
         selectionEnd = -1;
-        getModel().fireTableDataChanged();
+    }
+
+    private void repaintByte(int idx) {
+        if (idx == -1) {
+            return;
+        }
+
+        int row = idx / bytesInRow;
+        int col = idx % bytesInRow;
+        repaint(getCellRect(row, col + 1, true));
+        repaint(getCellRect(row, col + bytesInRow + 2, true));
+    }
+
+    /**
+     * Repaints rows of the byte range, only the visible part is painted.
+     *
+     * @param start First byte
+     * @param end Last byte
+     */
+    private void repaintBytes(int start, int end) {
+        if (start == -1 || end < start) {
+            return;
+        }
+
+        Rectangle visible = getVisibleRect();
+        Rectangle first = getCellRect(start / bytesInRow, 0, true);
+        Rectangle last = getCellRect(end / bytesInRow, getColumnCount() - 1, true);
+        Rectangle rect = first.union(last).intersection(visible);
+        if (!rect.isEmpty()) {
+            repaint(rect);
+        }
     }
 
     public void scrollToByte(long byteNum) {
@@ -332,8 +386,8 @@ public class HexView extends JTable {
         if (col > 0 && col != bytesInRow + 1) {
             idx = row * bytesInRow + ((col > bytesInRow + 1) ? (col - bytesInRow - 2) : (col - 1));
         }
-        byte[] data = getModel().getData();
-        if (idx >= data.length) {
+        HexViewData data = getModel().getData();
+        if (data == null || idx >= data.length()) {
             idx = -1;
         }
         return idx;
@@ -347,12 +401,21 @@ public class HexView extends JTable {
         return idx;
     }
 
+    /**
+     * Scrolls to the innermost of the nested ranges, shows its end and then
+     * its start.
+     *
+     * @param byteNumStarts Range starts
+     * @param byteNumEnds Range ends
+     */
     public void scrollToByte(long[] byteNumStarts, long[] byteNumEnds) {
-        for (int i = 0; i < byteNumStarts.length; i++) {
-            scrollToByte(byteNumStarts[i]);
-            scrollToByte(byteNumEnds[i]);
-            scrollToByte(byteNumStarts[i]);
+        if (byteNumStarts.length == 0) {
+            return;
         }
+
+        int i = byteNumStarts.length - 1;
+        scrollToByte(byteNumEnds[i]);
+        scrollToByte(byteNumStarts[i]);
     }
 
     public void addListener(HexViewListener listener) {
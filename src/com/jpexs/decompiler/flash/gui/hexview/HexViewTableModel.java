@@ -24,7 +24,15 @@ import javax.swing.table.AbstractTableModel;
  */
 public class HexViewTableModel extends AbstractTableModel {
 
-    private byte[] data;
+    private static final String[] HEX_STRINGS = new String[256];
+
+    static {
+        for (int i = 0; i < HEX_STRINGS.length; i++) {
+            HEX_STRINGS[i] = String.format("%02X", i);
+        }
+    }
+
+    private HexViewData data;
 
     private final int bytesInRow;
 
@@ -37,7 +45,7 @@ public class HexViewTableModel extends AbstractTableModel {
         if (data == null) {
             return 0;
         }
-        int byteCount = data.length;
+        int byteCount = data.length();
         int rowCount = byteCount / bytesInRow;
         if (byteCount % bytesInRow != 0) {
             rowCount++;
@@ -66,31 +74,26 @@ public class HexViewTableModel extends AbstractTableModel {
             return String.format("%08X", (long) row * bytesInRow);
         } else if (column <= bytesInRow) {
             int pos = row * bytesInRow + column - 1;
-            if (pos < data.length) {
-                return String.format("%02X", data[pos]);
+            if (pos < data.length()) {
+                return HEX_STRINGS[data.get(pos) & 0xff];
             }
             return null;
         } else if (column == 1 + bytesInRow) {
             return null;
         } else {
             int pos = row * bytesInRow + column - bytesInRow - 1 - 1;
-            if (pos < data.length) {
-                return (char) (data[pos] & 0xff);
+            if (pos < data.length()) {
+                return (char) (data.get(pos) & 0xff);
             }
             return null;
         }
     }
 
-    public byte[] getData() {
+    public HexViewData getData() {
         return data;
     }
 
-    public void setData(byte[] data) {
+    public void setData(HexViewData data) {
         this.data = data;
     }
-
-    @Override
-    public void fireTableCellUpdated(int row, int columnd) {
-        super.fireTableCellUpdated(bytesInRow, bytesInRow);
-    }
 }
@@ -29,6 +29,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import javax.swing.event.TreeModelEvent;
 import javax.swing.event.TreeModelListener;
 import javax.swing.tree.TreeModel;
@@ -40,7 +41,7 @@ import javax.swing.tree.TreePath;
  */
 public abstract class AbstractTagTreeModel implements TreeModel {
     
-    protected final List<TreeModelListener> listeners = new ArrayList<>();   
+    protected final List<TreeModelListener> listeners = new CopyOnWriteArrayList<>();
     
     public abstract void updateSwfs(CollectionChangedEvent e);
             
@@ -0,0 +1,125 @@
+/*
+ *  Copyright (C) 2010-2023 JPEXS
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jpexs.decompiler.flash.gui.tagtree;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of children in child lists of tree nodes. Replaces List.indexOf,
+ * which makes walking over large folders quadratic.
+ *
+ * Lists are identified by identity. The index of a list is rebuilt only when
+ * the size of the list changes or when a stored position does not match the
+ * list anymore. Children are looked up by identity first, then by equals, as
+ * some children (frames, tag scripts) are recreated as equal objects.
+ *
+ * @author JPEXS
+ */
+public class ChildIndexMap {
+
+    /**
+     * Smaller lists are searched directly
+     */
+    private static final int MIN_INDEXED_SIZE = 32;
+
+    private final Map<List<?>, Index> indices = new IdentityHashMap<>();
+
+    private static class Index {
+
+        private final int size;
+
+        private final Map<Object, Integer> byIdentity;
+
+        private Map<Object, Integer> byEquals;
+
+        public Index(List<?> list) {
+            size = list.size();
+            byIdentity = new IdentityHashMap<>(size);
+            for (int i = 0; i < size; i++) {
+                Object item = list.get(i);
+                if (!byIdentity.containsKey(item)) {
+                    byIdentity.put(item, i);
+                }
+            }
+        }
+
+        public Map<Object, Integer> getByEquals(List<?> list) {
+            if (byEquals == null) {
+                byEquals = new HashMap<>(size);
+                for (int i = 0; i < size; i++) {
+                    Object item = list.get(i);
+                    if (!byEquals.containsKey(item)) {
+                        byEquals.put(item, i);
+                    }
+                }
+            }
+
+            return byEquals;
+        }
+    }
+
+    /**
+     * Gets index of the child in the list. Same result as list.indexOf(child)
+     * for lists without different, but equal items, which child lists are.
+     *
+     * @param list List
+     * @param child Child
+     * @return Index or -1 when not found
+     */
+    public int indexOf(List<?> list, Object child) {
+        if (list.size() < MIN_INDEXED_SIZE) {
+            return list.indexOf(child);
+        }
+
+        Index index = indices.get(list);
+        if (index == null || index.size != list.size()) {
+            index = new Index(list);
+            indices.put(list, index);
+        }
+
+        Integer i = index.byIdentity.get(child);
+        if (i == null) {
+            i = index.getByEquals(list).get(child);
+        }
+
+        if (i != null) {
+            Object item = list.get(i);
+            if (item == child || (item != null && item.equals(child))) {
+                return i;
+            }
+
+            // list was modified without changing its size
+            indices.remove(list);
+            return list.indexOf(child);
+        }
+
+        // child not in the list or its hashCode does not match equals
+        int result = list.indexOf(child);
+        if (result > -1) {
+            index.byIdentity.put(child, result);
+        }
+
+        return result;
+    }
+
+    public void clear() {
+        indices.clear();
+    }
+}
@@ -16,16 +16,11 @@
  */
 package com.jpexs.decompiler.flash.gui.tagtree;
 
-import com.jpexs.decompiler.flash.SWF;
-import com.jpexs.decompiler.flash.gui.abc.ClassesListTreeModel;
-import com.jpexs.decompiler.flash.treeitems.FolderItem;
-import com.jpexs.decompiler.flash.treeitems.Openable;
-import com.jpexs.decompiler.flash.treeitems.OpenableList;
 import com.jpexs.decompiler.flash.treeitems.TreeItem;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
 import javax.swing.JTree;
 import javax.swing.event.TreeModelEvent;
 import javax.swing.event.TreeModelListener;
@@ -33,6 +28,10 @@ import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreePath;
 
 /**
+ * Tree model showing the items matching the quick filter.
+ *
+ * Matching items are searched in TagTreeFilterIndex, children of each item are
+ * collected on first access, so only the expanded part of the tree is built.
  *
  * @author JPEXS
  */
@@ -40,8 +39,13 @@ public class FilteredTreeModel implements TreeModel {
 
     private String filter;
 
-    private TreeItem root;
-    private Map<TreeItem, List<TreeItem>> subItems = new WeakHashMap<>();
+    private final int limit;
+
+    private TagTreeFilterIndex.Result result;
+
+    private boolean[] visible;
+
+    private final Map<Object, List<TreeItem>> subItems = new IdentityHashMap<>();
 
     private final List<TreeModelListener> listeners = new ArrayList<>();
 
@@ -51,131 +55,110 @@ public class FilteredTreeModel implements TreeModel {
         return filter;
     }
 
-    public FilteredTreeModel(String filter, AbstractTagTreeModel fullModel, JTree tree) {
-        this.filter = filter;
+    public TagTreeFilterIndex.Result getResult() {
+        return result;
+    }
+
+    /**
+     * Constructs model from search result.
+     *
+     * @param result Search result
+     * @param limit Maximum number of matches used when the full model changes
+     * @param fullModel Full model
+     * @param tree Tree
+     */
+    public FilteredTreeModel(TagTreeFilterIndex.Result result, int limit, AbstractTagTreeModel fullModel, JTree tree) {
+        this.filter = result.getFilter();
+        this.limit = limit;
         this.tree = tree;
 
         fullModel.addTreeModelListener(new TreeModelListener() {
             @Override
             public void treeNodesChanged(TreeModelEvent e) {
-                rebuildTree(fullModel);
+                rebuildTree(fullModel, this);
             }
 
             @Override
             public void treeNodesInserted(TreeModelEvent e) {
-                rebuildTree(fullModel);
+                rebuildTree(fullModel, this);
             }
 
             @Override
             public void treeNodesRemoved(TreeModelEvent e) {
-                rebuildTree(fullModel);
+                rebuildTree(fullModel, this);
             }
 
             @Override
             public void treeStructureChanged(TreeModelEvent e) {
-                rebuildTree(fullModel);
+                rebuildTree(fullModel, this);
             }
         });
-        rebuildTree(fullModel);
+        setResult(result);
     }
 
-    private void rebuildTree(AbstractTagTreeModel fullModel) {
+    private void rebuildTree(AbstractTagTreeModel fullModel, TreeModelListener listener) {
+        if (tree.getModel() != this) {
+            fullModel.removeTreeModelListener(listener);
+            return;
+        }
+
+        TagTreeFilterIndex.invalidate(fullModel);
+        try {
+            setResult(TagTreeFilterIndex.getIndex(fullModel).search(filter, null, limit));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        fireTreeStructureChanged(new TreeModelEvent(this, new Object[]{getRoot()}));
+    }
+
+    private void setResult(TagTreeFilterIndex.Result result) {
+        this.result = result;
         subItems.clear();
-        this.root = fullModel.getRoot();
-        List<String> selectionPathsList = new ArrayList<>();
-        TreePath selectionPaths[] = tree.getSelectionPaths();
+        TagTreeFilterIndex index = result.getIndex();
+        visible = index.getVisibleNodes(result);
+        TreePath[] selectionPaths = tree.getSelectionPaths();
         if (selectionPaths != null) {
-            List<String> currentPathItems = new ArrayList<>();
             for (TreePath tp : selectionPaths) {
-                for (int i = 0; i < tp.getPathCount(); i++) {
-                    currentPathItems.add(tp.getPathComponent(i).toString());
+                if (tp.getLastPathComponent() instanceof TreeItem) {
+                    index.setVisible(visible, (TreeItem) tp.getLastPathComponent());
                 }
             }
-            selectionPathsList.add(String.join(".", currentPathItems));
         }
-        buildTree(fullModel, this.root, "root", "", selectionPathsList);
-        fireTreeStructureChanged(new TreeModelEvent(this, new Object[]{root}));
     }
 
-    private boolean isItemSearchable(TreeItem ti) {
-        if (ti instanceof Openable) {
-            return false;
-        }
-        if (ti instanceof OpenableList) {
-            return false;
-        }
-        if (ti instanceof FolderItem) {
-            return false;
-        }
-        if (ti instanceof ClassesListTreeModel) {
-            return false;
-        }
-        return true;
-    }
-
-    private void buildTree(AbstractTagTreeModel fullModel, TreeItem item, String path, String searchPath, List<String> selectionPaths) {
-        List<? extends TreeItem> items = fullModel.getAllChildren(item);
-        List<TreeItem> newSubItems = new ArrayList<>();
-        if (filter.trim().isEmpty()) {
-            newSubItems.addAll(items);
-        } else {
-            for (TreeItem ti : items) {
-                String subPath = path + "." + ti.toString();
-                String searchSubPath = isItemSearchable(ti) ? searchPath + "." + ti.toString() : searchPath;
-                boolean matches = searchSubPath.toLowerCase().contains(filter.toLowerCase());
-                if (fullModel.isLeaf(ti)) {
-                    if (matches || selectionPaths.contains(subPath)) {
-                        newSubItems.add(ti);
-                    }
-                } else {
-                    newSubItems.add(ti);
-                }
-            }
-        }
-
-        for (int i = 0; i < newSubItems.size(); i++) {
-            TreeItem ti = newSubItems.get(i);
-            String subPath = path + "." + ti.toString();
-            String searchSubPath = isItemSearchable(ti) ? searchPath + "." + ti.toString() : searchPath;
-            buildTree(fullModel, ti, subPath, searchSubPath, selectionPaths);
-            if (!selectionPaths.contains(subPath) && !fullModel.isLeaf(ti) && (!this.subItems.containsKey(ti) || this.subItems.get(ti).isEmpty())) {
-                newSubItems.remove(i);
-                i--;
-            }
+    private List<TreeItem> getSubItems(Object parent) {
+        List<TreeItem> items = subItems.get(parent);
+        if (items == null) {
+            items = result.getIndex().getVisibleChildren(visible, parent);
+            subItems.put(parent, items);
         }
 
-        if (!newSubItems.isEmpty()) {
-            this.subItems.put(item, newSubItems);
-        }
+        return items;
     }
 
     @Override
     public Object getRoot() {
-        return root;
+        return result.getIndex().getRoot();
     }
 
     @Override
     public Object getChild(Object parent, int index) {
-        if (subItems.containsKey(parent)) {
-            return subItems.get(parent).get(index);
+        List<TreeItem> items = getSubItems(parent);
+        if (index < 0 || index >= items.size()) {
+            return null;
         }
-        return null;
+        return items.get(index);
     }
 
     @Override
     public int getChildCount(Object parent) {
-        if (subItems.containsKey(parent)) {
-            return subItems.get(parent).size();
-        }
-        return 0;
+        return getSubItems(parent).size();
     }
 
     @Override
     public boolean isLeaf(Object node) {
-        if (subItems.containsKey(node)) {
-            return subItems.get(node).size() == 0;
-        }
-        return true;
+        return getSubItems(node).isEmpty();
     }
 
     @Override
@@ -185,10 +168,7 @@ public class FilteredTreeModel implements TreeModel {
 
     @Override
     public int getIndexOfChild(Object parent, Object child) {
-        if (subItems.containsKey(parent)) {
-            return subItems.get(parent).indexOf(child);
-        }
-        return -1;
+        return getSubItems(parent).indexOf(child);
     }
 
     @Override
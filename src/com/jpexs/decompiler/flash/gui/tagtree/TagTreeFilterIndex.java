@@ -0,0 +1,392 @@
+/*
+ *  Copyright (C) 2022-2023 JPEXS
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jpexs.decompiler.flash.gui.tagtree;
+
+import com.jpexs.decompiler.flash.gui.abc.ClassesListTreeModel;
+import com.jpexs.decompiler.flash.treeitems.FolderItem;
+import com.jpexs.decompiler.flash.treeitems.Openable;
+import com.jpexs.decompiler.flash.treeitems.OpenableList;
+import com.jpexs.decompiler.flash.treeitems.TreeItem;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+
+/**
+ * Index of the tree items for the quick filter.
+ *
+ * Leaf items are searched by their lowercase path of searchable item names.
+ * Paths are computed once per tree model, the leaves containing each
+ * trigram are stored in sorted lists, so only the leaves containing the
+ * rarest trigram of the filter are compared. When the filter grows, only the
+ * previous matches are compared. The index is immutable, so it can be
+ * searched in background, it is dropped when the tree model changes.
+ *
+ * @author JPEXS
+ */
+public class TagTreeFilterIndex {
+
+    private static final Map<AbstractTagTreeModel, TagTreeFilterIndex> indices = new WeakHashMap<>();
+
+    private final TreeItem[] nodes;
+
+    private final Map<TreeItem, Integer> nodeIndices;
+
+    private final int[] parents;
+
+    // nodes are in breadth first order, children of node n are nodes
+    // childStart[n] .. childStart[n + 1] - 1
+    private final int[] childStart;
+
+    private final int[] leaves;
+
+    private final String[] leafPaths;
+
+    private final Map<Long, int[]> trigramLeaves;
+
+    private volatile boolean valid = true;
+
+    /**
+     * Result of the search.
+     */
+    public static class Result {
+
+        private final TagTreeFilterIndex index;
+
+        private final String filter;
+
+        private final String lowerFilter;
+
+        private final int[] matches;
+
+        private final boolean truncated;
+
+        private Result(TagTreeFilterIndex index, String filter, String lowerFilter, int[] matches, boolean truncated) {
+            this.index = index;
+            this.filter = filter;
+            this.lowerFilter = lowerFilter;
+            this.matches = matches;
+            this.truncated = truncated;
+        }
+
+        public TagTreeFilterIndex getIndex() {
+            return index;
+        }
+
+        public String getFilter() {
+            return filter;
+        }
+
+        public int getMatchCount() {
+            return matches.length;
+        }
+
+        /**
+         * Checks whether the search stopped at the result limit.
+         *
+         * @return True when there are more matches
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    private static class IntList {
+
+        private int[] items = new int[4];
+
+        private int size = 0;
+
+        private void add(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+
+            items[size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(items, size);
+        }
+    }
+
+    /**
+     * Gets index of the model, builds it when the model changed. Must be
+     * called from the event dispatch thread.
+     *
+     * @param model Tree model
+     * @return Index
+     */
+    public static TagTreeFilterIndex getIndex(AbstractTagTreeModel model) {
+        TagTreeFilterIndex index = indices.get(model);
+        if (index == null || !index.valid) {
+            index = new TagTreeFilterIndex(model);
+            indices.put(model, index);
+            final TagTreeFilterIndex fIndex = index;
+            model.addTreeModelListener(new TreeModelListener() {
+                @Override
+                public void treeNodesChanged(TreeModelEvent e) {
+                    invalidate();
+                }
+
+                @Override
+                public void treeNodesInserted(TreeModelEvent e) {
+                    invalidate();
+                }
+
+                @Override
+                public void treeNodesRemoved(TreeModelEvent e) {
+                    invalidate();
+                }
+
+                @Override
+                public void treeStructureChanged(TreeModelEvent e) {
+                    invalidate();
+                }
+
+                private void invalidate() {
+                    fIndex.valid = false;
+                    model.removeTreeModelListener(this);
+                }
+            });
+        }
+
+        return index;
+    }
+
+    /**
+     * Drops index of the model.
+     *
+     * @param model Tree model
+     */
+    public static void invalidate(AbstractTagTreeModel model) {
+        TagTreeFilterIndex index = indices.remove(model);
+        if (index != null) {
+            index.valid = false;
+        }
+    }
+
+    private TagTreeFilterIndex(AbstractTagTreeModel model) {
+        List<TreeItem> nodeList = new ArrayList<>();
+        IntList parentList = new IntList();
+        List<String> searchPaths = new ArrayList<>();
+        List<List<? extends TreeItem>> children = new ArrayList<>();
+        IntList leafList = new IntList();
+        List<String> leafPathList = new ArrayList<>();
+
+        TreeItem root = model.getRoot();
+        nodeList.add(root);
+        parentList.add(-1);
+        searchPaths.add("");
+        for (int n = 0; n < nodeList.size(); n++) {
+            TreeItem item = nodeList.get(n);
+            List<? extends TreeItem> itemChildren = model.getAllChildren(item);
+            children.add(itemChildren);
+            for (TreeItem child : itemChildren) {
+                String searchPath = isItemSearchable(child) ? searchPaths.get(n) + "." + child.toString().toLowerCase() : searchPaths.get(n);
+                if (model.isLeaf(child)) {
+                    leafList.add(nodeList.size());
+                    leafPathList.add(searchPath);
+                    searchPath = null;
+                }
+
+                nodeList.add(child);
+                parentList.add(n);
+                searchPaths.add(searchPath);
+            }
+        }
+
+        nodes = nodeList.toArray(new TreeItem[nodeList.size()]);
+        parents = parentList.toArray();
+        leaves = leafList.toArray();
+        leafPaths = leafPathList.toArray(new String[leafPathList.size()]);
+
+        childStart = new int[nodes.length + 1];
+        int next = 1;
+        for (int n = 0; n < nodes.length; n++) {
+            childStart[n] = next;
+            next += children.get(n).size();
+        }
+
+        childStart[nodes.length] = next;
+
+        nodeIndices = new IdentityHashMap<>(nodes.length);
+        for (int n = 0; n < nodes.length; n++) {
+            nodeIndices.put(nodes[n], n);
+        }
+
+        Map<Long, IntList> trigrams = new HashMap<>();
+        for (int l = 0; l < leafPaths.length; l++) {
+            String path = leafPaths[l];
+            for (int i = 0; i + 3 <= path.length(); i++) {
+                long trigram = getTrigram(path, i);
+                IntList list = trigrams.get(trigram);
+                if (list == null) {
+                    list = new IntList();
+                    trigrams.put(trigram, list);
+                }
+
+                if (list.size == 0 || list.items[list.size - 1] != l) {
+                    list.add(l);
+                }
+            }
+        }
+
+        trigramLeaves = new HashMap<>(trigrams.size() * 2);
+        for (Map.Entry<Long, IntList> entry : trigrams.entrySet()) {
+            trigramLeaves.put(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    private static boolean isItemSearchable(TreeItem ti) {
+        if (ti instanceof Openable) {
+            return false;
+        }
+        if (ti instanceof OpenableList) {
+            return false;
+        }
+        if (ti instanceof FolderItem) {
+            return false;
+        }
+        if (ti instanceof ClassesListTreeModel) {
+            return false;
+        }
+        return true;
+    }
+
+    private static long getTrigram(String s, int pos) {
+        return ((long) s.charAt(pos) << 32) | ((long) s.charAt(pos + 1) << 16) | s.charAt(pos + 2);
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Searches leaves whose path contains the filter. Can be called from any
+     * thread.
+     *
+     * @param filter Filter
+     * @param previous Previous result, used when the filter contains its
+     * filter, can be null
+     * @param limit Maximum number of matches, 0 = unlimited
+     * @return Result
+     * @throws InterruptedException On interrupt
+     */
+    public Result search(String filter, Result previous, int limit) throws InterruptedException {
+        String lowerFilter = filter.trim().isEmpty() ? "" : filter.toLowerCase();
+        int[] candidates = null;
+        if (previous != null && previous.index == this && !previous.truncated && lowerFilter.contains(previous.lowerFilter)) {
+            candidates = previous.matches;
+        } else if (lowerFilter.length() >= 3) {
+            for (int i = 0; i + 3 <= lowerFilter.length(); i++) {
+                int[] list = trigramLeaves.get(getTrigram(lowerFilter, i));
+                if (list == null) {
+                    return new Result(this, filter, lowerFilter, new int[0], false);
+                }
+
+                if (candidates == null || list.length < candidates.length) {
+                    candidates = list;
+                }
+            }
+        }
+
+        int count = candidates == null ? leafPaths.length : candidates.length;
+        IntList matches = new IntList();
+        boolean truncated = false;
+        for (int i = 0; i < count; i++) {
+            if ((i & 0x3ff) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+
+            int leaf = candidates == null ? i : candidates[i];
+            if (leafPaths[leaf].contains(lowerFilter)) {
+                if (limit > 0 && matches.size == limit) {
+                    truncated = true;
+                    break;
+                }
+
+                matches.add(leaf);
+            }
+        }
+
+        return new Result(this, filter, lowerFilter, matches.toArray(), truncated);
+    }
+
+    /**
+     * Marks matched leaves and their ancestors as visible.
+     *
+     * @param result Result
+     * @return Visibility of each node
+     */
+    boolean[] getVisibleNodes(Result result) {
+        boolean[] visible = new boolean[nodes.length];
+        visible[0] = true;
+        for (int leaf : result.matches) {
+            for (int n = leaves[leaf]; n != -1 && !visible[n]; n = parents[n]) {
+                visible[n] = true;
+            }
+        }
+
+        return visible;
+    }
+
+    /**
+     * Marks the item and its ancestors as visible.
+     *
+     * @param visible Visibility of each node
+     * @param item Item
+     */
+    void setVisible(boolean[] visible, TreeItem item) {
+        Integer node = nodeIndices.get(item);
+        for (int n = node == null ? -1 : node; n != -1 && !visible[n]; n = parents[n]) {
+            visible[n] = true;
+        }
+    }
+
+    TreeItem getRoot() {
+        return nodes[0];
+    }
+
+    /**
+     * Gets visible children of the item.
+     *
+     * @param visible Visibility of each node
+     * @param item Item
+     * @return Children
+     */
+    List<TreeItem> getVisibleChildren(boolean[] visible, Object item) {
+        Integer node = nodeIndices.get(item);
+        List<TreeItem> result = new ArrayList<>();
+        if (node == null) {
+            return result;
+        }
+
+        for (int child = childStart[node]; child < childStart[node + 1]; child++) {
+            if (visible[child]) {
+                result.add(nodes[child]);
+            }
+        }
+
+        return result;
+    }
+}
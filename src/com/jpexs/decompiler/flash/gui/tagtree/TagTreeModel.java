@@ -21,6 +21,7 @@ import com.jpexs.decompiler.flash.abc.ABC;
 import com.jpexs.decompiler.flash.configuration.Configuration;
 import com.jpexs.decompiler.flash.gui.AppStrings;
 import com.jpexs.decompiler.flash.gui.TreeNodeType;
+import com.jpexs.decompiler.flash.gui.View;
 import com.jpexs.decompiler.flash.gui.abc.ClassesListTreeModel;
 import com.jpexs.decompiler.flash.gui.helpers.CollectionChangedAction;
 import com.jpexs.decompiler.flash.gui.helpers.CollectionChangedEvent;
@@ -49,11 +50,17 @@ import com.jpexs.decompiler.flash.treeitems.HeaderItem;
 import com.jpexs.decompiler.flash.treeitems.Openable;
 import com.jpexs.decompiler.flash.treeitems.OpenableList;
 import com.jpexs.decompiler.flash.treeitems.TreeItem;
+import com.jpexs.helpers.CancellableWorker;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
 import javax.swing.event.TreeModelEvent;
 import javax.swing.event.TreeModelListener;
 import javax.swing.tree.TreePath;
@@ -90,6 +97,13 @@ public class TagTreeModel extends AbstractTagTreeModel {
 
     public static final String FOLDER_SCRIPTS = "scripts";
 
+    /**
+     * Folders of SWFs with more top level tags are built in background
+     */
+    private static final int BACKGROUND_BUILD_TAG_COUNT = 10000;
+
+    private static final Logger logger = Logger.getLogger(TagTreeModel.class.getName());
+
     private final List<TreeModelListener> listeners = new ArrayList<>();
 
     private final TagTreeRoot root = new TagTreeRoot();
@@ -104,6 +118,10 @@ public class TagTreeModel extends AbstractTagTreeModel {
 
     private final Map<ABC, ClassesListTreeModel> abcClassesTree = new WeakHashMap<>();
 
+    private final Map<SWF, SwfInfoWorker> pendingSwfInfos = new HashMap<>();
+
+    private final ChildIndexMap childIndices = new ChildIndexMap();
+
     public TagTreeModel(List<OpenableList> swfs, boolean addAllFolders) {
         this.swfs = swfs;
         this.addAllFolders = addAllFolders;
@@ -129,8 +147,22 @@ public class TagTreeModel extends AbstractTagTreeModel {
             for (SWF swf : toRemove) {
                 swfInfos.remove(swf);
             }
+
+            List<SWF> pendingToRemove = new ArrayList<>();
+            for (SWF swf : pendingSwfInfos.keySet()) {
+                SWF swf2 = swf.getRootSwf();
+                if (swf2 != null && !swfs.contains(swf2.openableList)) {
+                    pendingToRemove.add(swf);
+                }
+            }
+
+            for (SWF swf : pendingToRemove) {
+                pendingSwfInfos.remove(swf).cancel(true);
+            }
         }
 
+        childIndices.clear();
+
         switch (e.getAction()) {
             case ADD: {
                 TreePath rootPath = new TreePath(new Object[]{root});
@@ -152,107 +184,172 @@ public class TagTreeModel extends AbstractTagTreeModel {
     public void updateOpenable(Openable openable) {
         swfInfos.clear();
         abcClassesTree.clear();
+        childIndices.clear();
+        for (SwfInfoWorker worker : pendingSwfInfos.values()) {
+            worker.cancel(true);
+        }
+
+        pendingSwfInfos.clear();
         TreePath changedPath = getTreePath(openable == null ? root : openable);
         fireTreeStructureChanged(new TreeModelEvent(this, changedPath));
         calculateCollisions();
     }
 
-    private void walkTimelinedTagList(Timelined timelined,
-            Map<Integer, List<TreeItem>> mappedTags,
-            List<TreeItem> shapes,
-            List<TreeItem> morphShapes,
-            List<TreeItem> sprites,
-            List<TreeItem> buttons,
-            List<TreeItem> images,
-            List<TreeItem> fonts,
-            List<TreeItem> texts,
-            List<TreeItem> movies,
-            List<TreeItem> sounds,
-            List<TreeItem> binaryData,
-            List<TreeItem> others
-    ) {
+    /**
+     * Tags of SWF and its sprites with their tree node types, taken on the
+     * event dispatch thread. The folders are sorted from it in background
+     * without touching the SWF, which can be edited meanwhile.
+     */
+    private static class TagSnapshot {
+
+        private final List<Tag> tags = new ArrayList<>();
+
+        private final List<TreeNodeType> types = new ArrayList<>();
+
+        /**
+         * Character id the tag belongs to, -1 = none
+         */
+        private final List<Integer> characterIds = new ArrayList<>();
+    }
+
+    /**
+     * Tags sorted to folders.
+     */
+    private static class SortedTags {
+
+        private final List<TreeItem> shapes = new ArrayList<>();
+
+        private final List<TreeItem> morphShapes = new ArrayList<>();
+
+        private final List<TreeItem> sprites = new ArrayList<>();
+
+        private final List<TreeItem> buttons = new ArrayList<>();
+
+        private final List<TreeItem> images = new ArrayList<>();
+
+        private final List<TreeItem> fonts = new ArrayList<>();
+
+        private final List<TreeItem> texts = new ArrayList<>();
+
+        private final List<TreeItem> movies = new ArrayList<>();
+
+        private final List<TreeItem> sounds = new ArrayList<>();
+
+        private final List<TreeItem> binaryData = new ArrayList<>();
+
+        private final List<TreeItem> others = new ArrayList<>();
+
+        private final Map<Integer, List<TreeItem>> mappedTags = new HashMap<>();
+    }
+
+    private static void walkTimelinedTagList(Timelined timelined, SWF swf, TagSnapshot snapshot) {
         for (Tag t : timelined.getTags()) {
             TreeNodeType ttype = TagTree.getTreeNodeType(t);
+            int characterId = -1;
             switch (ttype) {
+                case SOUND:
+                    if (t instanceof SoundStreamHeadTypeTag) {
+                        List<SoundStreamBlockTag> blocks = ((SoundStreamHeadTypeTag) t).getBlocks();
+                        if (blocks == null || blocks.isEmpty()) {
+                            continue;
+                        }
+                    }
+                    break;
+                case AS:
+                case AS_FRAME:
+                    continue;
+                default:
+                    if ((t instanceof CharacterIdTag) && !(t instanceof CharacterTag)) {
+                        CharacterIdTag chit = (CharacterIdTag) t;
+                        if (swf.getCharacter(chit.getCharacterId()) != null) {
+                            characterId = chit.getCharacterId();
+                        }
+                    }
+                    break;
+            }
+
+            snapshot.tags.add(t);
+            snapshot.types.add(ttype);
+            snapshot.characterIds.add(characterId);
+            if (ttype == TreeNodeType.SPRITE) {
+                walkTimelinedTagList((DefineSpriteTag) t, swf, snapshot);
+            }
+        }
+    }
+
+    private static SortedTags sortTags(TagSnapshot snapshot) {
+        SortedTags sorted = new SortedTags();
+        for (int i = 0; i < snapshot.tags.size(); i++) {
+            Tag t = snapshot.tags.get(i);
+            switch (snapshot.types.get(i)) {
                 case SHAPE:
-                    shapes.add(t);
+                    sorted.shapes.add(t);
                     break;
                 case MORPH_SHAPE:
-                    morphShapes.add(t);
+                    sorted.morphShapes.add(t);
                     break;
                 case SPRITE:
-                    sprites.add(t);
-                    walkTimelinedTagList((DefineSpriteTag) t, mappedTags, shapes, morphShapes, sprites, buttons, images, fonts, texts, movies, sounds, binaryData, others);
+                    sorted.sprites.add(t);
                     break;
                 case BUTTON:
-                    buttons.add(t);
+                    sorted.buttons.add(t);
                     break;
                 case IMAGE:
-                    images.add(t);
+                    sorted.images.add(t);
                     break;
                 case FONT:
-                    fonts.add(t);
+                    sorted.fonts.add(t);
                     break;
                 case TEXT:
-                    texts.add(t);
+                    sorted.texts.add(t);
                     break;
                 case MOVIE:
-                    movies.add(t);
+                    sorted.movies.add(t);
                     break;
                 case SOUND:
-                    sounds.add(t);
+                    sorted.sounds.add(t);
                     break;
                 case BINARY_DATA:
-                    binaryData.add(t);
-                    break;
-                case AS:
-                case AS_FRAME:
+                    sorted.binaryData.add(t);
                     break;
                 default:
                     if (t.getId() != ShowFrameTag.ID && !ShowFrameTag.isNestedTagType(t.getId())) {
-                        boolean parentFound = false;
-                        if ((t instanceof CharacterIdTag) && !(t instanceof CharacterTag)) {
-                            CharacterIdTag chit = (CharacterIdTag) t;
-                            SWF swf;
-                            if (timelined instanceof SWF) {
-                                swf = (SWF) timelined;
-                            } else {
-                                swf = ((DefineSpriteTag) timelined).getSwf();
+                        int characterId = snapshot.characterIds.get(i);
+                        if (characterId != -1) {
+                            if (!sorted.mappedTags.containsKey(characterId)) {
+                                sorted.mappedTags.put(characterId, new ArrayList<>());
                             }
-                            if (swf.getCharacter(chit.getCharacterId()) != null) {
-                                parentFound = true;
-                                if (!mappedTags.containsKey(chit.getCharacterId())) {
-                                    mappedTags.put(chit.getCharacterId(), new ArrayList<>());
-                                }
-                                mappedTags.get(chit.getCharacterId()).add(t);
-                            }
-                        }
-                        if (!parentFound) {
-                            others.add(t);
+                            sorted.mappedTags.get(characterId).add(t);
+                        } else {
+                            sorted.others.add(t);
                         }
                     }
                     break;
             }
         }
+
+        return sorted;
+    }
+
+    private static TagSnapshot createTagSnapshot(SWF swf) {
+        TagSnapshot snapshot = new TagSnapshot();
+        walkTimelinedTagList(swf, swf, snapshot);
+        return snapshot;
+    }
+
+    private TagTreeSwfInfo createSwfInfo(SWF swf, HeaderItem header) {
+        return createSwfInfo(swf, header, sortTags(createTagSnapshot(swf)));
     }
 
-    private void createTagList(SWF swf) {
+    /**
+     * Creates folders of SWF from the sorted tags. Timeline and script nodes
+     * are built from the SWF itself, this must run on the event dispatch
+     * thread when the tree is displayed.
+     */
+    private TagTreeSwfInfo createSwfInfo(SWF swf, HeaderItem header, SortedTags sorted) {
         List<TreeItem> nodeList = new ArrayList<>();
         List<TreeItem> frames = new ArrayList<>();
-        List<TreeItem> shapes = new ArrayList<>();
-        List<TreeItem> morphShapes = new ArrayList<>();
-        List<TreeItem> sprites = new ArrayList<>();
-        List<TreeItem> buttons = new ArrayList<>();
-        List<TreeItem> images = new ArrayList<>();
-        List<TreeItem> fonts = new ArrayList<>();
-        List<TreeItem> texts = new ArrayList<>();
-        List<TreeItem> movies = new ArrayList<>();
-        List<TreeItem> sounds = new ArrayList<>();
-        List<TreeItem> binaryData = new ArrayList<>();
-        List<TreeItem> others = new ArrayList<>();
         List<FolderItem> emptyFolders = new ArrayList<>();
-        Map<Integer, List<TreeItem>> mappedTags = new HashMap<>();
-        walkTimelinedTagList(swf, mappedTags, shapes, morphShapes, sprites, buttons, images, fonts, texts, movies, sounds, binaryData, others);
 
         Timeline timeline = swf.getTimeline();
         int frameCount = timeline.getFrameCount();
@@ -260,30 +357,20 @@ public class TagTreeModel extends AbstractTagTreeModel {
             frames.add(timeline.getFrame(i));
         }
 
-        for (int i = sounds.size() - 1; i >= 0; i--) {
-            TreeItem sound = sounds.get(i);
-            if (sound instanceof SoundStreamHeadTypeTag) {
-                List<SoundStreamBlockTag> blocks = ((SoundStreamHeadTypeTag) sound).getBlocks();
-                if (blocks == null || blocks.isEmpty()) {
-                    sounds.remove(i);
-                }
-            }
-        }
-
-        nodeList.add(new HeaderItem(swf, translate("node.header")));
-
-        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.shapes"), FOLDER_SHAPES, swf, shapes);
-        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.morphshapes"), FOLDER_MORPHSHAPES, swf, morphShapes);
-        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.sprites"), FOLDER_SPRITES, swf, sprites);
-        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.texts"), FOLDER_TEXTS, swf, texts);
-        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.images"), FOLDER_IMAGES, swf, images);
-        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.movies"), FOLDER_MOVIES, swf, movies);
-        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.sounds"), FOLDER_SOUNDS, swf, sounds);
-        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.buttons"), FOLDER_BUTTONS, swf, buttons);
-        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.fonts"), FOLDER_FONTS, swf, fonts);
-        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.binaryData"), FOLDER_BINARY_DATA, swf, binaryData);
+        nodeList.add(header);
+
+        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.shapes"), FOLDER_SHAPES, swf, sorted.shapes);
+        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.morphshapes"), FOLDER_MORPHSHAPES, swf, sorted.morphShapes);
+        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.sprites"), FOLDER_SPRITES, swf, sorted.sprites);
+        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.texts"), FOLDER_TEXTS, swf, sorted.texts);
+        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.images"), FOLDER_IMAGES, swf, sorted.images);
+        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.movies"), FOLDER_MOVIES, swf, sorted.movies);
+        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.sounds"), FOLDER_SOUNDS, swf, sorted.sounds);
+        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.buttons"), FOLDER_BUTTONS, swf, sorted.buttons);
+        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.fonts"), FOLDER_FONTS, swf, sorted.fonts);
+        addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.binaryData"), FOLDER_BINARY_DATA, swf, sorted.binaryData);
         addFolderItem(nodeList, emptyFolders, addAllFolders, translate("node.frames"), FOLDER_FRAMES, swf, frames);
-        addFolderItem(nodeList, emptyFolders, true /*always add*/, translate("node.others"), FOLDER_OTHERS, swf, others);
+        addFolderItem(nodeList, emptyFolders, true /*always add*/, translate("node.others"), FOLDER_OTHERS, swf, sorted.others);
 
         Map<Tag, TagScript> currentTagScriptCache = new HashMap<>();
         if (swf.isAS3()) {
@@ -302,9 +389,10 @@ public class TagTreeModel extends AbstractTagTreeModel {
         TagTreeSwfInfo swfInfo = new TagTreeSwfInfo();
         swfInfo.folders = nodeList;
         swfInfo.emptyFolders = emptyFolders;
-        swfInfo.mappedTags = mappedTags;
+        swfInfo.mappedTags = sorted.mappedTags;
         swfInfo.tagScriptCache = currentTagScriptCache;
-        swfInfos.put(swf, swfInfo);
+        swfInfo.filteredMappedTags = new HashMap<>();
+        return swfInfo;
     }
 
     private void addFolderItem(List<TreeItem> nodeList, List<FolderItem> emptyList, boolean addAllFolders, String title, String folderName, SWF swf, List<TreeItem> items) {
@@ -445,30 +533,115 @@ public class TagTreeModel extends AbstractTagTreeModel {
 
     private TagTreeSwfInfo getSwfInfo(SWF swf) {
         TagTreeSwfInfo swfInfo = swfInfos.get(swf);
-        if (swfInfo == null) {
-            createTagList(swf);
+        if (swfInfo != null) {
+            return swfInfo;
+        }
+
+        SwfInfoWorker worker = pendingSwfInfos.get(swf);
+        if (worker != null) {
+            // needed right now, wait for the background build
+            View.execInEventDispatch(() -> {
+                publishSwfInfo(worker);
+            });
             swfInfo = swfInfos.get(swf);
+            if (swfInfo != null) {
+                return swfInfo;
+            }
         }
 
+        swfInfo = createSwfInfo(swf, new HeaderItem(swf, translate("node.header")));
+        swfInfos.put(swf, swfInfo);
         return swfInfo;
     }
 
+    /**
+     * Adds folders built in background to the tree. Must be called on the
+     * event dispatch thread.
+     *
+     * @param worker Worker
+     */
+    private void publishSwfInfo(SwfInfoWorker worker) {
+        if (pendingSwfInfos.get(worker.swf) != worker) {
+            // cancelled or already published
+            return;
+        }
+
+        TagTreeSwfInfo swfInfo;
+        try {
+            swfInfo = createSwfInfo(worker.swf, worker.header, worker.get());
+        } catch (InterruptedException | ExecutionException | CancellationException ex) {
+            logger.log(Level.SEVERE, "Background build of tag tree failed", ex);
+            swfInfo = createSwfInfo(worker.swf, worker.header);
+        }
+
+        pendingSwfInfos.remove(worker.swf);
+        swfInfos.put(worker.swf, swfInfo);
+
+        // header was already shown, the other folders are new
+        int count = swfInfo.folders.size() - 1;
+        if (count > 0) {
+            TreePath swfPath = getTreePath(worker.swf);
+            if (swfPath != null) {
+                int[] indices = new int[count];
+                Object[] children = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    indices[i] = i + 1;
+                    children[i] = swfInfo.folders.get(i + 1);
+                }
+
+                fireTreeNodesInserted(new TreeModelEvent(this, swfPath, indices, children));
+            }
+        }
+
+        calculateCollisions();
+    }
+
     public List<FolderItem> getEmptyFolders(SWF swf) {
         TagTreeSwfInfo swfInfo = getSwfInfo(swf);
         return swfInfo.emptyFolders;
     }
 
     private List<TreeItem> getSwfFolders(SWF swf) {
-        TagTreeSwfInfo swfInfo = getSwfInfo(swf);
-        return swfInfo.folders;
+        TagTreeSwfInfo swfInfo = swfInfos.get(swf);
+        if (swfInfo != null) {
+            return swfInfo.folders;
+        }
+
+        SwfInfoWorker worker = pendingSwfInfos.get(swf);
+        if (worker == null) {
+            if (swf.getTags().size() < BACKGROUND_BUILD_TAG_COUNT || !SwingUtilities.isEventDispatchThread()) {
+                return getSwfInfo(swf).folders;
+            }
+
+            worker = new SwfInfoWorker(swf, new HeaderItem(swf, translate("node.header")));
+            pendingSwfInfos.put(swf, worker);
+            worker.execute();
+        }
+
+        // only the header until the folders are built
+        return worker.placeholder;
     }
 
+    /**
+     * Gets tags mapped to the character. The returned list is shared and must
+     * not be modified.
+     *
+     * @param swf SWF
+     * @param tag Character tag
+     * @return List of mapped tags
+     */
     private List<TreeItem> getMappedCharacters(SWF swf, CharacterTag tag) {
         if (swf == null) {
             return new ArrayList<>();
         }
         TagTreeSwfInfo swfInfo = getSwfInfo(swf);
-        List<TreeItem> mapped = swfInfo.mappedTags.get(tag.getCharacterId());
+        int characterId = tag.getCharacterId();
+        List<TreeItem> mapped = swfInfo.filteredMappedTags.get(characterId);
+        if (mapped != null) {
+            return mapped;
+        }
+
+        mapped = swfInfo.mappedTags.get(characterId);
         if (mapped == null) {
             mapped = new ArrayList<>();
         }
@@ -480,6 +653,7 @@ public class TagTreeModel extends AbstractTagTreeModel {
             }
         }
 
+        swfInfo.filteredMappedTags.put(characterId, mapped);
         return mapped;
     }
 
@@ -716,7 +890,7 @@ public class TagTreeModel extends AbstractTagTreeModel {
         if (parentNode instanceof CharacterTag) {
             List<TreeItem> mapped = getMappedCharacters(((CharacterTag) parentNode).getSwf(), (CharacterTag) parentNode);
 
-            int mindex = mapped.indexOf(child);
+            int mindex = childIndices.indexOf(mapped, child);
             if (mindex > -1) {
                 return mindex;
             }
@@ -726,15 +900,15 @@ public class TagTreeModel extends AbstractTagTreeModel {
             OpenableList openableList = child instanceof OpenableList
                     ? (OpenableList) child
                     : ((Openable) child).getOpenableList();
-            return indexOfAdd(baseIndex, swfs.indexOf(openableList));
+            return indexOfAdd(baseIndex, childIndices.indexOf(swfs, openableList));
         } else if (parentNode instanceof OpenableList) {
-            return indexOfAdd(baseIndex, ((OpenableList) parentNode).items.indexOf(childNode));
+            return indexOfAdd(baseIndex, childIndices.indexOf(((OpenableList) parentNode).items, childNode));
         } else if (parentNode instanceof SWF) {
-            return indexOfAdd(baseIndex, getSwfFolders((SWF) parentNode).indexOf(childNode));
+            return indexOfAdd(baseIndex, childIndices.indexOf(getSwfFolders((SWF) parentNode), childNode));
         } else if (parentNode instanceof FolderItem) {
-            return indexOfAdd(baseIndex, ((FolderItem) parentNode).subItems.indexOf(childNode));
+            return indexOfAdd(baseIndex, childIndices.indexOf(((FolderItem) parentNode).subItems, childNode));
         } else if (parentNode instanceof Frame) {
-            return indexOfAdd(baseIndex, ((Frame) parentNode).innerTags.indexOf(childNode));
+            return indexOfAdd(baseIndex, childIndices.indexOf(((Frame) parentNode).innerTags, childNode));
         } else if (parentNode instanceof DefineSpriteTag) {
             return indexOfAdd(baseIndex, ((Frame) childNode).frame);
         } else if (parentNode instanceof DefineBinaryDataTag) {
@@ -747,21 +921,21 @@ public class TagTreeModel extends AbstractTagTreeModel {
                 childNode = ((TagScript) childNode).getTag();
             }
             if (childNode instanceof ASMSourceContainer) {
-                return indexOfAdd(baseIndex, parentFrame.actionContainers.indexOf(childNode));
+                return indexOfAdd(baseIndex, childIndices.indexOf(parentFrame.actionContainers, childNode));
             } else {
-                return indexOfAdd(baseIndex, parentFrame.actionContainers.size() + parentFrame.actions.indexOf(childNode));
+                return indexOfAdd(baseIndex, parentFrame.actionContainers.size() + childIndices.indexOf(parentFrame.actions, childNode));
             }
         } else if (parentNode instanceof TagScript) {
-            return indexOfAdd(baseIndex, ((TagScript) parentNode).getFrames().indexOf(childNode));
+            return indexOfAdd(baseIndex, childIndices.indexOf(((TagScript) parentNode).getFrames(), childNode));
         } else if (parentNode instanceof ClassesListTreeModel) {
             ClassesListTreeModel clt = (ClassesListTreeModel) parentNode;
             return indexOfAdd(baseIndex, clt.getIndexOfChild(clt.getRoot(), childNode));
         } else if (parentNode instanceof AS3ClassTreeItem) {
             return indexOfAdd(baseIndex, ((AS3Package) parentNode).getIndexOfChild((AS3ClassTreeItem) childNode));
         } else if (parentNode instanceof ButtonTag) {
-            return indexOfAdd(baseIndex, ((ButtonTag) parentNode).getRecords().indexOf(childNode));
+            return indexOfAdd(baseIndex, childIndices.indexOf(((ButtonTag) parentNode).getRecords(), childNode));
         } else if (parentNode instanceof CharacterTag) {
-            return indexOfAdd(baseIndex, getMappedCharacters(((CharacterTag) parentNode).getSwf(), (CharacterTag) parentNode).indexOf(childNode));
+            return indexOfAdd(baseIndex, childIndices.indexOf(getMappedCharacters(((CharacterTag) parentNode).getSwf(), (CharacterTag) parentNode), childNode));
         } else if (parentNode instanceof ABC) {
             ClassesListTreeModel classesTreeModel = getClassesListTreeModel((ABC) parentNode);
             return indexOfAdd(baseIndex, classesTreeModel.getIndexOfChild(classesTreeModel.getRoot(), childNode));
@@ -779,4 +953,39 @@ public class TagTreeModel extends AbstractTagTreeModel {
         abcClassesTree.put(abc, model);
         return model;
     }
+
+    /**
+     * Sorts tags of SWF to folders in background. Tags are taken on the event
+     * dispatch thread when the worker is created, the folders are created on
+     * the event dispatch thread when the worker is done.
+     */
+    private class SwfInfoWorker extends CancellableWorker<SortedTags> {
+
+        private final SWF swf;
+
+        private final HeaderItem header;
+
+        private final TagSnapshot snapshot;
+
+        private final List<TreeItem> placeholder = new ArrayList<>();
+
+        public SwfInfoWorker(SWF swf, HeaderItem header) {
+            this.swf = swf;
+            this.header = header;
+            this.snapshot = createTagSnapshot(swf);
+            placeholder.add(header);
+        }
+
+        @Override
+        protected SortedTags doInBackground() throws Exception {
+            return sortTags(snapshot);
+        }
+
+        @Override
+        protected void done() {
+            View.execInEventDispatchLater(() -> {
+                publishSwfInfo(SwfInfoWorker.this);
+            });
+        }
+    }
 }
@@ -35,5 +35,7 @@ public class TagTreeSwfInfo {
 
     public Map<Integer, List<TreeItem>> mappedTags;
 
+    public Map<Integer, List<TreeItem>> filteredMappedTags;
+
     public Map<Tag, TagScript> tagScriptCache;
 }
@@ -17,9 +17,8 @@
 package com.jpexs.decompiler.flash.gui.timeline;
 
 import com.jpexs.decompiler.flash.configuration.Configuration;
-import com.jpexs.decompiler.flash.tags.base.CharacterTag;
-import com.jpexs.decompiler.flash.tags.base.MorphShapeTag;
-import com.jpexs.decompiler.flash.timeline.DepthState;
+import com.jpexs.decompiler.flash.timeline.LayerSpanModel;
+import com.jpexs.decompiler.flash.timeline.LayerSpanModel.SpanType;
 import com.jpexs.decompiler.flash.timeline.Timeline;
 import java.awt.Color;
 import java.awt.Dimension;
@@ -35,8 +34,6 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
 import javax.swing.JPanel;
 import org.pushingpixels.substance.api.ColorSchemeAssociationKind;
 import org.pushingpixels.substance.api.ComponentState;
@@ -80,11 +77,6 @@ public class TimelineBodyPanel extends JPanel implements MouseListener, KeyListe
 
     public Point cursor = null;
 
-    private enum BlockType {
-
-        EMPTY, NORMAL, MOTION_TWEEN, SHAPE_TWEEN
-    }
-
     public static Color getEmptyFrameColor() {
         return SubstanceColorUtilities.getLighterColor(getControlColor(), 0.7);
     }
@@ -178,83 +170,35 @@ public class TimelineBodyPanel extends JPanel implements MouseListener, KeyListe
             g.fillRect(cursor.x * frameWidth + 1, cursor.y * frameHeight + 1, frameWidth - 1, frameHeight - 1);
         }
 
+        LayerSpanModel spanModel = timeline.getLayerSpanModel();
         g.setColor(aColor);
         g.setFont(getFont().deriveFont(fontSize));
         int awidth = g.getFontMetrics().stringWidth("a");
         for (int f = start_f; f <= end_f; f++) {
-            if (!timeline.getFrame(f).actions.isEmpty()) {
+            if (spanModel.hasActions(f)) {
                 g.drawString("a", f * frameWidth + frameWidth / 2 - awidth / 2, frameHeight / 2 + fontSize / 2);
             }
         }
 
-        Map<Integer, Integer> depthMaxFrames = timeline.getDepthMaxFrame();
         for (int d = start_d; d <= end_d; d++) {
-            int maxFrame = depthMaxFrames.containsKey(d) ? depthMaxFrames.get(d) : -1;
-            if (maxFrame < 0) {
-                continue;
-            }
-
-            int end_f2 = Math.min(end_f, maxFrame);
-            int start_f2 = Math.min(start_f, end_f2);
-
-            // find the start frame number of the current block
-            DepthState dsStart = timeline.getFrame(start_f2).layers.get(d);
-            for (; start_f2 >= 1; start_f2--) {
-                DepthState ds = timeline.getFrame(start_f2 - 1).layers.get(d);
-                if (((dsStart == null) != (ds == null))
-                        || (ds != null && (dsStart.characterId != ds.characterId || !Objects.equals(dsStart.className, ds.className)))) {
-                    break;
-                }
-            }
-
-            for (int f = start_f2; f <= end_f2; f++) {
-                DepthState fl = timeline.getFrame(f).layers.get(d);
-                boolean motionTween = fl == null ? false : fl.motionTween;
-
-                DepthState flNext = f < max_f ? timeline.getFrame(f + 1).layers.get(d) : null;
-                DepthState flPrev = f > 0 ? timeline.getFrame(f - 1).layers.get(d) : null;
-
-                CharacterTag cht = fl == null ? null : fl.getCharacter();
-                boolean shapeTween = cht != null && (cht instanceof MorphShapeTag);
-                boolean motionTweenStart = !motionTween && (flNext != null && flNext.motionTween);
-                boolean motionTweenEnd = !motionTween && (flPrev != null && flPrev.motionTween);
-                //boolean shapeTweenStart = shapeTween && (flPrev == null || flPrev.characterId != fl.characterId);
-                //boolean shapeTweenEnd = shapeTween && (flNext == null || flNext.characterId != fl.characterId);
-
-                /*if (motionTweenStart || motionTweenEnd) {
-                 motionTween = true;
-                 }*/
-                int draw_f = f;
-                int num_frames = 1;
+            for (LayerSpanModel.Span span : spanModel.getSpans(d, start_f, end_f)) {
                 Color backColor;
-                BlockType blockType;
-                if (fl == null) {
-                    for (; f + 1 < timeline.getFrameCount(); f++) {
-                        fl = timeline.getFrame(f + 1).layers.get(d);
-                        if (fl != null && fl.getCharacter() != null) {
-                            break;
-                        }
-
-                        num_frames++;
-                    }
-
-                    backColor = getEmptyFrameColor();
-                    blockType = BlockType.EMPTY;
-                } else {
-                    for (; f + 1 < timeline.getFrameCount(); f++) {
-                        fl = timeline.getFrame(f + 1).layers.get(d);
-                        if (fl == null || fl.key) {
-                            break;
-                        }
-
-                        num_frames++;
-                    }
-
-                    backColor = shapeTween ? shapeTweenColor : motionTween ? motionTweenColor : getFrameColor();
-                    blockType = shapeTween ? BlockType.SHAPE_TWEEN : motionTween ? BlockType.MOTION_TWEEN : BlockType.NORMAL;
+                switch (span.type) {
+                    case EMPTY:
+                        backColor = getEmptyFrameColor();
+                        break;
+                    case SHAPE_TWEEN:
+                        backColor = shapeTweenColor;
+                        break;
+                    case MOTION_TWEEN:
+                        backColor = motionTweenColor;
+                        break;
+                    default:
+                        backColor = getFrameColor();
+                        break;
                 }
 
-                drawBlock(g, backColor, d, draw_f, num_frames, blockType);
+                drawBlock(g, backColor, d, span.startFrame, span.frameCount, span.type);
             }
         }
 
@@ -264,7 +208,7 @@ public class TimelineBodyPanel extends JPanel implements MouseListener, KeyListe
         }
     }
 
-    private void drawBlock(Graphics2D g, Color backColor, int depth, int frame, int num_frames, BlockType blockType) {
+    private void drawBlock(Graphics2D g, Color backColor, int depth, int frame, int num_frames, SpanType blockType) {
         int frameWidth = TimelinePanel.FRAME_WIDTH;
         int frameHeight = TimelinePanel.FRAME_HEIGHT;
 
@@ -283,7 +227,7 @@ public class TimelineBodyPanel extends JPanel implements MouseListener, KeyListe
             g.fillRect(cursor.x * frameWidth + 1, depth * frameHeight + 1, frameWidth - 1, frameHeight - 1);
         }
 
-        boolean isTween = blockType == BlockType.MOTION_TWEEN || blockType == BlockType.SHAPE_TWEEN;
+        boolean isTween = blockType == SpanType.MOTION_TWEEN || blockType == SpanType.SHAPE_TWEEN;
 
         g.setColor(keyColor);
         if (isTween) {
@@ -292,7 +236,7 @@ public class TimelineBodyPanel extends JPanel implements MouseListener, KeyListe
             );
         }
 
-        if (blockType == BlockType.EMPTY) {
+        if (blockType == SpanType.EMPTY) {
             g.drawOval(frame * frameWidth + frameWidth / 4, depth * frameHeight + frameHeight * 3 / 4 - frameWidth / 2 / 2, frameWidth / 2, frameWidth / 2);
         } else {
             g.fillOval(frame * frameWidth + frameWidth / 4, depth * frameHeight + frameHeight * 3 / 4 - frameWidth / 2 / 2, frameWidth / 2, frameWidth / 2);